@@ -112,6 +112,11 @@ macro(jss_tests)
         COMMAND "org.mozilla.jss.tests.TestGlobalReference"
         MODE "NONE"
     )
+    jss_test_java(
+        NAME "JSS_Test_NativeProxy_Cleaner"
+        COMMAND "org.mozilla.jss.tests.NativeProxyCleanerTest"
+        MODE "NONE"
+    )
     if ((${Java_VERSION_MAJOR} EQUAL 1) AND (${Java_VERSION_MINOR} LESS 9) AND (${JSS_VERSION_BETA} EQUAL 1))
         jss_test_java(
             NAME "Test_PKCS11Constants.java_for_Sun_compatibility"
@@ -160,6 +165,70 @@ macro(jss_tests)
         NAME "JUnit_ChainSortingTest"
         COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.ChainSortingTest"
     )
+    jss_test_java(
+        NAME "JUnit_X509CRLBuilderTest"
+        COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.X509CRLBuilderTest"
+    )
+    jss_test_java(
+        NAME "JUnit_X509CRLImplTest"
+        COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.X509CRLImplTest"
+    )
+    jss_test_java(
+        NAME "JUnit_X509CertImplTest"
+        COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.X509CertImplTest"
+    )
+    jss_test_java(
+        NAME "JUnit_DerValueTest"
+        COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.DerValueTest"
+    )
+    jss_test_java(
+        NAME "JUnit_DerTimeTest"
+        COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.DerTimeTest"
+    )
+    jss_test_java(
+        NAME "JUnit_ObjectIdentifierTest"
+        COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.ObjectIdentifierTest"
+    )
+    jss_test_java(
+        NAME "JUnit_X500NameTest"
+        COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.X500NameTest"
+    )
+    jss_test_java(
+        NAME "JUnit_BulkDecoderTest"
+        COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.BulkDecoderTest"
+    )
+    jss_test_java(
+        NAME "JUnit_ASN1StreamingTest"
+        COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.ASN1StreamingTest"
+    )
+    jss_test_java(
+        NAME "JUnit_SignedDataStreamTest"
+        COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.SignedDataStreamTest"
+    )
+    jss_test_java(
+        NAME "JUnit_BERInputStreamTest"
+        COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.BERInputStreamTest"
+    )
+    jss_test_java(
+        NAME "JUnit_TemplateCacheTest"
+        COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.TemplateCacheTest"
+    )
+    jss_test_java(
+        NAME "JUnit_PKCS7VerifyTest"
+        COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.PKCS7VerifyTest"
+    )
+    jss_test_java(
+        NAME "JUnit_PKIDataProcessorTest"
+        COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.PKIDataProcessorTest"
+    )
+    jss_test_java(
+        NAME "JUnit_ASN1EncodingTest"
+        COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.ASN1EncodingTest"
+    )
+    jss_test_java(
+        NAME "JUnit_OIDMapTest"
+        COMMAND "org.junit.runner.JUnitCore" "org.mozilla.jss.tests.OIDMapTest"
+    )
     jss_test_java(
         NAME "Generate_known_RSA_cert_pair"
         COMMAND "org.mozilla.jss.tests.GenerateTestCert" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}" "20" "localhost" "SHA-256/RSA" "CA_RSA" "Server_RSA" "Client_RSA"
@@ -180,6 +249,42 @@ macro(jss_tests)
         COMMAND "pk12util" "-o" "${RESULTS_NSSDB_OUTPUT_DIR}/ecdsa.pfx" "-n" "CA_ECDSA" "-d" "${RESULTS_NSSDB_OUTPUT_DIR}" "-K" "${DB_PWD}" "-W" "${DB_PWD}"
         DEPENDS "Generate_known_ECDSA_cert_pair"
     )
+    jss_test_java(
+        NAME "PKCS12_Read"
+        COMMAND "org.mozilla.jss.tests.PKCS12ReadTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${RESULTS_NSSDB_OUTPUT_DIR}/rsa.pfx" "${DB_PWD}"
+        DEPENDS "Create_PKCS11_cert_to_PKCS12_rsa.pfx"
+    )
+    jss_test_java(
+        NAME "PKCS12_Executor"
+        COMMAND "org.mozilla.jss.tests.PKCS12ExecutorTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Generate_known_RSA_cert_pair"
+    )
+    jss_test_java(
+        NAME "SignedData_Stream_Signed"
+        COMMAND "org.mozilla.jss.tests.SignedDataStreamTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}" "Server_RSA"
+        DEPENDS "Generate_known_RSA_cert_pair"
+    )
+    jss_test_exec(
+        NAME "Clean_PKCS12_Import_DB"
+        COMMAND "cmake" "-E" "remove_directory" "${RESULTS_NSSDB_PKCS12_OUTPUT_DIR}"
+    )
+    jss_test_exec(
+        NAME "Create_PKCS12_Import_DB"
+        COMMAND "cmake" "-E" "make_directory" "${RESULTS_NSSDB_PKCS12_OUTPUT_DIR}"
+        DEPENDS "Clean_PKCS12_Import_DB"
+    )
+    jss_test_java(
+        NAME "Setup_PKCS12_Import_DB"
+        COMMAND "org.mozilla.jss.tests.SetupDBs" "${RESULTS_NSSDB_PKCS12_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Create_PKCS12_Import_DB"
+        MODE "NONE"
+    )
+    jss_test_java(
+        NAME "PKCS12_Import"
+        COMMAND "org.mozilla.jss.tests.PKCS12ImportTest" "${RESULTS_NSSDB_PKCS12_OUTPUT_DIR}" "${PASSWORD_FILE}" "${RESULTS_NSSDB_OUTPUT_DIR}/rsa.pfx" "${DB_PWD}"
+        DEPENDS "Setup_PKCS12_Import_DB" "Create_PKCS11_cert_to_PKCS12_rsa.pfx"
+        MODE "NONE"
+    )
     jss_test_java(
         NAME "List_CA_certs"
         COMMAND "org.mozilla.jss.tests.ListCACerts" "${RESULTS_NSSDB_OUTPUT_DIR}" "Verbose"
@@ -205,6 +310,26 @@ macro(jss_tests)
         COMMAND "org.mozilla.jss.tests.CrossHMACTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
         DEPENDS "Setup_DBs"
     )
+    jss_test_java(
+        NAME "Context_Pool"
+        COMMAND "org.mozilla.jss.tests.ContextPoolTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Setup_DBs"
+    )
+    jss_test_java(
+        NAME "Direct_ByteBuffer"
+        COMMAND "org.mozilla.jss.tests.DirectBufferTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Setup_DBs"
+    )
+    jss_test_java(
+        NAME "Cipher_Output_Array"
+        COMMAND "org.mozilla.jss.tests.CipherOutputArrayTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Setup_DBs"
+    )
+    jss_test_java(
+        NAME "AEAD_Cipher"
+        COMMAND "org.mozilla.jss.tests.AEADCipherTest" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
+        DEPENDS "Setup_DBs"
+    )
     jss_test_java(
         NAME "KeyWrapping"
         COMMAND "org.mozilla.jss.tests.JCAKeyWrap" "${RESULTS_NSSDB_OUTPUT_DIR}" "${PASSWORD_FILE}"
@@ -276,6 +276,8 @@ public final class JSSProvider extends java.security.Provider {
         put("Alg.Alias.Cipher.DES3", "DESede");
         put("Cipher.AES",
             "org.mozilla.jss.provider.javax.crypto.JSSCipherSpi$AES");
+        put("Cipher.ChaCha20-Poly1305",
+            "org.mozilla.jss.provider.javax.crypto.JSSCipherSpi$ChaCha20Poly1305");
         put("Cipher.RC4",
             "org.mozilla.jss.provider.javax.crypto.JSSCipherSpi$RC4");
         put("Cipher.RSA",
@@ -292,6 +294,7 @@ public final class JSSProvider extends java.security.Provider {
         put("KeyGenerator.DESede", kg_spi + "$DESede");
         put("Alg.Alias.KeyGenerator.DES3", "DESede");
         put("KeyGenerator.AES", kg_spi + "$AES");
+        put("KeyGenerator.ChaCha20", kg_spi + "$ChaCha20");
         put("KeyGenerator.RC4", kg_spi + "$RC4");
         put("KeyGenerator.RC2", kg_spi + "$RC2");
         put("KeyGenerator.HmacSHA1", kg_spi + "$HmacSHA1");
@@ -358,6 +361,8 @@ public final class JSSProvider extends java.security.Provider {
         put("Alg.Alias.SecretKeyFactory.DES3", "DESede");
         put("SecretKeyFactory.AES",
             "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$AES");
+        put("SecretKeyFactory.ChaCha20",
+            "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$ChaCha20");
         put("SecretKeyFactory.RC4",
             "org.mozilla.jss.provider.javax.crypto.JSSSecretKeyFactorySpi$RC4");
         put("SecretKeyFactory.RC2",
@@ -70,6 +70,13 @@ public class Encoding implements ASN1Value {
         seq.encode(implicitTag, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return seq.encodedLength(implicitTag);
+    }
+
     private static final Template templateInstance = new Template();
     public static Template getTemplate() {
         return templateInstance;
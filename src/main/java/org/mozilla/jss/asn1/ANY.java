@@ -3,7 +3,6 @@
  * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
 package org.mozilla.jss.asn1;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -53,7 +52,7 @@ public class ANY implements ASN1Value {
         try {
             this.encoded = encoded;
 
-            ByteArrayInputStream bis = new ByteArrayInputStream(encoded);
+            BERInputStream bis = new BERInputStream(encoded);
             ASN1Header head = new ASN1Header(bis);
             this.tag = head.getTag();
         } catch (IOException e) {
@@ -89,7 +88,7 @@ public class ANY implements ASN1Value {
      */
     public ASN1Header getHeader() throws InvalidBERException, IOException {
         if (header == null) {
-            ByteArrayInputStream bis = new ByteArrayInputStream(encoded);
+            BERInputStream bis = new BERInputStream(encoded);
             header = new ASN1Header(bis);
         }
         return header;
@@ -106,7 +105,7 @@ public class ANY implements ASN1Value {
     public byte[] getContents() throws InvalidBERException {
         try {
             if (contents == null) {
-                ByteArrayInputStream bis = new ByteArrayInputStream(encoded);
+                BERInputStream bis = new BERInputStream(encoded);
                 header = new ASN1Header(bis);
                 contents = new byte[bis.available()];
                 if ((contents.length != header.getContentLength()) &&
@@ -142,7 +141,7 @@ public class ANY implements ASN1Value {
     public ASN1Value decodeWith(ASN1Template template)
             throws InvalidBERException {
         try {
-            ByteArrayInputStream bis = new ByteArrayInputStream(encoded);
+            BERInputStream bis = new BERInputStream(encoded);
             return template.decode(bis);
         } catch (IOException e) {
             throw new RuntimeException("Unable to read byte array: " + e.getMessage(), e);
@@ -163,7 +162,7 @@ public class ANY implements ASN1Value {
      */
     public ASN1Value decodeWith(Tag implicitTag, ASN1Template template)
             throws IOException, InvalidBERException {
-        ByteArrayInputStream bis = new ByteArrayInputStream(encoded);
+        BERInputStream bis = new BERInputStream(encoded);
         return template.decode(implicitTag, bis);
     }
 
@@ -181,6 +180,14 @@ public class ANY implements ASN1Value {
         ostream.write(encoded);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) {
+        if (!implicitTag.equals(tag)) {
+            throw new RuntimeException("No implicit tags allowed for ANY");
+        }
+        return encoded.length;
+    }
+
     /**
      * Extracts the contents from the ANY and encodes them with
      * the provided tag.
@@ -244,7 +251,7 @@ public class ANY implements ASN1Value {
                     // write all objects from the input stream to the recording
                     // stream, until we hit an END-OF-CONTENTS tag
                     ANY any;
-                    ANY.Template anyt = new ANY.Template();
+                    ANY.Template anyt = ANY.getTemplate();
                     int count = 0;
                     do {
                         any = (ANY) anyt.decode(istream);
@@ -273,4 +280,51 @@ public class ANY implements ASN1Value {
         }
     } // End of Template
 
+    /**
+     * A template which passes the complete encoding of an <code>ANY</code>
+     * to a {@link ContentHandler} as it is read, instead of collecting it
+     * into an ANY. Indefinite length encodings are followed to their
+     * end-of-contents octets. The handler may decode the stream with
+     * another template, wrapping it in a BufferedInputStream if that
+     * template needs to look ahead.
+     * <p>
+     * Headers are not re-encoded: each one is passed on as the octets it
+     * was read from, which ASN1Header keeps, so a BER encoding with
+     * non-minimal tag or length octets is passed on unchanged.
+     * <p>
+     * The template returns whatever the handler returns.
+     */
+    public static class StreamingTemplate implements ASN1Template {
+
+        private final ContentHandler handler;
+
+        public StreamingTemplate(ContentHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public boolean tagMatch(Tag tag) {
+            return true;
+        }
+
+        @Override
+        public ASN1Value decode(InputStream istream)
+                throws IOException, InvalidBERException {
+            try {
+                ASN1Header head = new ASN1Header(istream);
+
+                return ContentInputStream.encoding(istream, head).passTo(handler, head.getTag());
+
+            } catch (InvalidBERException e) {
+                throw new InvalidBERException(e, "ANY");
+            }
+        }
+
+        @Override
+        public ASN1Value decode(Tag implicitTag, InputStream istream)
+                throws IOException, InvalidBERException {
+            throw new InvalidBERException("Implicit tag on ANY");
+        }
+    } // End of StreamingTemplate
+
 }
@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Vector;
 
 /**
@@ -85,6 +86,10 @@ public class ASN1Header {
      */
     public static ASN1Header lookAhead(InputStream derStream)
             throws IOException, InvalidBERException {
+        if (derStream instanceof BERInputStream) {
+            return ((BERInputStream) derStream).peekHeader();
+        }
+
         if (!derStream.markSupported()) {
             throw new IOException("Mark not supported on this input stream");
         }
@@ -106,6 +111,17 @@ public class ASN1Header {
      */
     public ASN1Header(InputStream istream)
             throws InvalidBERException, IOException {
+
+        if (istream instanceof BERInputStream) {
+            // decoded in place, and only once if it was looked ahead at
+            ASN1Header head = ((BERInputStream) istream).readHeader();
+            tag = head.tag;
+            form = head.form;
+            contentLength = head.contentLength;
+            cachedEncoding = head.cachedEncoding;
+            return;
+        }
+
         // default BAOS size is 32 bytes, which is plenty
         ByteArrayOutputStream encoding = new ByteArrayOutputStream();
         int inInt = istream.read();
@@ -237,6 +253,80 @@ public class ASN1Header {
         cachedEncoding = encoding.toByteArray();
     }
 
+    private ASN1Header() {
+    }
+
+    /**
+     * Decodes the header at the given position of a buffer, without
+     * changing the position of the buffer.
+     *
+     * @param buf Buffer.
+     * @param pos Absolute position of the header.
+     * @return ASN.1 header.
+     * @throws InvalidBERException If there is an invalid BER encoding.
+     */
+    static ASN1Header decode(ByteBuffer buf, int pos) throws InvalidBERException {
+        int start = pos;
+        int limit = buf.limit();
+        ASN1Header head = new ASN1Header();
+
+        if (pos >= limit) {
+            throw new InvalidBERException("End-of-file reached while " +
+                    "decoding ASN.1 header");
+        }
+        int byte1 = buf.get(pos++) & 0xff;
+
+        Tag.Class tagClass = Tag.Class.fromInt(byte1 >>> 6);
+        head.form = (byte1 & 0x20) == 0x20 ? CONSTRUCTED : PRIMITIVE;
+
+        long tagNum;
+        if ((byte1 & 0x1f) == 0x1f) {
+            // long form, 7 bits per octet, last octet has MSB == 0
+            tagNum = 0;
+            int next;
+            do {
+                if (pos >= limit) {
+                    throw new InvalidBERException("End-of-file reached while"
+                            + " decoding ASN.1 header");
+                }
+                next = buf.get(pos++) & 0xff;
+                tagNum = (tagNum << 7) | (next & 0x7f);
+            } while ((next & 0x80) == 0x80);
+        } else {
+            tagNum = byte1 & 0x1f;
+        }
+        head.tag = new Tag(tagClass, tagNum);
+
+        if (pos >= limit) {
+            throw new InvalidBERException("End-of-file reached while " +
+                    "decoding ASN.1 header");
+        }
+        int lenByte = buf.get(pos++) & 0xff;
+
+        if ((lenByte & 0x80) == 0) {
+            head.contentLength = lenByte;
+        } else if ((lenByte & 0x7f) == 0) {
+            head.contentLength = -1;
+        } else {
+            int n = lenByte & 0x7f;
+            if (pos + n > limit) {
+                throw new InvalidBERException("End-of-file reached while " +
+                        "decoding ASN.1 header");
+            }
+            byte[] lenBytes = new byte[n];
+            for (int i = 0; i < n; i++) {
+                lenBytes[i] = buf.get(pos++);
+            }
+            head.contentLength = new BigInteger(1, lenBytes).longValue();
+        }
+
+        head.cachedEncoding = new byte[pos - start];
+        for (int i = 0; i < head.cachedEncoding.length; i++) {
+            head.cachedEncoding[i] = buf.get(start + i);
+        }
+        return head;
+    }
+
     /**
      * This constructor is to be called when we are constructing an ASN1Value
      * rather than decoding it.
@@ -325,6 +415,38 @@ public class ASN1Header {
         return cachedEncoding;
     }
 
+    /**
+     * Returns the length of the DER encoding of a value, header included,
+     * without building the header.
+     *
+     * @param tag Tag.
+     * @param contentLength Length of the contents, &ge;0.
+     * @return Total length.
+     */
+    public static long encodedLength(Tag tag, long contentLength) {
+        assert (contentLength >= 0);
+        long length = 1;
+
+        long num = tag.getNum();
+        if (num > 30) {
+            // long form tag: 7 bits per octet
+            do {
+                length++;
+                num >>>= 7;
+            } while (num != 0);
+        }
+
+        length++;
+        if (contentLength > 127) {
+            // long form length: one octet per 8 bits
+            for (long l = contentLength; l != 0; l >>>= 8) {
+                length++;
+            }
+        }
+
+        return length + contentLength;
+    }
+
     /**
      * Converts an unsigned BigInteger to a minimal-length byte array.
      * This is necessary because BigInteger.toByteArray() attaches an extra
@@ -3,11 +3,11 @@
  * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
 package org.mozilla.jss.asn1;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 public class ASN1Util {
@@ -17,14 +17,98 @@ public class ASN1Util {
     }
 
     public static byte[] encode(Tag implicitTag, ASN1Value val) {
+        EncodingContext context = EncodingContext.enter();
         try {
 
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            val.encode(implicitTag, bos);
-            return bos.toByteArray();
+            // compute the length first so the value is written once,
+            // straight into an array of the right size
+            long length = val.encodedLength(implicitTag);
+            if (length > Integer.MAX_VALUE - 8) {
+                throw new IOException("Encoding too large: " + length + " bytes");
+            }
 
-        } catch (IOException e) {
+            byte[] encoding = new byte[(int) length];
+            ByteBuffer buffer = ByteBuffer.wrap(encoding);
+            val.encode(implicitTag, new EncodingContext.BufferStream(buffer));
+            if (buffer.hasRemaining()) {
+                throw new IOException("Encoding shorter than its computed length");
+            }
+            return encoding;
+
+        } catch (IOException | BufferOverflowException e) {
             throw new RuntimeException("Unable to encode byte array: " + e.getMessage(), e);
+        } finally {
+            context.exit();
+        }
+    }
+
+    /**
+     * Writes the DER encoding of a value into a buffer, starting at the
+     * buffer's position. The length of the encoding is computed first, and
+     * nothing is written if the buffer does not have enough room.
+     *
+     * @param implicitTag Implicit tag.
+     * @param val Value to encode.
+     * @param buffer Buffer receiving the encoding.
+     * @return The number of bytes written.
+     * @throws BufferOverflowException If the buffer is too small.
+     * @throws IOException If an error occurred.
+     */
+    public static int encode(Tag implicitTag, ASN1Value val, ByteBuffer buffer)
+            throws IOException {
+        EncodingContext context = EncodingContext.enter();
+        try {
+            long length = val.encodedLength(implicitTag);
+            if (length > buffer.remaining()) {
+                throw new BufferOverflowException();
+            }
+
+            int start = buffer.position();
+            val.encode(implicitTag, new EncodingContext.BufferStream(buffer));
+            if (buffer.position() - start != length) {
+                throw new IOException("Encoding does not match its computed length");
+            }
+            return (int) length;
+
+        } finally {
+            context.exit();
+        }
+    }
+
+    /**
+     * Supplies the value a composite type is encoded as.
+     */
+    public interface EncodingValue {
+        ASN1Value create() throws IOException;
+    }
+
+    /**
+     * Returns the value a composite type is encoded as, typically a
+     * SEQUENCE built from its fields.
+     * <p>
+     * A type which builds such a value in encode() should get it here from
+     * both encode() and encodedLength(Tag). While an encoding is in
+     * progress the value is created only once per instance, so the length
+     * computed for the instance and the bytes written for it come from the
+     * same SEQUENCE, whose length is then known without encoding it.
+     *
+     * @param val The composite value being encoded.
+     * @param creator Creates the value <code>val</code> is encoded as.
+     * @return The value to encode in place of <code>val</code>.
+     * @throws IOException If an error occurred.
+     */
+    public static ASN1Value getEncodingValue(ASN1Value val, EncodingValue creator)
+            throws IOException {
+        EncodingContext context = EncodingContext.enter();
+        try {
+            ASN1Value encodingValue = context.lookup(val);
+            if (encodingValue == null) {
+                encodingValue = creator.create();
+                context.store(val, encodingValue);
+            }
+            return encodingValue;
+        } finally {
+            context.exit();
         }
     }
 
@@ -32,7 +116,7 @@ public class ASN1Util {
             throws InvalidBERException {
         try {
 
-            ByteArrayInputStream bis = new ByteArrayInputStream(encoded);
+            BERInputStream bis = new BERInputStream(encoded);
             return template.decode(bis);
 
         } catch (IOException e) {
@@ -41,12 +125,34 @@ public class ASN1Util {
         }
     }
 
+    /**
+     * Decodes the remaining bytes of a buffer with the given template.
+     * The position of the buffer is not changed.
+     *
+     * @param template Template.
+     * @param encoded Buffer holding the BER encoding.
+     * @return Decoded value.
+     * @throws InvalidBERException If there is an invalid BER encoding.
+     */
+    public static ASN1Value decode(ASN1Template template, ByteBuffer encoded)
+            throws InvalidBERException {
+        try {
+
+            BERInputStream bis = new BERInputStream(encoded);
+            return template.decode(bis);
+
+        } catch (IOException e) {
+            throw (InvalidBERException) new InvalidBERException("Unable to decode buffer: " + e.getMessage())
+                    .initCause(e);
+        }
+    }
+
     public static ASN1Value decode(Tag implicitTag, ASN1Template template,
             byte[] encoded)
             throws InvalidBERException {
         try {
 
-            ByteArrayInputStream bis = new ByteArrayInputStream(encoded);
+            BERInputStream bis = new BERInputStream(encoded);
             return template.decode(implicitTag, bis);
 
         } catch (IOException e) {
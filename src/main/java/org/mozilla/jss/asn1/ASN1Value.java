@@ -40,4 +40,31 @@ public interface ASN1Value {
      */
     public void encode(Tag implicitTag, OutputStream ostream)
             throws IOException;
+
+    /**
+     * Returns the length of this value's DER encoding using its own
+     * base tag.
+     *
+     * @return Length of the encoding, including the header.
+     * @throws IOException If an error occurred.
+     */
+    public default long encodedLength() throws IOException {
+        return encodedLength(getTag());
+    }
+
+    /**
+     * Returns the length of this value's DER encoding using an implicit
+     * tag. Constructed types use this to write their header before their
+     * contents without encoding the contents twice.
+     * <p>
+     * The default implementation encodes the value to a stream which only
+     * counts the bytes. Types which know their length should override it.
+     *
+     * @param implicitTag Implicit tag.
+     * @return Length of the encoding, including the header.
+     * @throws IOException If an error occurred.
+     */
+    public default long encodedLength(Tag implicitTag) throws IOException {
+        return EncodingContext.encodedLength(this, implicitTag);
+    }
 }
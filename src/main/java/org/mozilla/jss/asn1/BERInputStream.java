@@ -0,0 +1,134 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.asn1;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An input stream over a BER encoding held in memory.
+ * <p>
+ * The templates recognize this stream and use it to decode headers in
+ * place: looking ahead at a header does not need mark() and reset(), a
+ * header that was looked ahead at is not parsed again when it is read,
+ * and the number of bytes used by an element is known from the position
+ * of the stream instead of counting them through a wrapper stream.
+ * <p>
+ * Any other InputStream can still be given to the templates, which then
+ * decode it as before.
+ */
+public class BERInputStream extends InputStream {
+
+    private ByteBuffer buf;
+    private int markpos;
+
+    // the last header looked ahead at, and its position
+    private ASN1Header peeked;
+    private int peekedpos = -1;
+
+    public BERInputStream(byte[] encoded) {
+        this(encoded, 0, encoded.length);
+    }
+
+    public BERInputStream(byte[] encoded, int offset, int length) {
+        this(ByteBuffer.wrap(encoded, offset, length));
+    }
+
+    /**
+     * Reads the remaining bytes of a buffer. The buffer itself is not
+     * modified.
+     *
+     * @param buf Buffer.
+     */
+    public BERInputStream(ByteBuffer buf) {
+        this.buf = buf.duplicate();
+        this.markpos = this.buf.position();
+    }
+
+    /**
+     * Returns the position of the stream in the underlying buffer.
+     */
+    public int position() {
+        return buf.position();
+    }
+
+    /**
+     * Returns the header at the current position without consuming it.
+     *
+     * @return ASN.1 header.
+     * @throws InvalidBERException If there is an invalid BER encoding.
+     */
+    public ASN1Header peekHeader() throws InvalidBERException {
+        int pos = buf.position();
+        if (pos != peekedpos) {
+            peeked = ASN1Header.decode(buf, pos);
+            peekedpos = pos;
+        }
+        return peeked;
+    }
+
+    /**
+     * Returns the header at the current position and moves past it.
+     *
+     * @return ASN.1 header.
+     * @throws InvalidBERException If there is an invalid BER encoding.
+     */
+    public ASN1Header readHeader() throws InvalidBERException {
+        ASN1Header header = peekHeader();
+        buf.position(buf.position() + header.encode().length);
+        return header;
+    }
+
+    @Override
+    public int read() {
+        if (!buf.hasRemaining()) {
+            return -1;
+        }
+        return buf.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!buf.hasRemaining()) {
+            return -1;
+        }
+        int n = Math.min(len, buf.remaining());
+        buf.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        int k = (int) Math.min(n, buf.remaining());
+        buf.position(buf.position() + k);
+        return k;
+    }
+
+    @Override
+    public int available() {
+        return buf.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        markpos = buf.position();
+    }
+
+    @Override
+    public void reset() {
+        buf.position(markpos);
+    }
+}
@@ -261,7 +261,7 @@ public class BIT_STRING implements ASN1Value {
                                         "BIT STRING has nonzero unused bits, but is not\n" +
                                         "the last element of the construction.");
                             }
-                            BIT_STRING.Template bst = new BIT_STRING.Template();
+                            BIT_STRING.Template bst = BIT_STRING.getTemplate();
                             BIT_STRING bs = (BIT_STRING) bst.decode(istream);
                             bos.write(bs.getBits());
                             padCount = bs.getPadCount();
@@ -40,6 +40,11 @@ public class BOOLEAN implements ASN1Value {
         }
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) {
+        return ASN1Header.encodedLength(implicitTag, 1);
+    }
+
     private boolean val;
 
     /**
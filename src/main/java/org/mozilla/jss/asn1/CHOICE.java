@@ -6,7 +6,10 @@ package org.mozilla.jss.asn1;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Objects of this class are generated by CHOICE.Template.decode(). It is
@@ -86,13 +89,23 @@ public class CHOICE implements ASN1Value {
         val.encode(tag, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) throws IOException {
+        return val.encodedLength(tag);
+    }
+
     /**
      * A Template for decoding ASN.1 <code>CHOICE</code>s
      */
     public static class Template implements ASN1Template {
 
+        private static final int MAX_CACHED_TAGS = 64;
+
         // The the various possibilities in this CHOICE
-        private Vector<Element> templates = new Vector<>();
+        private List<Element> templates = new ArrayList<>();
+
+        // index of the element matching each tag seen so far, or -1
+        private Map<Tag, Integer> tagIndex = new ConcurrentHashMap<>();
 
         /**
          * Creates an empty CHOICE template
@@ -106,7 +119,8 @@ public class CHOICE implements ASN1Value {
          * @param template Sub-template.
          */
         public void addElement(ASN1Template template) {
-            templates.addElement(new Element(template));
+            templates.add(new Element(template));
+            tagIndex.clear();
         }
 
         /**
@@ -116,7 +130,8 @@ public class CHOICE implements ASN1Value {
          * @param template Sub-template.
          */
         public void addElement(Tag implicitTag, ASN1Template template) {
-            templates.addElement(new Element(implicitTag, template));
+            templates.add(new Element(implicitTag, template));
+            tagIndex.clear();
         }
 
         /**
@@ -131,7 +146,7 @@ public class CHOICE implements ASN1Value {
          * @return The element at the specified index.
          */
         public ASN1Template elementAt(int index) {
-            return templates.elementAt(index).getTemplate();
+            return templates.get(index).getTemplate();
         }
 
         /**
@@ -142,14 +157,15 @@ public class CHOICE implements ASN1Value {
          * @return The implicit tag.
          */
         public Tag implicitTagAt(int index) {
-            return templates.elementAt(index).getImplicitTag();
+            return templates.get(index).getImplicitTag();
         }
 
         /**
          * Empties this CHOICE template.
          */
         public void removeAllElements() {
-            templates.removeAllElements();
+            templates.clear();
+            tagIndex.clear();
         }
 
         /**
@@ -158,7 +174,8 @@ public class CHOICE implements ASN1Value {
          * @param index Element index.
          */
         public void removeElementAt(int index) {
-            templates.removeElementAt(index);
+            templates.remove(index);
+            tagIndex.clear();
         }
 
         /**
@@ -169,25 +186,45 @@ public class CHOICE implements ASN1Value {
          */
         @Override
         public boolean tagMatch(Tag t) {
+            return findElementByTag(t) != -1;
+        }
+
+        /**
+         * Returns the index of the first element matching the given tag,
+         * or -1 if none does. The result is remembered, so each tag is
+         * only matched against the elements once.
+         */
+        private int findElementByTag(Tag t) {
+            Integer cached = tagIndex.get(t);
+            if (cached != null) {
+                return cached;
+            }
+
+            int index = -1;
             int size = size();
             for (int i = 0; i < size; i++) {
                 Tag impl = implicitTagAt(i);
                 if (impl != null) {
                     // There is an implicit tag, if we match it we have a match
                     if (impl.equals(t)) {
-                        return true;
+                        index = i;
+                        break;
                     }
                 } else {
                     // no implicit tag, look at the sub-template itself
                     ASN1Template templ = elementAt(i);
                     if (templ.tagMatch(t)) {
-                        return true;
+                        index = i;
+                        break;
                     }
                 }
             }
 
-            // none of the elements matched
-            return false;
+            // don't let unexpected tags in the input grow the table
+            if (tagIndex.size() < MAX_CACHED_TAGS) {
+                tagIndex.put(t, index);
+            }
+            return index;
         }
 
         @Override
@@ -196,29 +233,22 @@ public class CHOICE implements ASN1Value {
             ASN1Header head = ASN1Header.lookAhead(istream);
             Tag tag = head.getTag();
 
-            // Loop over all the elements of the CHOICE template until we
-            // find one with a matching tag.
-            int size = size();
-            for (int i = 0; i < size; i++) {
-                if (implicitTagAt(i) != null) {
-                    if (implicitTagAt(i).equals(tag)) {
-                        // match by implicit tag!
-                        ASN1Value val = elementAt(i).decode(implicitTagAt(i),
-                                istream);
-                        //return elementAt(i).decode( implicitTagAt(i), istream );
-                        return new CHOICE(implicitTagAt(i), val);
-                    }
-                } else {
-                    if (elementAt(i).tagMatch(tag)) {
-                        // match by base tag !
-                        //return elementAt(i).decode(istream);
-                        return new CHOICE(elementAt(i).decode(istream));
-                    }
-                }
+            // Find the first element of the CHOICE template with a
+            // matching tag.
+            int i = findElementByTag(tag);
+            if (i == -1) {
+                // we didn't find any match
+                throw new InvalidBERException("Unable to decode CHOICE");
+            }
+
+            if (implicitTagAt(i) != null) {
+                // match by implicit tag!
+                ASN1Value val = elementAt(i).decode(implicitTagAt(i), istream);
+                return new CHOICE(implicitTagAt(i), val);
             }
 
-            // we didn't find any match
-            throw new InvalidBERException("Unable to decode CHOICE");
+            // match by base tag !
+            return new CHOICE(elementAt(i).decode(istream));
         }
 
         // Implicit tags are illegal for CHOICE (and ANY)
@@ -82,6 +82,11 @@ public abstract class CharacterString implements ASN1Value {
         ostream.write(contents);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) {
+        return ASN1Header.encodedLength(implicitTag, getEncodedContents().length);
+    }
+
     public abstract static class Template implements ASN1Template {
 
         /**
@@ -144,7 +149,7 @@ public abstract class CharacterString implements ASN1Value {
                     do {
                         ahead = ASN1Header.lookAhead(istream);
                         if (!ahead.isEOC()) {
-                            OCTET_STRING.Template ot = new OCTET_STRING.Template();
+                            OCTET_STRING.Template ot = OCTET_STRING.getTemplate();
                             OCTET_STRING os = (OCTET_STRING) ot.decode(istream);
                             bos.write(os.toByteArray());
                         }
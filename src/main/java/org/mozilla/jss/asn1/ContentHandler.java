@@ -0,0 +1,33 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.asn1;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Receives the contents of a value decoded by a streaming template, such
+ * as {@link OCTET_STRING.StreamingTemplate} or
+ * {@link ANY.StreamingTemplate}, while the value is being read.
+ * <p>
+ * The stream is only valid during the call. Whatever the handler does not
+ * read is skipped when it returns, and closing the stream does not close
+ * the underlying input.
+ */
+@FunctionalInterface
+public interface ContentHandler {
+
+    /**
+     * Processes the contents of a value.
+     *
+     * @param tag The tag the value was encoded with.
+     * @param content The contents, which end where the value ends.
+     * @return The value the template returns in place of the contents,
+     *         which may be null.
+     * @throws IOException If an error occurred.
+     * @throws InvalidBERException If there is an invalid BER encoding.
+     */
+    public ASN1Value handle(Tag tag, InputStream content)
+            throws IOException, InvalidBERException;
+}
@@ -0,0 +1,218 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.asn1;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+
+/**
+ * Reads one BER value from an underlying stream as it is consumed,
+ * without buffering it, and stops at the end of the value.
+ * <p>
+ * In <i>contents</i> mode the value is an OCTET STRING and the stream
+ * returns its contents octets; a constructed OCTET STRING is returned as
+ * the concatenation of its segments, definite or indefinite length, at
+ * any depth. In <i>encoding</i> mode the stream returns the complete
+ * encoding of the value, header and end-of-contents octets included.
+ * <p>
+ * The header of the value must already have been read.
+ */
+class ContentInputStream extends InputStream {
+
+    private final InputStream in;
+    private final boolean passHeaders;
+
+    // number of bytes of the value read after its header
+    private long pos;
+
+    // bytes of the current segment still to be read
+    private long raw;
+
+    // header bytes still to be returned, in encoding mode
+    private byte[] pending;
+    private int pendingPos;
+
+    // end positions of the constructed values being read, -1 for
+    // indefinite length
+    private final ArrayDeque<Long> frames = new ArrayDeque<>();
+
+    private ContentInputStream(InputStream in, boolean passHeaders) {
+        this.in = in;
+        this.passHeaders = passHeaders;
+    }
+
+    /**
+     * Returns a stream of the contents of an OCTET STRING.
+     */
+    static ContentInputStream contents(InputStream in, ASN1Header head)
+            throws InvalidBERException {
+        ContentInputStream s = new ContentInputStream(in, false);
+        if (head.getForm() == Form.PRIMITIVE) {
+            if (head.getContentLength() == -1) {
+                throw new InvalidBERException("Indefinite length on a primitive value");
+            }
+            s.raw = head.getContentLength();
+        } else {
+            s.frames.push(head.getContentLength());
+        }
+        return s;
+    }
+
+    /**
+     * Returns a stream of the complete encoding of a value.
+     */
+    static ContentInputStream encoding(InputStream in, ASN1Header head) {
+        ContentInputStream s = new ContentInputStream(in, true);
+        s.pending = head.encode();
+        if (head.getContentLength() == -1) {
+            s.frames.push(-1L);
+        } else {
+            s.raw = head.getContentLength();
+        }
+        return s;
+    }
+
+    /**
+     * Makes sure there is something to return, reading headers as needed.
+     *
+     * @return false at the end of the value.
+     */
+    private boolean fill() throws IOException {
+        try {
+            while (raw == 0 && (pending == null || pendingPos == pending.length)) {
+                if (frames.isEmpty()) {
+                    return false;
+                }
+
+                long end = frames.peek();
+                if (end >= 0 && pos >= end) {
+                    if (pos > end) {
+                        throw new InvalidBERException("Segment went " + (pos - end) +
+                                " bytes past the end of its constructed value");
+                    }
+                    frames.pop();
+                    continue;
+                }
+
+                ASN1Header head = new ASN1Header(in);
+                byte[] header = head.encode();
+                pos += header.length;
+                if (passHeaders) {
+                    pending = header;
+                    pendingPos = 0;
+                }
+
+                if (head.isEOC()) {
+                    if (end != -1) {
+                        throw new InvalidBERException("End-of-contents in a definite length value");
+                    }
+                    frames.pop();
+                    continue;
+                }
+
+                if (!passHeaders && !head.getTag().equals(OCTET_STRING.TAG)) {
+                    throw new InvalidBERException("Incorrect tag in constructed OCTET STRING: found [" +
+                            head.getTag() + "]");
+                }
+
+                long length = head.getContentLength();
+                if (length == -1) {
+                    if (head.getForm() == Form.PRIMITIVE) {
+                        throw new InvalidBERException("Indefinite length on a primitive value");
+                    }
+                    frames.push(-1L);
+                } else if (passHeaders || head.getForm() == Form.PRIMITIVE) {
+                    // definite length values are passed through whole
+                    raw = length;
+                } else {
+                    frames.push(pos + length);
+                }
+            }
+            return true;
+
+        } catch (InvalidBERException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : (b[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+
+        if (pending != null && pendingPos < pending.length) {
+            int n = Math.min(len, pending.length - pendingPos);
+            System.arraycopy(pending, pendingPos, b, off, n);
+            pendingPos += n;
+            return n;
+        }
+
+        int n = in.read(b, off, (int) Math.min(len, raw));
+        if (n == -1) {
+            throw new EOFException("End-of-file reached while reading BER contents");
+        }
+        raw -= n;
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (pending != null && pendingPos < pending.length) {
+            return pending.length - pendingPos;
+        }
+        return (int) Math.min(raw, in.available());
+    }
+
+    /**
+     * Does not close the underlying stream, which still holds the rest
+     * of the enclosing value.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Reads and discards the rest of the value.
+     */
+    void drain() throws IOException {
+        byte[] buf = new byte[8192];
+        while (read(buf, 0, buf.length) != -1) {
+            // discard
+        }
+    }
+
+    /**
+     * Passes this stream to a handler, then skips whatever the handler
+     * did not read.
+     *
+     * @return The value returned by the handler.
+     */
+    ASN1Value passTo(ContentHandler handler, Tag tag)
+            throws IOException, InvalidBERException {
+        try {
+            ASN1Value value = handler.handle(tag, this);
+            drain();
+            return value;
+        } catch (IOException e) {
+            // report BER errors found by fill() as such
+            if (e.getCause() instanceof InvalidBERException) {
+                throw (InvalidBERException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
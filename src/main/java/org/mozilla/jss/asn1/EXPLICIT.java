@@ -3,7 +3,6 @@
  * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
 package org.mozilla.jss.asn1;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -65,13 +64,20 @@ public class EXPLICIT implements ASN1Value {
     @Override
     public void encode(Tag implicitTag, OutputStream ostream)
             throws IOException {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        content.encode(bos);
-        byte[] contentBytes = bos.toByteArray();
-        ASN1Header head = new ASN1Header(implicitTag, FORM,
-                contentBytes.length);
-        head.encode(ostream);
-        ostream.write(contentBytes);
+        EncodingContext context = EncodingContext.enter();
+        try {
+            ASN1Header head = new ASN1Header(implicitTag, FORM,
+                    content.encodedLength());
+            head.encode(ostream);
+            content.encode(ostream);
+        } finally {
+            context.exit();
+        }
+    }
+
+    @Override
+    public long encodedLength(Tag implicitTag) throws IOException {
+        return ASN1Header.encodedLength(implicitTag, content.encodedLength());
     }
 
     public static Template getTemplate(Tag tag, ASN1Template content) {
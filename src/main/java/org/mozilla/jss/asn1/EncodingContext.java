@@ -0,0 +1,153 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.asn1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+
+/**
+ * Remembers the encoded lengths computed while a value is being encoded.
+ * <p>
+ * DER puts the length of every constructed value in front of its contents,
+ * so encoding a tree directly to its destination needs the length of each
+ * node before the node is written. The lengths are computed on the way
+ * down and kept here, keyed by the identity of the value, until the
+ * outermost encode returns. This way each length is computed only once
+ * however deeply the value is nested, and nothing is remembered across
+ * encodings, so values may still be modified between them.
+ * <p>
+ * The same goes for the SEQUENCE a composite type builds from its fields
+ * to encode itself: it is built once per encoding, and its length is
+ * remembered like that of any other value.
+ */
+final class EncodingContext {
+
+    private static final ThreadLocal<EncodingContext> current = new ThreadLocal<>();
+
+    private static final class Length {
+        final Tag tag;
+        final long length;
+
+        Length(Tag tag, long length) {
+            this.tag = tag;
+            this.length = length;
+        }
+    }
+
+    private final IdentityHashMap<ASN1Value, Length> lengths = new IdentityHashMap<>();
+    private final IdentityHashMap<ASN1Value, ASN1Value> encodingValues = new IdentityHashMap<>();
+    private int depth;
+
+    private EncodingContext() {
+    }
+
+    /**
+     * Joins the encoding in progress on this thread, or starts a new one.
+     * Every call must be matched by a call to {@link #exit()}.
+     */
+    static EncodingContext enter() {
+        EncodingContext context = current.get();
+        if (context == null) {
+            context = new EncodingContext();
+            current.set(context);
+        }
+        context.depth++;
+        return context;
+    }
+
+    void exit() {
+        if (--depth == 0) {
+            current.remove();
+        }
+    }
+
+    /**
+     * Returns the remembered length of a value encoded with the given tag,
+     * or -1.
+     */
+    long lookup(ASN1Value value, Tag tag) {
+        Length l = lengths.get(value);
+        if (l == null || !l.tag.equals(tag)) {
+            return -1;
+        }
+        return l.length;
+    }
+
+    void store(ASN1Value value, Tag tag, long length) {
+        lengths.put(value, new Length(tag, length));
+    }
+
+    /**
+     * Returns the value a composite value is encoded as, or null.
+     */
+    ASN1Value lookup(ASN1Value value) {
+        return encodingValues.get(value);
+    }
+
+    void store(ASN1Value value, ASN1Value encodingValue) {
+        encodingValues.put(value, encodingValue);
+    }
+
+    /**
+     * Returns the length of the encoding of a value, computing it by
+     * encoding the value if it is not already known.
+     */
+    static long encodedLength(ASN1Value value, Tag tag) throws IOException {
+        EncodingContext context = enter();
+        try {
+            long length = context.lookup(value, tag);
+            if (length < 0) {
+                Counter counter = new Counter();
+                value.encode(tag, counter);
+                length = counter.count;
+                context.store(value, tag, length);
+            }
+            return length;
+        } finally {
+            context.exit();
+        }
+    }
+
+    /**
+     * An output stream which only counts the bytes written to it.
+     */
+    static final class Counter extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    /**
+     * An output stream writing into a ByteBuffer.
+     */
+    static final class BufferStream extends OutputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buffer.put(b, off, len);
+        }
+    }
+}
@@ -90,6 +90,11 @@ public class INTEGER extends BigInteger implements ASN1Value {
         return getEncodedContents().length;
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) {
+        return ASN1Header.encodedLength(implicitTag, getContentLength());
+    }
+
     public byte[] encode() throws IOException {
         ByteArrayOutputStream b = new ByteArrayOutputStream();
         encode(b);
@@ -397,6 +397,11 @@ public class OBJECT_IDENTIFIER implements ASN1Value {
         ostream.write(getEncoding(implicitTag));
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) {
+        return ASN1Header.encodedLength(implicitTag, getEncodedContents().length);
+    }
+
     private static final Template templateInstance = new Template();
 
     public static Template getTemplate() {
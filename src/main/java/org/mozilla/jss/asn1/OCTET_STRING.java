@@ -45,6 +45,11 @@ public class OCTET_STRING implements ASN1Value {
         ostream.write(data);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) {
+        return ASN1Header.encodedLength(implicitTag, data.length);
+    }
+
     private static final Template templateInstance = new Template();
 
     public static Template getTemplate() {
@@ -95,7 +100,7 @@ public class OCTET_STRING implements ASN1Value {
                     do {
                         ahead = ASN1Header.lookAhead(istream);
                         if (!ahead.isEOC()) {
-                            OCTET_STRING.Template ot = new OCTET_STRING.Template();
+                            OCTET_STRING.Template ot = OCTET_STRING.getTemplate();
                             OCTET_STRING os = (OCTET_STRING) ot.decode(istream);
                             bos.write(os.toByteArray());
                         }
@@ -119,4 +124,50 @@ public class OCTET_STRING implements ASN1Value {
 
     } // end of Template
 
+    /**
+     * A template which passes the contents of an OCTET STRING to a
+     * {@link ContentHandler} as they are read, instead of collecting them
+     * into an OCTET_STRING. The handler can digest, decrypt or copy very
+     * large contents in constant memory, and decoding of the enclosing
+     * value carries on once it returns. Constructed encodings, definite or
+     * indefinite length, are presented as one stream of contents octets.
+     * <p>
+     * The template returns whatever the handler returns.
+     */
+    public static class StreamingTemplate implements ASN1Template {
+
+        private final ContentHandler handler;
+
+        public StreamingTemplate(ContentHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public boolean tagMatch(Tag tag) {
+            return (TAG.equals(tag));
+        }
+
+        @Override
+        public ASN1Value decode(InputStream istream)
+                throws IOException, InvalidBERException {
+            return decode(TAG, istream);
+        }
+
+        @Override
+        public ASN1Value decode(Tag implicitTag, InputStream istream)
+                throws IOException, InvalidBERException {
+            try {
+                ASN1Header head = new ASN1Header(istream);
+
+                head.validate(implicitTag);
+
+                return ContentInputStream.contents(istream, head).passTo(handler, head.getTag());
+
+            } catch (InvalidBERException e) {
+                throw new InvalidBERException(e, "OCTET_STRING");
+            }
+        }
+
+    } // end of StreamingTemplate
+
 }
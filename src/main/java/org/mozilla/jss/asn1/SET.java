@@ -4,12 +4,17 @@
 package org.mozilla.jss.asn1;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * An ASN.1 SET, which is an unordered collection of ASN.1 values.
@@ -197,35 +202,45 @@ public class SET implements ASN1Value {
             lexOrdering = false;
         }
 
-        // compute and order contents
-        int numElements = elements.size();
-        int totalBytes = 0;
-        Vector<byte[]> encodings = new Vector<>(numElements);
-        Vector<Integer> tags = new Vector<>(numElements);
-        int i;
-        for (i = 0; i < numElements; i++) {
-
-            // if an entry is null, just skip it
-            if (elementAt(i) != null) {
-                byte[] enc = ASN1Util.encode(tagAt(i), elementAt(i));
-
-                totalBytes += enc.length;
-
-                if (lexOrdering) {
-                    insertInOrder(encodings, enc);
-                } else {
-                    insertInOrder(encodings, enc, tags, (int) tagAt(i).getNum());
+        EncodingContext context = EncodingContext.enter();
+        try {
+            // write header
+            ASN1Header header = new ASN1Header(implicitTag, FORM, getContentLength());
+            header.encode(ostream);
+
+            if (!lexOrdering) {
+                // order by tag, and write the contents straight out
+                Integer[] order = elementOrder();
+                Arrays.sort(order, (a, b) -> Long.compare(tagAt(a).getNum(), tagAt(b).getNum()));
+                for (Integer i : order) {
+                    elementAt(i).encode(tagAt(i), ostream);
                 }
+                return;
             }
-        }
 
-        // write header
-        ASN1Header header = new ASN1Header(implicitTag, FORM, totalBytes);
-        header.encode(ostream);
+            // Lexicographic ordering needs the encodings themselves, but
+            // their lengths are known so each one is encoded exactly once
+            // into an array of the right size.
+            int numElements = elements.size();
+            List<byte[]> encodings = new ArrayList<>(numElements);
+            for (int i = 0; i < numElements; i++) {
+
+                // if an entry is null, just skip it
+                if (elementAt(i) != null) {
+                    Tag tag = tagAt(i);
+                    byte[] enc = new byte[toArrayLength(elementAt(i).encodedLength(tag))];
+                    elementAt(i).encode(tag, new EncodingContext.BufferStream(ByteBuffer.wrap(enc)));
+                    encodings.add(enc);
+                }
+            }
+            encodings.sort(SET::compare);
 
-        // write contents in order
-        for (i = 0; i < numElements; i++) {
-            ostream.write(encodings.elementAt(i));
+            // write contents in order
+            for (byte[] enc : encodings) {
+                ostream.write(enc);
+            }
+        } finally {
+            context.exit();
         }
     }
 
@@ -239,61 +254,78 @@ public class SET implements ASN1Value {
      */
     public void BERencode(Tag implicitTag, OutputStream ostream)
             throws IOException {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        EncodingContext context = EncodingContext.enter();
+        try {
+            // write header
+            ASN1Header header = new ASN1Header(implicitTag, FORM, getContentLength());
+            header.encode(ostream);
 
-        // compute contents
-        int size = elements.size();
-        for (int i = 0; i < size; i++) {
-            ASN1Value el = elementAt(i);
-            if (el != null) {
-                el.encode(tagAt(i), bos);
+            // write contents
+            int size = elements.size();
+            for (int i = 0; i < size; i++) {
+                ASN1Value el = elementAt(i);
+                if (el != null) {
+                    el.encode(tagAt(i), ostream);
+                }
             }
+        } finally {
+            context.exit();
         }
-
-        byte[] bytes = bos.toByteArray();
-
-        // write header
-        ASN1Header header = new ASN1Header(implicitTag, FORM, bytes.length);
-        header.encode(ostream);
-
-        // write contents
-        ostream.write(bytes);
     }
 
-    // performs ascending lexicographic ordering
-    // linear search, but number of items is usually going to be small.
-    private static void insertInOrder(Vector<byte[]> encs, byte[] enc) {
-        int size = encs.size();
+    @Override
+    public long encodedLength(Tag implicitTag) throws IOException {
+        EncodingContext context = EncodingContext.enter();
+        try {
+            return ASN1Header.encodedLength(implicitTag, getContentLength());
+        } finally {
+            context.exit();
+        }
+    }
 
-        // find the lowest item that we are less than or equal to
-        int i;
-        for (i = 0; i < size; i++) {
-            if (compare(enc, encs.elementAt(i)) < 1) {
-                break;
+    /**
+     * Returns the total length of the encodings of the elements,
+     * remembering it for the rest of the current encoding. The element
+     * order does not matter, so this serves DER and BER encoding alike.
+     */
+    private long getContentLength() throws IOException {
+        EncodingContext context = EncodingContext.enter();
+        try {
+            // the length of the contents does not depend on the tag
+            long length = context.lookup(this, TAG);
+            if (length < 0) {
+                length = 0;
+                int size = elements.size();
+                for (int i = 0; i < size; i++) {
+                    ASN1Value el = elementAt(i);
+                    if (el != null) {
+                        length += el.encodedLength(tagAt(i));
+                    }
+                }
+                context.store(this, TAG, length);
             }
+            return length;
+        } finally {
+            context.exit();
         }
-
-        // insert ourself before this item
-        encs.insertElementAt(enc, i);
     }
 
-    // performs ascending ordering by tag
-    // linear search, but number of items is usually going to be small.
-    private static void insertInOrder(Vector<byte[]> encs, byte[] enc, Vector<Integer> tags,
-            int tag) {
-        int size = encs.size();
-
-        // find the lowest item that we are less than or equal to
-        int i;
-        for (i = 0; i < size; i++) {
-            if (tag <= tags.elementAt(i).intValue()) {
-                break;
+    private Integer[] elementOrder() {
+        int size = elements.size();
+        List<Integer> order = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (elementAt(i) != null) {
+                order.add(i);
             }
         }
+        return order.toArray(new Integer[0]);
+    }
 
-        // insert ourself before this item
-        encs.insertElementAt(enc, i);
-        tags.insertElementAt(Integer.valueOf(i), i);
+    private static int toArrayLength(long length) throws IOException {
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Encoding too large: " + length + " bytes");
+        }
+        return (int) length;
     }
 
     // compares two byte arrays
@@ -381,14 +413,21 @@ public class SET implements ASN1Value {
      */
     public static class Template implements ASN1Template {
 
-        private Vector<Element> elements = new Vector<>();
+        private List<Element> elements = new ArrayList<>();
+
+        private static final int MAX_CACHED_TAGS = 64;
+
+        // index of the element matching each tag seen so far, or -1
+        private Map<Tag, Integer> tagIndex = new ConcurrentHashMap<>();
 
         private void addElement(Element e) {
-            elements.addElement(e);
+            elements.add(e);
+            tagIndex.clear();
         }
 
         private void insertElementAt(Element e, int index) {
-            elements.insertElementAt(e, index);
+            elements.add(index, e);
+            tagIndex.clear();
         }
 
         /**
@@ -607,7 +646,7 @@ public class SET implements ASN1Value {
          * @return Implicit tag.
          */
         public Tag implicitTagAt(int index) {
-            return elements.elementAt(index).getImplicitTag();
+            return elements.get(index).getImplicitTag();
         }
 
         /**
@@ -617,7 +656,7 @@ public class SET implements ASN1Value {
          * @return Sub-template.
          */
         public ASN1Template templateAt(int index) {
-            return elements.elementAt(index).getTemplate();
+            return elements.get(index).getTemplate();
         }
 
         /**
@@ -628,11 +667,11 @@ public class SET implements ASN1Value {
          * @return True if sub-template is optional.
          */
         public boolean isOptionalAt(int index) {
-            return elements.elementAt(index).isOptional();
+            return elements.get(index).isOptional();
         }
 
         private boolean isRepeatableAt(int index) {
-            return elements.elementAt(index).isRepeatable();
+            return elements.get(index).isRepeatable();
         }
 
         /**
@@ -643,7 +682,7 @@ public class SET implements ASN1Value {
          * @return Default value.
          */
         public ASN1Value defaultAt(int index) {
-            return elements.elementAt(index).getDefault();
+            return elements.get(index).getDefault();
         }
 
         /**
@@ -654,11 +693,13 @@ public class SET implements ASN1Value {
         }
 
         public void removeAllElements() {
-            elements.removeAllElements();
+            elements.clear();
+            tagIndex.clear();
         }
 
         public void removeElementAt(int index) {
-            elements.removeElementAt(index);
+            elements.remove(index);
+            tagIndex.clear();
         }
 
         private Tag getTag() {
@@ -733,7 +774,7 @@ public class SET implements ASN1Value {
                         throw new InvalidBERException("Unexpected Tag in SET: " +
                                 lookAhead.getTag());
                     }
-                    Element e = elements.elementAt(index);
+                    Element e = elements.get(index);
                     if (found[index] && !e.isRepeatable()) {
                         // element already found, and it's not repeatable
                         throw new InvalidBERException("Duplicate Tag in SET: " +
@@ -747,25 +788,43 @@ public class SET implements ASN1Value {
                     ASN1Template t = e.getTemplate();
                     ASN1Value val;
 
-                    try (CountingStream countstream = new CountingStream(istream)) {
+                    long len;
+
+                    if (istream instanceof BERInputStream) {
+                        // the position tells how much was read
+                        BERInputStream berstream = (BERInputStream) istream;
+                        int start = berstream.position();
 
                         if (e.getImplicitTag() == null) {
-                            val = t.decode(countstream);
+                            val = t.decode(berstream);
                         } else {
-                            val = t.decode(e.getImplicitTag(), countstream);
+                            val = t.decode(e.getImplicitTag(), berstream);
                         }
 
-                        // Decrement remaining count
-                        long len = countstream.getNumRead();
-                        if (remainingContent != -1) {
-                            if (remainingContent < len) {
-                                // this item went past the end of the SET
-                                throw new InvalidBERException("Item went " +
-                                        (len - remainingContent) + " bytes past the end of" +
-                                        " the SET");
+                        len = berstream.position() - start;
+
+                    } else {
+                        try (CountingStream countstream = new CountingStream(istream)) {
+
+                            if (e.getImplicitTag() == null) {
+                                val = t.decode(countstream);
+                            } else {
+                                val = t.decode(e.getImplicitTag(), countstream);
                             }
-                            remainingContent -= len;
+
+                            len = countstream.getNumRead();
+                        }
+                    }
+
+                    // Decrement remaining count
+                    if (remainingContent != -1) {
+                        if (remainingContent < len) {
+                            // this item went past the end of the SET
+                            throw new InvalidBERException("Item went " +
+                                    (len - remainingContent) + " bytes past the end of" +
+                                    " the SET");
                         }
+                        remainingContent -= len;
                     }
 
                     // Store this element in the SET
@@ -806,26 +865,36 @@ public class SET implements ASN1Value {
         }
 
         /**
-         * Returns the index in the vector of the type with this tag and class,
+         * Returns the index of the element with this tag and class,
          * or -1 if not found.
-         * lame linear search - but we're dealing with small numbers of elements,
-         * so it's probably not worth it to use a hashtable
+         * The result of the linear search is remembered, so each tag is
+         * only matched against the elements once.
          * 
          * @param tag Tag.
          */
         private int findElementByTag(Tag tag) {
+            Integer cached = tagIndex.get(tag);
+            if (cached != null) {
+                return cached;
+            }
+
+            int index = -1;
             int size = elements.size();
 
             for (int i = 0; i < size; i++) {
-                Element e = elements.elementAt(i);
+                Element e = elements.get(i);
                 if (e.tagMatch(tag)) {
                     // match!
-                    return i;
+                    index = i;
+                    break;
                 }
             }
 
-            // no match
-            return -1;
+            // don't let unexpected tags in the input grow the table
+            if (tagIndex.size() < MAX_CACHED_TAGS) {
+                tagIndex.put(tag, index);
+            }
+            return index;
         }
 
         /**
@@ -33,6 +33,12 @@ getAlgInfo(JNIEnv *env, jobject alg, JSS_AlgInfo *info);
 #define CKM_NSS_SP800_108_DOUBLE_PIPELINE_KDF_DERIVE_DATA CKM_INVALID_MECHANISM
 #endif
 
+#ifndef CKM_CHACHA20_POLY1305
+/* Both added with the PKCS #11 v3.0 headers. */
+#define CKM_CHACHA20_POLY1305 CKM_INVALID_MECHANISM
+#define CKM_CHACHA20_KEY_GEN CKM_INVALID_MECHANISM
+#endif
+
 #define OI(x)                                  \
     {                                          \
         siDEROID, (unsigned char *)x, sizeof x \
@@ -179,6 +185,12 @@ JSS_AlgInfo JSS_AlgTable[NUM_ALGS] = {
 /* 82 */    {SEC_OID_AES_192_KEY_WRAP_KWP, SEC_OID_TAG},
 /* 83 */    {SEC_OID_AES_256_KEY_WRAP_KWP, SEC_OID_TAG},
 
+/* CKM_CHACHA20_* are new to NSS; some implementations might not yet have
+ * them. */
+/* 84 */    {CKM_AES_GCM, PK11_MECH},
+/* 85 */    {CKM_CHACHA20_POLY1305, PK11_MECH},
+/* 86 */    {CKM_CHACHA20_KEY_GEN, PK11_MECH},
+
 
 /* REMEMBER TO UPDATE NUM_ALGS!!! (in Algorithm.h) */
 };
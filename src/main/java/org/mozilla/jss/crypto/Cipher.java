@@ -4,6 +4,7 @@
 
 package org.mozilla.jss.crypto;
 
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.spec.AlgorithmParameterSpec;
@@ -110,6 +111,133 @@ public abstract class Cipher {
         throws IllegalStateException, IllegalBlockSizeException,
         BadPaddingException, TokenException;
 
+    /**
+     * Updates the encryption context with additional input, writing the
+     * result into a caller-provided array. Implementations may write
+     * directly into <code>output</code>; this default implementation
+     * goes through <code>update(byte[], int, int)</code>.
+     *
+     * @param input Bytes of plaintext (if encrypting) or ciphertext (if
+     *      decrypting).
+     * @param inputOffset The index in <code>input</code> at which to begin
+     *      reading.
+     * @param inputLength The number of bytes from <code>input</code> to read.
+     * @param output Array receiving ciphertext (if encrypting) or
+     *      plaintext (if decrypting).
+     * @param outputOffset The index in <code>output</code> at which to
+     *      begin writing.
+     * @return The number of bytes written to <code>output</code>.
+     * @exception ArrayIndexOutOfBoundsException If <code>output</code> is
+     *      too small to hold the result.
+     */
+    public int update(byte[] input, int inputOffset, int inputLength,
+            byte[] output, int outputOffset)
+        throws IllegalStateException, TokenException
+    {
+        byte[] result = update(input, inputOffset, inputLength);
+        System.arraycopy(result, 0, output, outputOffset, result.length);
+        return result.length;
+    }
+
+    /**
+     * Completes a cipher operation, writing the last of the output into a
+     * caller-provided array.
+     *
+     * @param input Bytes of plaintext (if encrypting) or ciphertext (if
+     *      decrypting).
+     * @param inputOffset The index in <code>input</code> at which to begin
+     *      reading.
+     * @param inputLength The number of bytes from <code>input</code> to read.
+     * @param output Array receiving the last of the output.
+     * @param outputOffset The index in <code>output</code> at which to
+     *      begin writing.
+     * @return The number of bytes written to <code>output</code>.
+     * @exception ArrayIndexOutOfBoundsException If <code>output</code> is
+     *      too small to hold the result.
+     */
+    public int doFinal(byte[] input, int inputOffset, int inputLength,
+            byte[] output, int outputOffset)
+        throws IllegalStateException, IllegalBlockSizeException,
+        BadPaddingException, TokenException
+    {
+        byte[] result = doFinal(input, inputOffset, inputLength);
+        System.arraycopy(result, 0, output, outputOffset, result.length);
+        return result.length;
+    }
+
+    /**
+     * Updates the encryption context with the remaining bytes of
+     * <code>input</code>, writing the result into <code>output</code>.
+     * On return, the position of <code>input</code> equals its limit and
+     * the position of <code>output</code> has been advanced by the number
+     * of bytes written. Implementations may process direct buffers in
+     * place; this default implementation goes through
+     * <code>update(byte[], int, int)</code>.
+     *
+     * @param input Bytes of plaintext (if encrypting) or ciphertext (if
+     *      decrypting).
+     * @param output Buffer receiving ciphertext (if encrypting) or
+     *      plaintext (if decrypting).
+     * @return The number of bytes written to <code>output</code>.
+     * @exception java.nio.BufferOverflowException If <code>output</code>
+     *      does not have enough space remaining.
+     */
+    public int update(ByteBuffer input, ByteBuffer output)
+        throws IllegalStateException, TokenException
+    {
+        byte[] result = update(toArray(input));
+        output.put(result);
+        return result.length;
+    }
+
+    /**
+     * Completes a cipher operation, reading the remaining bytes of
+     * <code>input</code> and writing the last of the output into
+     * <code>output</code>. Buffer positions are advanced as in
+     * {@link #update(ByteBuffer, ByteBuffer)}.
+     *
+     * @param input Bytes of plaintext (if encrypting) or ciphertext (if
+     *      decrypting).
+     * @param output Buffer receiving the last of the output.
+     * @return The number of bytes written to <code>output</code>.
+     * @exception java.nio.BufferOverflowException If <code>output</code>
+     *      does not have enough space remaining.
+     */
+    public int doFinal(ByteBuffer input, ByteBuffer output)
+        throws IllegalStateException, IllegalBlockSizeException,
+        BadPaddingException, TokenException
+    {
+        byte[] result = doFinal(toArray(input));
+        output.put(result);
+        return result.length;
+    }
+
+    /**
+     * Supplies additional authenticated data to an AEAD cipher (such as
+     * AES-GCM or ChaCha20-Poly1305). The data is authenticated but not
+     * encrypted. All AAD must be supplied before the first call to
+     * <code>update</code> or <code>doFinal</code>.
+     *
+     * @param aad Additional authenticated data.
+     * @param offset The index in <code>aad</code> at which to begin reading.
+     * @param length The number of bytes from <code>aad</code> to read.
+     * @exception UnsupportedOperationException If the algorithm is not an
+     *      AEAD algorithm.
+     * @see EncryptionAlgorithm#isAEAD
+     */
+    public void updateAAD(byte[] aad, int offset, int length)
+        throws IllegalStateException, TokenException
+    {
+        throw new UnsupportedOperationException(
+            "Cipher does not support additional authenticated data");
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
     /**
      * Pads a byte array so that its length is a multiple of the given
      *  blocksize.  The method of padding is the one defined in the RSA
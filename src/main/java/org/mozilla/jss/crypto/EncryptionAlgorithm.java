@@ -8,6 +8,7 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Hashtable;
 import java.util.Vector;
 
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.RC2ParameterSpec;
 
@@ -49,6 +50,7 @@ public class EncryptionAlgorithm extends Algorithm {
         public static final Mode NONE = new Mode("NONE");
         public static final Mode ECB = new Mode("ECB");
         public static final Mode CBC = new Mode("CBC");
+        public static final Mode GCM = new Mode("GCM");
     }
 
     public static class Alg {
@@ -84,6 +86,7 @@ public class EncryptionAlgorithm extends Algorithm {
         public static final Alg DESede = new Alg("DESede");
         public static final Alg AES = new Alg("AES");
         public static final Alg RC2 = new Alg("RC2");
+        public static final Alg ChaCha20Poly1305 = new Alg("ChaCha20-Poly1305");
     }
 
     public static class Padding {
@@ -285,11 +288,15 @@ public class EncryptionAlgorithm extends Algorithm {
             throws NoSuchAlgorithmException {
         int len = algList.size();
         Alg alg = Alg.fromString(algName);
-        Mode mode = Mode.fromString(modeName);
-        Padding padding = Padding.fromString(paddingName);
+        Mode mode = Mode.NONE;
+        Padding padding = Padding.NONE;
 
-        if (paddingName == null || paddingName.equals(""))
-            padding = Padding.NONE;
+        // Stream and AEAD transformations such as "ChaCha20-Poly1305"
+        // are specified without a mode or padding.
+        if (modeName != null && !modeName.equals(""))
+            mode = Mode.fromString(modeName);
+        if (paddingName != null && !paddingName.equals(""))
+            padding = Padding.fromString(paddingName);
 
         int i;
         for (i = 0; i < len; ++i) {
@@ -330,6 +337,25 @@ public class EncryptionAlgorithm extends Algorithm {
         return padding;
     }
 
+    /**
+     * @return <code>true</code> if this is an authenticated encryption
+     *         (AEAD) algorithm, which appends an authentication tag to the
+     *         ciphertext and may authenticate additional associated data.
+     */
+    public boolean isAEAD() {
+        return mode == Mode.GCM || alg == Alg.ChaCha20Poly1305;
+    }
+
+    /**
+     * @return The default length in bytes of the authentication tag
+     *         produced by an AEAD algorithm, or 0 for other algorithms.
+     */
+    public int getTagLength() {
+        return isAEAD() ? AEAD_TAG_LENGTH : 0;
+    }
+
+    private static final int AEAD_TAG_LENGTH = 16;
+
     private static Class<?>[] IVParameterSpecClasses = null;
     static {
         IVParameterSpecClasses = new Class[2];
@@ -449,4 +475,30 @@ public class EncryptionAlgorithm extends Algorithm {
         Padding.PKCS5, IVParameterSpecClasses, 16,
         AES_ROOT_OID.subBranch(48), 256,"AES/None/PKCS5Padding/Kwp/256");
 
+    // AES-GCM takes a GCMParameterSpec carrying the IV and tag length.
+    public static final EncryptionAlgorithm AES_128_GCM = new EncryptionAlgorithm(CKM_AES_GCM,
+            Alg.AES, Mode.GCM,
+            Padding.NONE, GCMParameterSpec.class, 16,
+            AES_ROOT_OID.subBranch(6), 128);
+
+    public static final EncryptionAlgorithm AES_192_GCM = new EncryptionAlgorithm(CKM_AES_GCM,
+            Alg.AES, Mode.GCM,
+            Padding.NONE, GCMParameterSpec.class, 16,
+            AES_ROOT_OID.subBranch(26), 192);
+
+    public static final EncryptionAlgorithm AES_256_GCM = new EncryptionAlgorithm(CKM_AES_GCM,
+            Alg.AES, Mode.GCM,
+            Padding.NONE, GCMParameterSpec.class, 16,
+            AES_ROOT_OID.subBranch(46), 256);
+
+    // RFC 8103: id-alg-AEADChaCha20Poly1305. The parameter is the 96-bit
+    // nonce; the tag is always 128 bits.
+    public static final OBJECT_IDENTIFIER CHACHA20_POLY1305_OID = new OBJECT_IDENTIFIER(
+            new long[] { 1, 2, 840, 113549, 1, 9, 16, 3, 18 });
+
+    public static final EncryptionAlgorithm CHACHA20_POLY1305 = new EncryptionAlgorithm(CKM_CHACHA20_POLY1305,
+            Alg.ChaCha20Poly1305, Mode.NONE,
+            Padding.NONE, IVParameterSpecClasses, 1,
+            CHACHA20_POLY1305_OID, 256, "ChaCha20-Poly1305");
+
 }
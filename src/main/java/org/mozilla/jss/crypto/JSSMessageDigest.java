@@ -4,6 +4,7 @@
 
 package org.mozilla.jss.crypto;
 
+import java.nio.ByteBuffer;
 import java.security.DigestException;
 import java.security.InvalidKeyException;
 
@@ -54,6 +55,38 @@ public abstract class JSSMessageDigest {
         update(input, 0, input.length);
     }
 
+    /**
+     * Updates the digest with the remaining bytes of a buffer. On return,
+     * the buffer's position will equal its limit.
+     *
+     * Implementations may digest direct buffers in place; this default
+     * implementation digests the backing array when there is one and
+     * otherwise copies the buffer through a temporary array.
+     *
+     * @param input A buffer to feed to the digest.
+     * @exception DigestException If an error occurs while digesting.
+     */
+    public void update(ByteBuffer input) throws DigestException {
+        int len = input.remaining();
+        if (len <= 0) {
+            return;
+        }
+
+        if (input.hasArray()) {
+            int offset = input.arrayOffset() + input.position();
+            update(input.array(), offset, len);
+            input.position(input.limit());
+            return;
+        }
+
+        byte[] chunk = new byte[Math.min(len, 4096)];
+        while (input.hasRemaining()) {
+            int n = Math.min(input.remaining(), chunk.length);
+            input.get(chunk, 0, n);
+            update(chunk, 0, n);
+        }
+    }
+
     /**
      * Completes digestion.
      *
@@ -34,6 +34,9 @@ public enum PKCS11Algorithm {
     CKM_NSS_SP800_108_COUNTER_KDF_DERIVE_DATA (Algorithm.CKM_NSS_SP800_108_COUNTER_KDF_DERIVE_DATA, PKCS11Constants.CKM_NSS_SP800_108_COUNTER_KDF_DERIVE_DATA),
     CKM_NSS_SP800_108_FEEDBACK_KDF_DERIVE_DATA (Algorithm.CKM_NSS_SP800_108_FEEDBACK_KDF_DERIVE_DATA, PKCS11Constants.CKM_NSS_SP800_108_FEEDBACK_KDF_DERIVE_DATA),
     CKM_NSS_SP800_108_DOUBLE_PIPELINE_KDF_DERIVE_DATA (Algorithm.CKM_NSS_SP800_108_DOUBLE_PIPELINE_KDF_DERIVE_DATA, PKCS11Constants.CKM_NSS_SP800_108_DOUBLE_PIPELINE_KDF_DERIVE_DATA),
+    CKM_AES_GCM (Algorithm.CKM_AES_GCM, PKCS11Constants.CKM_AES_GCM),
+    CKM_CHACHA20_POLY1305 (Algorithm.CKM_CHACHA20_POLY1305, PKCS11Constants.CKM_CHACHA20_POLY1305),
+    CKM_CHACHA20_KEY_GEN (Algorithm.CKM_CHACHA20_KEY_GEN, PKCS11Constants.CKM_CHACHA20_KEY_GEN),
     CKM_MD2(Algorithm.SEC_OID_MD2, PKCS11Constants.CKM_MD2),
     CKM_MD5(Algorithm.SEC_OID_MD5, PKCS11Constants.CKM_MD5),
     CKM_SHA_1(Algorithm.SEC_OID_SHA1, PKCS11Constants.CKM_SHA_1),
@@ -3,6 +3,7 @@
  * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
 package org.mozilla.jss.crypto;
 
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Provider;
@@ -167,6 +168,21 @@ public class Signature {
         engine.engineUpdate(data, off, len);
     }
 
+    /**
+     * Provide more data for a signature or verification operation.
+     * The remaining bytes of the buffer are consumed; direct buffers are
+     * passed to the token without being copied onto the Java heap.
+     *
+     * @param data A buffer whose remaining bytes will be signed or verified.
+     * @exception SignatureException If an error occurs in the
+     *                signature/verification.
+     * @exception TokenException If an error occurs on the token.
+     */
+    public void update(ByteBuffer data)
+            throws SignatureException, TokenException {
+        engine.engineUpdate(data);
+    }
+
     /**
      * Returns the name of the algorithm to be used for signing.
      */
@@ -3,6 +3,7 @@
  * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
 package org.mozilla.jss.crypto;
 
+import java.nio.ByteBuffer;
 import java.security.*;
 import java.security.SecureRandom;
 import java.security.spec.AlgorithmParameterSpec;
@@ -28,6 +29,34 @@ public abstract class SignatureSpi {
 	public abstract void engineUpdate(byte[] b, int off, int len)
 		throws SignatureException, TokenException;
 
+	/**
+	 * Updates the context with the remaining bytes of a buffer. Engines
+	 * which can read direct buffers in place should override this; the
+	 * default copies the data through engineUpdate(byte[], int, int).
+	 */
+	public void engineUpdate(ByteBuffer input)
+		throws SignatureException, TokenException
+	{
+		int len = input.remaining();
+		if (len <= 0) {
+			return;
+		}
+
+		if (input.hasArray()) {
+			int offset = input.arrayOffset() + input.position();
+			engineUpdate(input.array(), offset, len);
+			input.position(input.limit());
+			return;
+		}
+
+		byte[] chunk = new byte[Math.min(len, 4096)];
+		while (input.hasRemaining()) {
+			int n = Math.min(input.remaining(), chunk.length);
+			input.get(chunk, 0, n);
+			engineUpdate(chunk, 0, n);
+		}
+	}
+
 	public abstract byte[] engineSign()
         throws SignatureException, TokenException;
  
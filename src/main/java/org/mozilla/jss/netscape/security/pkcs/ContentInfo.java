@@ -82,28 +82,22 @@ public class ContentInfo {
 
     public ContentInfo(DerInputStream derin)
             throws IOException, ParsingException {
-        DerInputStream disType;
-        DerInputStream disTaggedContent;
         DerValue type;
         DerValue taggedContent;
         DerValue[] typeAndContent;
-        DerValue[] contents;
 
         typeAndContent = derin.getSequence(2);
 
         // Parse the content type
         type = typeAndContent[0];
-        disType = new DerInputStream(type.toByteArray());
-        contentType = disType.getOID();
+        contentType = type.getOID();
 
         // Parse the content (OPTIONAL field).
-        // Skip the [0] EXPLICIT tag by pretending that the content is the one
-        // and only element in an implicitly tagged set
+        // The content is the one and only element inside the [0] EXPLICIT
+        // tag; read it in place rather than from a copy
         if (typeAndContent.length > 1) { // content is OPTIONAL
             taggedContent = typeAndContent[1];
-            disTaggedContent = new DerInputStream(taggedContent.toByteArray());
-            contents = disTaggedContent.getSet(1, true);
-            content = contents[0];
+            content = taggedContent.data.getDerValue();
         }
     }
 
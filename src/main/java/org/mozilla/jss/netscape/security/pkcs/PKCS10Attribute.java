@@ -20,7 +20,6 @@ package org.mozilla.jss.netscape.security.pkcs;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Serializable;
-import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.security.cert.CertificateException;
@@ -116,11 +115,7 @@ public class PKCS10Attribute implements DerEncoder, Serializable {
             Class<CertAttrSet> extClass = (Class<CertAttrSet>) OIDMap.getClass(attributeId);
             if (extClass != null) {
                 Constructor<CertAttrSet> cons = extClass.getConstructor(params);
-                Object value = Array.newInstance(byte.class, val.length);
-                for (int i = 0; i < val.length; i++) {
-                    Array.setByte(value, i, val[i]);
-                }
-                Object[] passed = new Object[] { value };
+                Object[] passed = new Object[] { val };
                 attributeValue = cons.newInstance(passed);
             } else {
                 // attribute classes are usable for PKCS10 attributes.
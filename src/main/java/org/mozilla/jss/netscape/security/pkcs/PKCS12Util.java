@@ -17,13 +17,19 @@
 // --- END COPYRIGHT BLOCK ---
 package org.mozilla.jss.netscape.security.pkcs;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.PublicKey;
 import java.security.SecureRandom;
@@ -31,7 +37,13 @@ import java.security.cert.CertificateException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import javax.naming.InvalidNameException;
 import javax.naming.ldap.LdapName;
@@ -41,15 +53,23 @@ import javax.security.auth.x500.X500Principal;
 import org.apache.commons.lang3.StringUtils;
 import org.mozilla.jss.CryptoManager;
 import org.mozilla.jss.asn1.ANY;
+import org.mozilla.jss.asn1.ASN1Template;
 import org.mozilla.jss.asn1.ASN1Value;
 import org.mozilla.jss.asn1.BMPString;
+import org.mozilla.jss.asn1.ContentHandler;
+import org.mozilla.jss.asn1.EXPLICIT;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.InvalidBERException;
+import org.mozilla.jss.asn1.NULL;
 import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
 import org.mozilla.jss.asn1.OCTET_STRING;
 import org.mozilla.jss.asn1.SEQUENCE;
 import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
 import org.mozilla.jss.crypto.CryptoStore;
 import org.mozilla.jss.crypto.CryptoToken;
 import org.mozilla.jss.crypto.EncryptionAlgorithm;
+import org.mozilla.jss.crypto.JSSMessageDigest;
 import org.mozilla.jss.crypto.NoSuchItemOnTokenException;
 import org.mozilla.jss.crypto.ObjectNotFoundException;
 import org.mozilla.jss.crypto.PBEAlgorithm;
@@ -61,6 +81,7 @@ import org.mozilla.jss.pkcs11.PK11Cert;
 import org.mozilla.jss.pkcs11.PK11Store;
 import org.mozilla.jss.pkcs12.AuthenticatedSafes;
 import org.mozilla.jss.pkcs12.CertBag;
+import org.mozilla.jss.pkcs12.MacData;
 import org.mozilla.jss.pkcs12.PFX;
 import org.mozilla.jss.pkcs12.PasswordConverter;
 import org.mozilla.jss.pkcs12.SafeBag;
@@ -96,11 +117,23 @@ public class PKCS12Util {
     PBEAlgorithm certEncryption = DEFAULT_CERT_ENCRYPTION;
     PBEAlgorithm keyEncryption = DEFAULT_KEY_ENCRYPTION;
     boolean trustFlagsEnabled = true;
+    Executor executor;
 
     public PKCS12Util() throws Exception {
         random = SecureRandom.getInstance("pkcs11prng", "Mozilla-JSS");
     }
 
+    public SecureRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Sets the random number generator that salts are drawn from.
+     */
+    public void setRandom(SecureRandom random) {
+        this.random = random;
+    }
+
     public void setCertEncryption(String name) throws Exception {
 
         for (PBEAlgorithm algorithm : SUPPORTED_CERT_ENCRYPTIONS) {
@@ -163,6 +196,61 @@ public class PKCS12Util {
         this.trustFlagsEnabled = trustFlagsEnabled;
     }
 
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor used to encrypt and decrypt bags in parallel
+     * when generating and loading PKCS #12 data. Each key bag and each
+     * encrypted SafeContents is a separate task. Salts are drawn in the
+     * same order as without an executor, so the output does not depend
+     * on it. When loading, the MAC is verified on the calling thread
+     * before any SafeContents is decrypted. If null (the default),
+     * everything runs on the calling thread.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Runs a task on the executor, or right away if there is none.
+     */
+    <T> CompletableFuture<T> submit(Callable<T> task) {
+
+        if (executor == null) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            try {
+                future.complete(task.call());
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Waits for a task from submit() and rethrows its exception.
+     */
+    static <T> T join(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     /**
      * @deprecated Use PK11Cert.getTrustFlags() instead.
      */
@@ -203,6 +291,29 @@ public class PKCS12Util {
      */
     public void addKeyBag(PKCS12KeyInfo keyInfo, Password password,
             SEQUENCE encSafeContents) throws Exception {
+        encSafeContents.addElement(createKeyBag(keyInfo, password, createKeySalt(keyInfo)));
+    }
+
+    /**
+     * Returns the salt to encrypt a key with, or null if the key is
+     * already encrypted or the encryption does not take one from here.
+     * The salt is drawn separately from the encryption, so that keys
+     * can be encrypted in parallel with the same salts as serially.
+     */
+    byte[] createKeySalt(PKCS12KeyInfo keyInfo) {
+
+        if (keyInfo.getEncryptedPrivateKeyInfoBytes() != null
+                || keyEncryption != PBEAlgorithm.PBE_SHA1_DES3_CBC) {
+            return null;
+        }
+
+        // Use the same salt size as in pk12util.
+        byte[] salt = new byte[16];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    SafeBag createKeyBag(PKCS12KeyInfo keyInfo, Password password, byte[] salt) throws Exception {
 
         byte[] keyID = keyInfo.getID();
         logger.debug(" - Key ID: " + Utils.HexEncode(keyID));
@@ -224,7 +335,7 @@ public class PKCS12Util {
             CryptoToken token = CryptoManager.getInstance().getInternalKeyStorageToken();
 
             if (keyEncryption == PBEAlgorithm.PBE_SHA1_DES3_CBC) {
-                content = create_EPKI_with_PBE_SHA1_DES3_CBC(token, privateKey, password);
+                content = create_EPKI_with_PBE_SHA1_DES3_CBC(token, privateKey, password, salt);
 
             } else if (keyEncryption == PBEAlgorithm.PBE_PKCS5_PBES2) {
                 content = create_EPKI_with_PBE_PKCS5_PBES2(token, privateKey, password);
@@ -236,8 +347,7 @@ public class PKCS12Util {
 
         SET keyAttrs = createKeyBagAttrs(keyInfo);
 
-        SafeBag safeBag = new SafeBag(SafeBag.PKCS8_SHROUDED_KEY_BAG, content, keyAttrs);
-        encSafeContents.addElement(safeBag);
+        return new SafeBag(SafeBag.PKCS8_SHROUDED_KEY_BAG, content, keyAttrs);
     }
 
     public ASN1Value create_EPKI_with_PBE_SHA1_DES3_CBC(CryptoToken token, PrivateKey privateKey, Password password)
@@ -248,6 +358,12 @@ public class PKCS12Util {
         byte[] salt = new byte[16];
         random.nextBytes(salt);
 
+        return create_EPKI_with_PBE_SHA1_DES3_CBC(token, privateKey, password, salt);
+    }
+
+    ASN1Value create_EPKI_with_PBE_SHA1_DES3_CBC(CryptoToken token, PrivateKey privateKey, Password password,
+            byte[] salt) throws Exception {
+
         return EncryptedPrivateKeyInfo.createPBE(
                 PBEAlgorithm.PBE_SHA1_DES3_CBC,
                 password,
@@ -560,16 +676,18 @@ public class PKCS12Util {
         Collection<PKCS12KeyInfo> keyInfos = pkcs12.getKeyInfos();
         Collection<PKCS12CertInfo> certInfos = pkcs12.getCertInfos();
 
-        if (!keyInfos.isEmpty()) {
-            SEQUENCE keySafeContents = new SEQUENCE();
+        // Start encrypting every key bag and the certificate bags, with
+        // salts drawn in a fixed order.
 
-            for (PKCS12KeyInfo keyInfo : keyInfos) {
-                addKeyBag(keyInfo, password, keySafeContents);
-            }
+        List<CompletableFuture<SafeBag>> keyBags = new ArrayList<>();
 
-            authSafes.addSafeContents(keySafeContents);
+        for (PKCS12KeyInfo keyInfo : keyInfos) {
+            byte[] salt = createKeySalt(keyInfo);
+            keyBags.add(submit(() -> createKeyBag(keyInfo, password, salt)));
         }
 
+        CompletableFuture<org.mozilla.jss.pkcs7.ContentInfo> certContents = null;
+
         if (!certInfos.isEmpty()) {
             SEQUENCE certSafeContents = new SEQUENCE();
 
@@ -578,25 +696,40 @@ public class PKCS12Util {
             }
 
             if (certEncryption == null) {
-                authSafes.addSafeContents(certSafeContents);
+                certContents = CompletableFuture.completedFuture(
+                        AuthenticatedSafes.createSafeContents(certSafeContents));
 
             } else if (certEncryption == PBEAlgorithm.PBE_SHA1_RC2_40_CBC) {
 
                 byte[] salt = new byte[16];
                 random.nextBytes(salt);
 
-                authSafes.addEncryptedSafeContents(
+                certContents = submit(() -> AuthenticatedSafes.createEncryptedSafeContents(
                         certEncryption,
                         password,
                         salt,
                         100000, // iterations
-                        certSafeContents);
+                        certSafeContents));
 
             } else {
                 throw new Exception("Unsupported certificate encryption: " + certEncryption);
             }
         }
 
+        if (!keyBags.isEmpty()) {
+            SEQUENCE keySafeContents = new SEQUENCE();
+
+            for (CompletableFuture<SafeBag> keyBag : keyBags) {
+                keySafeContents.addElement(join(keyBag));
+            }
+
+            authSafes.addSafeContents(keySafeContents);
+        }
+
+        if (certContents != null) {
+            authSafes.getSequence().addElement(join(certContents));
+        }
+
         PFX pfx = new PFX(authSafes);
 
         // Use the same salt size and number of iterations as in pk12util.
@@ -608,6 +741,15 @@ public class PKCS12Util {
         return pfx;
     }
 
+    /**
+     * Opens a writer that writes a PKCS #12 file into out one bag at a
+     * time, using the encryption settings of this object. The file is
+     * complete once the writer is closed.
+     */
+    public PKCS12Writer openWriter(OutputStream out, Password password) throws Exception {
+        return new PKCS12Writer(this, out, password);
+    }
+
     public void storeIntoFile(PKCS12 pkcs12, String filename, Password password) throws Exception {
 
         PFX pfx = generatePFX(pkcs12, password);
@@ -646,7 +788,7 @@ public class PKCS12Util {
                 ANY value = (ANY) values.elementAt(0);
 
                 ByteArrayInputStream bis = new ByteArrayInputStream(value.getEncoded());
-                BMPString friendlyName = (BMPString) new BMPString.Template().decode(bis);
+                BMPString friendlyName = (BMPString) BMPString.getTemplate().decode(bis);
 
                 keyInfo.setFriendlyName(friendlyName.toString());
                 logger.debug("   Friendly name: " + keyInfo.getFriendlyName());
@@ -657,7 +799,7 @@ public class PKCS12Util {
                 ANY value = (ANY) values.elementAt(0);
 
                 ByteArrayInputStream bis = new ByteArrayInputStream(value.getEncoded());
-                OCTET_STRING keyIdAsn1 = (OCTET_STRING) new OCTET_STRING.Template().decode(bis);
+                OCTET_STRING keyIdAsn1 = (OCTET_STRING) OCTET_STRING.getTemplate().decode(bis);
 
                 byte[] keyID = keyIdAsn1.toByteArray();
                 keyInfo.setID(keyID);
@@ -703,7 +845,7 @@ public class PKCS12Util {
                 ANY value = (ANY) values.elementAt(0);
 
                 ByteArrayInputStream bis = new ByteArrayInputStream(value.getEncoded());
-                BMPString friendlyName = (BMPString) (new BMPString.Template()).decode(bis);
+                BMPString friendlyName = (BMPString) BMPString.getTemplate().decode(bis);
 
                 certInfo.setFriendlyName(friendlyName.toString());
                 logger.debug("   Friendly name: " + certInfo.getFriendlyName());
@@ -714,7 +856,7 @@ public class PKCS12Util {
                 ANY value = (ANY) values.elementAt(0);
 
                 ByteArrayInputStream bis = new ByteArrayInputStream(value.getEncoded());
-                OCTET_STRING keyIdAsn1 = (OCTET_STRING) new OCTET_STRING.Template().decode(bis);
+                OCTET_STRING keyIdAsn1 = (OCTET_STRING) OCTET_STRING.getTemplate().decode(bis);
 
                 byte[] keyID = keyIdAsn1.toByteArray();
                 certInfo.setKeyID(keyID);
@@ -726,7 +868,7 @@ public class PKCS12Util {
                 ANY value = (ANY) values.elementAt(0);
 
                 ByteArrayInputStream is = new ByteArrayInputStream(value.getEncoded());
-                BMPString trustFlagsAsn1 = (BMPString) (new BMPString.Template()).decode(is);
+                BMPString trustFlagsAsn1 = (BMPString) BMPString.getTemplate().decode(is);
 
                 String trustFlags = trustFlagsAsn1.toString();
                 certInfo.setTrustFlags(trustFlags);
@@ -759,15 +901,34 @@ public class PKCS12Util {
         return certInfo;
     }
 
-    public void getKeyInfos(PKCS12 pkcs12, PFX pfx, Password password) throws Exception {
-
-        logger.debug("Load encrypted private keys:");
+    /**
+     * Starts decrypting every SafeContents of the PFX.
+     */
+    List<CompletableFuture<SEQUENCE>> getSafeContents(PFX pfx, Password password) {
 
         AuthenticatedSafes safes = pfx.getAuthSafes();
+        List<CompletableFuture<SEQUENCE>> results = new ArrayList<>();
 
         for (int i = 0; i < safes.getSize(); i++) {
+            int index = i;
+            results.add(submit(() -> safes.getSafeContentsAt(password, index)));
+        }
+
+        return results;
+    }
+
+    public void getKeyInfos(PKCS12 pkcs12, PFX pfx, Password password) throws Exception {
+        getKeyInfos(pkcs12, getSafeContents(pfx, password), password);
+    }
+
+    void getKeyInfos(PKCS12 pkcs12, List<CompletableFuture<SEQUENCE>> safeContents, Password password)
+            throws Exception {
+
+        logger.debug("Load encrypted private keys:");
+
+        for (CompletableFuture<SEQUENCE> future : safeContents) {
 
-            SEQUENCE contents = safes.getSafeContentsAt(password, i);
+            SEQUENCE contents = join(future);
 
             for (int j = 0; j < contents.size(); j++) {
 
@@ -784,14 +945,16 @@ public class PKCS12Util {
     }
 
     public void getCertInfos(PKCS12 pkcs12, PFX pfx, Password password) throws Exception {
+        getCertInfos(pkcs12, getSafeContents(pfx, password));
+    }
 
-        logger.debug("Loading certificates:");
+    void getCertInfos(PKCS12 pkcs12, List<CompletableFuture<SEQUENCE>> safeContents) throws Exception {
 
-        AuthenticatedSafes safes = pfx.getAuthSafes();
+        logger.debug("Loading certificates:");
 
-        for (int i = 0; i < safes.getSize(); i++) {
+        for (CompletableFuture<SEQUENCE> future : safeContents) {
 
-            SEQUENCE contents = safes.getSafeContentsAt(password, i);
+            SEQUENCE contents = join(future);
 
             for (int j = 0; j < contents.size(); j++) {
 
@@ -819,19 +982,21 @@ public class PKCS12Util {
     public PKCS12 loadFromByteArray(byte[] b, Password password) throws Exception {
         ByteArrayInputStream bis = new ByteArrayInputStream(b);
 
-        PFX pfx = (PFX) (new PFX.Template()).decode(bis);
+        PFX pfx = (PFX) PFX.getTemplate().decode(bis);
 
         PKCS12 pkcs12 = new PKCS12();
 
+        // nothing covered by the MAC is decrypted before the MAC is checked
         StringBuffer reason = new StringBuffer();
-        boolean valid = pfx.verifyAuthSafes(password, reason);
-
-        if (!valid) {
+        if (!pfx.verifyAuthSafes(password, reason)) {
             throw new Exception("Unable to validate PKCS #12 file: " + reason);
         }
 
-        getKeyInfos(pkcs12, pfx, password);
-        getCertInfos(pkcs12, pfx, password);
+        // each SafeContents is decrypted once for both keys and certificates
+        List<CompletableFuture<SEQUENCE>> safeContents = getSafeContents(pfx, password);
+
+        getKeyInfos(pkcs12, safeContents, password);
+        getCertInfos(pkcs12, safeContents);
 
         return pkcs12;
     }
@@ -840,6 +1005,237 @@ public class PKCS12Util {
         return loadFromFile(filename, null);
     }
 
+    /**
+     * Receives the bags of a PKCS #12 file as they are read.
+     */
+    public interface SafeBagHandler {
+        void handle(SafeBag bag) throws Exception;
+    }
+
+    /**
+     * Reads a PKCS #12 file and passes its bags to the handler one at a
+     * time, without holding the file or its bags in memory. Encrypted
+     * SafeContents are decrypted one at a time as they are reached.
+     * Key bags stay encrypted; use getKeyInfo() and getCertInfo() to
+     * convert the bags.
+     *
+     * The MAC follows the bags it covers, so the file is read three
+     * times: to find the MAC parameters, to check the MAC over the
+     * AuthenticatedSafes without decoding them, and only then to decode
+     * the bags and pass them to the handler. No bag reaches the handler
+     * if the MAC does not match. The MAC is checked again while the bags
+     * are read, in case the file changed in between.
+     */
+    public void readFromFile(String filename, Password password, SafeBagHandler handler) throws Exception {
+
+        logger.info("Reading PKCS #12 file");
+
+        Path path = Paths.get(filename);
+        read(() -> Files.newInputStream(path), password, handler);
+    }
+
+    /**
+     * Same as readFromFile(), for a PKCS #12 file held in memory.
+     */
+    public void readFromByteArray(byte[] b, Password password, SafeBagHandler handler) throws Exception {
+        read(() -> new ByteArrayInputStream(b), password, handler);
+    }
+
+    interface StreamSource {
+        InputStream open() throws IOException;
+    }
+
+    void read(StreamSource source, Password password, SafeBagHandler handler) throws Exception {
+
+        MacData macData;
+        try (InputStream in = new BufferedInputStream(source.open())) {
+            // skip the AuthenticatedSafes to get to the MacData
+            SEQUENCE pfx = readPFX(in, (tag, content) -> NULL.getInstance());
+            macData = (MacData) pfx.elementAt(2);
+        }
+
+        if (macData == null) {
+            throw new Exception("Unable to validate PKCS #12 file: No MAC present in PFX");
+        }
+
+        // check the MAC before decoding anything it covers
+        JSSMessageDigest mac = createHMAC(macData, password);
+        try (InputStream in = new BufferedInputStream(source.open())) {
+            readPFX(in, (tag, content) -> {
+                skipAll(new MacInputStream(content, mac));
+                return NULL.getInstance();
+            });
+        }
+        verifyMac(macData, mac);
+
+        JSSMessageDigest bagsMac = createHMAC(macData, password);
+        try (InputStream in = new BufferedInputStream(source.open())) {
+            readPFX(in, (tag, content) -> {
+                readAuthSafes(new MacInputStream(content, bagsMac), password, handler);
+                // the AuthenticatedSafes are not kept
+                return NULL.getInstance();
+            });
+        }
+        verifyMac(macData, bagsMac);
+    }
+
+    JSSMessageDigest createHMAC(MacData macData, Password password) throws Exception {
+        return MacData.createHMAC(
+                password,
+                macData.getMacSalt().toByteArray(),
+                macData.getMacIterationCount().intValue());
+    }
+
+    void verifyMac(MacData macData, JSSMessageDigest mac) throws Exception {
+        byte[] digest = macData.getMac().getDigest().toByteArray();
+        if (!MessageDigest.isEqual(digest, mac.digest())) {
+            throw new Exception("Unable to validate PKCS #12 file: Digests do not match");
+        }
+    }
+
+    static void skipAll(InputStream in) throws IOException {
+        byte[] buf = new byte[8192];
+        while (in.read(buf) != -1) {
+            // discard
+        }
+    }
+
+    /**
+     * Decodes a PFX, passing the AuthenticatedSafes to the handler.
+     */
+    SEQUENCE readPFX(InputStream in, ContentHandler authSafesHandler) throws Exception {
+
+        SEQUENCE.Template contentInfoTemplate = new SEQUENCE.Template();
+        contentInfoTemplate.addElement(OBJECT_IDENTIFIER.getTemplate());
+        contentInfoTemplate.addElement(new EXPLICIT.Template(new Tag(0),
+                new OCTET_STRING.StreamingTemplate(authSafesHandler)));
+
+        SEQUENCE.Template pfxTemplate = new SEQUENCE.Template();
+        pfxTemplate.addElement(INTEGER.getTemplate());
+        pfxTemplate.addElement(contentInfoTemplate);
+        pfxTemplate.addOptionalElement(MacData.getTemplate());
+
+        SEQUENCE pfx = (SEQUENCE) pfxTemplate.decode(in);
+
+        SEQUENCE contentInfo = (SEQUENCE) pfx.elementAt(1);
+        if (!org.mozilla.jss.pkcs7.ContentInfo.DATA.equals(contentInfo.elementAt(0))) {
+            throw new InvalidBERException(
+                    "ContentInfo containing AuthenticatedSafes does not have content-type DATA");
+        }
+
+        return pfx;
+    }
+
+    /**
+     * Decodes the AuthenticatedSafes one SafeContents at a time, then
+     * reads whatever follows them so that all of it goes into the MAC.
+     */
+    void readAuthSafes(InputStream in, Password password, SafeBagHandler handler)
+            throws IOException, InvalidBERException {
+
+        SEQUENCE.OF_Template template = new SEQUENCE.OF_Template(
+                new SafeContentsTemplate(password, handler));
+        template.decode(new BufferedInputStream(in));
+
+        skipAll(in);
+    }
+
+    /**
+     * Decodes an element of the AuthenticatedSafes and passes its bags
+     * to a handler instead of returning them.
+     */
+    static class SafeContentsTemplate implements ASN1Template {
+
+        org.mozilla.jss.pkcs7.ContentInfo.Template template = org.mozilla.jss.pkcs7.ContentInfo.getTemplate();
+        Password password;
+        SafeBagHandler handler;
+
+        SafeContentsTemplate(Password password, SafeBagHandler handler) {
+            this.password = password;
+            this.handler = handler;
+        }
+
+        @Override
+        public boolean tagMatch(Tag tag) {
+            return template.tagMatch(tag);
+        }
+
+        @Override
+        public ASN1Value decode(InputStream in) throws IOException, InvalidBERException {
+            return handle((org.mozilla.jss.pkcs7.ContentInfo) template.decode(in));
+        }
+
+        @Override
+        public ASN1Value decode(Tag implicitTag, InputStream in) throws IOException, InvalidBERException {
+            return handle((org.mozilla.jss.pkcs7.ContentInfo) template.decode(implicitTag, in));
+        }
+
+        ASN1Value handle(org.mozilla.jss.pkcs7.ContentInfo ci) throws IOException, InvalidBERException {
+
+            try {
+                SEQUENCE contents = AuthenticatedSafes.getSafeContents(ci, password);
+
+                for (int i = 0; i < contents.size(); i++) {
+                    handler.handle((SafeBag) contents.elementAt(i));
+                }
+
+            } catch (IOException | InvalidBERException e) {
+                throw e;
+
+            } catch (Exception e) {
+                throw new IOException("Unable to read SafeContents: " + e.getMessage(), e);
+            }
+
+            // the bags are not kept
+            return NULL.getInstance();
+        }
+    }
+
+    /**
+     * Adds the bytes read from a stream to a MAC.
+     */
+    static class MacInputStream extends FilterInputStream {
+
+        JSSMessageDigest mac;
+
+        MacInputStream(InputStream in, JSSMessageDigest mac) {
+            super(in);
+            this.mac = mac;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : (b[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                try {
+                    mac.update(b, off, n);
+                } catch (DigestException e) {
+                    throw new IOException("Unable to compute MAC: " + e.getMessage(), e);
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped bytes must go into the MAC too
+            byte[] buf = new byte[(int) Math.min(n, 8192)];
+            int count = read(buf, 0, buf.length);
+            return count == -1 ? 0 : count;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
     public PrivateKey.Type getPrivateKeyType(PublicKey publicKey) {
         if (publicKey.getAlgorithm().equals("EC")) {
             return PrivateKey.Type.EC;
@@ -980,4 +1376,177 @@ public class PKCS12Util {
             storeCertIntoNSS(pkcs12, password, certInfo, overwrite);
         }
     }
+
+    /**
+     * Receives the progress of importIntoNSS().
+     */
+    public interface ImportListener {
+
+        /**
+         * Called after each certificate, and its key if it has one,
+         * has been processed.
+         *
+         * @param certInfo the certificate
+         * @param imported false if the certificate was skipped because
+         *            it is already in the NSS database
+         * @param count the number of certificates processed so far
+         * @param total the number of certificates to process
+         */
+        void progress(PKCS12CertInfo certInfo, boolean imported, int count, int total);
+    }
+
+    /**
+     * Stores the certificates and keys into the NSS database like
+     * storeIntoNSS(), with fewer calls into the database.
+     *
+     * The certificates already in the database are listed once up front
+     * instead of being looked up by nickname for each certificate.
+     * Unless overwrite is true, a certificate whose fingerprint is
+     * already in the database is skipped, whatever its nickname; this
+     * includes CA certificates from earlier imports, which NSS stores
+     * under a nickname of its own. If overwrite is true, the certificates
+     * with the nickname of an imported certificate are deleted, with
+     * their keys, right before its key is imported. All keys are
+     * imported first, directly with the public key of their certificate,
+     * then all certificates.
+     *
+     * @param listener receives the progress, may be null
+     */
+    public void importIntoNSS(
+            PKCS12 pkcs12, Password password, boolean overwrite,
+            ImportListener listener)
+        throws Exception
+    {
+        logger.info("Importing data into NSS database");
+
+        CryptoManager cm = CryptoManager.getInstance();
+        CryptoToken token = cm.getInternalKeyStorageToken();
+        PK11Store store = (PK11Store) token.getCryptoStore();
+
+        Map<BigInteger, X509Certificate> certsByFingerprint = new HashMap<>();
+        Map<String, List<X509Certificate>> certsByNickname = new HashMap<>();
+
+        for (X509Certificate cert : store.getCertificates()) {
+            certsByFingerprint.put(createFingerprint(cert.getEncoded()), cert);
+            certsByNickname.computeIfAbsent(cert.getNickname(), k -> new ArrayList<>()).add(cert);
+        }
+
+        // decide what to import before changing the database
+
+        List<PKCS12CertInfo> certInfos = new ArrayList<>();
+        List<PKCS12CertInfo> skipped = new ArrayList<>();
+        Map<PKCS12CertInfo, List<X509Certificate>> replaced = new HashMap<>();
+
+        for (PKCS12CertInfo certInfo : pkcs12.getCertInfos()) {
+
+            BigInteger fingerprint = createFingerprint(certInfo.getCert().getEncoded());
+            List<X509Certificate> sameNickname = certsByNickname.get(certInfo.getFriendlyName());
+
+            if (!overwrite && (certsByFingerprint.containsKey(fingerprint) || sameNickname != null)) {
+                logger.debug("Certificate " + certInfo.getFriendlyName() + " already exists, skip");
+                skipped.add(certInfo);
+                continue;
+            }
+
+            if (sameNickname != null) {
+                // replaced once, by the first certificate with the nickname
+                replaced.put(certInfo, sameNickname);
+                certsByNickname.remove(certInfo.getFriendlyName());
+            }
+
+            certInfos.add(certInfo);
+        }
+
+        int total = certInfos.size() + skipped.size();
+        int count = 0;
+
+        for (PKCS12CertInfo certInfo : skipped) {
+            if (listener != null) listener.progress(certInfo, false, ++count, total);
+        }
+
+        // import the keys, then the certificates that go with them
+
+        for (PKCS12CertInfo certInfo : certInfos) {
+
+            // delete the certificates (and keys) that are overwritten
+            // before importing the new key under the same nickname
+            List<X509Certificate> certs = replaced.get(certInfo);
+            if (certs != null) {
+                for (X509Certificate cert : certs) {
+                    logger.debug("Deleting certificate " + cert.getNickname());
+                    store.deleteCert(cert);
+                }
+            }
+
+            byte[] keyID = certInfo.getKeyID();
+            if (keyID == null) continue;
+
+            PKCS12KeyInfo keyInfo = pkcs12.getKeyInfoByID(keyID);
+            if (keyInfo == null || keyInfo.getEncryptedPrivateKeyInfoBytes() == null) {
+                logger.debug("No EncryptedPrivateKeyInfo for key '"
+                        + certInfo.getFriendlyName() + "'; skipping key");
+                continue;
+            }
+
+            logger.debug("Importing private key for " + certInfo.getFriendlyName());
+            importKey(store, password, certInfo.getFriendlyName(),
+                    certInfo.getCert().getPublicKey(), keyInfo);
+        }
+
+        for (PKCS12CertInfo certInfo : certInfos) {
+
+            X509CertImpl certImpl = certInfo.getCert();
+            X509Certificate cert;
+
+            if (certInfo.getKeyID() != null) {
+                logger.debug("Importing user certificate " + certInfo.getFriendlyName());
+                cert = cm.importUserCACertPackage(
+                        certImpl.getEncoded(), certInfo.getFriendlyName());
+
+            } else {
+                logger.debug("Importing CA certificate " + certInfo.getFriendlyName());
+                // Note: JSS does not preserve CA certificate nickname
+                cert = cm.importCACertPackage(certImpl.getEncoded());
+            }
+
+            String trustFlags = certInfo.getTrustFlags();
+            if (trustFlags != null && trustFlagsEnabled) {
+                PK11Cert pk11Cert = (PK11Cert) cert;
+                pk11Cert.setTrustFlags(trustFlags);
+            }
+
+            if (listener != null) listener.progress(certInfo, true, ++count, total);
+        }
+    }
+
+    /**
+     * Imports an encrypted private key for the given public key.
+     */
+    void importKey(
+            PK11Store store,
+            Password password,
+            String nickname,
+            PublicKey publicKey,
+            PKCS12KeyInfo keyInfo) throws Exception {
+
+        byte[] epkiBytes = keyInfo.getEncryptedPrivateKeyInfoBytes();
+
+        try {
+            // first true without BMPString-encoding the passphrase.
+            store.importEncryptedPrivateKeyInfo(
+                null, password, nickname, publicKey, epkiBytes);
+        } catch (Exception e) {
+            // if that failed, try again with BMPString-encoded
+            // passphrase.  This is required for PKCS #12 PBE
+            // schemes and for PKCS #12 files using PBES2 generated
+            // by NSS < 3.31
+            store.importEncryptedPrivateKeyInfo(
+                new PasswordConverter(), password, nickname, publicKey, epkiBytes);
+        }
+    }
+
+    BigInteger createFingerprint(byte[] bytes) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        return new BigInteger(1, md.digest(bytes));
+    }
 }
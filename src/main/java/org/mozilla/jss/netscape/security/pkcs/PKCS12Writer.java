@@ -0,0 +1,221 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2016 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.pkcs;
+
+import java.io.OutputStream;
+
+import org.mozilla.jss.asn1.ASN1Header;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.Form;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.crypto.JSSMessageDigest;
+import org.mozilla.jss.crypto.PBEAlgorithm;
+import org.mozilla.jss.pkcs12.AuthenticatedSafes;
+import org.mozilla.jss.pkcs12.MacData;
+import org.mozilla.jss.pkcs7.ContentInfo;
+import org.mozilla.jss.util.Password;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a PKCS #12 file one bag at a time, so that the number of keys
+ * and certificates it holds is not limited by memory.
+ *
+ * Bags are collected into SafeContents of a fixed number of bags, and
+ * each SafeContents is written, and encrypted if needed, as soon as it
+ * is full. The MAC is computed over the AuthenticatedSafes as they are
+ * written and appended by close(). The PFX, its AuthenticatedSafes and
+ * the OCTET STRING holding them use the BER indefinite length encoding.
+ *
+ * The writer uses the encryption settings of the PKCS12Util that
+ * created it, see PKCS12Util.openWriter().
+ */
+public class PKCS12Writer implements AutoCloseable {
+
+    private static Logger logger = LoggerFactory.getLogger(PKCS12Writer.class);
+
+    public final static int DEFAULT_BAGS_PER_SAFE_CONTENTS = 1000;
+
+    private final static INTEGER PFX_VERSION = new INTEGER(3);
+    private final static Tag EXPLICIT_0 = new Tag(0);
+    private final static byte[] EOC = { 0, 0 };
+
+    // Use the same salt size and number of iterations as in pk12util.
+    private final static int SALT_LENGTH = 16;
+    private final static int ITERATIONS = 100000;
+
+    PKCS12Util util;
+    OutputStream out;
+    Password password;
+
+    byte[] macSalt;
+    JSSMessageDigest mac;
+
+    int bagsPerSafeContents = DEFAULT_BAGS_PER_SAFE_CONTENTS;
+    SEQUENCE keySafeContents = new SEQUENCE();
+    SEQUENCE certSafeContents = new SEQUENCE();
+    boolean closed;
+
+    PKCS12Writer(PKCS12Util util, OutputStream out, Password password) throws Exception {
+
+        this.util = util;
+        this.out = out;
+        this.password = password;
+
+        macSalt = new byte[SALT_LENGTH];
+        util.random.nextBytes(macSalt);
+        mac = MacData.createHMAC(password, macSalt, ITERATIONS);
+
+        // PFX
+        out.write(indefiniteHeader(SEQUENCE.TAG));
+        PFX_VERSION.encode(out);
+
+        // ContentInfo holding the AuthenticatedSafes
+        out.write(indefiniteHeader(SEQUENCE.TAG));
+        ContentInfo.DATA.encode(out);
+        out.write(indefiniteHeader(EXPLICIT_0));
+        out.write(indefiniteHeader(OCTET_STRING.TAG));
+
+        // AuthenticatedSafes
+        writeAuthSafes(indefiniteHeader(SEQUENCE.TAG));
+    }
+
+    /**
+     * Sets how many bags go into each SafeContents. Larger values give
+     * smaller files but use more memory while writing.
+     */
+    public void setBagsPerSafeContents(int bagsPerSafeContents) {
+        if (bagsPerSafeContents < 1) {
+            throw new IllegalArgumentException("Invalid number of bags: " + bagsPerSafeContents);
+        }
+        this.bagsPerSafeContents = bagsPerSafeContents;
+    }
+
+    public int getBagsPerSafeContents() {
+        return bagsPerSafeContents;
+    }
+
+    public void addKeyInfo(PKCS12KeyInfo keyInfo) throws Exception {
+
+        util.addKeyBag(keyInfo, password, keySafeContents);
+
+        if (keySafeContents.size() >= bagsPerSafeContents) {
+            writeKeySafeContents();
+        }
+    }
+
+    public void addCertInfo(PKCS12CertInfo certInfo) throws Exception {
+
+        util.addCertBag(certInfo, certSafeContents);
+
+        if (certSafeContents.size() >= bagsPerSafeContents) {
+            writeCertSafeContents();
+        }
+    }
+
+    void writeKeySafeContents() throws Exception {
+
+        if (keySafeContents.size() == 0) return;
+
+        logger.debug("Writing " + keySafeContents.size() + " key bags");
+
+        // keys are already encrypted in their own bags
+        writeAuthSafes(ASN1Util.encode(AuthenticatedSafes.createSafeContents(keySafeContents)));
+        keySafeContents = new SEQUENCE();
+    }
+
+    void writeCertSafeContents() throws Exception {
+
+        if (certSafeContents.size() == 0) return;
+
+        logger.debug("Writing " + certSafeContents.size() + " certificate bags");
+
+        ContentInfo ci;
+        PBEAlgorithm certEncryption = util.certEncryption;
+
+        if (certEncryption == null) {
+            ci = AuthenticatedSafes.createSafeContents(certSafeContents);
+
+        } else if (certEncryption == PBEAlgorithm.PBE_SHA1_RC2_40_CBC) {
+
+            byte[] salt = new byte[SALT_LENGTH];
+            util.random.nextBytes(salt);
+
+            ci = AuthenticatedSafes.createEncryptedSafeContents(
+                    certEncryption,
+                    password,
+                    salt,
+                    ITERATIONS,
+                    certSafeContents);
+
+        } else {
+            throw new Exception("Unsupported certificate encryption: " + certEncryption);
+        }
+
+        writeAuthSafes(ASN1Util.encode(ci));
+        certSafeContents = new SEQUENCE();
+    }
+
+    /**
+     * Writes part of the AuthenticatedSafes as a segment of the
+     * OCTET STRING holding them, and adds it to the MAC.
+     */
+    void writeAuthSafes(byte[] bytes) throws Exception {
+        mac.update(bytes);
+        new ASN1Header(OCTET_STRING.TAG, Form.PRIMITIVE, bytes.length).encode(out);
+        out.write(bytes);
+    }
+
+    static byte[] indefiniteHeader(Tag tag) {
+        // the header of an empty value, with the length octet replaced
+        byte[] header = new ASN1Header(tag, Form.CONSTRUCTED, 0).encode().clone();
+        header[header.length - 1] = (byte) 0x80;
+        return header;
+    }
+
+    /**
+     * Writes the remaining bags and the MAC. Does not close the
+     * underlying stream.
+     */
+    @Override
+    public void close() throws Exception {
+
+        if (closed) return;
+        closed = true;
+
+        writeKeySafeContents();
+        writeCertSafeContents();
+
+        writeAuthSafes(EOC); // AuthenticatedSafes
+        out.write(EOC); // OCTET STRING
+        out.write(EOC); // [0] EXPLICIT
+        out.write(EOC); // ContentInfo
+
+        MacData macData = new MacData(
+                MacData.createMac(mac.digest()),
+                new OCTET_STRING(macSalt),
+                new INTEGER(ITERATIONS));
+        macData.encode(out);
+
+        out.write(EOC); // PFX
+        out.flush();
+    }
+}
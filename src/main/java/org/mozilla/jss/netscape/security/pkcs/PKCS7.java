@@ -27,11 +27,20 @@ import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.math.BigInteger;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SignatureException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 import org.mozilla.jss.netscape.security.util.BigInt;
 import org.mozilla.jss.netscape.security.util.DerInputStream;
@@ -58,6 +67,8 @@ public class PKCS7 {
     public final static String HEADER = "-----BEGIN PKCS7-----";
     public final static String FOOTER = "-----END PKCS7-----";
 
+    private final static int DIGEST_BLOCK_SIZE = 16 * 1024;
+
     private ObjectIdentifier contentType;
 
     // the ASN.1 members for a signedData (and other) contentTypes
@@ -390,6 +401,10 @@ public class PKCS7 {
 
     /**
      * Returns all signerInfos which self-verify.
+     * <p>
+     * The signerInfos are verified in order, and the first exception
+     * stops the verification; see {@link #verify(byte[], Executor)} to
+     * verify every signerInfo regardless of the others.
      *
      * @param bytes the DER encoded content information.
      *
@@ -399,10 +414,13 @@ public class PKCS7 {
     public SignerInfo[] verify(byte[] bytes)
             throws NoSuchAlgorithmException, SignatureException {
 
+        byte[] data = content(bytes);
+        Map<String, byte[]> digests = digest(data);
+
         Vector<SignerInfo> intResult = new Vector<>();
         for (int i = 0; i < signerInfos.length; i++) {
 
-            SignerInfo signerInfo = verify(signerInfos[i], bytes);
+            SignerInfo signerInfo = signerInfos[i].verify(this, data, digests);
             if (signerInfo != null) {
                 intResult.addElement(signerInfo);
             }
@@ -416,6 +434,139 @@ public class PKCS7 {
         return null;
     }
 
+    /**
+     * Verifies every signerInfo and returns one result per signerInfo,
+     * in the order of {@link #getSignerInfos()}.
+     * <p>
+     * The content is read once, and digested once for each distinct
+     * digest algorithm used by signers with authenticated attributes.
+     * The signatures are then checked as separate tasks on the given
+     * executor, or on the calling thread if it is null.
+     * <p>
+     * Unlike {@link #verify(byte[])}, a failure of one signer does not
+     * stop the others: any exception thrown while verifying a signer,
+     * including a RuntimeException, is returned by
+     * {@link VerificationResult#getError()} of its result.
+     *
+     * @param bytes the DER encoded content information, or null to use
+     *            the content of this block.
+     * @param executor the executor to verify the signatures on, or null.
+     * @exception SignatureException if the content cannot be read.
+     */
+    public VerificationResult[] verify(byte[] bytes, Executor executor)
+            throws SignatureException {
+
+        byte[] data = content(bytes);
+        Map<String, byte[]> digests = digest(data);
+
+        List<CompletableFuture<VerificationResult>> futures = new ArrayList<>();
+        for (SignerInfo info : signerInfos) {
+            Supplier<VerificationResult> task = () -> {
+                try {
+                    return new VerificationResult(info,
+                            info.verify(this, data, digests) != null, null);
+                } catch (Exception e) {
+                    return new VerificationResult(info, false, e);
+                }
+            };
+            futures.add(executor == null ?
+                    CompletableFuture.completedFuture(task.get()) :
+                    CompletableFuture.supplyAsync(task, executor));
+        }
+
+        VerificationResult[] results = new VerificationResult[futures.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = futures.get(i).join();
+        }
+        return results;
+    }
+
+    private byte[] content(byte[] bytes) throws SignatureException {
+        if (bytes != null)
+            return bytes;
+        try {
+            return contentInfo.getContentBytes();
+        } catch (IOException e) {
+            throw new SignatureException("IO error verifying signature:\n" +
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Digests data in one pass with every digest algorithm that a signer
+     * with authenticated attributes needs. Unknown algorithms are left
+     * out, so that only the signers using them fail.
+     */
+    private Map<String, byte[]> digest(byte[] data) {
+
+        Map<String, MessageDigest> mds = new LinkedHashMap<>();
+        for (SignerInfo info : signerInfos) {
+            if (info.getAuthenticatedAttributes() == null)
+                continue;
+            String name = info.getDigestAlgorithmId().getName();
+            if (mds.containsKey(name))
+                continue;
+            try {
+                mds.put(name, MessageDigest.getInstance(name));
+            } catch (NoSuchAlgorithmException e) {
+                // reported by the signers using it
+            }
+        }
+
+        // update every digest over the same block while it is in cache
+        for (int off = 0; data != null && off < data.length; off += DIGEST_BLOCK_SIZE) {
+            int len = Math.min(DIGEST_BLOCK_SIZE, data.length - off);
+            for (MessageDigest md : mds.values()) {
+                md.update(data, off, len);
+            }
+        }
+
+        Map<String, byte[]> digests = new HashMap<>();
+        for (Map.Entry<String, MessageDigest> e : mds.entrySet()) {
+            digests.put(e.getKey(), e.getValue().digest());
+        }
+        return digests;
+    }
+
+    /**
+     * The outcome of verifying one signerInfo.
+     */
+    public static class VerificationResult {
+
+        private final SignerInfo signerInfo;
+        private final boolean verified;
+        private final Exception error;
+
+        VerificationResult(SignerInfo signerInfo, boolean verified, Exception error) {
+            this.signerInfo = signerInfo;
+            this.verified = verified;
+            this.error = error;
+        }
+
+        /**
+         * Returns the signerInfo this result is for.
+         */
+        public SignerInfo getSignerInfo() {
+            return signerInfo;
+        }
+
+        /**
+         * Returns true if the signature and authenticated attributes
+         * verified.
+         */
+        public boolean isVerified() {
+            return verified;
+        }
+
+        /**
+         * Returns the exception that stopped the verification of this
+         * signerInfo, or null. This may be a RuntimeException.
+         */
+        public Exception getError() {
+            return error;
+        }
+    }
+
     /**
      * Returns all signerInfos which self-verify.
      *
@@ -26,6 +26,7 @@ import java.security.PublicKey;
 import java.security.Signature;
 import java.security.SignatureException;
 import java.security.cert.X509Certificate;
+import java.util.Map;
 
 import org.mozilla.jss.netscape.security.util.BigInt;
 import org.mozilla.jss.netscape.security.util.DerEncoder;
@@ -186,6 +187,13 @@ public class SignerInfo implements DerEncoder {
        verify succeeds. */
     SignerInfo verify(PKCS7 block, byte[] data)
             throws NoSuchAlgorithmException, SignatureException {
+        return verify(block, data, null);
+    }
+
+    /* Same as verify(block, data), but takes the digest of the data
+       from digests, keyed by algorithm name, when it is there. */
+    SignerInfo verify(PKCS7 block, byte[] data, Map<String, byte[]> digests)
+            throws NoSuchAlgorithmException, SignatureException {
 
         try {
 
@@ -221,8 +229,11 @@ public class SignerInfo implements DerEncoder {
                 if (messageDigest == null) // fail if there is no message digest
                     return null;
 
-                MessageDigest md = MessageDigest.getInstance(digestAlgname);
-                byte[] computedMessageDigest = md.digest(data);
+                byte[] computedMessageDigest = digests == null ? null : digests.get(digestAlgname);
+                if (computedMessageDigest == null) {
+                    MessageDigest md = MessageDigest.getInstance(digestAlgname);
+                    computedMessageDigest = md.digest(data);
+                }
 
                 if (messageDigest.length != computedMessageDigest.length)
                     return null;
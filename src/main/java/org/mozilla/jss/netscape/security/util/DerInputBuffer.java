@@ -20,6 +20,7 @@ package org.mozilla.jss.netscape.security.util;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
 
 /**
  * DER input buffer ... this is the main abstraction in the DER library
@@ -62,6 +63,66 @@ class DerInputBuffer extends ByteArrayInputStream implements Cloneable {
         return retval;
     }
 
+    /**
+     * Returns the offset of the next byte to be read in the backing array.
+     */
+    int position() {
+        return pos;
+    }
+
+    /**
+     * Returns a copy of the encoding which starts at <code>start</code>
+     * and whose contents start at the mark, provided its header is the
+     * DER header for <code>tag</code> and <code>length</code>. Returns
+     * null otherwise, for example for BER encoded lengths.
+     */
+    byte[] copyEncoding(int start, byte tag, int length) {
+        if (start < 0 || buf[start] != tag || count < mark + length)
+            return null;
+
+        int header = 2;
+        if (length >= 128) {
+            for (int l = length; l > 0; l >>>= 8)
+                header++;
+        }
+        if (mark - start != header)
+            return null;
+
+        return Arrays.copyOfRange(buf, start, mark + length);
+    }
+
+    /**
+     * Returns the UTCTime or GeneralizedTime whose contents take up the
+     * next <code>len</code> bytes, in milliseconds since the epoch.
+     */
+    long getTime(int len, boolean utc) throws IOException {
+        if (len > available())
+            throw new IOException("short read of DER time");
+        long time = DerTime.parse(buf, pos, len, utc, 51, null);
+        skip(len);
+        return time;
+    }
+
+    /**
+     * Returns the object identifier whose contents take up the next
+     * <code>len</code> bytes. Registered identifiers are found by their
+     * encoding without being decoded.
+     */
+    ObjectIdentifier getOID(int len) throws IOException {
+        if (len < 0 || len > available())
+            throw new IOException(
+                    "X509.ObjectIdentifier() -- not enough data");
+
+        ObjectIdentifier oid = ObjectIdentifier.lookup(buf, pos, len);
+        if (oid == null) {
+            DerInputBuffer contents = dup();
+            contents.truncate(len);
+            oid = ObjectIdentifier.internDecoded(new ObjectIdentifier(contents));
+        }
+        skip(len);
+        return oid;
+    }
+
     int peek() throws IOException {
         if (pos >= count)
             throw new IOException("out of data");
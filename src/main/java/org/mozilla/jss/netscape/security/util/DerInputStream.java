@@ -19,10 +19,7 @@ package org.mozilla.jss.netscape.security.util;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.GregorianCalendar;
-import java.util.TimeZone;
 import java.util.Vector;
 
 /**
@@ -224,7 +221,12 @@ public class DerInputStream {
      * Reads an X.200 style Object Identifier from the stream.
      */
     public ObjectIdentifier getOID() throws IOException {
-        return new ObjectIdentifier(this);
+        int tag = buffer.read();
+        if (tag != DerValue.tag_ObjectId)
+            throw new IOException(
+                    "X509.ObjectIdentifier() -- data isn't an object ID"
+                            + " (tag = " + (byte) tag + ")");
+        return buffer.getOID(getLength(buffer));
     }
 
     /**
@@ -387,101 +389,10 @@ public class DerInputStream {
         if (len < 11 || len > 17)
             throw new IOException("DER getUTCTime length error");
 
-        /*
-         * UTC time encoded as ASCII chars, YYMMDDhhmmss.
-         * If YY <= 50, we assume 20YY;
-         * if YY > 50, we assume 19YY, as per IETF-PKIX part I.
-         */
-        int year, month, day, hour, minute, second;
-
-        year = 10 * Character.digit((char) buffer.read(), 10);
-        year += Character.digit((char) buffer.read(), 10);
-        if (year <= 50) // origin 2000
-            year += 2000;
-        else
-            year += 1900; // origin 1900
-
-        month = 10 * Character.digit((char) buffer.read(), 10);
-        month += Character.digit((char) buffer.read(), 10);
-        month -= 1; // months are 0-11
-
-        day = 10 * Character.digit((char) buffer.read(), 10);
-        day += Character.digit((char) buffer.read(), 10);
-
-        hour = 10 * Character.digit((char) buffer.read(), 10);
-        hour += Character.digit((char) buffer.read(), 10);
-
-        minute = 10 * Character.digit((char) buffer.read(), 10);
-        minute += Character.digit((char) buffer.read(), 10);
-
-        len -= 10;
-
-        /**
-         * We allow for non-encoded seconds, even though the
-         * IETF-PKIX specification says that the seconds should
-         * always be encoded even if it is zero.
-         */
-
-        if (len == 3 || len == 7) {
-            second = 10 * Character.digit((char) buffer.read(), 10);
-            second += Character.digit((char) buffer.read(), 10);
-            len -= 2;
-        } else
-            second = 0;
-
-        if (month < 0 || day <= 0
-                || month > 11 || day > 31 || hour >= 24
-                || minute >= 60 || second >= 60)
-            throw new IOException("Parse UTC time, invalid format");
-
-        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
-        cal.set(year, month, day, hour, minute, second);
-        cal.set(Calendar.MILLISECOND, 0); /* To clear millisecond field */
-        cal.set(Calendar.ERA, GregorianCalendar.AD);
-        Date readDate = cal.getTime();
-        long utcTime = readDate.getTime();
-
-        /*
-         * Finally, "Z" or "+hhmm" or "-hhmm" ... offsets change hhmm
-         */
-        if (!(len == 1 || len == 5))
-            throw new IOException("Parse UTC time, invalid offset");
-
-        switch (buffer.read()) {
-        case '+': {
-            int Htmp = 10 * Character.digit((char) buffer.read(), 10);
-            Htmp += Character.digit((char) buffer.read(), 10);
-            int Mtmp = 10 * Character.digit((char) buffer.read(), 10);
-            Mtmp += Character.digit((char) buffer.read(), 10);
-
-            if (Htmp >= 24 || Mtmp >= 60)
-                throw new IOException("Parse UTCtime, +hhmm");
-
-            utcTime += ((Htmp * 60) + Mtmp) * 60 * 1000L;
-        }
-            break;
-
-        case '-': {
-            int Htmp = 10 * Character.digit((char) buffer.read(), 10);
-            Htmp += Character.digit((char) buffer.read(), 10);
-            int Mtmp = 10 * Character.digit((char) buffer.read(), 10);
-            Mtmp += Character.digit((char) buffer.read(), 10);
-
-            if (Htmp >= 24 || Mtmp >= 60)
-                throw new IOException("Parse UTCtime, -hhmm");
-
-            utcTime -= ((Htmp * 60) + Mtmp) * 60 * 1000L;
-        }
-            break;
-
-        case 'Z':
-            break;
-
-        default:
-            throw new IOException("Parse UTCtime, garbage offset");
-        }
-        readDate.setTime(utcTime);
-        return readDate;
+        // UTC time encoded as ASCII chars, YYMMDDhhmm[ss]Z.
+        // If YY <= 50, we assume 20YY;
+        // if YY > 50, we assume 19YY, as per IETF-PKIX part I.
+        return new Date(buffer.getTime(len, true));
     }
 
     /**
@@ -496,99 +407,8 @@ public class DerInputStream {
 
         int len = getLength(buffer);
 
-        /*
-         * Generalized time encoded as ASCII chars, YYYYMMDDhhmm[ss]
-         */
-        int year, month, day, hour, minute, second;
-
-        year = 1000 * Character.digit((char) buffer.read(), 10);
-        year += 100 * Character.digit((char) buffer.read(), 10);
-        year += 10 * Character.digit((char) buffer.read(), 10);
-        year += Character.digit((char) buffer.read(), 10);
-
-        month = 10 * Character.digit((char) buffer.read(), 10);
-        month += Character.digit((char) buffer.read(), 10);
-        month -= 1; // Calendar months are 0-11
-
-        day = 10 * Character.digit((char) buffer.read(), 10);
-        day += Character.digit((char) buffer.read(), 10);
-
-        hour = 10 * Character.digit((char) buffer.read(), 10);
-        hour += Character.digit((char) buffer.read(), 10);
-
-        minute = 10 * Character.digit((char) buffer.read(), 10);
-        minute += Character.digit((char) buffer.read(), 10);
-
-        len -= 12;
-
-        /**
-         * We allow for non-encoded seconds, even though the
-         * IETF-PKIX specification says that the seconds should
-         * always be encoded even if it is zero.
-         */
-
-        if (len == 3 || len == 7) {
-            second = 10 * Character.digit((char) buffer.read(), 10);
-            second += Character.digit((char) buffer.read(), 10);
-            len -= 2;
-        } else
-            second = 0;
-
-        if (month < 0 || day <= 0
-                || month > 11 || day > 31 || hour >= 24
-                || minute >= 60 || second >= 60)
-            throw new IOException("Parse Generalized time, invalid format");
-
-        /* Shouldn't this construct a Gregorian calendar directly???
-         * We don't really want locale dependant processing here */
-        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
-        cal.set(year, month, day, hour, minute, second);
-        cal.set(Calendar.MILLISECOND, 0); /* To clear millisecond field */
-        cal.set(Calendar.ERA, GregorianCalendar.AD);
-        Date readDate = cal.getTime();
-        long utcTime = readDate.getTime();
-
-        /*
-         * Finally, "Z" or "+hhmm" or "-hhmm" ... offsets change hhmm
-         */
-        if (!(len == 1 || len == 5))
-            throw new IOException("Parse Generalized time, invalid offset");
-
-        switch (buffer.read()) {
-        case '+': {
-            int Htmp = 10 * Character.digit((char) buffer.read(), 10);
-            Htmp += Character.digit((char) buffer.read(), 10);
-            int Mtmp = 10 * Character.digit((char) buffer.read(), 10);
-            Mtmp += Character.digit((char) buffer.read(), 10);
-
-            if (Htmp >= 24 || Mtmp >= 60)
-                throw new IOException("Parse GeneralizedTime, +hhmm");
-
-            utcTime += ((Htmp * 60) + Mtmp) * 60 * 1000L;
-        }
-            break;
-
-        case '-': {
-            int Htmp = 10 * Character.digit((char) buffer.read(), 10);
-            Htmp += Character.digit((char) buffer.read(), 10);
-            int Mtmp = 10 * Character.digit((char) buffer.read(), 10);
-            Mtmp += Character.digit((char) buffer.read(), 10);
-
-            if (Htmp >= 24 || Mtmp >= 60)
-                throw new IOException("Parse GeneralizedTime, -hhmm");
-
-            utcTime -= ((Htmp * 60) + Mtmp) * 60 * 1000L;
-        }
-            break;
-
-        case 'Z':
-            break;
-
-        default:
-            throw new IOException("Parse GeneralizedTime, garbage offset");
-        }
-        readDate.setTime(utcTime);
-        return readDate;
+        // Generalized time encoded as ASCII chars, YYYYMMDDhhmm[ss]Z
+        return new Date(buffer.getTime(len, false));
     }
 
     /*
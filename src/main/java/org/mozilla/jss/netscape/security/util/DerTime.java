@@ -0,0 +1,250 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2007 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.util;
+
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Encodes and decodes the contents of ASN.1 UTCTime and GeneralizedTime
+ * values.
+ * <p>
+ * Dates are converted to and from milliseconds since the epoch with
+ * integer arithmetic over the ASCII digits, using the proleptic Gregorian
+ * calendar of java.time, instead of through Calendar and TimeZone
+ * objects. It is shared by DerInputStream and DerOutputStream and by the
+ * org.mozilla.jss.asn1 time classes.
+ * <p>
+ * Days, hours and minutes are not checked against the length of the
+ * month: like a lenient Calendar, February 30 is read as March 1 or 2.
+ */
+public final class DerTime {
+
+    /**
+     * Length of an encoded UTCTime, YYMMDDhhmmssZ.
+     */
+    public static final int UTC_TIME_LENGTH = 13;
+
+    /**
+     * Length of an encoded GeneralizedTime, YYYYMMDDhhmmssZ.
+     */
+    public static final int GENERALIZED_TIME_LENGTH = 15;
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    // days from 0000-03-01 to 1970-01-01
+    private static final long DAYS_0000_TO_1970 = 719468;
+
+    private DerTime() {
+    }
+
+    /**
+     * Writes the DER contents of a UTCTime or GeneralizedTime: the date in
+     * GMT, with seconds and without fractions of a second, followed by
+     * 'Z'.
+     *
+     * @param millis the time in milliseconds since the epoch.
+     * @param utc true for UTCTime, false for GeneralizedTime.
+     * @param out the array receiving the encoding.
+     * @param off the offset at which to write.
+     * @return the number of bytes written, UTC_TIME_LENGTH or
+     *         GENERALIZED_TIME_LENGTH.
+     * @exception IllegalArgumentException if the year is outside 1950 to
+     *                2049 for UTCTime, or outside 0000 to 9999 for
+     *                GeneralizedTime.
+     */
+    public static int encode(long millis, boolean utc, byte[] out, int off) {
+        long days = Math.floorDiv(millis, MILLIS_PER_DAY);
+        int secs = (int) (Math.floorMod(millis, MILLIS_PER_DAY) / 1000);
+
+        // civil date from days, see days() below
+        long z = days + DAYS_0000_TO_1970;
+        long era = Math.floorDiv(z, 146097);
+        int doe = (int) (z - era * 146097);
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int day = doy - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        // two or four digits must not wrap around
+        if (utc ? year < 1950 || year > 2049 : year < 0 || year > 9999) {
+            throw new IllegalArgumentException("Year " + year + " out of range for "
+                    + (utc ? "UTCTime" : "GeneralizedTime"));
+        }
+
+        int i = off;
+        if (!utc) {
+            i = put2(out, i, (int) (year / 100));
+        }
+        i = put2(out, i, (int) (year % 100));
+        i = put2(out, i, month);
+        i = put2(out, i, day);
+        i = put2(out, i, secs / 3600);
+        i = put2(out, i, secs / 60 % 60);
+        i = put2(out, i, secs % 60);
+        out[i++] = 'Z';
+        return i - off;
+    }
+
+    /**
+     * Returns the DER contents of a UTCTime or GeneralizedTime.
+     *
+     * @param millis the time in milliseconds since the epoch.
+     * @param utc true for UTCTime, false for GeneralizedTime.
+     * @exception IllegalArgumentException if the year cannot be encoded.
+     */
+    public static byte[] encode(long millis, boolean utc) {
+        byte[] out = new byte[utc ? UTC_TIME_LENGTH : GENERALIZED_TIME_LENGTH];
+        encode(millis, utc, out, 0);
+        return out;
+    }
+
+    /**
+     * Parses the contents of a UTCTime or GeneralizedTime:
+     * <pre>
+     * YYMMDDhhmm[ss](Z|+hhmm|-hhmm)             UTCTime
+     * YYYYMMDDhhmm[ss[(.|,)fff]][Z|+hhmm|-hhmm] GeneralizedTime
+     * </pre>
+     * Fractions of a second are ignored.
+     *
+     * @param b the array holding the contents.
+     * @param off the offset of the contents.
+     * @param len the length of the contents.
+     * @param utc true for UTCTime, false for GeneralizedTime.
+     * @param pivot two digit UTCTime years below this value are in the
+     *            21st century, the others in the 20th.
+     * @param localZone the time zone of a GeneralizedTime without time
+     *            zone, or null if a time zone is required.
+     * @return the time in milliseconds since the epoch.
+     * @exception IOException if the contents are not a valid time.
+     */
+    public static long parse(byte[] b, int off, int len, boolean utc,
+            int pivot, TimeZone localZone) throws IOException {
+        int end = off + len;
+        int i = off;
+
+        int year;
+        if (utc) {
+            year = digits(b, i, end, 2);
+            year += year < pivot ? 2000 : 1900;
+            i += 2;
+        } else {
+            year = digits(b, i, end, 4);
+            i += 4;
+        }
+
+        int month = check(digits(b, i, end, 2), 1, 12, "month");
+        int day = check(digits(b, i + 2, end, 2), 1, 31, "day");
+        int hour = check(digits(b, i + 4, end, 2), 0, 23, "hour");
+        int minute = check(digits(b, i + 6, end, 2), 0, 59, "minute");
+        i += 8;
+
+        int second = 0;
+        if (i < end && isDigit(b[i])) {
+            second = check(digits(b, i, end, 2), 0, 59, "second");
+            i += 2;
+
+            if (!utc && i < end && (b[i] == '.' || b[i] == ',')) {
+                i++;
+                if (i == end || !isDigit(b[i]))
+                    throw new IOException("Invalid fraction of a second");
+                while (i < end && isDigit(b[i]))
+                    i++;
+            }
+        }
+
+        long local = days(year, month, day) * MILLIS_PER_DAY +
+                ((hour * 60L + minute) * 60 + second) * 1000;
+
+        if (i == end) {
+            if (utc || localZone == null)
+                throw new IOException("Time zone missing");
+
+            // rare enough to leave daylight saving time to Calendar
+            Calendar cal = new GregorianCalendar(localZone);
+            cal.clear();
+            cal.set(year, month - 1, day, hour, minute, second);
+            return cal.getTimeInMillis();
+        }
+
+        byte zone = b[i++];
+        if (zone == 'Z') {
+            if (i != end)
+                throw new IOException("Extra characters at end of time");
+            return local;
+        }
+        if (zone != '+' && zone != '-')
+            throw new IOException("Invalid time zone");
+        if (end - i != 4)
+            throw new IOException("Invalid time zone offset");
+
+        int offHour = check(digits(b, i, end, 2), 0, 23, "hour offset");
+        int offMinute = check(digits(b, i + 2, end, 2), 0, 59, "minute offset");
+        long offset = (offHour * 60L + offMinute) * 60 * 1000;
+
+        // local time = UTC + offset
+        return zone == '+' ? local - offset : local + offset;
+    }
+
+    /**
+     * Returns the number of days from 1970-01-01 to the given date,
+     * after H. Hinnant's days_from_civil. Days past the end of the month
+     * roll over into the next one.
+     */
+    private static long days(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        int yoe = (int) (y - era * 400);
+        int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - DAYS_0000_TO_1970;
+    }
+
+    private static int digits(byte[] b, int i, int end, int count) throws IOException {
+        if (end - i < count)
+            throw new IOException("Time too short");
+
+        int value = 0;
+        for (int j = i; j < i + count; j++) {
+            if (!isDigit(b[j]))
+                throw new IOException("Invalid character in time: " + (char) (b[j] & 0xff));
+            value = value * 10 + (b[j] - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int check(int value, int low, int high, String field) throws IOException {
+        if (value < low || value > high)
+            throw new IOException("Invalid " + field + " in time");
+        return value;
+    }
+
+    private static int put2(byte[] out, int i, int value) {
+        out[i] = (byte) ('0' + value / 10);
+        out[i + 1] = (byte) ('0' + value % 10);
+        return i + 2;
+    }
+}
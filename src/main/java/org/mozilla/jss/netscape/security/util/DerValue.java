@@ -69,6 +69,10 @@ public class DerValue {
 
     private int length;
 
+    // offset of the tag in the backing array of buffer, or -1 if the
+    // value was not read from a buffer
+    private int start = -1;
+
     /*
      * The type starts at the first byte of the encoding, and
      * is one of these tag_* values.  That may be all the type
@@ -257,6 +261,7 @@ public class DerValue {
         // XXX must also parse BER-encoded constructed
         // values such as sequences, sets...
 
+        start = in.position();
         tag = (byte) in.read();
         length = DerInputStream.getLength(in);
 
@@ -291,6 +296,39 @@ public class DerValue {
         init(true, new ByteArrayInputStream(buf, offset, len));
     }
 
+    /**
+     * Returns a DER value which is a view of part of a buffer. Unlike
+     * {@link #DerValue(byte[], int, int)}, the buffer is not copied: the
+     * value, and every value obtained from it through its
+     * <code>data</code> stream, reads directly from <code>buf</code>.
+     * Bytes are only copied when they are returned, for example by
+     * toByteArray() or getOctetString(). The buffer must not be modified
+     * while the value is in use.
+     *
+     * @param buf the buffer
+     * @param offset start point of the single DER-encoded datum
+     * @param len how many bytes are in the encoded datum
+     * @exception IOException if that part of the buffer does not hold
+     *                exactly one datum.
+     */
+    public static DerValue wrap(byte[] buf, int offset, int len) throws IOException {
+        DerInputBuffer in = new DerInputBuffer(buf, offset, len);
+        DerValue value = new DerValue(in);
+        if (in.available() != 0)
+            throw new IOException("extra DER value data (wrap)");
+        return value;
+    }
+
+    /**
+     * Returns a DER value which is a view of a buffer holding exactly
+     * one datum; see {@link #wrap(byte[], int, int)}.
+     *
+     * @param buf buffer holding a single DER-encoded datum.
+     */
+    public static DerValue wrap(byte[] buf) throws IOException {
+        return wrap(buf, 0, buf.length);
+    }
+
     /**
      * Get an ASN1/DER encoded datum from an input stream. The
      * stream may have additional data following the encoded datum.
@@ -362,7 +400,7 @@ public class DerValue {
     public ObjectIdentifier getOID() throws IOException {
         if (tag != tag_ObjectId)
             throw new IOException("DerValue.getOID, not an OID " + tag);
-        return new ObjectIdentifier(buffer);
+        return buffer.getOID(buffer.available());
     }
 
     /**
@@ -705,6 +743,13 @@ public class DerValue {
      * @return DER-encoded value, including tag and length.
      */
     public byte[] toByteArray() throws IOException {
+        // a value read from a DER buffer is copied as it is
+        byte[] encoding = buffer.copyEncoding(start, tag, length);
+        if (encoding != null) {
+            data.reset();
+            return encoding;
+        }
+
         DerOutputStream out = new DerOutputStream();
 
         encode(out);
@@ -20,8 +20,10 @@ package org.mozilla.jss.netscape.security.util;
 import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represent an ISO Object Identifier.
@@ -36,6 +38,12 @@ import java.util.StringTokenizer;
  * So for example, JavaSoft has the sole authority to assign the meaning to identifiers below the 1.3.6.1.4.42.2.17 node
  * in the hierarchy, and other organizations can easily acquire the ability to assign such unique identifiers.
  *
+ * <P>
+ * Object identifiers are immutable. Well known identifiers are registered with {@link #intern}, and identifiers
+ * decoded with {@link DerInputStream#getOID} or {@link DerValue#getOID} are looked up by their DER encoding in the
+ * same registry, so that equal identifiers read from many certificates share a single instance. Lookups do not
+ * lock.
+ *
  * @version 1.23
  *
  * @author David Brownell
@@ -260,21 +268,27 @@ final public class ObjectIdentifier implements Serializable {
      * n.b. the only public interface is DerOutputStream.putOID()
      */
     public void encode(DerOutputStream out) throws IOException {
-        DerOutputStream bytes = new DerOutputStream();
-        int i;
-
-        /* We can use the int here because we know we are dealing
-           with small numbers for the first byte
-        */
-        bytes.write((components[0].intValue() * 40) + components[1].intValue());
-        for (i = 2; i < componentLen; i++)
-            putComponentBigInt(bytes, components[i]);
+        out.write(DerValue.tag_ObjectId, contents());
+    }
 
-        /*
-         * Now that we've constructed the component, encode
-         * it in the stream we were given.
-         */
-        out.write(DerValue.tag_ObjectId, bytes);
+    /*
+     * Returns the DER contents of this ID, computed once.  The first
+     * two components share the first sub ID.
+     */
+    private byte[] contents() {
+        byte[] retval = contents;
+        if (retval == null) {
+            DerOutputStream bytes = new DerOutputStream();
+
+            putComponentBigInt(bytes,
+                    components[0].multiply(BigInteger.valueOf(40)).add(components[1]));
+            for (int i = 2; i < componentLen; i++)
+                putComponentBigInt(bytes, components[i]);
+
+            retval = bytes.toByteArray();
+            contents = retval;
+        }
+        return retval;
     }
 
     /*
@@ -303,8 +317,7 @@ final public class ObjectIdentifier implements Serializable {
      * big-endian form, so it buffers the output until it's ready.
      * (Minimum length encoding is a DER requirement.)
      */
-    private static void putComponentBigInt(DerOutputStream out, BigInteger val)
-            throws IOException {
+    private static void putComponentBigInt(DerOutputStream out, BigInteger val) {
         int i;
         int blockSize = 100;
         byte buf[] = new byte[blockSize];
@@ -381,7 +394,10 @@ final public class ObjectIdentifier implements Serializable {
 
     @Override
     public int hashCode() {
-        int h = 0;
+        int h = hash;
+        if (h != 0)
+            return h;
+
         int oflow = 0;
 
         for (int i = 0; i < componentLen; i++) {
@@ -390,6 +406,7 @@ final public class ObjectIdentifier implements Serializable {
             h += components[i].intValue();
             h ^= oflow;
         }
+        hash = h;
         return h;
     }
 
@@ -401,7 +418,11 @@ final public class ObjectIdentifier implements Serializable {
      */
     @Override
     public String toString() {
-        StringBuffer retval = new StringBuffer();
+        String s = string;
+        if (s != null)
+            return s;
+
+        StringBuilder retval = new StringBuilder();
 
         int i;
 
@@ -410,7 +431,9 @@ final public class ObjectIdentifier implements Serializable {
                 retval.append(".");
             retval.append(components[i]);
         }
-        return retval.toString();
+        s = retval.toString();
+        string = s;
+        return s;
     }
 
     /*
@@ -421,8 +444,109 @@ final public class ObjectIdentifier implements Serializable {
     private BigInteger components[]; // path from root
     private int componentLen; // how much is used.
 
+    // computed on demand; an ID never changes once constructed
+    private transient volatile String string;
+    private transient volatile byte[] contents;
+    private transient int hash;
+
     private static final int allocationQuantum = 5; // >= 2
 
+    /*
+     * The registry of shared IDs.  Registered IDs are indexed both by
+     * value and by DER contents, so that a decoder can find the shared
+     * instance before building a new one.  IDs found while decoding are
+     * only added while the registry is below maxDecoded entries, so that
+     * input cannot grow it without bound.
+     */
+    private static final int maxDecoded = 4096;
+
+    private static final ConcurrentHashMap<ObjectIdentifier, ObjectIdentifier> registry =
+            new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Contents, ObjectIdentifier> byContents =
+            new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, ObjectIdentifier> byString =
+            new ConcurrentHashMap<>();
+
+    /*
+     * A range of a byte array holding the DER contents of an ID.
+     */
+    private static final class Contents {
+        private final byte[] buf;
+        private final int offset;
+        private final int length;
+        private final int hash;
+
+        Contents(byte[] buf, int offset, int length) {
+            this.buf = buf;
+            this.offset = offset;
+            this.length = length;
+
+            int h = 1;
+            for (int i = offset; i < offset + length; i++)
+                h = 31 * h + buf[i];
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Contents))
+                return false;
+            Contents that = (Contents) other;
+            return Arrays.equals(buf, offset, offset + length,
+                    that.buf, that.offset, that.offset + that.length);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Returns the shared instance of an object identifier, registering
+     * this one if no equal identifier is registered yet.
+     *
+     * @param oid the object identifier.
+     * @return the registered identifier equal to <code>oid</code>.
+     */
+    public static ObjectIdentifier intern(ObjectIdentifier oid) {
+        ObjectIdentifier shared = registry.get(oid);
+        if (shared != null)
+            return shared;
+
+        if (oid.componentLen < 2)
+            return oid;
+
+        shared = registry.putIfAbsent(oid, oid);
+        if (shared != null)
+            return shared;
+
+        byte[] bytes = oid.contents();
+        byContents.putIfAbsent(new Contents(bytes, 0, bytes.length), oid);
+        return oid;
+    }
+
+    /*
+     * Returns the registered ID whose DER contents are in the given
+     * range, or null.
+     */
+    static ObjectIdentifier lookup(byte[] buf, int offset, int length) {
+        return byContents.get(new Contents(buf, offset, length));
+    }
+
+    /*
+     * Returns the shared instance of a decoded ID, registering it if
+     * the registry has room.
+     */
+    static ObjectIdentifier internDecoded(ObjectIdentifier oid) {
+        ObjectIdentifier shared = registry.get(oid);
+        if (shared != null)
+            return shared;
+        if (registry.size() >= maxDecoded)
+            return oid;
+        return intern(oid);
+    }
+
     /**
      * Netscape Enhancement:
      * This function implements a object identifier factory. It
@@ -433,7 +557,11 @@ final public class ObjectIdentifier implements Serializable {
      * Notes:
      * This function never returns null. IOException is raised
      * in error conditions.
+     *
+     * @deprecated no longer used; identifiers are shared through
+     *             {@link #intern}.
      */
+    @Deprecated
     public static Hashtable<String, ObjectIdentifier> mOIDs = new Hashtable<>();
 
     public static ObjectIdentifier getObjectIdentifier(String oid)
@@ -445,7 +573,7 @@ final public class ObjectIdentifier implements Serializable {
 
         oid = oid.trim();
 
-        ObjectIdentifier thisOID = mOIDs.get(oid);
+        ObjectIdentifier thisOID = byString.get(oid);
         if (thisOID != null)
             return thisOID;
 
@@ -458,7 +586,9 @@ final public class ObjectIdentifier implements Serializable {
             if (value >= 0 && value <= 39) {
                 thisOID = new ObjectIdentifier(oid);
                 if (thisOID.toString().equals(oid)) {
-                    mOIDs.put(oid, thisOID);
+                    thisOID = internDecoded(thisOID);
+                    if (byString.size() < maxDecoded)
+                        byString.putIfAbsent(oid, thisOID);
                     return thisOID;
                 }
                 throw new IOException("invalid oid " + oid);
@@ -26,6 +26,8 @@ import java.security.NoSuchProviderException;
 import java.security.spec.InvalidParameterSpecException;
 import java.security.spec.MGF1ParameterSpec;
 import java.security.spec.PSSParameterSpec;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.mozilla.jss.netscape.security.util.DerEncoder;
@@ -452,72 +454,7 @@ public class AlgorithmId implements Serializable, DerEncoder {
      * is commonly associated with multiple OIDs.
      */
     private static ObjectIdentifier algOID(String name) {
-        // Digesting algorithms
-
-        if (name.equals("MD5"))
-            return AlgorithmId.MD5_oid;
-        if (name.equals("MD2"))
-            return AlgorithmId.MD2_oid;
-        if (name.equals("SHA") || name.equals("SHA1")
-                || name.equals("SHA-1"))
-            return AlgorithmId.SHA_oid;
-        if (name.equals("SHA256") || name.equals("SHA-256"))
-            return AlgorithmId.SHA256_oid;
-        if (name.equals("SHA512") || name.equals("SHA-512"))
-            return AlgorithmId.SHA512_oid;
-
-        // Various public key algorithms
-
-        if (name.equals("RSA"))
-            return AlgorithmId.RSA_oid;
-
-        if (name.equals("RSAEncryption"))
-            return AlgorithmId.RSAEncryption_oid;
-        if (name.equals("Diffie-Hellman") || name.equals("DH"))
-            return AlgorithmId.DH_oid;
-        if (name.equals("DSA"))
-            return AlgorithmId.DSA_oid;
-
-        // Common signature types
-
-        if (name.equals("SHA1withEC") || name.equals("SHA1/EC")
-                || name.equals("1.2.840.10045.4.1"))
-            return AlgorithmId.sha1WithEC_oid;
-        if (name.equals("SHA224withEC") || name.equals("SHA224/EC")
-                || name.equals("1.2.840.10045.4.3.1"))
-            return AlgorithmId.sha224WithEC_oid;
-        if (name.equals("SHA256withEC") || name.equals("SHA256/EC")
-                || name.equals("1.2.840.10045.4.3.2"))
-            return AlgorithmId.sha256WithEC_oid;
-        if (name.equals("SHA384withEC") || name.equals("SHA384/EC")
-                || name.equals("1.2.840.10045.4.3.3"))
-            return AlgorithmId.sha384WithEC_oid;
-        if (name.equals("SHA512withEC") || name.equals("SHA512/EC")
-                || name.equals("1.2.840.10045.4.3.4"))
-            return AlgorithmId.sha512WithEC_oid;
-        if (name.equals("SHA1withRSA") || name.equals("SHA1/RSA")
-                || name.equals("1.2.840.113549.1.1.5"))
-            return AlgorithmId.sha1WithRSAEncryption_oid;
-        if (name.equals("SHA256withRSA") || name.equals("SHA256/RSA")
-                || name.equals("1.2.840.113549.1.1.11"))
-            return AlgorithmId.sha256WithRSAEncryption_oid;
-        if (name.equals("SHA384withRSA") || name.equals("SHA384/RSA")
-                || name.equals("1.2.840.113549.1.1.12"))
-            return AlgorithmId.sha384WithRSAEncryption_oid;
-        if (name.equals("SHA512withRSA") || name.equals("SHA512/RSA")
-                || name.equals("1.2.840.113549.1.1.13"))
-            return AlgorithmId.sha512WithRSAEncryption_oid;
-        if (name.equals("MD5withRSA") || name.equals("MD5/RSA"))
-            return AlgorithmId.md5WithRSAEncryption_oid;
-        if (name.equals("MD2withRSA") || name.equals("MD2/RSA"))
-            return AlgorithmId.md2WithRSAEncryption_oid;
-        if (name.equals("SHAwithDSA") || name.equals("SHA1withDSA")
-                || name.equals("SHA/DSA") || name.equals("SHA1/DSA"))
-            return AlgorithmId.sha1WithDSA_oid;
-        if (name.equals("SHA256withRSA/PSS") || name.equals("SHA384withRSA/PSS") || name.equals("SHA512withRSA/PSS"))
-            return AlgorithmId.rsaPSS_oid;
-
-        return null;
+        return name2OID.get(name);
     }
 
     /*
@@ -531,20 +468,6 @@ public class AlgorithmId implements Serializable, DerEncoder {
      * Such names are noted below.
      */
     private String algName() {
-        // Common message digest algorithms
-        if (algid.equals(AlgorithmId.MD5_oid))
-            return "MD5"; // RFC 1423
-        if (algid.equals(AlgorithmId.MD2_oid))
-            return "MD2"; // RFC 1423
-        if (algid.equals(AlgorithmId.SHA_oid))
-            return "SHA";
-        if (algid.equals(AlgorithmId.SHA256_oid))
-            return "SHA256";
-        if (algid.equals(AlgorithmId.SHA384_oid))
-            return "SHA384";
-        if (algid.equals(AlgorithmId.SHA512_oid))
-            return "SHA512";
-
         if (algid.equals(AlgorithmId.rsaPSS_oid)) {
             if (cachedAlgName != null) {
                 return cachedAlgName;
@@ -567,46 +490,9 @@ public class AlgorithmId implements Serializable, DerEncoder {
             return cachedAlgName;
         }
 
-        // Common key types
-
-        if (algid.equals(AlgorithmId.ANSIX962_EC_Public_Key_oid))
-            return "EC";
-        if (algid.equals(AlgorithmId.RSAEncryption_oid)
-                || algid.equals(AlgorithmId.RSA_oid))
-            return "RSA";
-        if (algid.equals(AlgorithmId.DH_oid)
-                || algid.equals(AlgorithmId.DH_PKIX_oid))
-            return "Diffie-Hellman";
-        if (algid.equals(AlgorithmId.DSA_oid)
-                || algid.equals(AlgorithmId.DSA_OIW_oid))
-            return "DSA";
-
-        // Common signature types
-
-        if (algid.equals(AlgorithmId.sha1WithEC_oid))
-            return "SHA1withEC";
-        if (algid.equals(AlgorithmId.sha256WithEC_oid))
-            return "SHA256withEC";
-        if (algid.equals(AlgorithmId.sha384WithEC_oid))
-            return "SHA384withEC";
-        if (algid.equals(AlgorithmId.sha512WithEC_oid))
-            return "SHA512withEC";
-        if (algid.equals(AlgorithmId.md5WithRSAEncryption_oid))
-            return "MD5withRSA";
-        if (algid.equals(AlgorithmId.md2WithRSAEncryption_oid))
-            return "MD2withRSA";
-        if (algid.equals(AlgorithmId.sha1WithRSAEncryption_oid))
-            return "SHA1withRSA";
-        if (algid.equals(AlgorithmId.sha256WithRSAEncryption_oid))
-            return "SHA256withRSA";
-        if (algid.equals(AlgorithmId.sha384WithRSAEncryption_oid))
-            return "SHA384withRSA";
-        if (algid.equals(AlgorithmId.sha512WithRSAEncryption_oid))
-            return "SHA512withRSA";
-        if (algid.equals(AlgorithmId.sha1WithDSA_oid)
-                || algid.equals(AlgorithmId.sha1WithDSA_OIW_oid)
-                || algid.equals(AlgorithmId.shaWithDSA_OIW_oid))
-            return "SHA1withDSA";
+        String name = oid2Name.get(algid);
+        if (name != null)
+            return name;
 
         // default returns a dot-notation ID
 
@@ -1083,4 +969,88 @@ public class AlgorithmId implements Serializable, DerEncoder {
      * All supported signing algorithms.
      */
     public static final String[] ALL_SIGNING_ALGORITHMS = ArrayUtils.addAll(RSA_SIGNING_ALGORITHMS, EC_SIGNING_ALGORITHMS);
+
+    /*
+     * The names returned by algName() and the OIDs returned by algOID(),
+     * filled in when the class is loaded and only read afterwards.  The
+     * OIDs are registered as shared ObjectIdentifier instances.
+     */
+    private static final Map<ObjectIdentifier, String> oid2Name = new HashMap<>();
+    private static final Map<String, ObjectIdentifier> name2OID = new HashMap<>();
+
+    static {
+        // Common message digest algorithms
+        addName(MD5_oid, "MD5"); // RFC 1423
+        addName(MD2_oid, "MD2"); // RFC 1423
+        addName(SHA_oid, "SHA");
+        addName(SHA256_oid, "SHA256");
+        addName(SHA384_oid, "SHA384");
+        addName(SHA512_oid, "SHA512");
+
+        addOID(MD5_oid, "MD5");
+        addOID(MD2_oid, "MD2");
+        addOID(SHA_oid, "SHA", "SHA1", "SHA-1");
+        addOID(SHA256_oid, "SHA256", "SHA-256");
+        addOID(SHA512_oid, "SHA512", "SHA-512");
+
+        // Common key types
+        addName(ANSIX962_EC_Public_Key_oid, "EC");
+        addName(RSAEncryption_oid, "RSA");
+        addName(RSA_oid, "RSA");
+        addName(DH_oid, "Diffie-Hellman");
+        addName(DH_PKIX_oid, "Diffie-Hellman");
+        addName(DSA_oid, "DSA");
+        addName(DSA_OIW_oid, "DSA");
+
+        addOID(RSA_oid, "RSA");
+        addOID(RSAEncryption_oid, "RSAEncryption");
+        addOID(DH_oid, "Diffie-Hellman", "DH");
+        addOID(DSA_oid, "DSA");
+
+        // Common signature types
+        addName(sha1WithEC_oid, "SHA1withEC");
+        addName(sha256WithEC_oid, "SHA256withEC");
+        addName(sha384WithEC_oid, "SHA384withEC");
+        addName(sha512WithEC_oid, "SHA512withEC");
+        addName(md5WithRSAEncryption_oid, "MD5withRSA");
+        addName(md2WithRSAEncryption_oid, "MD2withRSA");
+        addName(sha1WithRSAEncryption_oid, "SHA1withRSA");
+        addName(sha256WithRSAEncryption_oid, "SHA256withRSA");
+        addName(sha384WithRSAEncryption_oid, "SHA384withRSA");
+        addName(sha512WithRSAEncryption_oid, "SHA512withRSA");
+        addName(sha1WithDSA_oid, "SHA1withDSA");
+        addName(sha1WithDSA_OIW_oid, "SHA1withDSA");
+        addName(shaWithDSA_OIW_oid, "SHA1withDSA");
+
+        addOID(sha1WithEC_oid, "SHA1withEC", "SHA1/EC", "1.2.840.10045.4.1");
+        addOID(sha224WithEC_oid, "SHA224withEC", "SHA224/EC", "1.2.840.10045.4.3.1");
+        addOID(sha256WithEC_oid, "SHA256withEC", "SHA256/EC", "1.2.840.10045.4.3.2");
+        addOID(sha384WithEC_oid, "SHA384withEC", "SHA384/EC", "1.2.840.10045.4.3.3");
+        addOID(sha512WithEC_oid, "SHA512withEC", "SHA512/EC", "1.2.840.10045.4.3.4");
+        addOID(sha1WithRSAEncryption_oid, "SHA1withRSA", "SHA1/RSA", "1.2.840.113549.1.1.5");
+        addOID(sha256WithRSAEncryption_oid, "SHA256withRSA", "SHA256/RSA", "1.2.840.113549.1.1.11");
+        addOID(sha384WithRSAEncryption_oid, "SHA384withRSA", "SHA384/RSA", "1.2.840.113549.1.1.12");
+        addOID(sha512WithRSAEncryption_oid, "SHA512withRSA", "SHA512/RSA", "1.2.840.113549.1.1.13");
+        addOID(md5WithRSAEncryption_oid, "MD5withRSA", "MD5/RSA");
+        addOID(md2WithRSAEncryption_oid, "MD2withRSA", "MD2/RSA");
+        addOID(sha1WithDSA_oid, "SHAwithDSA", "SHA1withDSA", "SHA/DSA", "SHA1/DSA");
+        addOID(rsaPSS_oid, "SHA256withRSA/PSS", "SHA384withRSA/PSS", "SHA512withRSA/PSS");
+
+        // the remaining OIDs only need to be shared
+        ObjectIdentifier.intern(SHA384_oid);
+        ObjectIdentifier.intern(MGF1_oid);
+        ObjectIdentifier.intern(ANSIX962_SHA1_With_EC_oid);
+        ObjectIdentifier.intern(sha1WithRSAEncryption_OIW_oid);
+    }
+
+    private static void addName(ObjectIdentifier oid, String name) {
+        ObjectIdentifier.intern(oid);
+        oid2Name.put(oid, name);
+    }
+
+    private static void addOID(ObjectIdentifier oid, String... names) {
+        ObjectIdentifier.intern(oid);
+        for (String name : names)
+            name2OID.put(name, oid);
+    }
 }
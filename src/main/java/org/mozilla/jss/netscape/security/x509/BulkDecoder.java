@@ -0,0 +1,288 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2007 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.x509;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.mozilla.jss.netscape.security.util.Cert;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.util.Utils;
+
+/**
+ * Decodes large numbers of certificates or CRLs in parallel.
+ * <p>
+ * The input is an iterator of encoded objects, each either DER or PEM
+ * (base64, with or without the BEGIN/END lines). Objects are decoded on a
+ * ForkJoinPool and returned in input order, one {@link Result} per object;
+ * an object which cannot be decoded yields a result holding the error
+ * rather than ending the iteration. At most <code>window</code> objects
+ * are read ahead of the caller, which bounds the memory used however long
+ * the input is.
+ * <p>
+ * The workers share the static decoding caches, such as the
+ * ObjectIdentifier registry and the OIDMap extension factories, which
+ * are read without locking.
+ *
+ * <pre>
+ * BulkDecoder decoder = new BulkDecoder();
+ * Iterator&lt;Result&lt;X509CertImpl&gt;&gt; certs =
+ *         decoder.decodeCertificates(BulkDecoder.readPEM(reader));
+ * while (certs.hasNext()) {
+ *     Result&lt;X509CertImpl&gt; result = certs.next();
+ *     ...
+ * }
+ * </pre>
+ */
+public class BulkDecoder {
+
+    /**
+     * Decodes one DER encoded object.
+     */
+    @FunctionalInterface
+    public interface Decoder<T> {
+        T decode(byte[] der) throws Exception;
+    }
+
+    /**
+     * The outcome of decoding one object: either the decoded object or
+     * the error which prevented it.
+     */
+    public static final class Result<T> {
+
+        private final long index;
+        private final T value;
+        private final Exception error;
+
+        Result(long index, T value, Exception error) {
+            this.index = index;
+            this.value = value;
+            this.error = error;
+        }
+
+        /**
+         * Returns the position of the object in the input, starting at 0.
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the decoded object, or null if decoding failed.
+         */
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the error which prevented decoding, or null.
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int window;
+
+    /**
+     * Creates a decoder using the common ForkJoinPool, reading at most
+     * four objects per worker ahead of the caller.
+     */
+    public BulkDecoder() {
+        this(ForkJoinPool.commonPool(), 4 * ForkJoinPool.commonPool().getParallelism());
+    }
+
+    /**
+     * Creates a decoder.
+     *
+     * @param pool the pool decoding the objects.
+     * @param window the maximum number of objects read ahead of the
+     *            caller.
+     */
+    public BulkDecoder(ForkJoinPool pool, int window) {
+        if (window < 1)
+            throw new IllegalArgumentException("Invalid window: " + window);
+        this.pool = pool;
+        this.window = window;
+    }
+
+    /**
+     * Decodes certificates.
+     *
+     * @param blobs the DER or PEM encoded certificates.
+     * @return the results, in input order.
+     */
+    public Iterator<Result<X509CertImpl>> decodeCertificates(Iterator<byte[]> blobs) {
+        return decode(blobs, X509CertImpl::new);
+    }
+
+    /**
+     * Decodes CRLs.
+     *
+     * @param blobs the DER or PEM encoded CRLs.
+     * @return the results, in input order.
+     */
+    public Iterator<Result<X509CRLImpl>> decodeCRLs(Iterator<byte[]> blobs) {
+        return decode(blobs, X509CRLImpl::new);
+    }
+
+    /**
+     * Decodes objects with the given decoder.
+     *
+     * @param blobs the DER or PEM encoded objects.
+     * @param decoder the decoder, called with the DER encoding of each
+     *            object from the pool's threads.
+     * @return the results, in input order.
+     */
+    public <T> Iterator<Result<T>> decode(Iterator<byte[]> blobs, Decoder<T> decoder) {
+        return new ResultIterator<>(blobs, decoder);
+    }
+
+    private final class ResultIterator<T> implements Iterator<Result<T>> {
+
+        private final Iterator<byte[]> blobs;
+        private final Decoder<T> decoder;
+        private final ArrayDeque<ForkJoinTask<Result<T>>> pending = new ArrayDeque<>();
+        private long index;
+
+        ResultIterator(Iterator<byte[]> blobs, Decoder<T> decoder) {
+            this.blobs = blobs;
+            this.decoder = decoder;
+        }
+
+        private void fill() {
+            while (pending.size() < window && blobs.hasNext()) {
+                byte[] blob = blobs.next();
+                long i = index++;
+                pending.add(pool.submit(() -> decodeOne(i, blob, decoder)));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            fill();
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public Result<T> next() {
+            fill();
+            ForkJoinTask<Result<T>> task = pending.poll();
+            if (task == null)
+                throw new NoSuchElementException();
+            return task.join();
+        }
+    }
+
+    private static <T> Result<T> decodeOne(long index, byte[] blob, Decoder<T> decoder) {
+        try {
+            return new Result<>(index, decoder.decode(toDER(blob)), null);
+        } catch (Exception e) {
+            return new Result<>(index, null, e);
+        }
+    }
+
+    /**
+     * Returns the DER encoding held in a DER or PEM encoded object.
+     */
+    static byte[] toDER(byte[] blob) throws IOException {
+        if (blob.length > 0 && blob[0] == DerValue.tag_Sequence)
+            return blob;
+
+        String text = new String(blob, StandardCharsets.US_ASCII);
+        int begin = text.indexOf("-----BEGIN ");
+        if (begin >= 0) {
+            int start = text.indexOf("-----", begin + 11);
+            int end = text.indexOf("-----END ", begin);
+            if (start < 0 || end < start)
+                throw new IOException("Invalid PEM data");
+            text = text.substring(start + 5, end);
+        }
+
+        byte[] der = Utils.base64decode(Cert.normalizeCertStr(text.trim()));
+        if (der.length == 0)
+            throw new IOException("Invalid base64 data");
+        return der;
+    }
+
+    /**
+     * Returns the PEM blocks read from a reader, such as a file of
+     * concatenated PEM certificates. Text outside of the BEGIN and END
+     * lines is skipped. Read errors are thrown as UncheckedIOException.
+     *
+     * @param reader the reader.
+     * @return the PEM blocks, including their BEGIN and END lines.
+     */
+    public static Iterator<byte[]> readPEM(BufferedReader reader) {
+        return new Iterator<>() {
+
+            private byte[] next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null)
+                    next = readBlock();
+                return next != null;
+            }
+
+            @Override
+            public byte[] next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                byte[] block = next;
+                next = null;
+                return block;
+            }
+
+            private byte[] readBlock() {
+                try {
+                    StringBuilder block = null;
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (block == null) {
+                            if (line.startsWith("-----BEGIN "))
+                                block = new StringBuilder();
+                            else
+                                continue;
+                        }
+                        block.append(line).append('\n');
+                        if (line.startsWith("-----END "))
+                            return block.toString().getBytes(StandardCharsets.US_ASCII);
+                    }
+                    if (block != null)
+                        throw new IOException("PEM block not terminated");
+                    return null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+}
@@ -197,6 +197,15 @@ public class CRLDistributionPoint implements ASN1Value {
     @Override
     public void encode(Tag implicitTag, OutputStream ostream)
             throws IOException {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(implicitTag, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag implicitTag) throws IOException {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(implicitTag);
+    }
+
+    private SEQUENCE toSEQUENCE() throws IOException {
         SEQUENCE seq = new SEQUENCE();
         DerOutputStream derOut;
 
@@ -235,13 +244,13 @@ public class CRLDistributionPoint implements ASN1Value {
                 seq.addElement(Tag.get(2), CRLIssuerEncoding);
             }
 
-            seq.encode(implicitTag, ostream);
-
         } catch (InvalidBERException e) {
             // this shouldn't happen unless there is a bug in one of
             // the Sun encoding classes
             throw new IOException(e.toString());
         }
+
+        return seq;
     }
 
     // Template singleton
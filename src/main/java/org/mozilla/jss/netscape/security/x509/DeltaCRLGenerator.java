@@ -0,0 +1,192 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2007 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.x509;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.cert.CRLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+
+/**
+ * Computes the delta between a base CRL and the current set of revoked
+ * certificates, and builds the corresponding delta CRL.
+ * <p>
+ * The base CRL is parsed with indexed entries (see
+ * {@link X509CRLImpl#X509CRLImpl(byte[], boolean, boolean)}), so only its
+ * encoding and a compact serial number index are held. The current entries
+ * are streamed once; only the changes are kept:
+ * <ul>
+ * <li>entries that are not on the base CRL,
+ * <li>entries whose encoding differs from the base CRL, for example
+ * because the revocation reason changed,
+ * <li>base CRL entries that are no longer revoked, listed with the
+ * removeFromCRL reason as described in RFC 5280 section 5.2.4.
+ * </ul>
+ *
+ * <pre>
+ * DeltaCRLGenerator generator = new DeltaCRLGenerator(baseCRL);
+ * X509CRLBuilder builder = generator.createBuilder(
+ *         issuer, thisUpdate, nextUpdate, crlNumber, currentEntries);
+ * builder.sign(privateKey, "SHA256withRSA", out);
+ * </pre>
+ */
+public class DeltaCRLGenerator {
+
+    private final X509CRLImpl baseCRL;
+    private final BigInteger baseCRLNumber;
+
+    /**
+     * Creates a generator for deltas against the given base CRL.
+     *
+     * @param baseCRL the DER encoded base CRL. It must carry a CRL number
+     *            and must not itself be a delta CRL.
+     * @exception CRLException on parsing errors, or if the CRL is not a
+     *                suitable base CRL.
+     * @exception X509ExtensionException on extension handling errors.
+     */
+    public DeltaCRLGenerator(byte[] baseCRL)
+            throws CRLException, X509ExtensionException {
+        this.baseCRL = new X509CRLImpl(baseCRL, true, true);
+
+        if (this.baseCRL.isDeltaCRL())
+            throw new CRLException("Base CRL is a delta CRL");
+
+        baseCRLNumber = this.baseCRL.getCRLNumber();
+        if (baseCRLNumber == null)
+            throw new CRLException("Base CRL has no CRL number");
+    }
+
+    /**
+     * Returns the CRL number of the base CRL.
+     */
+    public BigInteger getBaseCRLNumber() {
+        return baseCRLNumber;
+    }
+
+    /**
+     * Returns the changes between the base CRL and the current revoked
+     * certificates. The current entries are traversed once.
+     *
+     * @param current the revoked certificates that a full CRL issued now
+     *            would contain.
+     * @return the entries of the delta CRL.
+     * @exception CRLException on encoding or parsing errors.
+     * @exception X509ExtensionException on extension handling errors.
+     */
+    public List<RevokedCertificate> getChanges(
+            Iterable<? extends RevokedCertificate> current)
+            throws CRLException, X509ExtensionException {
+        RevokedCertIndex index = baseCRL.getRevokedIndex();
+        BitSet seen = new BitSet(index == null ? 0 : index.entryCount());
+        List<RevokedCertificate> changes = new ArrayList<>();
+
+        for (RevokedCertificate entry : current) {
+            int i = index == null ? -1 : index.indexOf(entry.getSerialNumber());
+            if (i < 0) {
+                changes.add(entry);
+                continue;
+            }
+
+            seen.set(i);
+            if (!index.matches(i, encode(entry)))
+                changes.add(entry);
+        }
+
+        if (index == null)
+            return changes;
+
+        for (int i = seen.nextClearBit(0); i < index.entryCount();
+                i = seen.nextClearBit(i + 1)) {
+            if (!index.isListed(i))
+                continue;
+
+            RevokedCertImpl removed = index.decode(i);
+            changes.add(removedEntry(removed.getSerialNumber(),
+                                     removed.getRevocationDate()));
+        }
+
+        return changes;
+    }
+
+    /**
+     * Computes the changes against the base CRL and returns a builder for
+     * the delta CRL. The builder carries a CRL number extension and a
+     * critical delta CRL indicator extension naming the base CRL; more
+     * extensions can be added through its getExtensions().
+     *
+     * @param issuer the name of the CA issuing the delta CRL.
+     * @param thisDate the Date of this issue.
+     * @param nextDate the Date of the next delta CRL, or null.
+     * @param crlNumber the CRL number of the delta CRL.
+     * @param current the revoked certificates that a full CRL issued now
+     *            would contain.
+     * @exception CRLException on encoding or parsing errors.
+     * @exception X509ExtensionException on extension handling errors.
+     */
+    public X509CRLBuilder createBuilder(X500Name issuer, Date thisDate,
+            Date nextDate, BigInteger crlNumber,
+            Iterable<? extends RevokedCertificate> current)
+            throws CRLException, X509ExtensionException {
+        if (crlNumber == null || crlNumber.compareTo(baseCRLNumber) <= 0)
+            throw new CRLException("Delta CRL number must be greater than " +
+                                   baseCRLNumber);
+
+        X509CRLBuilder builder = new X509CRLBuilder(issuer, thisDate, nextDate);
+        builder.setRevokedCertificates(getChanges(current));
+
+        try {
+            CRLExtensions exts = new CRLExtensions();
+            exts.set(CRLNumberExtension.NAME,
+                     new CRLNumberExtension(crlNumber));
+            exts.set(DeltaCRLIndicatorExtension.NAME,
+                     new DeltaCRLIndicatorExtension(baseCRLNumber));
+            builder.setExtensions(exts);
+        } catch (IOException e) {
+            throw new X509ExtensionException(e.getMessage(), e);
+        }
+
+        return builder;
+    }
+
+    private static RevokedCertImpl removedEntry(BigInteger serial, Date date)
+            throws X509ExtensionException {
+        try {
+            CRLExtensions exts = new CRLExtensions();
+            exts.set(CRLReasonExtension.NAME,
+                     new CRLReasonExtension(RevocationReason.REMOVE_FROM_CRL));
+            return new RevokedCertImpl(serial, date, exts);
+        } catch (IOException e) {
+            throw new X509ExtensionException(e.getMessage(), e);
+        }
+    }
+
+    private static byte[] encode(RevokedCertificate entry)
+            throws CRLException, X509ExtensionException {
+        if (entry instanceof RevokedCertImpl) {
+            DerOutputStream out = new DerOutputStream();
+            ((RevokedCertImpl) entry).encode(out);
+            return out.toByteArray();
+        }
+        return entry.getEncoded();
+    }
+}
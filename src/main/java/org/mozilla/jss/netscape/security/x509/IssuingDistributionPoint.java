@@ -27,6 +27,7 @@ import org.mozilla.jss.netscape.security.util.BitArray;
 import org.mozilla.jss.netscape.security.util.DerOutputStream;
 
 import org.mozilla.jss.asn1.ANY;
+import org.mozilla.jss.asn1.ASN1Util;
 import org.mozilla.jss.asn1.ASN1Value;
 import org.mozilla.jss.asn1.BOOLEAN;
 import org.mozilla.jss.asn1.EXPLICIT;
@@ -221,6 +222,15 @@ public class IssuingDistributionPoint implements ASN1Value {
     @Override
     public void encode(Tag implicitTag, OutputStream ostream)
             throws IOException {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(implicitTag, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag implicitTag) throws IOException {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(implicitTag);
+    }
+
+    private SEQUENCE toSEQUENCE() throws IOException {
 
         SEQUENCE seq = new SEQUENCE();
         DerOutputStream derOut;
@@ -265,13 +275,13 @@ public class IssuingDistributionPoint implements ASN1Value {
                 seq.addElement(Tag.get(4), new BOOLEAN(true));
             }
 
-            seq.encode(implicitTag, ostream);
-
         } catch (InvalidBERException e) {
             // this shouldn't happen unless there is a bug in one of
             // the Sun encoding classes
             throw new IOException(e.toString());
         }
+
+        return seq;
     }
 
     public static void main(String args[]) {
@@ -20,17 +20,31 @@ package org.mozilla.jss.netscape.security.x509;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.security.cert.CertificateException;
-import java.util.Hashtable;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.mozilla.jss.netscape.security.extensions.ExtendedKeyUsageExtension;
 import org.mozilla.jss.netscape.security.util.ObjectIdentifier;
 
 /**
  * This class defines the mapping from OID and name to classes and vice
  * versa. Used by CertificateExtensions and PKCS10 to get the java
  * classes associated with a particular OID/name.
+ * <p>
+ * Extensions are decoded through an {@link ExtensionFactory} per OID.
+ * Factories for the built-in extension classes are constructor references
+ * registered when this class is loaded; for any other registered class, a
+ * factory is created from its (Boolean, Object) constructor the first time
+ * the OID is seen. Further factories can be added with
+ * {@link #addFactory}.
  *
  * @author Amit Kapoor
  * @author Hemma Prafullchandra
@@ -91,17 +105,83 @@ public class OIDMap {
     private static final String CRL_REASON = ROOT + "." +
                                           CRLReasonExtension.NAME;
 
-    private static final Hashtable<ObjectIdentifier, String> oid2Name = new Hashtable<>();
-    private static final Hashtable<String, ObjectIdentifier> name2OID = new Hashtable<>();
-    private static final Hashtable<String, String> name2Class = new Hashtable<>();
+    // read without locking; writers synchronize on OIDMap.class
+    private static final Map<ObjectIdentifier, String> oid2Name = new ConcurrentHashMap<>();
+    private static final Map<String, ObjectIdentifier> name2OID = new ConcurrentHashMap<>();
+    private static final Map<String, String> name2Class = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an extension from its criticality and the DER encoded
+     * extension value, like the (Boolean, Object) constructor of an
+     * extension class.
+     */
+    @FunctionalInterface
+    public interface ExtensionFactory {
+        Extension create(Boolean critical, Object value)
+                throws IOException, CertificateException;
+    }
+
+    // factories for the built-in extension classes, by class name
+    private static final Map<String, ExtensionFactory> builtinFactories = new HashMap<>();
+
+    // resolved factories, by OID
+    private static final Map<ObjectIdentifier, ExtensionFactory> oid2Factory = new ConcurrentHashMap<>();
 
     // Initialize recognized extensions from EXTENSIONS_{OIDS/CLASSES} files
     static {
+        loadBuiltinFactories();
         loadNames();
         loadClasses();
         addClass(CRLDistributionPointsExtension.class);
     }
 
+    private static void loadBuiltinFactories() {
+        builtinFactories.put(AuthorityKeyIdentifierExtension.class.getName(),
+                AuthorityKeyIdentifierExtension::new);
+        builtinFactories.put(SubjectKeyIdentifierExtension.class.getName(),
+                SubjectKeyIdentifierExtension::new);
+        builtinFactories.put(KeyUsageExtension.class.getName(),
+                KeyUsageExtension::new);
+        builtinFactories.put(PrivateKeyUsageExtension.class.getName(),
+                PrivateKeyUsageExtension::new);
+        builtinFactories.put(PolicyMappingsExtension.class.getName(),
+                PolicyMappingsExtension::new);
+        builtinFactories.put(SubjectAlternativeNameExtension.class.getName(),
+                SubjectAlternativeNameExtension::new);
+        builtinFactories.put(IssuerAlternativeNameExtension.class.getName(),
+                IssuerAlternativeNameExtension::new);
+        builtinFactories.put(BasicConstraintsExtension.class.getName(),
+                BasicConstraintsExtension::new);
+        builtinFactories.put(NameConstraintsExtension.class.getName(),
+                NameConstraintsExtension::new);
+        builtinFactories.put(PolicyConstraintsExtension.class.getName(),
+                PolicyConstraintsExtension::new);
+        builtinFactories.put(CertificatePoliciesExtension.class.getName(),
+                CertificatePoliciesExtension::new);
+        builtinFactories.put(SubjectDirAttributesExtension.class.getName(),
+                SubjectDirAttributesExtension::new);
+        builtinFactories.put(ExtendedKeyUsageExtension.class.getName(),
+                ExtendedKeyUsageExtension::new);
+        builtinFactories.put(CRLNumberExtension.class.getName(),
+                CRLNumberExtension::new);
+        builtinFactories.put(CRLReasonExtension.class.getName(),
+                CRLReasonExtension::new);
+        builtinFactories.put(CRLDistributionPointsExtension.class.getName(),
+                CRLDistributionPointsExtension::new);
+        builtinFactories.put(DeltaCRLIndicatorExtension.class.getName(),
+                DeltaCRLIndicatorExtension::new);
+        builtinFactories.put(FreshestCRLExtension.class.getName(),
+                FreshestCRLExtension::new);
+        builtinFactories.put(HoldInstructionExtension.class.getName(),
+                HoldInstructionExtension::new);
+        builtinFactories.put(InvalidityDateExtension.class.getName(),
+                InvalidityDateExtension::new);
+        builtinFactories.put(CertificateIssuerExtension.class.getName(),
+                CertificateIssuerExtension::new);
+        builtinFactories.put(IssuingDistributionPointExtension.class.getName(),
+                IssuingDistributionPointExtension::new);
+    }
+
     // Load the default name to oid map (EXTENSIONS_OIDS)
     private static void loadNamesDefault(Properties props) {
         props.put(SUB_KEY_IDENTIFIER, "2.5.29.14");
@@ -187,7 +267,7 @@ public class OIDMap {
         while (names.hasNext()) {
             String name = names.next();
             String oidName = props.getProperty(name);
-            ObjectIdentifier oid = new ObjectIdentifier(oidName);
+            ObjectIdentifier oid = ObjectIdentifier.intern(new ObjectIdentifier(oidName));
 
             name2OID.put(name, oid);
             oid2Name.put(oid, name);
@@ -254,9 +334,9 @@ public class OIDMap {
      * @param name the name of the attribute.
      * @exception CertificateException on errors.
      */
-    public static void addAttribute(String className, String oid, String name)
+    public static synchronized void addAttribute(String className, String oid, String name)
             throws CertificateException {
-        ObjectIdentifier objId = new ObjectIdentifier(oid);
+        ObjectIdentifier objId = ObjectIdentifier.intern(new ObjectIdentifier(oid));
         if (oid2Name.get(objId) != null) {
             throw new CertificateException("Object identifier already exists.");
         }
@@ -271,6 +351,75 @@ public class OIDMap {
         name2Class.put(name, className);
     }
 
+    /**
+     * Registers the factory used to decode extensions with the given
+     * OID, replacing any factory derived from the registered class.
+     *
+     * @param oid the object identifier of the extension.
+     * @param factory the factory creating the extension.
+     */
+    public static void addFactory(ObjectIdentifier oid, ExtensionFactory factory) {
+        oid2Factory.put(oid, factory);
+    }
+
+    /**
+     * Returns the factory used to decode extensions with the given OID.
+     *
+     * @param oid the object identifier of the extension.
+     * @return the factory, or null if no factory or class is registered
+     *         for this oid.
+     * @exception CertificateException if the registered class cannot be
+     *                loaded or lacks a (Boolean, Object) constructor.
+     */
+    public static ExtensionFactory getFactory(ObjectIdentifier oid)
+            throws CertificateException {
+        ExtensionFactory factory = oid2Factory.get(oid);
+        if (factory != null)
+            return factory;
+
+        String name = getName(oid);
+        if (name == null)
+            return null;
+        String className = name2Class.get(name);
+        if (className == null)
+            return null;
+
+        factory = builtinFactories.get(className);
+        if (factory == null)
+            factory = constructorFactory(name, className);
+
+        ExtensionFactory current = oid2Factory.putIfAbsent(oid, factory);
+        return current != null ? current : factory;
+    }
+
+    /**
+     * Creates a factory calling the (Boolean, Object) constructor of the
+     * given class through a method handle.
+     */
+    private static ExtensionFactory constructorFactory(String name, String className)
+            throws CertificateException {
+        MethodHandle handle;
+        try {
+            Class<?> extClass = Class.forName(className);
+            Constructor<?> cons = extClass.getConstructor(Boolean.class, Object.class);
+            handle = MethodHandles.publicLookup().unreflectConstructor(cons)
+                    .asType(MethodType.methodType(Object.class, Boolean.class, Object.class));
+        } catch (Exception e) {
+            throw new CertificateException("Error instantiating class for "
+                                   + name + " " + e.getMessage(), e);
+        }
+
+        return (critical, value) -> {
+            try {
+                return (Extension) (Object) handle.invokeExact(critical, value);
+            } catch (IOException | CertificateException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IOException(t);
+            }
+        };
+    }
+
     /**
      * Return user friendly name associated with the OID.
      *
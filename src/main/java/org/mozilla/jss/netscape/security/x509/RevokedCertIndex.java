@@ -0,0 +1,338 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2007 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.x509;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.cert.CRLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.mozilla.jss.netscape.security.util.DerValue;
+
+/**
+ * A compact index over the <code>revokedCertificates</code> of an encoded
+ * CRL.
+ * <p>
+ * The index keeps the DER encoding and two int arrays: the offsets of the
+ * entries in encoding order, and an open-addressing hash table over the
+ * serial numbers of those entries. The serial numbers are compared in
+ * place in the encoding. Entries are decoded into RevokedCertImpl objects
+ * only when they are asked for, so a CRL with millions of entries costs
+ * about twelve bytes per entry on top of its encoding.
+ * <p>
+ * Building the index walks the entries one at a time. It checks that each
+ * entry has the form SEQUENCE { INTEGER, Time, ... }, but it does not
+ * decode entry extensions.
+ */
+final class RevokedCertIndex implements Iterable<RevokedCertificate> {
+
+    private final byte[] der;
+
+    // offsets of the entries in encoding order; -1 marks an entry whose
+    // serial number is repeated by a later entry
+    private final int[] offsets;
+
+    // hash table of (entry number + 1), 0 means empty
+    private final int[] table;
+
+    private final int size;
+
+    /**
+     * Indexes the entries of the <code>revokedCertificates</code>
+     * SEQUENCE encoded in <code>der[start..end)</code>.
+     *
+     * @param der the encoding holding the SEQUENCE; it is not copied.
+     * @param start offset of the SEQUENCE tag.
+     * @param end offset just past the SEQUENCE.
+     * @param allowExtensions false for a v1 CRL, whose entries may not
+     *            carry extensions.
+     * @exception CRLException if an entry is malformed.
+     */
+    RevokedCertIndex(byte[] der, int start, int end, boolean allowExtensions)
+            throws CRLException {
+        this.der = der;
+
+        if (skip(start, DerValue.tag_Sequence, end) != end) {
+            throw new CRLException("Invalid revokedCertificates encoding");
+        }
+
+        int[] entries = new int[16];
+        int count = 0;
+        int pos = contentStart(start);
+
+        while (pos < end) {
+            int entryEnd = skip(pos, DerValue.tag_Sequence, end);
+            int p = contentStart(pos);
+
+            // userCertificate
+            if (p + 1 < entryEnd && der[p + 1] == 0) {
+                throw new CRLException("Empty serial number in CRL entry");
+            }
+            p = skip(p, DerValue.tag_Integer, entryEnd);
+
+            // revocationDate
+            if (p >= entryEnd ||
+                    (der[p] != DerValue.tag_UtcTime &&
+                     der[p] != DerValue.tag_GeneralizedTime)) {
+                throw new CRLException("Invalid revocation date in CRL entry");
+            }
+            p = skip(p, der[p], entryEnd);
+
+            // crlEntryExtensions (optional)
+            if (p < entryEnd && !allowExtensions) {
+                throw new CRLException("Invalid encoding, extensions" +
+                        " not supported in CRL v1 entries.");
+            }
+
+            if (count == entries.length) {
+                entries = Arrays.copyOf(entries, count * 2);
+            }
+            entries[count++] = pos;
+            pos = entryEnd;
+        }
+
+        offsets = Arrays.copyOf(entries, count);
+
+        int capacity = Integer.highestOneBit(Math.max(count, 2) * 2 - 1) << 1;
+        table = new int[capacity];
+
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            int s = serialStart(offsets[i]);
+            int len = serialLength(offsets[i], s);
+            int slot = find(der, s, len, hash(der, s, len));
+
+            if (table[slot] != 0) {
+                // as with a Hashtable, the last entry for a serial wins
+                offsets[table[slot] - 1] = -1;
+            } else {
+                distinct++;
+            }
+            table[slot] = i + 1;
+        }
+        size = distinct;
+    }
+
+    /**
+     * Returns the number of distinct serial numbers in the index.
+     */
+    int size() {
+        return size;
+    }
+
+    boolean contains(BigInteger serialNumber) {
+        return indexOf(serialNumber) >= 0;
+    }
+
+    /**
+     * Returns the number of entries in the encoding, including entries
+     * whose serial number is repeated by a later entry.
+     */
+    int entryCount() {
+        return offsets.length;
+    }
+
+    /**
+     * Returns the position of the entry for the given serial number in
+     * encoding order, or -1 if the serial number is not listed.
+     */
+    int indexOf(BigInteger serialNumber) {
+        if (serialNumber == null || size == 0) {
+            return -1;
+        }
+        byte[] key = serialNumber.toByteArray();
+        int slot = find(key, 0, key.length, hash(key, 0, key.length));
+        return table[slot] - 1;
+    }
+
+    /**
+     * Returns false if the entry at <code>index</code> is superseded by a
+     * later entry for the same serial number.
+     */
+    boolean isListed(int index) {
+        return offsets[index] >= 0;
+    }
+
+    /**
+     * Returns true if the entry at <code>index</code> is encoded exactly
+     * as <code>encoding</code>.
+     */
+    boolean matches(int index, byte[] encoding) {
+        int offset = offsets[index];
+        int end = contentStart(offset) + length(offset);
+        return Arrays.equals(der, offset, end, encoding, 0, encoding.length);
+    }
+
+    /**
+     * Decodes the entry at <code>index</code>.
+     */
+    RevokedCertImpl decode(int index)
+            throws CRLException, X509ExtensionException {
+        return decodeAt(offsets[index]);
+    }
+
+    /**
+     * Decodes the entry for the given serial number.
+     *
+     * @return the entry, or null if the serial number is not listed.
+     */
+    RevokedCertImpl get(BigInteger serialNumber)
+            throws CRLException, X509ExtensionException {
+        int i = indexOf(serialNumber);
+        return i < 0 ? null : decodeAt(offsets[i]);
+    }
+
+    /**
+     * Iterates over the entries in encoding order, decoding each one
+     * as it is reached.
+     */
+    @Override
+    public Iterator<RevokedCertificate> iterator() {
+        return new Iterator<RevokedCertificate>() {
+            private int next = advance(0);
+
+            private int advance(int i) {
+                while (i < offsets.length && offsets[i] < 0) {
+                    i++;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < offsets.length;
+            }
+
+            @Override
+            public RevokedCertificate next() {
+                if (next >= offsets.length) {
+                    throw new NoSuchElementException();
+                }
+                int offset = offsets[next];
+                next = advance(next + 1);
+                try {
+                    return decodeAt(offset);
+                } catch (CRLException | X509ExtensionException e) {
+                    throw new IllegalStateException(
+                            "Unable to decode CRL entry: " + e.getMessage(), e);
+                }
+            }
+        };
+    }
+
+    private RevokedCertImpl decodeAt(int offset)
+            throws CRLException, X509ExtensionException {
+        int end = contentStart(offset) + length(offset);
+        try {
+            return new RevokedCertImpl(DerValue.wrap(der, offset, end - offset));
+        } catch (IOException e) {
+            throw new CRLException("Parsing error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the slot holding the given serial number, or the empty slot
+     * where it belongs.
+     */
+    private int find(byte[] key, int off, int len, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+
+        while (table[slot] != 0) {
+            int entry = offsets[table[slot] - 1];
+            int s = serialStart(entry);
+            if (serialLength(entry, s) == len &&
+                    Arrays.equals(der, s, s + len, key, off, off + len)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(byte[] b, int off, int len) {
+        int h = 1;
+        for (int i = off; i < off + len; i++) {
+            h = 31 * h + b[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /*
+     * Serial numbers are compared in the minimal two's complement form
+     * produced by BigInteger.toByteArray(), which is also the DER form;
+     * redundant leading octets of a BER encoding are skipped.
+     */
+    private int serialStart(int entry) {
+        int s = contentStart(contentStart(entry));
+        int end = s + length(contentStart(entry));
+        while (end - s > 1 &&
+                ((der[s] == 0 && der[s + 1] >= 0) ||
+                 (der[s] == -1 && der[s + 1] < 0))) {
+            s++;
+        }
+        return s;
+    }
+
+    private int serialLength(int entry, int serialStart) {
+        int integer = contentStart(entry);
+        return contentStart(integer) + length(integer) - serialStart;
+    }
+
+    /**
+     * Checks the tag of the element at <code>pos</code> and returns the
+     * offset just past it.
+     */
+    private int skip(int pos, byte tag, int limit) throws CRLException {
+        if (pos + 2 > limit || der[pos] != tag) {
+            throw new CRLException("Invalid CRL entry encoding at offset " + pos);
+        }
+        int start = contentStart(pos);
+        int len = start <= limit ? length(pos) : -1;
+        if (len < 0 || len > limit - start) {
+            throw new CRLException("Invalid CRL entry length at offset " + pos);
+        }
+        return start + len;
+    }
+
+    private int contentStart(int pos) {
+        int b = der[pos + 1] & 0xff;
+        return (b & 0x80) == 0 ? pos + 2 : pos + 2 + (b & 0x7f);
+    }
+
+    private int length(int pos) {
+        int b = der[pos + 1] & 0xff;
+        if ((b & 0x80) == 0) {
+            return b;
+        }
+
+        int n = b & 0x7f;
+        if (n == 0 || n > 4) {
+            // indefinite or absurdly long
+            return -1;
+        }
+
+        int len = 0;
+        for (int i = 0; i < n; i++) {
+            len = (len << 8) | (der[pos + 2 + i] & 0xff);
+        }
+        return len;
+    }
+}
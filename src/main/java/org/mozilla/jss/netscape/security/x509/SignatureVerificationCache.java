@@ -0,0 +1,103 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2007 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.x509;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded set of successful certificate signature verifications,
+ * shared by all X509CertImpl instances. Each entry is the SHA-256 digest
+ * of the encoded certificate, the encoded public key and the provider
+ * name, so an entry only matches the exact certificate bytes that were
+ * verified with that key. Failed verifications are never recorded.
+ * <p>
+ * When the set is full an arbitrary entry is dropped to make room.
+ */
+final class SignatureVerificationCache {
+
+    private static volatile SignatureVerificationCache instance;
+
+    private final int maxSize;
+    private final Set<ByteBuffer> entries = ConcurrentHashMap.newKeySet();
+
+    private SignatureVerificationCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the cache, or null if caching is disabled.
+     */
+    static SignatureVerificationCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Replaces the cache with an empty one holding at most
+     * <code>maxSize</code> entries, or disables caching if
+     * <code>maxSize</code> is not positive.
+     */
+    static void setMaxSize(int maxSize) {
+        instance = maxSize > 0 ? new SignatureVerificationCache(maxSize) : null;
+    }
+
+    /**
+     * Returns the entry for a verification, or null if the key has no
+     * encoding.
+     */
+    static ByteBuffer entry(byte[] cert, PublicKey key, String provider) {
+        byte[] encodedKey = key.getEncoded();
+        if (encodedKey == null)
+            return null;
+
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+
+        // both encodings are self-delimiting DER
+        md.update(cert);
+        md.update(encodedKey);
+        if (provider != null)
+            md.update(provider.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(md.digest());
+    }
+
+    boolean contains(ByteBuffer entry) {
+        return entries.contains(entry);
+    }
+
+    void add(ByteBuffer entry) {
+        if (entries.size() >= maxSize) {
+            Iterator<ByteBuffer> i = entries.iterator();
+            if (i.hasNext()) {
+                i.next();
+                i.remove();
+            }
+        }
+        entries.add(entry);
+    }
+}
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Locale;
 import java.util.Vector;
 
 import org.mozilla.jss.netscape.security.util.DerInputStream;
@@ -43,6 +44,11 @@ import org.mozilla.jss.netscape.security.util.ObjectIdentifier;
  * to be visible to applications.  This limitation, and others, will
  * be lifted over time.</em>
  *
+ * <P>
+ * A name does not change once constructed, so its DER encoding, its DN strings and its
+ * {@link #getComparisonKey comparison key} are computed the first time they are needed and kept.
+ * Names are equal when their DER encodings are.
+ *
  * @author David Brownell
  * @author Amit Kapoor
  * @author Hemma Prafullchandra
@@ -290,9 +296,18 @@ public class X500Name implements Principal, GeneralNameInterface {
 
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + Arrays.hashCode(names);
+        int result = hash;
+        if (result != 0)
+            return result;
+
+        try {
+            result = Arrays.hashCode(encoded());
+        } catch (IOException e) {
+            final int prime = 31;
+            result = 1;
+            result = prime * result + Arrays.hashCode(names);
+        }
+        hash = result;
         return result;
     }
 
@@ -305,9 +320,98 @@ public class X500Name implements Principal, GeneralNameInterface {
         if (getClass() != obj.getClass())
             return false;
         X500Name other = (X500Name) obj;
-        if (!Arrays.equals(names, other.names))
-            return false;
-        return true;
+        try {
+            return Arrays.equals(encoded(), other.encoded());
+        } catch (IOException e) {
+            return Arrays.equals(names, other.names);
+        }
+    }
+
+    /**
+     * Returns a key for matching this name with other names as described
+     * in RFC 5280 section 7.1: string values are compared ignoring case
+     * and leading, trailing and repeated white space, and the attributes
+     * of a multi-valued RDN are compared in any order. Two names match if
+     * their keys are equal.
+     *
+     * @return the comparison key of this name.
+     * @exception IOException if an attribute value cannot be decoded.
+     */
+    public String getComparisonKey() throws IOException {
+        String key = comparisonKey;
+        if (key == null) {
+            key = buildComparisonKey();
+            comparisonKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * Returns whether this name matches another one, comparing their
+     * {@link #getComparisonKey comparison keys}.
+     *
+     * @param other the other name.
+     * @return true if the names match.
+     * @exception IOException if an attribute value cannot be decoded.
+     */
+    public boolean matches(X500Name other) throws IOException {
+        if (equals(other))
+            return true;
+        return getComparisonKey().equals(other.getComparisonKey());
+    }
+
+    private String buildComparisonKey() throws IOException {
+        if (names == null)
+            return "";
+
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            if (i != 0)
+                key.append(',');
+
+            AVA[] avas = names[i].getAssertion();
+            String[] keys = new String[avas.length];
+            for (int j = 0; j < avas.length; j++)
+                keys[j] = avas[j].getOid() + "=" + normalize(avas[j].getValue());
+            Arrays.sort(keys);
+
+            key.append(String.join("+", keys));
+        }
+        return key.toString();
+    }
+
+    /*
+     * Returns the value of an attribute as it appears in a comparison
+     * key.  Separators are escaped so that different names cannot have
+     * the same key.
+     */
+    private static String normalize(DerValue value) throws IOException {
+        String s = value.getASN1CharString();
+        if (s == null) {
+            StringBuilder hex = new StringBuilder("#");
+            for (byte b : value.toByteArray())
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16))
+                   .append(Character.forDigit(b & 0xf, 16));
+            return hex.toString();
+        }
+
+        StringBuilder sb = new StringBuilder(s.length());
+        boolean space = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) {
+                sb.append(' ');
+                space = false;
+            }
+            if (c == '\\' || c == ',' || c == '+' || c == '#' && sb.length() == 0)
+                sb.append('\\');
+            sb.append(c);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
     }
 
     /**
@@ -448,9 +552,7 @@ public class X500Name implements Principal, GeneralNameInterface {
      */
     public String toLdapDNString()
             throws IOException {
-        if (dn == null)
-            generateDN(LdapDNStrConverter.getDefault());
-        return dn;
+        return toLdapDNString(LdapDNStrConverter.getDefault());
     }
 
     /**
@@ -485,9 +587,30 @@ public class X500Name implements Principal, GeneralNameInterface {
     public String toLdapDNString(LdapDNStrConverter ldapDNStrConverter)
             throws IOException {
 
-        if (dn == null)
-            generateDN(ldapDNStrConverter);
-        return dn;
+        if (names == null)
+            return dn;
+
+        DNString[] strings = dnStrings;
+        if (strings != null) {
+            for (DNString string : strings) {
+                if (string.converter == ldapDNStrConverter)
+                    return string.value;
+            }
+        }
+
+        String value = ldapDNStrConverter.encodeDN(this);
+        if (ldapDNStrConverter == LdapDNStrConverter.getDefault())
+            dn = value;
+
+        // keep the most recently used forms, typically LDAP v3 and RFC 1779
+        int count = strings == null ? 1 : Math.min(strings.length + 1, maxDNStrings);
+        DNString[] updated = new DNString[count];
+        updated[0] = new DNString(ldapDNStrConverter, value);
+        if (count > 1)
+            System.arraycopy(strings, 0, updated, 1, count - 1);
+        dnStrings = updated;
+
+        return value;
     }
 
     /**
@@ -521,6 +644,27 @@ public class X500Name implements Principal, GeneralNameInterface {
     private String dn; // RFC 1779 style DN, or null
     private RDN names[]; // RDNs
 
+    // computed on demand; the RDNs never change once constructed
+    private transient volatile DNString[] dnStrings;
+    private transient volatile byte[] encoded;
+    private transient volatile String comparisonKey;
+    private transient int hash;
+
+    private static final int maxDNStrings = 2;
+
+    /*
+     * A DN string and the converter which produced it.
+     */
+    private static final class DNString {
+        final LdapDNStrConverter converter;
+        final String value;
+
+        DNString(LdapDNStrConverter converter, String value) {
+            this.converter = converter;
+            this.value = value;
+        }
+    }
+
     /**
      * Find the first instance of this attribute in a "top down"
      * search of all the attributes in the name.
@@ -592,21 +736,7 @@ public class X500Name implements Principal, GeneralNameInterface {
      */
     @Override
     public void encode(DerOutputStream out) throws IOException {
-        DerOutputStream tmp = new DerOutputStream();
-        int i;
-
-        int len = 0;
-        if (names == null) {
-            len = 0;
-        } else {
-            len = names.length;
-
-        }
-
-        for (i = 0; i < len; i++)
-            names[i].encode(tmp);
-
-        out.write(DerValue.tag_Sequence, tmp);
+        out.write(encoded());
     }
 
     /**
@@ -616,6 +746,17 @@ public class X500Name implements Principal, GeneralNameInterface {
      *         null if no names are present.
      */
     public byte[] getEncoded() throws IOException {
+        return encoded().clone();
+    }
+
+    /*
+     * Returns the DER encoding of this name, computed once.
+     */
+    private byte[] encoded() throws IOException {
+        byte[] retval = encoded;
+        if (retval != null)
+            return retval;
+
         try (DerOutputStream out = new DerOutputStream()) {
             DerOutputStream tmp = new DerOutputStream();
 
@@ -631,24 +772,10 @@ public class X500Name implements Principal, GeneralNameInterface {
                 names[i].encode(tmp);
 
             out.write(DerValue.tag_Sequence, tmp);
-            return out.toByteArray();
+            retval = out.toByteArray();
         }
-    }
-
-    /*
-     * Dump the printable form of a distinguished name.  Each relative
-     * name is separated from the next by a ",", and assertions in the
-     * relative names have "label=value" syntax.
-     *
-     * Uses RFC 1779 syntax (i.e. little-endian, comma separators)
-     *
-     */
-    private void generateDN(LdapDNStrConverter ldapDNStrConverter)
-            throws IOException {
-        if (names == null)
-            return;
-
-        dn = ldapDNStrConverter.encodeDN(this);
+        encoded = retval;
+        return retval;
     }
 
     private class RDNEnumerator implements Enumeration<RDN> {
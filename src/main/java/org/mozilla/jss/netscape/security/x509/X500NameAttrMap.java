@@ -161,6 +161,7 @@ public class X500NameAttrMap {
             }
             return;
         }
+        oid = ObjectIdentifier.intern(oid);
         name2OID.put(name.toUpperCase(), oid);
         oid2Name.put(oid, name.toUpperCase());
         oid2ValueConverter.put(oid, valueConverter);
@@ -0,0 +1,418 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2007 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.x509;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.cert.CRLException;
+import java.util.Collections;
+import java.util.Date;
+
+import org.mozilla.jss.netscape.security.util.BigInt;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
+
+/**
+ * Builds and signs an X.509 CRL without holding its revoked certificates
+ * in memory.
+ * <p>
+ * X509CRLImpl.sign() encodes the whole <code>tbsCertList</code> into a
+ * byte array before signing it. X509CRLBuilder instead takes the revoked
+ * certificates as an Iterable, for example one backed by a database
+ * cursor, and encodes them one at a time into a spill buffer, which
+ * moves to a temporary file once it outgrows 1 MiB.
+ * <p>
+ * The Iterable is traversed only once. Since DER needs the length of the
+ * <code>revokedCertificates</code> SEQUENCE before its contents, the
+ * <code>tbsCertList</code> is only assembled once all entries have been
+ * encoded; the spilled entries are then read back twice, to sign them and
+ * to write the signed CRL, so the CRL always contains exactly the bytes
+ * that were signed.
+ *
+ * <pre>
+ * X509CRLBuilder builder = new X509CRLBuilder(issuer, thisUpdate, nextUpdate);
+ * builder.setRevokedCertificates(entries);
+ * builder.setExtensions(crlExts);
+ * builder.sign(privateKey, "SHA256withRSA", out);
+ * </pre>
+ *
+ * @see DeltaCRLGenerator
+ */
+public class X509CRLBuilder {
+
+    private final static boolean isExplicit = true;
+
+    /**
+     * Number of bytes of encoded entries kept in memory before they are
+     * moved to a temporary file.
+     */
+    private final static int SPILL_THRESHOLD = 1024 * 1024;
+
+    private final X500Name issuer;
+    private final Date thisUpdate;
+    private final Date nextUpdate;
+
+    private Iterable<? extends RevokedCertificate> revokedCerts = Collections.emptyList();
+    private CRLExtensions extensions = null;
+
+    /**
+     * Creates a builder for a CRL with no revoked certificates and no
+     * extensions.
+     *
+     * @param issuer the name of the CA issuing this CRL.
+     * @param thisDate the Date of this issue.
+     * @param nextDate the Date of the next CRL, or null.
+     */
+    public X509CRLBuilder(X500Name issuer, Date thisDate, Date nextDate) {
+        this.issuer = issuer;
+        this.thisUpdate = thisDate;
+        this.nextUpdate = nextDate;
+    }
+
+    /**
+     * Sets the source of the revoked certificates. It is traversed once
+     * by sign().
+     *
+     * @param badCerts the revoked certificates.
+     */
+    public void setRevokedCertificates(Iterable<? extends RevokedCertificate> badCerts) {
+        this.revokedCerts = badCerts == null ? Collections.emptyList() : badCerts;
+    }
+
+    /**
+     * Sets the CRL extensions.
+     *
+     * @param crlExts the CRL extensions, or null.
+     */
+    public void setExtensions(CRLExtensions crlExts) {
+        this.extensions = crlExts;
+    }
+
+    /**
+     * Returns the CRL extensions.
+     */
+    public CRLExtensions getExtensions() {
+        return extensions;
+    }
+
+    /**
+     * Encodes the CRL, signs it with the given key, and writes the signed
+     * CRL to <code>out</code>.
+     *
+     * @param key the private key used for signing.
+     * @param algorithm the name of the signature algorithm used.
+     * @param out the stream receiving the DER encoded CRL.
+     *
+     * @exception NoSuchAlgorithmException on unsupported signature
+     *                algorithms.
+     * @exception InvalidKeyException on incorrect key.
+     * @exception NoSuchProviderException on incorrect provider.
+     * @exception SignatureException on signature errors.
+     * @exception CRLException on encoding or output errors.
+     * @exception X509ExtensionException on any extension errors.
+     */
+    public void sign(PrivateKey key, String algorithm, OutputStream out)
+            throws CRLException, NoSuchAlgorithmException, InvalidKeyException,
+            NoSuchProviderException, SignatureException, X509ExtensionException {
+        sign(key, algorithm, null, out);
+    }
+
+    /**
+     * Encodes the CRL, signs it with the given key, and writes the signed
+     * CRL to <code>out</code>.
+     *
+     * @param key the private key used for signing.
+     * @param algorithm the name of the signature algorithm used.
+     * @param provider the name of the provider, or null.
+     * @param out the stream receiving the DER encoded CRL.
+     *
+     * @exception NoSuchAlgorithmException on unsupported signature
+     *                algorithms.
+     * @exception InvalidKeyException on incorrect key.
+     * @exception NoSuchProviderException on incorrect provider.
+     * @exception SignatureException on signature errors.
+     * @exception CRLException on encoding or output errors.
+     * @exception X509ExtensionException on any extension errors.
+     */
+    public void sign(PrivateKey key, String algorithm, String provider,
+                     OutputStream out)
+            throws CRLException, NoSuchAlgorithmException, InvalidKeyException,
+            NoSuchProviderException, SignatureException, X509ExtensionException {
+        if (issuer == null || thisUpdate == null)
+            throw new CRLException("Issuer and thisUpdate are required");
+
+        Signature sigEngine = null;
+        if (provider == null)
+            sigEngine = Signature.getInstance(algorithm);
+        else
+            sigEngine = Signature.getInstance(algorithm, provider);
+
+        sigEngine.initSign(key);
+        AlgorithmId sigAlgId = AlgorithmId.get(sigEngine.getAlgorithm());
+
+        try (SpillBuffer entries = new SpillBuffer()) {
+            TBSLayout tbs = layout(sigAlgId, entries);
+
+            // sign the tbsCertList
+            try (OutputStream sigOut = new BufferedOutputStream(
+                    new SignatureOutputStream(sigEngine), 8192)) {
+                writeTBS(tbs, entries, sigOut);
+            }
+            byte[] signature = sigEngine.sign();
+
+            DerOutputStream trailer = new DerOutputStream();
+            sigAlgId.encode(trailer);
+            trailer.putBitString(signature);
+            byte[] trailerBytes = trailer.toByteArray();
+
+            // write the signed CRL from the same bytes
+            OutputStream buffered = new BufferedOutputStream(out, 8192);
+            writeHeader(buffered, DerValue.tag_Sequence,
+                        add(tbs.encodedLength(), trailerBytes.length));
+            writeTBS(tbs, entries, buffered);
+            buffered.write(trailerBytes);
+            buffered.flush();
+
+        } catch (IOException e) {
+            throw new CRLException("Error while encoding data: " +
+                                   e.getMessage());
+        }
+    }
+
+    /**
+     * Encodes the revoked certificates into <code>entries</code>, and the
+     * fields of the <code>tbsCertList</code> around them.
+     */
+    private TBSLayout layout(AlgorithmId sigAlgId, SpillBuffer entries)
+            throws CRLException, X509ExtensionException, IOException {
+        TBSLayout tbs = new TBSLayout();
+
+        int version = extensions != null ? 1 : 0;
+        long count = 0;
+        for (RevokedCertificate entry : revokedCerts) {
+            entries.write(encode(entry));
+            if (entry.hasExtensions())
+                version = 1;
+            count++;
+        }
+        entries.flush();
+        tbs.hasEntries = count > 0;
+        tbs.entriesLength = entries.size();
+
+        DerOutputStream head = new DerOutputStream();
+        if (version != 0) // v2 crl encode version
+            head.putInteger(new BigInt(version));
+        sigAlgId.encode(head);
+        issuer.encode(head);
+
+        // from 2050 should encode GeneralizedTime
+        head.putUTCTime(thisUpdate);
+        if (nextUpdate != null)
+            head.putUTCTime(nextUpdate);
+        tbs.head = head.toByteArray();
+
+        DerOutputStream tail = new DerOutputStream();
+        if (extensions != null)
+            extensions.encode(tail, isExplicit);
+        tbs.tail = tail.toByteArray();
+
+        if (tbs.entriesLength > Integer.MAX_VALUE)
+            throw new CRLException("CRL too large");
+
+        return tbs;
+    }
+
+    private static void writeTBS(TBSLayout tbs, SpillBuffer entries,
+                                 OutputStream out)
+            throws CRLException, IOException {
+        writeHeader(out, DerValue.tag_Sequence, tbs.contentLength());
+        out.write(tbs.head);
+
+        if (tbs.hasEntries) {
+            writeHeader(out, DerValue.tag_Sequence, (int) tbs.entriesLength);
+            entries.writeTo(out);
+        }
+
+        out.write(tbs.tail);
+    }
+
+    private static byte[] encode(RevokedCertificate entry)
+            throws CRLException, X509ExtensionException {
+        if (entry instanceof RevokedCertImpl) {
+            DerOutputStream out = new DerOutputStream();
+            ((RevokedCertImpl) entry).encode(out);
+            return out.toByteArray();
+        }
+        return entry.getEncoded();
+    }
+
+    private static void writeHeader(OutputStream out, byte tag, int length)
+            throws IOException {
+        DerOutputStream header = new DerOutputStream();
+        header.write(tag);
+        header.putLength(length);
+        header.writeTo(out);
+    }
+
+    private static int add(int a, int b) throws CRLException {
+        long sum = (long) a + b;
+        if (sum > Integer.MAX_VALUE)
+            throw new CRLException("CRL too large");
+        return (int) sum;
+    }
+
+    /**
+     * Encoded pieces and lengths of the <code>tbsCertList</code>.
+     */
+    private static class TBSLayout {
+        byte[] head;
+        byte[] tail;
+        boolean hasEntries;
+        long entriesLength;
+
+        int revokedLength() throws CRLException {
+            if (!hasEntries)
+                return 0;
+            return add(headerLength((int) entriesLength), (int) entriesLength);
+        }
+
+        int contentLength() throws CRLException {
+            return add(add(head.length, revokedLength()), tail.length);
+        }
+
+        int encodedLength() throws CRLException {
+            int content = contentLength();
+            return add(headerLength(content), content);
+        }
+
+        private static int headerLength(int length) {
+            if (length < 128)
+                return 2;
+            int n = 0;
+            for (int l = length; l > 0; l >>>= 8)
+                n++;
+            return 2 + n;
+        }
+    }
+
+    /**
+     * Holds the encoded revoked certificates, in memory up to
+     * SPILL_THRESHOLD bytes and in a temporary file beyond that. The
+     * contents can be read back any number of times.
+     */
+    private static class SpillBuffer extends OutputStream {
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private Path file;
+        private OutputStream fileOut;
+        private long size;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (fileOut == null && memory.size() + len > SPILL_THRESHOLD) {
+                file = Files.createTempFile("crl", ".der");
+                fileOut = new BufferedOutputStream(Files.newOutputStream(file), 8192);
+                memory.writeTo(fileOut);
+                memory = null;
+            }
+            if (fileOut != null)
+                fileOut.write(b, off, len);
+            else
+                memory.write(b, off, len);
+            size += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (fileOut != null)
+                fileOut.flush();
+        }
+
+        long size() {
+            return size;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            if (file == null) {
+                memory.writeTo(out);
+                return;
+            }
+            try (InputStream in = Files.newInputStream(file)) {
+                byte[] buf = new byte[8192];
+                int n;
+                while ((n = in.read(buf)) != -1)
+                    out.write(buf, 0, n);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (file == null)
+                return;
+            try {
+                fileOut.close();
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Feeds everything written to it into a Signature.
+     */
+    private static class SignatureOutputStream extends OutputStream {
+        private final Signature signature;
+
+        SignatureOutputStream(Signature signature) {
+            this.signature = signature;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            try {
+                signature.update((byte) b);
+            } catch (SignatureException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            try {
+                signature.update(b, off, len);
+            } catch (SignatureException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -104,6 +104,8 @@ public class X509CRLImpl extends X509CRL {
     private Date nextUpdate = null;
     //    private static final Hashtable revokedCerts = new Hashtable();
     private Hashtable<BigInteger, RevokedCertificate> revokedCerts = new Hashtable<>();
+    // set instead of revokedCerts when a CRL is parsed with indexed entries
+    private RevokedCertIndex revokedIndex = null;
     //    private static CRLExtensions    extensions = null;
     private CRLExtensions extensions = null;
     private boolean entriesIncluded = true;
@@ -125,7 +127,7 @@ public class X509CRLImpl extends X509CRL {
     public X509CRLImpl(byte[] crlData)
             throws CRLException, X509ExtensionException {
         try {
-            DerValue in = new DerValue(crlData);
+            DerValue in = DerValue.wrap(crlData);
 
             parse(in);
             signedCRL = crlData;
@@ -138,7 +140,7 @@ public class X509CRLImpl extends X509CRL {
             throws CRLException, X509ExtensionException {
         try {
             entriesIncluded = includeEntries;
-            DerValue in = new DerValue(crlData);
+            DerValue in = DerValue.wrap(crlData);
 
             parse(in, includeEntries);
             signedCRL = crlData;
@@ -147,6 +149,38 @@ public class X509CRLImpl extends X509CRL {
         }
     }
 
+    /**
+     * Unmarshals an X.509 CRL from its encoded form, optionally indexing
+     * the revoked certificates instead of decoding them.
+     * <p>
+     * With <code>indexEntries</code> set, the entries are walked once to
+     * build a compact index of their serial numbers, and an entry is only
+     * decoded when it is returned by getRevokedCertificate(BigInteger).
+     * isRevoked(BigInteger) and getNumberOfRevokedCertificates() use the
+     * index alone. This is meant for very large CRLs; methods returning
+     * all the entries at once decode every entry on each call.
+     *
+     * @param crlData the encoded bytes, with no trailing padding.
+     * @param includeEntries false to skip the revoked certificates.
+     * @param indexEntries true to index the revoked certificates
+     *            rather than decode them.
+     * @exception CRLException on parsing errors.
+     * @exception X509ExtensionException on extension handling errors.
+     */
+    public X509CRLImpl(byte[] crlData, boolean includeEntries,
+                       boolean indexEntries)
+            throws CRLException, X509ExtensionException {
+        try {
+            entriesIncluded = includeEntries;
+            DerValue in = DerValue.wrap(crlData);
+
+            parse(in, includeEntries, indexEntries);
+            signedCRL = crlData;
+        } catch (IOException e) {
+            throw new CRLException("Parsing error: " + e.getMessage());
+        }
+    }
+
     /**
      * Unmarshals an X.509 CRL from an input stream. Only one CRL
      * is expected at the end of the input stream.
@@ -345,7 +379,13 @@ public class X509CRLImpl extends X509CRL {
             if (nextUpdate != null)
                 tmp.putUTCTime(nextUpdate);
 
-            if (!revokedCerts.isEmpty()) {
+            if (revokedIndex != null) {
+                if (revokedIndex.size() > 0) {
+                    for (RevokedCertificate entry : revokedIndex)
+                        ((RevokedCertImpl) entry).encode(rCerts);
+                    tmp.write(DerValue.tag_Sequence, rCerts);
+                }
+            } else if (!revokedCerts.isEmpty()) {
                 for (Enumeration<RevokedCertificate> e = revokedCerts.elements(); e.hasMoreElements();)
                     ((RevokedCertImpl) e.nextElement()).encode(rCerts);
                 tmp.write(DerValue.tag_Sequence, rCerts);
@@ -539,9 +579,13 @@ public class X509CRLImpl extends X509CRL {
                 + "\n");
         if (nextUpdate != null)
             sb.append("Next Update: " + nextUpdate + "\n");
-        if (revokedCerts.isEmpty())
+        if (getNumberOfRevokedCertificates() <= 0)
             sb.append("\nNO certificates have been revoked\n");
-        else {
+        else if (revokedIndex != null) {
+            sb.append("\nRevoked Certificates:\n");
+            for (RevokedCertificate entry : revokedIndex)
+                sb.append(entry);
+        } else {
             sb.append("\nRevoked Certificates:\n");
             for (Enumeration<RevokedCertificate> e = revokedCerts.elements(); e.hasMoreElements();)
                 sb.append(e.nextElement());
@@ -567,6 +611,8 @@ public class X509CRLImpl extends X509CRL {
      *         false otherwise.
      */
     public boolean isRevoked(BigInteger serialNumber) {
+        if (revokedIndex != null)
+            return revokedIndex.contains(serialNumber);
         if (revokedCerts == null || revokedCerts.isEmpty())
             return false;
         return revokedCerts.containsKey(serialNumber);
@@ -666,10 +712,20 @@ public class X509CRLImpl extends X509CRL {
      *
      * @return the revoked certificate or null if there is
      *         no entry in the CRL marked with the provided serial number.
+     * @exception IllegalStateException if the CRL was parsed with
+     *                indexed entries and the entry cannot be decoded.
      * @see RevokedCertificate
      */
     @Override
     public X509CRLEntry getRevokedCertificate(BigInteger serialNumber) {
+        if (revokedIndex != null) {
+            try {
+                return revokedIndex.get(serialNumber);
+            } catch (CRLException | X509ExtensionException e) {
+                throw new IllegalStateException(
+                        "Unable to decode CRL entry: " + e.getMessage(), e);
+            }
+        }
         if (revokedCerts == null || revokedCerts.isEmpty())
             return null;
         return revokedCerts.get(serialNumber);
@@ -685,6 +741,14 @@ public class X509CRLImpl extends X509CRL {
      */
     @Override
     public Set<RevokedCertificate> getRevokedCertificates() {
+        if (revokedIndex != null) {
+            if (revokedIndex.size() == 0)
+                return null;
+            Set<RevokedCertificate> certSet = new LinkedHashSet<>();
+            for (RevokedCertificate entry : revokedIndex)
+                certSet.add(entry);
+            return certSet;
+        }
         if (revokedCerts == null || revokedCerts.isEmpty())
             return null;
         else {
@@ -695,6 +759,12 @@ public class X509CRLImpl extends X509CRL {
 
     @SuppressWarnings("unchecked")
     public Hashtable<BigInteger, RevokedCertificate> getListOfRevokedCertificates() {
+        if (revokedIndex != null) {
+            Hashtable<BigInteger, RevokedCertificate> list = new Hashtable<>();
+            for (RevokedCertificate entry : revokedIndex)
+                list.put(entry.getSerialNumber(), entry);
+            return list;
+        }
         if (revokedCerts == null) {
             return null;
         } else {
@@ -703,6 +773,8 @@ public class X509CRLImpl extends X509CRL {
     }
 
     public int getNumberOfRevokedCertificates() {
+        if (revokedIndex != null)
+            return revokedIndex.size();
         if (revokedCerts == null)
             return -1;
         else
@@ -969,17 +1041,31 @@ public class X509CRLImpl extends X509CRL {
         return entriesIncluded;
     }
 
+    /**
+     * Returns the index of revoked certificates, or null if this CRL was
+     * not parsed with indexed entries or has no entries.
+     */
+    RevokedCertIndex getRevokedIndex() {
+        return revokedIndex;
+    }
+
     /*********************************************************************/
     /*
      * Parses an X.509 CRL, should be used only by constructors.
      */
     private void parse(DerValue val)
             throws CRLException, IOException, X509ExtensionException {
-        parse(val, true);
+        parse(val, true, false);
     }
 
     private void parse(DerValue val, boolean includeEntries)
             throws CRLException, IOException, X509ExtensionException {
+        parse(val, includeEntries, false);
+    }
+
+    private void parse(DerValue val, boolean includeEntries,
+                       boolean indexEntries)
+            throws CRLException, IOException, X509ExtensionException {
         // check if can over write the certificate
         if (readOnly)
             throw new CRLException("cannot over-write existing CRL");
@@ -1066,7 +1152,17 @@ public class X509CRLImpl extends X509CRL {
         nextByte = (byte) derStrm.peekByte();
         if ((nextByte == DerValue.tag_SequenceOf)
                 && (!((nextByte & 0x0c0) == 0x080))) {
-            if (includeEntries) {
+            if (includeEntries && indexEntries) {
+                // The encoding of tbsCertList ends with the contents of
+                // derStrm, so the entries can be indexed in place.
+                int start = tbsCertList.length - derStrm.available();
+                derStrm.skipSequence(4);
+                int end = tbsCertList.length - derStrm.available();
+
+                revokedIndex = new RevokedCertIndex(tbsCertList, start, end,
+                                                    version != 0);
+                revokedCerts = null;
+            } else if (includeEntries) {
                 DerValue[] badCerts = derStrm.getSequence(4);
                 for (int i = 0; i < badCerts.length; i++) {
                     RevokedCertImpl entry = new RevokedCertImpl(badCerts[i]);
@@ -23,6 +23,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
@@ -131,10 +132,36 @@ public class X509CertImpl extends X509Certificate
 
     // Certificate data, and its envelope
     private byte[] signedCert;
-    protected X509CertInfo info = null;
+    protected volatile X509CertInfo info = null;
     protected AlgorithmId algId;
     protected byte[] signature;
 
+    // field offsets of signedCert, when decoded lazily
+    private transient X509CertIndex index;
+
+    // the last successful verify()
+    private transient volatile Verified verified;
+
+    private static final class Verified {
+        final byte[] cert;
+        final byte[] signature;
+        final PublicKey key;
+        final String provider;
+
+        Verified(byte[] cert, byte[] signature, PublicKey key, String provider) {
+            this.cert = cert;
+            this.signature = signature;
+            this.key = key;
+            this.provider = provider;
+        }
+
+        boolean matches(byte[] cert, byte[] signature, PublicKey key, String provider) {
+            return this.cert == cert && this.signature == signature
+                    && this.key.equals(key)
+                    && (this.provider == null ? provider == null : this.provider.equals(provider));
+        }
+    }
+
     // recognized extension OIDS
     private static final String KEY_USAGE_OID = "2.5.29.15";
     private static final String BASIC_CONSTRAINT_OID = "2.5.29.19";
@@ -180,7 +207,7 @@ public class X509CertImpl extends X509Certificate
         info = certInfo;
 
         try {
-            DerValue in = new DerValue(certData);
+            DerValue in = DerValue.wrap(certData);
 
             parse(in);
             signedCert = certData;
@@ -189,6 +216,48 @@ public class X509CertImpl extends X509Certificate
         }
     }
 
+    /**
+     * Unmarshals a certificate from its encoded form. With
+     * <code>lazy</code> set, the constructor only checks the structure of
+     * the certificate and records where its fields are; the serial number,
+     * validity, names, public key and each extension are decoded when
+     * they are first requested, and the X509CertInfo is only built when
+     * getInfo() or one of the generic accessors needs it. This suits bulk
+     * processing where most certificates are only looked at briefly.
+     * <p>
+     * A lazily decoded certificate keeps a reference to
+     * <code>certData</code>, which must not be modified afterwards.
+     * Errors in the encoding of individual fields are reported when the
+     * field is decoded: the getters return null, like they do for a
+     * missing field.
+     *
+     * @param certData the encoded bytes, with no trailing padding.
+     * @param lazy whether to decode the certificate fields on demand.
+     * @exception CertificateException on parsing and initialization errors.
+     */
+    public X509CertImpl(byte[] certData, boolean lazy)
+            throws CertificateException {
+        if (!lazy) {
+            try {
+                parse(DerValue.wrap(certData));
+                signedCert = certData;
+            } catch (IOException e) {
+                throw new CertificateException("Unable to parse certificate data: " + e.getMessage(), e);
+            }
+            return;
+        }
+
+        readOnly = true;
+        try {
+            index = new X509CertIndex(certData);
+            algId = index.getSignatureAlgorithm();
+            signature = index.getSignature();
+            signedCert = certData;
+        } catch (IOException e) {
+            throw new CertificateException("Unable to parse certificate data: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * unmarshals an X.509 certificate from an input stream.
      *
@@ -353,21 +422,74 @@ public class X509CertImpl extends X509Certificate
     public void verify(PublicKey key, String sigProvider)
             throws CertificateException, NoSuchAlgorithmException,
             InvalidKeyException, NoSuchProviderException, SignatureException {
-        if (signedCert == null) {
+        byte[] cert = signedCert;
+        byte[] sig = signature;
+        if (cert == null) {
             throw new CertificateEncodingException("Missing certificate");
         }
+
+        Verified last = verified;
+        if (last != null && last.matches(cert, sig, key, sigProvider))
+            return;
+
+        SignatureVerificationCache cache = SignatureVerificationCache.getInstance();
+        ByteBuffer entry = null;
+        if (cache != null) {
+            entry = SignatureVerificationCache.entry(cert, key, sigProvider);
+            if (entry != null && cache.contains(entry)) {
+                verified = new Verified(cert, sig, key, sigProvider);
+                return;
+            }
+        }
+
         // Verify the signature ...
         Signature sigVerf = null;
 
-        sigVerf = Signature.getInstance(algId.getName(), sigProvider);
+        if (sigProvider == null)
+            sigVerf = Signature.getInstance(algId.getName());
+        else
+            sigVerf = Signature.getInstance(algId.getName(), sigProvider);
         sigVerf.initVerify(key);
 
-        byte[] rawCert = info.getEncodedInfo();
-        sigVerf.update(rawCert, 0, rawCert.length);
+        if (index != null) {
+            index.updateTBS(sigVerf);
+        } else {
+            // the tbsCertificate as it was signed, without re-encoding it
+            int tbs = X509CertIndex.contentStart(cert, 0);
+            int len = X509CertIndex.length(cert, tbs);
+            int end = X509CertIndex.contentStart(cert, tbs) + len;
+            if (len >= 0 && end <= cert.length) {
+                sigVerf.update(cert, tbs, end - tbs);
+            } else {
+                byte[] rawCert = info.getEncodedInfo();
+                sigVerf.update(rawCert, 0, rawCert.length);
+            }
+        }
 
-        if (!sigVerf.verify(signature)) {
+        if (!sigVerf.verify(sig)) {
             throw new SignatureException("Signature does not match");
         }
+
+        verified = new Verified(cert, sig, key, sigProvider);
+        if (entry != null)
+            cache.add(entry);
+    }
+
+    /**
+     * Sets the size of the cache of successful signature verifications
+     * shared by all certificates. With the cache enabled, verifying a
+     * certificate with a public key and provider which already verified
+     * the same certificate bytes only takes a digest and a lookup.
+     * Setting the size empties the cache; a size of zero, the default,
+     * disables it.
+     * <p>
+     * Each certificate also remembers its own last successful
+     * verification, whether or not the cache is enabled.
+     *
+     * @param size the maximum number of verifications kept.
+     */
+    public static void setVerificationCacheSize(int size) {
+        SignatureVerificationCache.setMaxSize(size);
     }
 
     /**
@@ -485,7 +607,10 @@ public class X509CertImpl extends X509Certificate
 
         CertificateValidity interval = null;
         try {
-            interval = (CertificateValidity) info.get(CertificateValidity.NAME);
+            if (index != null)
+                interval = index.getValidity();
+            else
+                interval = (CertificateValidity) info.get(CertificateValidity.NAME);
         } catch (Exception e) {
             throw new CertificateNotYetValidException("Incorrect validity period: " + e.getMessage());
         }
@@ -515,14 +640,14 @@ public class X509CertImpl extends X509Certificate
         if (id.equalsIgnoreCase(INFO)) {
             if (attr.getSuffix() != null) {
                 try {
-                    return info.get(attr.getSuffix());
+                    return getInfo().get(attr.getSuffix());
                 } catch (IOException e) {
                     throw new CertificateParsingException("Unable to get certificate attribute: " + e.getMessage(), e);
                 } catch (CertificateException e) {
                     throw new CertificateParsingException("Unable to get certificate attribute: " + e.getMessage(), e);
                 }
             } else {
-                return (info);
+                return getInfo();
             }
         } else if (id.equalsIgnoreCase(ALG_ID)) {
             return (algId);
@@ -647,6 +772,7 @@ public class X509CertImpl extends X509Certificate
      */
     @Override
     public String toString() {
+        X509CertInfo info = getInfo();
         if (info == null || algId == null || signature == null)
             return "";
 
@@ -670,6 +796,13 @@ public class X509CertImpl extends X509Certificate
      */
     @Override
     public PublicKey getPublicKey() {
+        if (index != null) {
+            try {
+                return index.getPublicKey();
+            } catch (Exception e) {
+                return null;
+            }
+        }
         if (info == null)
             return null;
         try {
@@ -688,6 +821,8 @@ public class X509CertImpl extends X509Certificate
      */
     @Override
     public int getVersion() {
+        if (index != null)
+            return index.getVersion();
         if (info == null)
             return -1;
         try {
@@ -706,6 +841,13 @@ public class X509CertImpl extends X509Certificate
      */
     @Override
     public BigInteger getSerialNumber() {
+        if (index != null) {
+            try {
+                return index.getSerialNumber();
+            } catch (Exception e) {
+                return null;
+            }
+        }
         if (info == null)
             return null;
         try {
@@ -730,11 +872,14 @@ public class X509CertImpl extends X509Certificate
 
     public X500Name getSubjectName() {
 
-        if (info == null) {
+        if (index == null && info == null) {
             return null;
         }
 
         try {
+            if (index != null)
+                return index.getSubject();
+
             String name = CertificateSubjectName.NAME + DOT + CertificateSubjectName.DN_NAME;
             return (X500Name) info.get(name);
 
@@ -745,11 +890,32 @@ public class X509CertImpl extends X509Certificate
     }
 
     public CertificateSubjectName getSubjectObj() {
-        return info.getSubjectObj();
+        return getInfo().getSubjectObj();
     }
 
+    /**
+     * Returns the decoded certificate information. For a lazily decoded
+     * certificate it is decoded on the first call.
+     *
+     * @return the certificate information, or null if it cannot be
+     *         decoded.
+     */
     public X509CertInfo getInfo() {
-        return info;
+        X509CertInfo certInfo = info;
+        if (certInfo != null || index == null)
+            return certInfo;
+
+        synchronized (this) {
+            if (info == null) {
+                try {
+                    info = index.decodeInfo();
+                } catch (Exception e) {
+                    logger.warn("Unable to decode certificate info: " + e.getMessage(), e);
+                    return null;
+                }
+            }
+            return info;
+        }
     }
 
     /**
@@ -764,11 +930,14 @@ public class X509CertImpl extends X509Certificate
 
     public X500Name getIssuerName() {
 
-        if (info == null) {
+        if (index == null && info == null) {
             return null;
         }
 
         try {
+            if (index != null)
+                return index.getIssuer();
+
             String name = CertificateIssuerName.NAME + DOT + CertificateIssuerName.DN_NAME;
             return (X500Name) info.get(name);
 
@@ -779,7 +948,7 @@ public class X509CertImpl extends X509Certificate
     }
 
     public CertificateIssuerName getIssuerObj() {
-        return info.getIssuerObj();
+        return getInfo().getIssuerObj();
     }
 
     /**
@@ -789,9 +958,12 @@ public class X509CertImpl extends X509Certificate
      */
     @Override
     public Date getNotBefore() {
-        if (info == null)
+        if (index == null && info == null)
             return null;
         try {
+            if (index != null)
+                return (Date) index.getValidity().get(CertificateValidity.NOT_BEFORE);
+
             Date d = (Date) info.get(CertificateValidity.NAME + DOT +
                                          CertificateValidity.NOT_BEFORE);
             return d;
@@ -807,9 +979,12 @@ public class X509CertImpl extends X509Certificate
      */
     @Override
     public Date getNotAfter() {
-        if (info == null)
+        if (index == null && info == null)
             return null;
         try {
+            if (index != null)
+                return (Date) index.getValidity().get(CertificateValidity.NOT_AFTER);
+
             Date d = (Date) info.get(CertificateValidity.NAME + DOT +
                                          CertificateValidity.NOT_AFTER);
             return d;
@@ -827,7 +1002,9 @@ public class X509CertImpl extends X509Certificate
      */
     @Override
     public byte[] getTBSCertificate() throws CertificateEncodingException {
-        if (info != null) {
+        if (index != null) {
+            return index.getTBSCertificate();
+        } else if (info != null) {
             return info.getEncodedInfo();
         } else
             throw new CertificateEncodingException("Uninitialized certificate");
@@ -900,6 +1077,7 @@ public class X509CertImpl extends X509Certificate
      */
     @Override
     public boolean[] getIssuerUniqueID() {
+        X509CertInfo info = getInfo();
         if (info == null)
             return null;
         try {
@@ -922,6 +1100,7 @@ public class X509CertImpl extends X509Certificate
      */
     @Override
     public boolean[] getSubjectUniqueID() {
+        X509CertInfo info = getInfo();
         if (info == null)
             return null;
         try {
@@ -946,6 +1125,13 @@ public class X509CertImpl extends X509Certificate
      */
     @Override
     public Set<String> getCriticalExtensionOIDs() {
+        if (index != null) {
+            try {
+                return index.getExtensionOIDs(true);
+            } catch (Exception e) {
+                return null;
+            }
+        }
         if (info == null)
             return null;
         try {
@@ -975,6 +1161,13 @@ public class X509CertImpl extends X509Certificate
      */
     @Override
     public Set<String> getNonCriticalExtensionOIDs() {
+        if (index != null) {
+            try {
+                return index.getExtensionOIDs(false);
+            } catch (Exception e) {
+                return null;
+            }
+        }
         if (info == null)
             return null;
         try {
@@ -998,6 +1191,9 @@ public class X509CertImpl extends X509Certificate
 
     public Extension getExtension(String oid) {
         try {
+            if (index != null)
+                return index.getExtension(new ObjectIdentifier(oid));
+
             CertificateExtensions exts = (CertificateExtensions) info.get(
                                          CertificateExtensions.NAME);
             if (exts == null)
@@ -1026,6 +1222,14 @@ public class X509CertImpl extends X509Certificate
      */
     @Override
     public byte[] getExtensionValue(String oid) {
+        if (index != null) {
+            try {
+                return index.getExtensionValue(new ObjectIdentifier(oid));
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
         DerOutputStream out = null;
         try {
             String extAlias = OIDMap.getName(new ObjectIdentifier(oid));
@@ -1084,12 +1288,7 @@ public class X509CertImpl extends X509Certificate
     @Override
     public boolean[] getKeyUsage() {
         try {
-            String extAlias = OIDMap.getName(new ObjectIdentifier(
-                                         KEY_USAGE_OID));
-            if (extAlias == null)
-                return null;
-
-            KeyUsageExtension certExt = (KeyUsageExtension) this.get(extAlias);
+            KeyUsageExtension certExt = (KeyUsageExtension) getKnownExtension(KEY_USAGE_OID);
             if (certExt == null)
                 return null;
 
@@ -1108,12 +1307,8 @@ public class X509CertImpl extends X509Certificate
     @Override
     public int getBasicConstraints() {
         try {
-            String extAlias = OIDMap.getName(new ObjectIdentifier(
-                                         BASIC_CONSTRAINT_OID));
-            if (extAlias == null)
-                return -1;
             BasicConstraintsExtension certExt =
-                        (BasicConstraintsExtension) this.get(extAlias);
+                        (BasicConstraintsExtension) getKnownExtension(BASIC_CONSTRAINT_OID);
             if (certExt == null)
                 return -1;
 
@@ -1130,13 +1325,8 @@ public class X509CertImpl extends X509Certificate
     public boolean getBasicConstraintsIsCA() {
         boolean isCA = false;
         try {
-            String extAlias = OIDMap.getName(new ObjectIdentifier(
-                                             BASIC_CONSTRAINT_OID));
-            if (extAlias == null)
-                return false;
-
             BasicConstraintsExtension certExt =
-                        (BasicConstraintsExtension) this.get(extAlias);
+                        (BasicConstraintsExtension) getKnownExtension(BASIC_CONSTRAINT_OID);
             if (certExt == null)
                 return false;
 
@@ -1147,6 +1337,21 @@ public class X509CertImpl extends X509Certificate
         return isCA;
     }
 
+    /*
+     * Returns the extension with the given OID, decoded by the class
+     * registered for it in OIDMap.
+     */
+    private Object getKnownExtension(String oid)
+            throws IOException, CertificateParsingException {
+        if (index != null)
+            return index.getExtension(new ObjectIdentifier(oid));
+
+        String extAlias = OIDMap.getName(new ObjectIdentifier(oid));
+        if (extAlias == null)
+            return null;
+        return this.get(extAlias);
+    }
+
     /************************************************************/
 
     /*
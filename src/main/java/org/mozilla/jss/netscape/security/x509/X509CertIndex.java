@@ -0,0 +1,402 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2007 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package org.mozilla.jss.netscape.security.x509;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateParsingException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.mozilla.jss.netscape.security.util.DerInputStream;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.util.ObjectIdentifier;
+
+/**
+ * The field offsets of an encoded X.509 certificate.
+ * <p>
+ * Building the index walks the tag and length octets of the certificate
+ * and of its <code>tbsCertificate</code>, checking the overall structure
+ * the way X509CertInfo does, but it decodes only the version, the
+ * signature algorithm and the signature bits. The serial number, validity,
+ * names, public key and each extension are decoded when they are first
+ * asked for and then remembered.
+ * <p>
+ * The decoded components are published through volatile fields and an
+ * AtomicReferenceArray. Two threads asking for the same component at the
+ * same time may both decode it, but every caller sees a fully constructed
+ * object.
+ */
+final class X509CertIndex {
+
+    private final byte[] der;
+
+    private final int tbs;
+    private final int tbsEnd;
+    private final int sigAlg;
+    private final int sig;
+
+    private final int version;
+    private final int serial;
+    private final int issuer;
+    private final int validity;
+    private final int subject;
+    private final int key;
+
+    // offsets of the Extension SEQUENCEs, or null if the certificate has
+    // no extensions field
+    private final int[] extensions;
+
+    private volatile BigInteger serialNumber;
+    private volatile CertificateValidity interval;
+    private volatile X500Name issuerName;
+    private volatile X500Name subjectName;
+    private volatile X509Key publicKey;
+    private final AtomicReferenceArray<Extension> decoded;
+
+    /**
+     * Indexes the certificate encoded in <code>der</code>.
+     *
+     * @param der the encoded certificate, with no trailing data; it is
+     *            not copied.
+     * @exception CertificateParsingException if the certificate is
+     *                malformed.
+     */
+    X509CertIndex(byte[] der) throws CertificateParsingException {
+        this.der = der;
+
+        // Certificate ::= SEQUENCE { tbsCertificate, signatureAlgorithm,
+        //                            signatureValue }
+        if (skip(0, DerValue.tag_Sequence, der.length) != der.length)
+            throw new CertificateParsingException("Invalid certificate encoding");
+
+        tbs = contentStart(0);
+        tbsEnd = skip(tbs, DerValue.tag_Sequence, der.length);
+        sigAlg = tbsEnd;
+        sig = skip(sigAlg, DerValue.tag_Sequence, der.length);
+        if (skip(sig, DerValue.tag_BitString, der.length) != der.length)
+            throw new CertificateParsingException("signed overrun");
+
+        int p = contentStart(tbs);
+
+        // version [0] EXPLICIT Version DEFAULT v1
+        int vers = CertificateVersion.V1;
+        if (p < tbsEnd && der[p] == (byte) 0xa0) {
+            int next = skip(p, der[p], tbsEnd);
+            vers = decodeVersion(p, next - p);
+            p = next;
+        }
+        version = vers;
+
+        serial = p;
+        p = skip(p, DerValue.tag_Integer, tbsEnd);
+        p = skip(p, DerValue.tag_Sequence, tbsEnd); // signature
+        issuer = p;
+        p = skip(p, DerValue.tag_Sequence, tbsEnd);
+        validity = p;
+        p = skip(p, DerValue.tag_Sequence, tbsEnd);
+        subject = p;
+        p = skip(p, DerValue.tag_Sequence, tbsEnd);
+        key = p;
+        p = skip(p, DerValue.tag_Sequence, tbsEnd);
+
+        if (p < tbsEnd && version == CertificateVersion.V1)
+            throw new CertificateParsingException("excess cert data");
+
+        // issuerUniqueID [1] IMPLICIT, subjectUniqueID [2] IMPLICIT
+        if (p < tbsEnd && (der[p] & 0xdf) == 0x81)
+            p = skip(p, der[p], tbsEnd);
+        if (p < tbsEnd && (der[p] & 0xdf) == 0x82)
+            p = skip(p, der[p], tbsEnd);
+
+        int[] exts = null;
+        if (p < tbsEnd) {
+            if (version != CertificateVersion.V3)
+                throw new CertificateParsingException("excess cert data");
+
+            // extensions [3] EXPLICIT SEQUENCE OF Extension
+            int end = skip(p, (byte) 0xa3, tbsEnd);
+            int seq = contentStart(p);
+            if (skip(seq, DerValue.tag_Sequence, end) != end)
+                throw new CertificateParsingException("Invalid extensions encoding");
+
+            exts = new int[8];
+            int count = 0;
+            for (int e = contentStart(seq); e < end;) {
+                int next = skip(e, DerValue.tag_Sequence, end);
+                skip(contentStart(e), DerValue.tag_ObjectId, next);
+                if (count == exts.length)
+                    exts = Arrays.copyOf(exts, count * 2);
+                exts[count++] = e;
+                e = next;
+            }
+            exts = Arrays.copyOf(exts, count);
+            p = end;
+        }
+        if (p != tbsEnd)
+            throw new CertificateParsingException("excess cert data");
+
+        extensions = exts;
+        decoded = new AtomicReferenceArray<>(exts == null ? 0 : exts.length);
+    }
+
+    AlgorithmId getSignatureAlgorithm() throws IOException {
+        DerValue val = DerValue.wrap(der, sigAlg, sig - sigAlg);
+        AlgorithmId algId = AlgorithmId.parse(val);
+        if (val.data.available() != 0)
+            throw new IOException("algid field overrun");
+        return algId;
+    }
+
+    byte[] getSignature() throws IOException {
+        return DerValue.wrap(der, sig, der.length - sig).getBitString();
+    }
+
+    /**
+     * Returns a copy of the encoded <code>tbsCertificate</code>.
+     */
+    byte[] getTBSCertificate() {
+        return Arrays.copyOfRange(der, tbs, tbsEnd);
+    }
+
+    /**
+     * Feeds the encoded <code>tbsCertificate</code> into a signature
+     * engine without copying it.
+     */
+    void updateTBS(Signature engine) throws SignatureException {
+        engine.update(der, tbs, tbsEnd - tbs);
+    }
+
+    /**
+     * Decodes the whole <code>tbsCertificate</code>.
+     */
+    X509CertInfo decodeInfo() throws IOException, CertificateException {
+        return new X509CertInfo(DerValue.wrap(der, tbs, tbsEnd - tbs));
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    BigInteger getSerialNumber() throws IOException {
+        BigInteger result = serialNumber;
+        if (result == null) {
+            SerialNumber num = new SerialNumber(value(serial));
+            serialNumber = result = num.getNumber().toBigInteger();
+        }
+        return result;
+    }
+
+    CertificateValidity getValidity() throws IOException {
+        CertificateValidity result = interval;
+        if (result == null)
+            interval = result = new CertificateValidity(stream(validity));
+        return result;
+    }
+
+    X500Name getIssuer() throws IOException {
+        X500Name result = issuerName;
+        if (result == null)
+            issuerName = result = new X500Name(stream(issuer));
+        return result;
+    }
+
+    X500Name getSubject() throws IOException {
+        X500Name result = subjectName;
+        if (result == null)
+            subjectName = result = new X500Name(stream(subject));
+        return result;
+    }
+
+    X509Key getPublicKey() throws IOException {
+        X509Key result = publicKey;
+        if (result == null)
+            publicKey = result = X509Key.parse(value(key));
+        return result;
+    }
+
+    /**
+     * Returns the decoded extension with the given OID, or null if the
+     * certificate does not carry it. Extensions known to OIDMap are
+     * returned as their specific Extension subclass.
+     */
+    Extension getExtension(ObjectIdentifier oid) throws IOException {
+        int i = indexOf(oid);
+        return i < 0 ? null : getExtension(i);
+    }
+
+    /**
+     * Returns the DER encoded OCTET STRING holding the value of the
+     * extension with the given OID, or null if the certificate does not
+     * carry it. Nothing is decoded.
+     */
+    byte[] getExtensionValue(ObjectIdentifier oid)
+            throws IOException, CertificateParsingException {
+        int i = indexOf(oid);
+        if (i < 0)
+            return null;
+
+        int e = extensions[i];
+        int end = contentStart(e) + length(e);
+        int p = skip(contentStart(e), DerValue.tag_ObjectId, end);
+        if (p < end && der[p] == DerValue.tag_Boolean)
+            p = skip(p, DerValue.tag_Boolean, end);
+        if (skip(p, DerValue.tag_OctetString, end) != end)
+            throw new IOException("Invalid extension encoding");
+        return Arrays.copyOfRange(der, p, end);
+    }
+
+    /**
+     * Returns the OIDs of the extensions with the given criticality, or
+     * null if the certificate has no extensions field.
+     */
+    Set<String> getExtensionOIDs(boolean critical)
+            throws IOException, CertificateParsingException {
+        if (extensions == null)
+            return null;
+
+        Set<String> oids = new LinkedHashSet<>();
+        for (int e : extensions) {
+            int end = contentStart(e) + length(e);
+            int oid = contentStart(e);
+            int p = skip(oid, DerValue.tag_ObjectId, end);
+            boolean isCritical = p < end && der[p] == DerValue.tag_Boolean &&
+                    value(p).getBoolean();
+            if (isCritical == critical)
+                oids.add(new DerInputStream(der, oid, p - oid).getOID().toString());
+        }
+        return oids;
+    }
+
+    private Extension getExtension(int i) throws IOException {
+        Extension result = decoded.get(i);
+        if (result != null)
+            return result;
+
+        Extension ext = new Extension(value(extensions[i]));
+        result = ext;
+        try {
+            // same decoding as CertificateExtensions.parseExtension()
+            OIDMap.ExtensionFactory factory = OIDMap.getFactory(ext.getExtensionId());
+            if (factory != null) {
+                Extension certExt = factory.create(Boolean.valueOf(ext.isCritical()),
+                        ext.getExtensionValue());
+                if (certExt != null)
+                    result = certExt;
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+
+        decoded.compareAndSet(i, null, result);
+        return decoded.get(i);
+    }
+
+    private int indexOf(ObjectIdentifier oid) throws IOException {
+        if (extensions == null)
+            return -1;
+
+        DerOutputStream out = new DerOutputStream();
+        out.putOID(oid);
+        byte[] encoded = out.toByteArray();
+
+        for (int i = 0; i < extensions.length; i++) {
+            int e = extensions[i];
+            int p = contentStart(e);
+            if (encoded.length <= contentStart(e) + length(e) - p &&
+                    Arrays.equals(der, p, p + encoded.length, encoded, 0, encoded.length))
+                return i;
+        }
+        return -1;
+    }
+
+    private int decodeVersion(int pos, int len) throws CertificateParsingException {
+        try {
+            CertificateVersion vers = new CertificateVersion(DerValue.wrap(der, pos, len));
+            return ((Integer) vers.get(CertificateVersion.VERSION)).intValue();
+        } catch (IOException e) {
+            throw new CertificateParsingException("Invalid version: " + e.getMessage(), e);
+        }
+    }
+
+    private DerValue value(int pos) throws IOException {
+        return DerValue.wrap(der, pos, contentStart(pos) + length(pos) - pos);
+    }
+
+    private DerInputStream stream(int pos) {
+        return new DerInputStream(der, pos, contentStart(pos) + length(pos) - pos);
+    }
+
+    /**
+     * Checks the tag of the element at <code>pos</code> and returns the
+     * offset just past it.
+     */
+    private int skip(int pos, byte tag, int limit) throws CertificateParsingException {
+        if (pos + 2 > limit || der[pos] != tag)
+            throw new CertificateParsingException("Invalid certificate encoding at offset " + pos);
+
+        int start = contentStart(pos);
+        int len = start <= limit ? length(pos) : -1;
+        if (len < 0 || len > limit - start)
+            throw new CertificateParsingException("Invalid certificate length at offset " + pos);
+        return start + len;
+    }
+
+    private int contentStart(int pos) {
+        return contentStart(der, pos);
+    }
+
+    private int length(int pos) {
+        return length(der, pos);
+    }
+
+    /**
+     * Returns the offset of the contents of the TLV at <code>pos</code>.
+     */
+    static int contentStart(byte[] der, int pos) {
+        int b = der[pos + 1] & 0xff;
+        return (b & 0x80) == 0 ? pos + 2 : pos + 2 + (b & 0x7f);
+    }
+
+    /**
+     * Returns the length of the contents of the TLV at <code>pos</code>,
+     * or -1 for an indefinite or unsupported length.
+     */
+    static int length(byte[] der, int pos) {
+        int b = der[pos + 1] & 0xff;
+        if ((b & 0x80) == 0)
+            return b;
+
+        int n = b & 0x7f;
+        if (n == 0 || n > 4) // indefinite or absurdly long
+            return -1;
+
+        int len = 0;
+        for (int i = 0; i < n; i++)
+            len = (len << 8) | (der[pos + 2 + i] & 0xff);
+        return len;
+    }
+}
@@ -154,7 +154,7 @@ public class X509CertInfo implements CertAttrSet, Serializable {
      */
     public X509CertInfo(byte[] cert) throws CertificateParsingException {
         try {
-            DerValue in = new DerValue(cert);
+            DerValue in = DerValue.wrap(cert);
 
             parse(in);
         } catch (IOException e) {
@@ -16,8 +16,16 @@ public class BufferProxy extends org.mozilla.jss.util.NativeProxy {
         Buffer.Free(this);
     }
 
+    /**
+     * Releasing this proxy needs the proxy itself, so it cannot use a
+     * NativeProxy.Releaser.
+     *
+     * @deprecated finalize() in Object has been deprecated. Use close(...)
+     *             from the AutoCloseable interface instead.
+     */
     @Override
+    @Deprecated
     protected void finalize() throws Throwable {
-        super.finalize();
+        close();
     }
 }
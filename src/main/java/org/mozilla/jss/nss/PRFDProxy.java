@@ -10,8 +10,16 @@ public class PRFDProxy extends org.mozilla.jss.util.NativeProxy {
         PR.Close(this);
     }
 
+    /**
+     * Releasing this proxy needs the proxy itself, so it cannot use a
+     * NativeProxy.Releaser.
+     *
+     * @deprecated finalize() in Object has been deprecated. Use close(...)
+     *             from the AutoCloseable interface instead.
+     */
     @Override
+    @Deprecated
     protected void finalize() throws Throwable {
-        super.finalize();
+        close();
     }
 }
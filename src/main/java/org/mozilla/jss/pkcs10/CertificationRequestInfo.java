@@ -105,6 +105,17 @@ public class CertificationRequestInfo implements ASN1Value {
     public void encode(Tag implicitTag, OutputStream ostream)
         throws IOException
     {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(implicitTag, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(implicitTag);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         SEQUENCE seq = new SEQUENCE();
 
         seq.addElement(version );
@@ -112,7 +123,7 @@ public class CertificationRequestInfo implements ASN1Value {
         seq.addElement(subjectPublicKeyInfo);
         seq.addElement(new Tag(0), attributes);
 
-        seq.encode(implicitTag, ostream);
+        return seq;
     }
 
     private static final Template templateInstance = new Template();
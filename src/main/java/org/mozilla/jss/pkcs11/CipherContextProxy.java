@@ -8,14 +8,11 @@ import org.mozilla.jss.util.NativeProxy;
 
 final class CipherContextProxy extends NativeProxy {
     public CipherContextProxy(byte[] pointer) {
-        super(pointer);
+        super(pointer, CipherContextProxy::releasePointer);
     }
 
     @Override
     protected native void releaseNativeResources();
 
-    @Override
-    protected void finalize() throws Throwable {
-      super.finalize();
-    }
+    private static native void releasePointer(byte[] pointer);
 }
@@ -0,0 +1,203 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.pkcs11;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A per-thread pool of idle native digest and HMAC contexts.
+ *
+ * Creating a PKCS #11 context is far more expensive than restarting one,
+ * so instead of discarding a context once its result has been read,
+ * PK11MessageDigest restarts it and parks it here, where the next digest
+ * of the same kind on the same thread picks it up. Contexts are keyed by
+ * token, algorithm and (for HMAC) key, so a pooled context can always be
+ * used as if it had just been created.
+ *
+ * Each thread keeps at most MAX_IDLE contexts; the least recently used
+ * context is closed when that limit is exceeded, and an HMAC key stays
+ * reachable while one of its contexts is pooled. Pooled contexts are never
+ * shared between threads, so no locking is needed.
+ *
+ * Logging out of a token may destroy the keys the pooled contexts were
+ * created with, so invalidate() starts a new generation: the pool of
+ * each thread is closed the next time the thread uses it.
+ */
+final class ContextPool {
+
+    public static Logger logger = LoggerFactory.getLogger(ContextPool.class);
+
+    static final int MAX_IDLE = 16;
+
+    private static final ThreadLocal<Pool> pools =
+        ThreadLocal.withInitial(Pool::new);
+
+    private static final AtomicInteger generation = new AtomicInteger();
+
+    private ContextPool() { }
+
+    /**
+     * Returns an idle context for the given token, algorithm and key, or
+     * null if this thread has none. The caller owns the returned context.
+     */
+    static CipherContextProxy borrow(PK11Token token, Object alg,
+            PK11SymKey key)
+    {
+        Pool pool = pool();
+        List<CipherContextProxy> idle = pool.get(new Key(token, alg, key));
+        if (idle == null || idle.isEmpty()) {
+            return null;
+        }
+        pool.size--;
+        return idle.remove(idle.size() - 1);
+    }
+
+    /**
+     * Hands a context back to this thread's pool. The context must have
+     * been restarted so that it is ready for a new operation.
+     */
+    static void release(PK11Token token, Object alg, PK11SymKey key,
+            CipherContextProxy context)
+    {
+        if (context == null || context.isNull()) {
+            return;
+        }
+
+        Pool pool = pool();
+        pool.computeIfAbsent(new Key(token, alg, key),
+            k -> new ArrayList<>(2)).add(context);
+
+        if (++pool.size > MAX_IDLE) {
+            pool.evictOne();
+        }
+    }
+
+    /**
+     * Closes every idle context held by the calling thread.
+     */
+    static void clear() {
+        clear(pools.get());
+    }
+
+    /**
+     * Discards the idle contexts of every thread: those of the calling
+     * thread now, the others when their threads next use the pool.
+     */
+    static void invalidate() {
+        generation.incrementAndGet();
+        clear();
+    }
+
+    /**
+     * Returns the number of idle contexts held by the calling thread.
+     */
+    static int size() {
+        return pool().size;
+    }
+
+    private static Pool pool() {
+        Pool pool = pools.get();
+        int current = generation.get();
+        if (pool.generation != current) {
+            clear(pool);
+            pool.generation = current;
+        }
+        return pool;
+    }
+
+    private static void clear(Pool pool) {
+        for (List<CipherContextProxy> idle : pool.values()) {
+            for (CipherContextProxy context : idle) {
+                close(context);
+            }
+        }
+        pool.clear();
+        pool.size = 0;
+    }
+
+    private static void close(CipherContextProxy context) {
+        try {
+            context.close();
+        } catch (Exception e) {
+            logger.warn("Unable to release pooled context: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Idle contexts by key, in least-recently-used order.
+     */
+    private static final class Pool
+        extends LinkedHashMap<Key, List<CipherContextProxy>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        int size;
+        int generation = ContextPool.generation.get();
+
+        Pool() {
+            super(MAX_IDLE, 0.75f, true);
+        }
+
+        void evictOne() {
+            Iterator<List<CipherContextProxy>> it = values().iterator();
+            while (it.hasNext()) {
+                List<CipherContextProxy> idle = it.next();
+                if (idle.isEmpty()) {
+                    it.remove();
+                    continue;
+                }
+
+                close(idle.remove(0));
+                size--;
+                if (idle.isEmpty()) {
+                    it.remove();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Pool key. Algorithms and keys are compared by identity: a context
+     * created for one PK11SymKey is never handed out for another, even an
+     * equal one. PK11Token only overrides equals(), so it is left out of
+     * the hash code.
+     */
+    private static final class Key {
+        private final PK11Token token;
+        private final Object alg;
+        private final PK11SymKey symKey;
+
+        Key(PK11Token token, Object alg, PK11SymKey symKey) {
+            this.token = token;
+            this.alg = alg;
+            this.symKey = symKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return alg == other.alg && symKey == other.symKey &&
+                Objects.equals(token, other.token);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(alg) +
+                System.identityHashCode(symKey);
+        }
+    }
+}
@@ -8,14 +8,11 @@ import org.mozilla.jss.util.*;
 
 final class ModuleProxy extends NativeProxy {
     ModuleProxy(byte[] pointer) {
-        super(pointer);
+        super(pointer, ModuleProxy::releasePointer);
     }
 
     @Override
     protected native void releaseNativeResources();
 
-    @Override
-    protected void finalize() throws Throwable {
-        super.finalize();
-    }
+    private static native void releasePointer(byte[] pointer);
 }
@@ -190,6 +190,38 @@ Java_org_mozilla_jss_pkcs11_CertProxy_releaseNativeResources
 finish:
 	PR_DetachThread();
 }
+
+/******************************************************************
+ *
+ * C e r t P r o x y . r e l e a s e P o i n t e r
+ *
+ * Calls CERT_DestroyCertificate on a CERTCertificate whose CertProxy
+ * has been garbage collected.
+ */
+JNIEXPORT void JNICALL
+Java_org_mozilla_jss_pkcs11_CertProxy_releasePointer
+  (JNIEnv *env, jclass clazz, jbyteArray pointer)
+{
+	CERTCertificate *cert = NULL;
+	PRThread * VARIABLE_MAY_NOT_BE_USED pThread;
+
+	PR_ASSERT(env!=NULL);
+
+	pThread = PR_AttachThread(PR_SYSTEM_THREAD, 0, NULL);
+	PR_ASSERT(pThread != NULL);
+
+	if(JSS_getPtrFromByteArray(env, pointer, (void**)&cert) != PR_SUCCESS) {
+		PR_ASSERT( PR_FALSE );
+		goto finish;
+	}
+
+	if (cert != NULL) {
+		CERT_DestroyCertificate(cert);
+	}
+
+finish:
+	PR_DetachThread();
+}
 	
 
 /******************************************************************
@@ -9,6 +9,7 @@
 #include <seccomon.h>
 #include <pk11func.h>
 #include <secitem.h>
+#include <secerr.h>
 
 /* JSS includes */
 #include <java_ids.h>
@@ -119,13 +120,12 @@ finish:
 JNIEXPORT jbyteArray JNICALL
 Java_org_mozilla_jss_pkcs11_PK11Cipher_updateContext
     (JNIEnv *env, jclass clazz, jobject contextObj, jbyteArray inputBA,
-    jint blockSize)
+    jint offset, jint length, jint blockSize)
 {
     PK11Context *context=NULL;
     jbyte *inbuf=NULL;
-    unsigned int inlen;
     unsigned char *outbuf=NULL;
-    unsigned int outlen;
+    int outlen;
     jbyteArray outArray=NULL;
 
     PR_ASSERT(env!=NULL && clazz!=NULL && contextObj!=NULL && inputBA!=NULL);
@@ -135,25 +135,26 @@ Java_org_mozilla_jss_pkcs11_PK11Cipher_updateContext
         goto finish;
     }
 
-    /* extract input from byte array */
-    inlen = (*env)->GetArrayLength(env, inputBA);
-    inbuf = (*env)->GetByteArrayElements(env, inputBA, NULL);
-    if(inbuf == NULL) {
-        ASSERT_OUTOFMEM(env);
+    if( offset < 0 || length < 0 ||
+        offset + length > (*env)->GetArrayLength(env, inputBA) )
+    {
+        JSS_throw(env, ARRAY_INDEX_OUT_OF_BOUNDS_EXCEPTION);
         goto finish;
     }
 
-    /* create output buffer */
-    outlen = inlen + blockSize; /* this will hold the output */
+    /* copy the input out of the Java heap, and create output buffer */
+    inbuf = PR_Malloc(length > 0 ? length : 1);
+    outlen = length + blockSize; /* this will hold the output */
     outbuf = PR_Malloc(outlen);
-    if(outbuf == NULL) {
+    if(inbuf == NULL || outbuf == NULL) {
         JSS_throw(env, OUT_OF_MEMORY_ERROR);
         goto finish;
     }
+    (*env)->GetByteArrayRegion(env, inputBA, offset, length, inbuf);
 
     /* do the operation */
-    if( PK11_CipherOp(context, outbuf, (int*)&outlen, outlen,
-            (unsigned char*)inbuf, inlen) != SECSuccess) {
+    if( PK11_CipherOp(context, outbuf, &outlen, outlen,
+            (unsigned char*)inbuf, length) != SECSuccess) {
         JSS_throwMsgPrErrArg(
             env, TOKEN_EXCEPTION, "Cipher context update failed",
             PR_GetError());
@@ -168,15 +169,97 @@ Java_org_mozilla_jss_pkcs11_PK11Cipher_updateContext
     }
 
 finish:
+    if(inbuf) {
+        PR_Free(inbuf);
+    }
     if(outbuf) {
         PR_Free(outbuf);
     }
-    if (inbuf) {
-        (*env)->ReleaseByteArrayElements(env, inputBA, inbuf, JNI_ABORT);
-    }
     return outArray;
 }
 
+/***********************************************************************
+ *
+ * PK11Cipher.updateContextInto
+ *
+ * Reads input[inputOffset, inputOffset+inputLength) and writes the result
+ * into output starting at outputOffset, never writing past output.length.
+ * The arrays are copied to and from native buffers with Get/Set
+ * ByteArrayRegion rather than pinned, since the token may take a long
+ * time and pinning would hold up the garbage collector meanwhile. input
+ * and output may be the same array. Returns the number of bytes written.
+ */
+JNIEXPORT jint JNICALL
+Java_org_mozilla_jss_pkcs11_PK11Cipher_updateContextInto
+    (JNIEnv *env, jclass clazz, jobject contextObj,
+        jbyteArray inputBA, jint inputOffset, jint inputLength,
+        jbyteArray outputBA, jint outputOffset, jint blockSize)
+{
+    PK11Context *context=NULL;
+    unsigned char *inbuf=NULL;
+    unsigned char *outbuf=NULL;
+    int outlen = 0;
+    jint maxOut;
+    jint written = 0;
+
+    PR_ASSERT(env!=NULL && clazz!=NULL && contextObj!=NULL);
+
+    /* get the context */
+    if( JSS_PK11_getCipherContext(env, contextObj, &context) != PR_SUCCESS) {
+        return 0;
+    }
+
+    if( inputBA == NULL || outputBA == NULL ) {
+        JSS_throw(env, NULL_POINTER_EXCEPTION);
+        return 0;
+    }
+
+    maxOut = (*env)->GetArrayLength(env, outputBA) - outputOffset;
+    if( inputOffset < 0 || inputLength < 0 ||
+        inputOffset + inputLength > (*env)->GetArrayLength(env, inputBA) ||
+        outputOffset < 0 || maxOut < 0 )
+    {
+        JSS_throw(env, ARRAY_INDEX_OUT_OF_BOUNDS_EXCEPTION);
+        return 0;
+    }
+
+    /* the output is at most a carried over partial block plus the input */
+    if( maxOut > inputLength + blockSize ) {
+        maxOut = inputLength + blockSize;
+    }
+
+    inbuf = PR_Malloc(inputLength > 0 ? inputLength : 1);
+    outbuf = PR_Malloc(maxOut > 0 ? maxOut : 1);
+    if( inbuf == NULL || outbuf == NULL ) {
+        JSS_throw(env, OUT_OF_MEMORY_ERROR);
+        goto finish;
+    }
+    (*env)->GetByteArrayRegion(env, inputBA, inputOffset, inputLength,
+            (jbyte*)inbuf);
+
+    /* do the operation */
+    if( PK11_CipherOp(context, outbuf, &outlen, maxOut,
+            inbuf, inputLength) != SECSuccess ) {
+        JSS_throwMsgPrErrArg(
+            env, TOKEN_EXCEPTION, "Cipher context update failed",
+            PR_GetError());
+        goto finish;
+    }
+
+    (*env)->SetByteArrayRegion(env, outputBA, outputOffset, outlen,
+            (jbyte*)outbuf);
+    written = outlen;
+
+finish:
+    if( inbuf != NULL ) {
+        PR_Free(inbuf);
+    }
+    if( outbuf != NULL ) {
+        PR_Free(outbuf);
+    }
+    return written;
+}
+
 /***********************************************************************
  *
  * PK11Cipher.finalizeContext
@@ -233,6 +316,338 @@ finish:
 }
     
 
+/***********************************************************************
+ *
+ * PK11Cipher.finalizeContextInto
+ *
+ * Like finalizeContext, but writes the output into the caller's array
+ * starting at outputOffset. Returns the number of bytes written.
+ */
+JNIEXPORT jint JNICALL
+Java_org_mozilla_jss_pkcs11_PK11Cipher_finalizeContextInto
+    (JNIEnv *env, jclass clazz, jobject contextObj,
+        jbyteArray outputBA, jint outputOffset, jint blockSize)
+{
+    PK11Context *context=NULL;
+    unsigned char *outbuf=NULL;
+    unsigned int outlen = 0;
+    jint maxOut;
+    jint written = 0;
+
+    PR_ASSERT(env!=NULL && contextObj!=NULL);
+
+    /* get context */
+    if( JSS_PK11_getCipherContext(env, contextObj, &context) != PR_SUCCESS) {
+        return 0;
+    }
+
+    if( outputBA == NULL ) {
+        JSS_throw(env, NULL_POINTER_EXCEPTION);
+        return 0;
+    }
+
+    maxOut = (*env)->GetArrayLength(env, outputBA) - outputOffset;
+    if( outputOffset < 0 || maxOut < 0 ) {
+        JSS_throw(env, ARRAY_INDEX_OUT_OF_BOUNDS_EXCEPTION);
+        return 0;
+    }
+    if( maxOut > blockSize ) {
+        maxOut = blockSize; /* maximum amount needed */
+    }
+
+    outbuf = PR_Malloc(maxOut > 0 ? maxOut : 1);
+    if( outbuf == NULL ) {
+        JSS_throw(env, OUT_OF_MEMORY_ERROR);
+        return 0;
+    }
+
+    /* perform the finalization */
+    if( PK11_DigestFinal(context, outbuf, &outlen, maxOut) != SECSuccess ) {
+        JSS_throwMsgPrErrArg(
+            env, TOKEN_EXCEPTION, "Cipher context finalization failed",
+            PR_GetError());
+        goto finish;
+    }
+
+    (*env)->SetByteArrayRegion(env, outputBA, outputOffset, outlen,
+            (jbyte*)outbuf);
+    written = outlen;
+
+finish:
+    PR_Free(outbuf);
+    return written;
+}
+
+/***********************************************************************
+ *
+ * PK11Cipher.updateContextDirect
+ *
+ * Like updateContext, but reads the input from and writes the output to
+ * the native memory of direct ByteBuffers, so no Java arrays are allocated
+ * or copied. The token may write output before it has consumed all of
+ * the input, so if the two ranges overlap (slices of the same buffer) the
+ * input is copied first. Returns the number of bytes written to the output.
+ */
+JNIEXPORT jint JNICALL
+Java_org_mozilla_jss_pkcs11_PK11Cipher_updateContextDirect
+    (JNIEnv *env, jclass clazz, jobject contextObj,
+        jobject inputBuf, jint inputOffset, jint inputLength,
+        jobject outputBuf, jint outputOffset, jint outputLength)
+{
+    PK11Context *context=NULL;
+    jbyte *inbuf=NULL;
+    jbyte *outbuf=NULL;
+    unsigned char *copy=NULL;
+    int outlen = 0;
+    SECStatus status;
+    PRErrorCode error = 0;
+
+    PR_ASSERT(env!=NULL && clazz!=NULL && contextObj!=NULL);
+
+    /* get the context */
+    if( JSS_PK11_getCipherContext(env, contextObj, &context) != PR_SUCCESS) {
+        return 0;
+    }
+
+    /* locate input and output */
+    if( !JSS_RefDirectBuffer(env, inputBuf, inputOffset, inputLength,
+            &inbuf) ||
+        !JSS_RefDirectBuffer(env, outputBuf, outputOffset, outputLength,
+            &outbuf) )
+    {
+        /* exception was thrown */
+        return 0;
+    }
+
+    if( inputLength > 0 && outputLength > 0 &&
+        (PRUword) outbuf < (PRUword) inbuf + inputLength &&
+        (PRUword) inbuf < (PRUword) outbuf + outputLength )
+    {
+        copy = PR_Malloc(inputLength);
+        if( copy == NULL ) {
+            JSS_throw(env, OUT_OF_MEMORY_ERROR);
+            return 0;
+        }
+        memcpy(copy, inbuf, inputLength);
+        inbuf = (jbyte*) copy;
+    }
+
+    /* do the operation */
+    status = PK11_CipherOp(context, (unsigned char*)outbuf, &outlen,
+            outputLength, (unsigned char*)inbuf, inputLength);
+    if( status != SECSuccess ) {
+        error = PR_GetError();
+    }
+
+    if( copy != NULL ) {
+        PR_Free(copy);
+    }
+
+    if( status != SECSuccess ) {
+        JSS_throwMsgPrErrArg(
+            env, TOKEN_EXCEPTION, "Cipher context update failed", error);
+        return 0;
+    }
+
+    return outlen;
+}
+
+/***********************************************************************
+ *
+ * PK11Cipher.finalizeContextDirect
+ *
+ * Like finalizeContext, but writes the output into the native memory of a
+ * direct ByteBuffer. Returns the number of bytes written.
+ */
+JNIEXPORT jint JNICALL
+Java_org_mozilla_jss_pkcs11_PK11Cipher_finalizeContextDirect
+    (JNIEnv *env, jclass clazz, jobject contextObj,
+        jobject outputBuf, jint outputOffset, jint outputLength)
+{
+    PK11Context *context=NULL;
+    jbyte *outbuf=NULL;
+    unsigned int outlen = 0;
+
+    PR_ASSERT(env!=NULL && contextObj!=NULL);
+
+    /* get context */
+    if( JSS_PK11_getCipherContext(env, contextObj, &context) != PR_SUCCESS) {
+        return 0;
+    }
+
+    if( !JSS_RefDirectBuffer(env, outputBuf, outputOffset, outputLength,
+            &outbuf) )
+    {
+        /* exception was thrown */
+        return 0;
+    }
+
+    /* perform the finalization */
+    if( PK11_DigestFinal(context, (unsigned char*)outbuf, &outlen,
+            outputLength) != SECSuccess ) {
+        JSS_throwMsgPrErrArg(
+            env, TOKEN_EXCEPTION, "Cipher context finalization failed",
+            PR_GetError());
+        return 0;
+    }
+
+    return outlen;
+}
+
+
+/***********************************************************************
+ *
+ * PK11Cipher.aeadOp
+ *
+ * Performs a one-shot AES-GCM or ChaCha20-Poly1305 operation with
+ * PK11_Encrypt/PK11_Decrypt, which handle the tag internally: on
+ * encryption it is appended to the ciphertext, on decryption it is taken
+ * from the end of the input and verified. Returns the number of bytes
+ * written to output.
+ */
+JNIEXPORT jint JNICALL
+Java_org_mozilla_jss_pkcs11_PK11Cipher_aeadOp
+    (JNIEnv *env, jclass clazz, jboolean encrypt, jobject keyObj,
+        jobject algObj, jbyteArray ivBA, jint tagBits, jbyteArray aadBA,
+        jbyteArray inputBA, jint inputOffset, jint inputLength,
+        jbyteArray outputBA, jint outputOffset)
+{
+    CK_MECHANISM_TYPE mech;
+    PK11SymKey *key = NULL;
+    jbyte *iv = NULL;
+    jsize ivLen = 0;
+    jbyte *aad = NULL;
+    jsize aadLen = 0;
+    unsigned char *inbuf = NULL;
+    unsigned char *outbuf = NULL;
+    jint maxOut;
+    unsigned int outlen = 0;
+    CK_GCM_PARAMS gcmParams;
+#ifdef CKM_CHACHA20_POLY1305
+    CK_SALSA20_CHACHA20_POLY1305_PARAMS chachaParams;
+#endif
+    SECItem param = { siBuffer, NULL, 0 };
+    SECStatus status = SECFailure;
+    PRErrorCode error = 0;
+
+    PR_ASSERT(env!=NULL && clazz!=NULL && keyObj!=NULL && algObj!=NULL);
+
+    mech = JSS_getPK11MechFromAlg(env, algObj);
+    if( mech == CKM_INVALID_MECHANISM ) {
+        JSS_throwMsg(env, TOKEN_EXCEPTION, "Unable to resolve algorithm to"
+            " PKCS #11 mechanism");
+        return 0;
+    }
+
+    if( JSS_PK11_getSymKeyPtr(env, keyObj, &key) != PR_SUCCESS ) {
+        return 0;
+    }
+
+    if( ivBA == NULL || inputBA == NULL || outputBA == NULL ) {
+        JSS_throw(env, NULL_POINTER_EXCEPTION);
+        return 0;
+    }
+
+    maxOut = (*env)->GetArrayLength(env, outputBA) - outputOffset;
+    if( inputOffset < 0 || inputLength < 0 ||
+        inputOffset + inputLength > (*env)->GetArrayLength(env, inputBA) ||
+        outputOffset < 0 || maxOut < 0 )
+    {
+        JSS_throw(env, ARRAY_INDEX_OUT_OF_BOUNDS_EXCEPTION);
+        return 0;
+    }
+
+    if( !JSS_RefByteArray(env, ivBA, &iv, &ivLen) ) {
+        goto finish;
+    }
+    if( aadBA != NULL && !JSS_RefByteArray(env, aadBA, &aad, &aadLen) ) {
+        goto finish;
+    }
+
+    if( mech == CKM_AES_GCM ) {
+        memset(&gcmParams, 0, sizeof(gcmParams));
+        gcmParams.pIv = (CK_BYTE_PTR) iv;
+        gcmParams.ulIvLen = ivLen;
+#ifdef CKM_CHACHA20_POLY1305
+        /* Only present in the PKCS #11 v3.0 headers. */
+        gcmParams.ulIvBits = ivLen * 8;
+#endif
+        gcmParams.pAAD = (CK_BYTE_PTR) aad;
+        gcmParams.ulAADLen = aadLen;
+        gcmParams.ulTagBits = tagBits;
+        param.data = (unsigned char *) &gcmParams;
+        param.len = sizeof(gcmParams);
+#ifdef CKM_CHACHA20_POLY1305
+    } else if( mech == CKM_CHACHA20_POLY1305 ) {
+        memset(&chachaParams, 0, sizeof(chachaParams));
+        chachaParams.pNonce = (CK_BYTE_PTR) iv;
+        chachaParams.ulNonceLen = ivLen;
+        chachaParams.pAAD = (CK_BYTE_PTR) aad;
+        chachaParams.ulAADLen = aadLen;
+        param.data = (unsigned char *) &chachaParams;
+        param.len = sizeof(chachaParams);
+#endif
+    } else {
+        JSS_throwMsg(env, TOKEN_EXCEPTION,
+            "AEAD mechanism not supported by this version of NSS");
+        goto finish;
+    }
+
+    /*
+     * Copy the input and output rather than pinning the arrays: the token
+     * may take a long time, and pinning would hold up the garbage
+     * collector meanwhile. The output is at most the input plus the tag.
+     */
+    if( maxOut > inputLength + (tagBits + 7) / 8 ) {
+        maxOut = inputLength + (tagBits + 7) / 8;
+    }
+    inbuf = PR_Malloc(inputLength > 0 ? inputLength : 1);
+    outbuf = PR_Malloc(maxOut > 0 ? maxOut : 1);
+    if( inbuf == NULL || outbuf == NULL ) {
+        JSS_throw(env, OUT_OF_MEMORY_ERROR);
+        goto finish;
+    }
+    (*env)->GetByteArrayRegion(env, inputBA, inputOffset, inputLength,
+            (jbyte*)inbuf);
+
+    if( encrypt ) {
+        status = PK11_Encrypt(key, mech, &param,
+            outbuf, &outlen, maxOut, inbuf, inputLength);
+    } else {
+        status = PK11_Decrypt(key, mech, &param,
+            outbuf, &outlen, maxOut, inbuf, inputLength);
+    }
+    if( status != SECSuccess ) {
+        error = PR_GetError();
+    } else {
+        (*env)->SetByteArrayRegion(env, outputBA, outputOffset, outlen,
+                (jbyte*)outbuf);
+    }
+
+    if( status != SECSuccess ) {
+        if( !encrypt && error == SEC_ERROR_BAD_DATA ) {
+            JSS_throwMsgPrErrArg(env, AEAD_BAD_TAG_EXCEPTION,
+                "Authentication tag mismatch", error);
+        } else if( error == SEC_ERROR_OUTPUT_LEN ) {
+            JSS_throw(env, ARRAY_INDEX_OUT_OF_BOUNDS_EXCEPTION);
+        } else {
+            JSS_throwMsgPrErrArg(env, TOKEN_EXCEPTION,
+                encrypt ? "AEAD encryption failed" : "AEAD decryption failed",
+                error);
+        }
+    }
+
+finish:
+    if( inbuf != NULL ) {
+        PR_Free(inbuf);
+    }
+    if( outbuf != NULL ) {
+        PR_Free(outbuf);
+    }
+    JSS_DerefByteArray(env, aadBA, aad, JNI_ABORT);
+    JSS_DerefByteArray(env, ivBA, iv, JNI_ABORT);
+    return status == SECSuccess ? (jint) outlen : 0;
+}
 
 /***********************************************************************
  *
@@ -330,3 +745,19 @@ Java_org_mozilla_jss_pkcs11_CipherContextProxy_releaseNativeResources
         PK11_DestroyContext(context, PR_TRUE /*freeit*/);
     }
 }
+
+/***********************************************************************
+ *
+ * CipherContextProxy.releasePointer
+ */
+JNIEXPORT void JNICALL
+Java_org_mozilla_jss_pkcs11_CipherContextProxy_releasePointer
+    (JNIEnv *env, jclass clazz, jbyteArray pointer)
+{
+    PK11Context *context = NULL;
+
+    if (JSS_getPtrFromByteArray(env, pointer, (void**)&context) == PR_SUCCESS &&
+            context != NULL) {
+        PK11_DestroyContext(context, PR_TRUE /*freeit*/);
+    }
+}
@@ -4,12 +4,17 @@
 
 package org.mozilla.jss.pkcs11;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.BadPaddingException;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.RC2ParameterSpec;
 
@@ -42,6 +47,14 @@ public final class PK11Cipher
     // set with initXXX()
     private CipherContextProxy contextProxy = null;
 
+    // AEAD only: tag length in bits, set with initXXX()
+    private int tagBits=0;
+
+    // AEAD only: NSS has no multi-part interface for AEAD mechanisms,
+    // so AAD and input are buffered until doFinal().
+    private ByteArrayOutputStream aad=null;
+    private ByteArrayOutputStream buffered=null;
+
     // modified by various operations
     private int state=UNINITIALIZED;
 
@@ -81,10 +94,53 @@ public final class PK11Cipher
             IV = ((IvParameterSpec)params).getIV();
         } else if( params instanceof RC2ParameterSpec ) {
             IV = ((RC2ParameterSpec)params).getIV();
+        } else if( params instanceof GCMParameterSpec ) {
+            IV = ((GCMParameterSpec)params).getIV();
         }
         return IV;
     }
 
+    /**
+     * Validates the parameters of an AEAD algorithm and returns the tag
+     * length in bits.
+     */
+    private int getTagBitsFromParams(AlgorithmParameterSpec params)
+        throws InvalidAlgorithmParameterException
+    {
+        byte[] nonce = getIVFromParams(params);
+        if( nonce == null || nonce.length == 0 ) {
+            throw new InvalidAlgorithmParameterException(algorithm +
+                " requires an IV");
+        }
+
+        if( !(params instanceof GCMParameterSpec) ) {
+            return algorithm.getTagLength() * 8;
+        }
+
+        int bits = ((GCMParameterSpec)params).getTLen();
+        if( bits < 32 || bits > 128 || bits % 8 != 0 ) {
+            throw new InvalidAlgorithmParameterException(
+                "Unsupported GCM tag length: " + bits);
+        }
+        return bits;
+    }
+
+    private void initAEAD(SymmetricKey key, AlgorithmParameterSpec parameters,
+            int state)
+        throws InvalidKeyException, InvalidAlgorithmParameterException
+    {
+        checkKey(key);
+        checkParams(parameters);
+
+        tagBits = getTagBitsFromParams(parameters);
+        IV = getIVFromParams(parameters);
+        this.key = key;
+        this.parameters = parameters;
+        this.state = state;
+        aad = new ByteArrayOutputStream();
+        buffered = new ByteArrayOutputStream();
+    }
+
 
     /**
      * @deprecated isPadded() in EncryptionAlgorithm has been deprecated
@@ -97,6 +153,11 @@ public final class PK11Cipher
     {
         reset();
 
+        if( algorithm.isAEAD() ) {
+            initAEAD(key, parameters, ENCRYPT);
+            return;
+        }
+
         checkKey(key);
         checkParams(parameters);
 
@@ -127,6 +188,11 @@ public final class PK11Cipher
     {
         reset();
 
+        if( algorithm.isAEAD() ) {
+            initAEAD(key, parameters, DECRYPT);
+            return;
+        }
+
         checkKey(key);
         checkParams(parameters);
 
@@ -149,59 +215,101 @@ public final class PK11Cipher
     @Override
     public byte[] update(byte[] bytes)
         throws IllegalStateException, TokenException
+    {
+        return update(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public byte[] update(byte[] bytes, int offset, int length)
+        throws IllegalStateException, TokenException
     {
         if( state == UNINITIALIZED ) {
             throw new IllegalStateException();
         }
 
-        return updateContext( contextProxy, bytes, algorithm.getBlockSize());
+        if( algorithm.isAEAD() ) {
+            buffered.write(bytes, offset, length);
+            return new byte[0];
+        }
+
+        return updateContext(contextProxy, bytes, offset, length,
+                    algorithm.getBlockSize());
     }
 
     @Override
-    public byte[] update(byte[] bytes, int offset, int length)
+    public int update(byte[] input, int inputOffset, int inputLength,
+            byte[] output, int outputOffset)
         throws IllegalStateException, TokenException
     {
-        byte[] sub = new byte[length];
+        if( state == UNINITIALIZED ) {
+            throw new IllegalStateException();
+        }
 
-        System.arraycopy( bytes, offset, sub, 0, length );
+        if( algorithm.isAEAD() ) {
+            buffered.write(input, inputOffset, inputLength);
+            return 0;
+        }
 
-        return update(sub);
+        // The native code copies the input before writing any output,
+        // so the ranges may overlap.
+        return updateContextInto(contextProxy, input, inputOffset,
+                    inputLength, output, outputOffset,
+                    algorithm.getBlockSize());
     }
 
-    /**
-     * @deprecated isPadded() in EncryptionAlgorithm has been deprecated
-     */
     @Override
-    @Deprecated
     public byte[] doFinal(byte[] bytes)
         throws IllegalStateException, IllegalBlockSizeException,
         BadPaddingException, TokenException
+    {
+        return doFinal(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public byte[] doFinal(byte[] bytes, int offset, int length)
+        throws IllegalStateException, IllegalBlockSizeException,
+        BadPaddingException, TokenException
     {
         if( state == UNINITIALIZED ) {
             throw new IllegalStateException();
         }
 
-        byte[] first = update(bytes);
-
-        byte[] last = finalizeContext(contextProxy, algorithm.getBlockSize(),
-                    algorithm.isPadded() );
+        byte[] output;
+        if( algorithm.isAEAD() ) {
+            output = new byte[getAEADOutputSize(length)];
+        } else {
+            // Room for the buffered partial block, the input, and the padding.
+            output = new byte[length + 2 * algorithm.getBlockSize()];
+        }
+        int written = doFinal(bytes, offset, length, output, 0);
 
-        byte[] combined = new byte[ first.length+last.length ];
-        System.arraycopy(first, 0, combined, 0, first.length);
-        System.arraycopy(last, 0, combined, first.length, last.length);
-        return combined;
+        if( written == output.length ) {
+            return output;
+        }
+        return Arrays.copyOf(output, written);
     }
 
     @Override
-    public byte[] doFinal(byte[] bytes, int offset, int length)
+    public int doFinal(byte[] input, int inputOffset, int inputLength,
+            byte[] output, int outputOffset)
         throws IllegalStateException, IllegalBlockSizeException,
         BadPaddingException, TokenException
     {
-        byte[] sub = new byte[length];
+        if( state == UNINITIALIZED ) {
+            throw new IllegalStateException();
+        }
+
+        if( algorithm.isAEAD() ) {
+            return finalizeAEAD(input, inputOffset, inputLength,
+                        output, outputOffset);
+        }
 
-        System.arraycopy(bytes, offset, sub, 0, length);
+        int written = update(input, inputOffset, inputLength,
+                        output, outputOffset);
 
-        return doFinal(sub);
+        written += finalizeContextInto(contextProxy, output,
+                        outputOffset + written, algorithm.getBlockSize());
+        return written;
     }
 
     /**
@@ -216,10 +324,119 @@ public final class PK11Cipher
         if( state == UNINITIALIZED ) {
             throw new IllegalStateException();
         }
+        if( algorithm.isAEAD() ) {
+            return doFinal(new byte[0], 0, 0);
+        }
         return finalizeContext(contextProxy, algorithm.getBlockSize(),
                     algorithm.isPadded() );
     }
 
+    @Override
+    public int update(ByteBuffer input, ByteBuffer output)
+        throws IllegalStateException, TokenException
+    {
+        if( state == UNINITIALIZED ) {
+            throw new IllegalStateException();
+        }
+        if( algorithm.isAEAD() || !input.isDirect() || !output.isDirect() ) {
+            return super.update(input, output);
+        }
+
+        int written = updateContextDirect(contextProxy,
+            input, input.position(), input.remaining(),
+            output, output.position(), output.remaining());
+
+        input.position(input.limit());
+        output.position(output.position() + written);
+        return written;
+    }
+
+    @Override
+    public int doFinal(ByteBuffer input, ByteBuffer output)
+        throws IllegalStateException, IllegalBlockSizeException,
+        BadPaddingException, TokenException
+    {
+        if( state == UNINITIALIZED ) {
+            throw new IllegalStateException();
+        }
+        if( algorithm.isAEAD() || !input.isDirect() || !output.isDirect() ) {
+            return super.doFinal(input, output);
+        }
+
+        int written = update(input, output);
+
+        int last = finalizeContextDirect(contextProxy,
+            output, output.position(), output.remaining());
+
+        output.position(output.position() + last);
+        return written + last;
+    }
+
+    @Override
+    public void updateAAD(byte[] bytes, int offset, int length)
+        throws IllegalStateException, TokenException
+    {
+        if( !algorithm.isAEAD() ) {
+            super.updateAAD(bytes, offset, length);
+            return;
+        }
+        if( state == UNINITIALIZED ) {
+            throw new IllegalStateException();
+        }
+        if( buffered.size() > 0 ) {
+            throw new IllegalStateException(
+                "AAD must be supplied before any input");
+        }
+
+        aad.write(bytes, offset, length);
+    }
+
+    /**
+     * Returns the number of bytes doFinal() will produce for an AEAD
+     * operation given <code>length</code> more bytes of input.
+     */
+    private int getAEADOutputSize(int length) {
+        int total = buffered.size() + length;
+        if( state == ENCRYPT ) {
+            return total + tagBits / 8;
+        }
+        return Math.max(total - tagBits / 8, 0);
+    }
+
+    private int finalizeAEAD(byte[] input, int inputOffset, int inputLength,
+            byte[] output, int outputOffset)
+        throws IllegalStateException, BadPaddingException, TokenException
+    {
+        // Avoid copying the input when everything arrives in one call.
+        if( buffered.size() > 0 ) {
+            buffered.write(input, inputOffset, inputLength);
+            input = buffered.toByteArray();
+            inputOffset = 0;
+            inputLength = input.length;
+        }
+
+        boolean encrypt = (state == ENCRYPT);
+        if( !encrypt && inputLength < tagBits / 8 ) {
+            buffered.reset();
+            aad.reset();
+            throw new AEADBadTagException("Input too short for the tag");
+        }
+
+        // Reusing a nonce with the same key is catastrophic for both
+        // GCM and ChaCha20-Poly1305, so an encryption context must be
+        // re-initialized with a fresh IV. A decryption context may be
+        // reused with the same key and IV.
+        byte[] aadBytes = aad.toByteArray();
+        buffered.reset();
+        aad.reset();
+        if( encrypt ) {
+            state = UNINITIALIZED;
+        }
+
+        return aeadOp(encrypt, key, algorithm, IV, tagBits, aadBytes,
+                    input, inputOffset, inputLength, output, outputOffset);
+    }
+
     private static native CipherContextProxy
     initContext(boolean encrypt, SymmetricKey key, EncryptionAlgorithm alg,
                  byte[] IV, boolean padded)
@@ -232,19 +449,73 @@ public final class PK11Cipher
         throws TokenException;
 
     private static native byte[]
-    updateContext( CipherContextProxy context, byte[] input, int blocksize )
+    updateContext( CipherContextProxy context, byte[] input, int offset,
+                int length, int blocksize )
+        throws TokenException;
+
+    // Writes the output into the caller's array and returns the number of
+    // bytes written, without allocating any intermediate arrays.
+    private static native int
+    updateContextInto( CipherContextProxy context,
+                byte[] input, int inputOffset, int inputLength,
+                byte[] output, int outputOffset, int blocksize )
         throws TokenException;
 
     private static native byte[]
     finalizeContext( CipherContextProxy context, int blocksize, boolean padded)
         throws TokenException, IllegalBlockSizeException, BadPaddingException;
 
+    private static native int
+    finalizeContextInto( CipherContextProxy context,
+                byte[] output, int outputOffset, int blocksize )
+        throws TokenException, IllegalBlockSizeException, BadPaddingException;
+
+    // Direct ByteBuffer variants: read and write the buffers' native memory
+    // in place and return the number of bytes written to the output.
+    private static native int
+    updateContextDirect( CipherContextProxy context,
+                ByteBuffer input, int inputOffset, int inputLength,
+                ByteBuffer output, int outputOffset, int outputLength )
+        throws TokenException;
+
+    private static native int
+    finalizeContextDirect( CipherContextProxy context,
+                ByteBuffer output, int outputOffset, int outputLength )
+        throws TokenException, IllegalBlockSizeException, BadPaddingException;
+
+    // One-shot AEAD encryption or decryption. Decryption fails with an
+    // AEADBadTagException if the tag does not verify.
+    private static native int
+    aeadOp( boolean encrypt, SymmetricKey key, EncryptionAlgorithm alg,
+                byte[] IV, int tagBits, byte[] aad,
+                byte[] input, int inputOffset, int inputLength,
+                byte[] output, int outputOffset )
+        throws TokenException, BadPaddingException;
+
     private void reset() {
+        // Free the previous context now rather than leaving it to the
+        // garbage collector.
+        releaseContext();
         parameters = null;
         key = null;
         IV = null;
+        tagBits = 0;
+        aad = null;
+        buffered = null;
         state = UNINITIALIZED;
+    }
+
+    private void releaseContext() {
+        CipherContextProxy proxy = contextProxy;
         contextProxy = null;
+        if (proxy != null) {
+            try {
+                proxy.close();
+            } catch (Exception e) {
+                throw new RuntimeException("Unable to free cipher context: " +
+                    e.getMessage(), e);
+            }
+        }
     }
 
     /**
@@ -292,19 +563,8 @@ public final class PK11Cipher
         }
     }
 
-    @Override
-    public void finalize() throws Throwable {
-        close();
-    }
-
     @Override
     public void close() throws Exception {
-        if (contextProxy != null) {
-            try {
-                contextProxy.close();
-            } finally {
-                contextProxy = null;
-            }
-        }
+        releaseContext();
     }
 }
@@ -62,11 +62,6 @@ abstract class PK11Key
     /////////////////////////////////////////////////////////////
     protected KeyProxy keyProxy;
 
-    @Override
-    public void finalize() throws Throwable {
-        close();
-    }
-
     @Override
     public void close() throws Exception {
         if (keyProxy != null) {
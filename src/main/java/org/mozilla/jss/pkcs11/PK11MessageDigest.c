@@ -137,6 +137,37 @@ finish:
 }
 
 
+/***********************************************************************
+ *
+ * PK11MessageDigest.updateDirect
+ *
+ * Digests the contents of a direct ByteBuffer in place, without copying
+ * them through the Java heap.
+ */
+JNIEXPORT void JNICALL
+Java_org_mozilla_jss_pkcs11_PK11MessageDigest_updateDirect
+    (JNIEnv *env, jclass clazz, jobject proxyObj, jobject inbuf,
+        jint offset, jint len)
+{
+    PK11Context *context = NULL;
+    jbyte *bytes = NULL;
+
+    if( JSS_PK11_getCipherContext(env, proxyObj, &context) != PR_SUCCESS ) {
+        /* exception was thrown */
+        return;
+    }
+
+    if (!JSS_RefDirectBuffer(env, inbuf, offset, len, &bytes)) {
+        /* exception was thrown */
+        return;
+    }
+
+    if( PK11_DigestOp(context, (unsigned char*)bytes, len) != SECSuccess ) {
+        JSS_throwMsg(env, DIGEST_EXCEPTION, "Digest operation failed");
+    }
+}
+
+
 /***********************************************************************
  *
  * PK11MessageDigest.digest
@@ -176,3 +207,26 @@ finish:
     JSS_DerefByteArray(env, outbuf, bytes, 0);
     return outLen;
 }
+
+/***********************************************************************
+ *
+ * PK11MessageDigest.restartContext
+ *
+ * PK11_DigestBegin abandons any operation in progress and reinitializes
+ * the context with its original mechanism, parameters and key, which is
+ * much cheaper than creating a new context.
+ */
+JNIEXPORT jboolean JNICALL
+Java_org_mozilla_jss_pkcs11_PK11MessageDigest_restartContext
+    (JNIEnv *env, jclass clazz, jobject proxyObj)
+{
+    PK11Context *context = NULL;
+
+    if( JSS_PK11_getCipherContext(env, proxyObj, &context) != PR_SUCCESS ) {
+        /* exception was thrown */
+        (*env)->ExceptionClear(env);
+        return JNI_FALSE;
+    }
+
+    return PK11_DigestBegin(context) == SECSuccess ? JNI_TRUE : JNI_FALSE;
+}
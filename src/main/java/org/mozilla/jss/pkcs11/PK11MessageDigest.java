@@ -5,12 +5,18 @@
 package org.mozilla.jss.pkcs11;
 
 import org.mozilla.jss.crypto.*;
+import java.nio.ByteBuffer;
 import java.security.DigestException;
 import java.security.NoSuchAlgorithmException;
 import java.security.InvalidKeyException;
 
 /**
  * Message Digesting with PKCS #11.
+ *
+ * The native context is created lazily on the first update. Once a digest
+ * has been computed, the context is restarted and returned to a per-thread
+ * pool instead of being discarded, so short-lived digests reuse contexts
+ * rather than creating one each.
  */
 public final class PK11MessageDigest
     extends JSSMessageDigest
@@ -31,8 +37,6 @@ public final class PK11MessageDigest
         if( ! token.doesAlgorithm(alg) ) {
             throw new NoSuchAlgorithmException();
         }
-
-        reset();
     }
 
     @Override
@@ -48,57 +52,107 @@ public final class PK11MessageDigest
             throw new InvalidKeyException("HMAC key is not a PKCS #11 key");
         }
 
+        releaseContext();
         hmacKey = (PK11SymKey) key;
-        this.digestProxy = initHMAC(token, alg, hmacKey);
+        context();
     }
 
     @Override
     public void update(byte[] input, int offset, int len)
         throws DigestException
     {
-        if( digestProxy == null ) {
-            throw new DigestException("Digest not correctly initialized");
-        }
         if( input.length < offset+len ) {
             throw new IllegalArgumentException(
                 "Input buffer is not large enough for offset and length");
         }
 
-        update(digestProxy, input, offset, len);
+        update(context(), input, offset, len);
+    }
+
+    @Override
+    public void update(ByteBuffer input) throws DigestException {
+        if (!input.isDirect()) {
+            super.update(input);
+            return;
+        }
+        int len = input.remaining();
+        if (len <= 0) {
+            return;
+        }
+
+        updateDirect(context(), input, input.position(), len);
+        input.position(input.limit());
     }
 
     @Override
     public int digest(byte[] outbuf, int offset, int len)
         throws DigestException
     {
-        if( digestProxy == null ) {
-            throw new DigestException("Digest not correctly initialized");
-        }
         if( outbuf.length < offset+len ) {
             throw new IllegalArgumentException(
                 "Output buffer is not large enough for offset and length");
         }
 
-        int retval = digest(digestProxy, outbuf, offset, len);
+        int retval = digest(context(), outbuf, offset, len);
 
-        reset();
+        releaseContext();
 
         return retval;
     }
 
     @Override
     public void reset() throws DigestException {
-        if( ! (alg instanceof HMACAlgorithm || alg instanceof CMACAlgorithm) ) {
-            // This is a regular digest, so we have enough information
-            // to initialize the context
-            this.digestProxy = initDigest(alg);
-        } else if( hmacKey != null ) {
-            // This is an HMAC digest, and we have a key
-            this.digestProxy = initHMAC(token, alg, hmacKey);
-        } else {
-            // this is an HMAC digest for which we don't have the key yet,
-            // we have to wait to construct the context
-            this.digestProxy = null;
+        releaseContext();
+    }
+
+    private boolean isKeyed() {
+        return alg instanceof HMACAlgorithm || alg instanceof CMACAlgorithm;
+    }
+
+    /**
+     * Returns the native context, taking one from the pool or creating
+     * it if this digest doesn't hold one yet.
+     */
+    private CipherContextProxy context() throws DigestException {
+        if( digestProxy != null ) {
+            return digestProxy;
+        }
+        if( isKeyed() && hmacKey == null ) {
+            // this is an HMAC digest for which we don't have the key yet
+            throw new DigestException("Digest not correctly initialized");
+        }
+
+        digestProxy = ContextPool.borrow(token, alg, hmacKey);
+        if( digestProxy == null ) {
+            if( isKeyed() ) {
+                digestProxy = initHMAC(token, alg, hmacKey);
+            } else {
+                digestProxy = initDigest(alg);
+            }
+        }
+        return digestProxy;
+    }
+
+    /**
+     * Restarts the native context and returns it to the pool. A context
+     * which cannot be restarted is freed instead.
+     */
+    private void releaseContext() {
+        CipherContextProxy proxy = digestProxy;
+        digestProxy = null;
+        if( proxy == null ) {
+            return;
+        }
+
+        if( restartContext(proxy) ) {
+            ContextPool.release(token, alg, hmacKey, proxy);
+            return;
+        }
+        try {
+            proxy.close();
+        } catch( Exception e ) {
+            throw new RuntimeException("Unable to free digest context: " +
+                e.getMessage(), e);
         }
     }
 
@@ -118,22 +172,24 @@ public final class PK11MessageDigest
     private static native void
     update(CipherContextProxy proxy, byte[] inbuf, int offset, int len);
 
+    private static native void
+    updateDirect(CipherContextProxy proxy, ByteBuffer inbuf, int offset,
+        int len);
+
     private static native int
     digest(CipherContextProxy proxy, byte[] outbuf, int offset, int len);
 
-    @Override
-    public void finalize() throws Throwable {
-        close();
-    }
+    // Discards any pending input and reinitializes the context with the
+    // same algorithm and key. Returns false if the token refuses.
+    private static native boolean
+    restartContext(CipherContextProxy proxy);
 
+    /**
+     * Returns the native context to the per-thread pool. An unreferenced
+     * context is freed by its own proxy, so this class needs no finalizer.
+     */
     @Override
     public void close() throws Exception {
-        if (digestProxy != null) {
-            try {
-                digestProxy.close();
-            } finally {
-                digestProxy = null;
-            }
-        }
+        releaseContext();
     }
 }
@@ -231,3 +231,22 @@ Java_org_mozilla_jss_pkcs11_ModuleProxy_releaseNativeResources
         SECMOD_DestroyModule(module);
     }
 }
+
+/**********************************************************************
+ * ModuleProxy.releasePointer
+ */
+JNIEXPORT void JNICALL
+Java_org_mozilla_jss_pkcs11_ModuleProxy_releasePointer
+    (JNIEnv *env, jclass clazz, jbyteArray pointer)
+{
+    SECMODModule *module = NULL;
+
+    if (JSS_getPtrFromByteArray(env, pointer, (void **)&module) != PR_SUCCESS) {
+        ASSERT_OUTOFMEM(env);
+        return;
+    }
+
+    if (module != NULL) {
+        SECMOD_DestroyModule(module);
+    }
+}
@@ -244,6 +244,35 @@ finish:
     return;
 }
 
+/*
+ * PrivateKeyProxy.releasePointer
+ */
+JNIEXPORT void JNICALL
+Java_org_mozilla_jss_pkcs11_PrivateKeyProxy_releasePointer
+  (JNIEnv *env, jclass clazz, jbyteArray pointer)
+{
+    SECKEYPrivateKey *privk = NULL;
+    PRThread * VARIABLE_MAY_NOT_BE_USED pThread;
+
+    PR_ASSERT(env!=NULL);
+
+    pThread = PR_AttachThread(PR_SYSTEM_THREAD, 0, NULL);
+    PR_ASSERT(pThread != NULL);
+
+    if(JSS_getPtrFromByteArray(env, pointer, (void**) &privk) != PR_SUCCESS) {
+        PR_ASSERT( PR_FALSE );
+        goto finish;
+    }
+
+    if (privk != NULL) {
+        SECKEY_DestroyPrivateKey(privk);
+    }
+
+finish:
+    PR_DetachThread();
+    return;
+}
+
 
 /*
  * Given a PrivateKey object, extracts the SECKEYPrivateKey* and stores it
@@ -137,9 +137,11 @@ class PrivateKeyProxy extends KeyProxy {
     public static Logger logger = LoggerFactory.getLogger(PrivateKeyProxy.class);
 
     public PrivateKeyProxy(byte[] pointer) {
-        super(pointer);
+        super(pointer, PrivateKeyProxy::releasePointer);
     }
 
     @Override
     protected native void releaseNativeResources();
+
+    private static native void releasePointer(byte[] pointer);
 }
@@ -52,6 +52,34 @@ finish:
     return;
 }
 
+/***********************************************************************
+ * PublicKeyProxy.releasePointer
+ */
+JNIEXPORT void JNICALL Java_org_mozilla_jss_pkcs11_PublicKeyProxy_releasePointer
+  (JNIEnv *env, jclass clazz, jbyteArray pointer)
+{
+    SECKEYPublicKey *pubk = NULL;
+    PRThread * VARIABLE_MAY_NOT_BE_USED pThread;
+
+    PR_ASSERT(env!=NULL);
+
+    pThread = PR_AttachThread(PR_SYSTEM_THREAD, 0, NULL);
+    PR_ASSERT(pThread != NULL);
+
+    if(JSS_getPtrFromByteArray(env, pointer, (void**) &pubk) != PR_SUCCESS) {
+        PR_ASSERT( PR_FALSE );
+        goto finish;
+    }
+
+    if (pubk != NULL) {
+        SECKEY_DestroyPublicKey(pubk);
+    }
+
+finish:
+    PR_DetachThread();
+    return;
+}
+
 /***********************************************************************
 ** JSS_PK11_wrapPubKey
 */
@@ -104,9 +104,11 @@ class PublicKeyProxy extends KeyProxy {
     public static Logger logger = LoggerFactory.getLogger(PublicKeyProxy.class);
 
     public PublicKeyProxy(byte[] pointer) {
-        super(pointer);
+        super(pointer, PublicKeyProxy::releasePointer);
     }
 
     @Override
     protected native void releaseNativeResources();
+
+    private static native void releasePointer(byte[] pointer);
 }
@@ -270,6 +270,54 @@ finish:
 }
 
 
+/**********************************************************************
+ *
+ * PK11Signature.engineUpdateNativeDirect
+ *
+ * Same as engineUpdateNative, but reads the input in place from a direct
+ * ByteBuffer rather than from a Java byte array.
+ */
+JNIEXPORT void JNICALL
+Java_org_mozilla_jss_pkcs11_PK11Signature_engineUpdateNativeDirect
+    (JNIEnv *env, jobject this, jobject buffer, jint offset, jint length)
+{
+    SigContextType type;
+    void *ctxt;
+    jbyte *bytes=NULL;
+
+    /* Extract the signature context */
+    if( getSigContext(env, this, &ctxt, &type) != PR_SUCCESS) {
+        PR_ASSERT( (*env)->ExceptionOccurred(env) != NULL);
+        return;
+    }
+    PR_ASSERT(ctxt != NULL);
+
+    /* Get the bytes to be updated */
+    if (!JSS_RefDirectBuffer(env, buffer, offset, length, &bytes)) {
+        PR_ASSERT( (*env)->ExceptionOccurred(env) != NULL);
+        return;
+    }
+
+    /* Update the context */
+    if(type == SGN_CONTEXT) {
+        if( SGN_Update( (SGNContext*)ctxt,
+                        (unsigned char*)bytes,
+                        (unsigned)length ) != SECSuccess)
+        {
+            JSS_throwMsgPrErr(env, SIGNATURE_EXCEPTION, "update failed");
+        }
+    } else {
+        PR_ASSERT( type == VFY_CONTEXT );
+        if( VFY_Update( (VFYContext*)ctxt,
+                        (unsigned char*)bytes,
+                        (unsigned) length ) != SECSuccess)
+        {
+            JSS_throwMsgPrErr(env, SIGNATURE_EXCEPTION, "update failed");
+        }
+    }
+}
+
+
 /**********************************************************************
  *
  * PK11Signature.engineSignNative
@@ -766,6 +814,29 @@ finish:
     return Context;
 }
 
+/*
+ * Destroys the signature or verification context and frees the proxy.
+ */
+static void
+destroySigContextProxy(SigContextProxy *proxy)
+{
+    if (proxy == NULL) {
+        return;
+    }
+
+    /* Free the context and the proxy */
+    if(proxy->type == SGN_CONTEXT) {
+        SGN_DestroyContext( (SGNContext*)proxy->ctxt, PR_TRUE /*freeit*/);
+    } else {
+        PR_ASSERT(proxy->type == VFY_CONTEXT);
+        VFY_DestroyContext( (VFYContext*)proxy->ctxt, PR_TRUE /*freeit*/);
+    }
+    PORT_FreeArena(proxy->arena, PR_TRUE /* zero */);
+    proxy->arena = NULL;
+
+    PR_Free(proxy);
+}
+
 /***********************************************************************
  *
  * SigContextProxy.releaseNativeResources
@@ -783,21 +854,27 @@ Java_org_mozilla_jss_pkcs11_SigContextProxy_releaseNativeResources
         return;
     }
 
-    if (proxy == NULL) {
-        return;
-    }
+    destroySigContextProxy(proxy);
+}
 
-    /* Free the context and the proxy */
-    if(proxy->type == SGN_CONTEXT) {
-        SGN_DestroyContext( (SGNContext*)proxy->ctxt, PR_TRUE /*freeit*/);
-    } else {
-        PR_ASSERT(proxy->type == VFY_CONTEXT);
-        VFY_DestroyContext( (VFYContext*)proxy->ctxt, PR_TRUE /*freeit*/);
+/***********************************************************************
+ *
+ * SigContextProxy.releasePointer
+ *
+ * Deletes the SGNContext of a SigContextProxy that has been garbage
+ * collected.
+ */
+JNIEXPORT void JNICALL
+Java_org_mozilla_jss_pkcs11_SigContextProxy_releasePointer
+  (JNIEnv *env, jclass clazz, jbyteArray pointer)
+{
+    SigContextProxy *proxy = NULL;
+
+    if (JSS_getPtrFromByteArray(env, pointer, (void**)&proxy) != PR_SUCCESS) {
+        return;
     }
-    PORT_FreeArena(proxy->arena, PR_TRUE /* zero */);
-    proxy->arena = NULL;
 
-    PR_Free(proxy);
+    destroySigContextProxy(proxy);
 }
 
 /***********************************************************************
@@ -5,6 +5,7 @@
 package org.mozilla.jss.pkcs11;
 
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
@@ -109,7 +110,7 @@ public final class PK11Signature
 
         // Now initialize the signature context
         if( ! raw ) {
-            sigContext = null;
+            releaseSigContext();
             initSigContext();
         }
 
@@ -179,7 +180,7 @@ public final class PK11Signature
 		key = pubKey;
 
         if( ! raw ) {
-            sigContext = null;
+            releaseSigContext();
             initVfyContext();
         }
 
@@ -226,6 +227,35 @@ public final class PK11Signature
     protected native void engineUpdateNative(byte[] b, int off, int len)
         throws TokenException;
 
+    @Override
+    public void engineUpdate(ByteBuffer b)
+        throws SignatureException, TokenException
+    {
+        assert(b != null);
+        if( raw || !b.isDirect() ) {
+            super.engineUpdate(b);
+            return;
+        }
+        if( state != SIGN && state != VERIFY ) {
+            assert(state == UNINITIALIZED);
+            throw new SignatureException("Signature is not initialized");
+        }
+        if( sigContext == null ) {
+            throw new SignatureException("Signature has no context");
+        }
+
+        int len = b.remaining();
+        if( len <= 0 ) {
+            return;
+        }
+
+        engineUpdateNativeDirect(b, b.position(), len);
+        b.position(b.limit());
+    }
+
+    protected native void engineUpdateNativeDirect(ByteBuffer b, int off,
+        int len) throws TokenException;
+
 
     @Override
     public byte[] engineSign()
@@ -253,7 +283,7 @@ public final class PK11Signature
             result = engineSignNative();
         }
 		state = UNINITIALIZED;
-		sigContext = null;
+		releaseSigContext();
 
 		return result;
     }
@@ -324,7 +354,7 @@ public final class PK11Signature
             result = engineVerifyNative(sigBytes);
         }
 		state = UNINITIALIZED;
-		sigContext = null;
+		releaseSigContext();
 
 		return result;
     }
@@ -404,20 +434,26 @@ public final class PK11Signature
         return false;
     }
 
-    @Override
-    public void finalize() throws Throwable {
-        close();
+    /**
+     * Frees the native signing or verification context as soon as it is
+     * no longer needed, rather than leaving it for the garbage collector.
+     */
+    private void releaseSigContext() {
+        SigContextProxy context = sigContext;
+        sigContext = null;
+        if (context != null) {
+            try {
+                context.close();
+            } catch (Exception e) {
+                throw new RuntimeException("Unable to free signature context: " +
+                    e.getMessage(), e);
+            }
+        }
     }
 
     @Override
     public void close() throws Exception {
-        if (sigContext != null) {
-            try {
-                sigContext.close();
-            } finally {
-                sigContext = null;
-            }
-        }
+        releaseSigContext();
     }
 
     protected PK11Token token;
@@ -441,8 +477,10 @@ class SigContextProxy extends NativeProxy {
     public static Logger logger = LoggerFactory.getLogger(SigContextProxy.class);
 
     public SigContextProxy(byte[] pointer) {
-        super(pointer);
+        super(pointer, SigContextProxy::releasePointer);
     }
     @Override
     protected native void releaseNativeResources();
+
+    private static native void releasePointer(byte[] pointer);
 }
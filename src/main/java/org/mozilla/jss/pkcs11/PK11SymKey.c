@@ -302,6 +302,11 @@ Java_org_mozilla_jss_pkcs11_PK11SymKey_getKeyType
           case CKK_AES:
             typeFieldName = AES_KEYTYPE_FIELD;
             break;
+#ifdef CKK_CHACHA20
+          case CKK_CHACHA20:
+            typeFieldName = CHACHA20_KEYTYPE_FIELD;
+            break;
+#endif
           case CKK_DES2:
              typeFieldName = DES3_KEYTYPE_FIELD;
              break;
@@ -374,3 +379,21 @@ Java_org_mozilla_jss_pkcs11_SymKeyProxy_releaseNativeResources
         PK11_FreeSymKey(key);
     }
 }
+
+/***********************************************************************
+ *
+ * SymKeyProxy.releasePointer
+ */
+JNIEXPORT void JNICALL
+Java_org_mozilla_jss_pkcs11_SymKeyProxy_releasePointer
+    (JNIEnv *env, jclass clazz, jbyteArray pointer)
+{
+    PK11SymKey *key=NULL;
+
+    PR_ASSERT(env!=NULL);
+
+    if (JSS_getPtrFromByteArray(env, pointer, (void**)&key) == PR_SUCCESS &&
+        key != NULL) {
+        PK11_FreeSymKey(key);
+    }
+}
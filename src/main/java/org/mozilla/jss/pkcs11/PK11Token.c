@@ -221,9 +221,9 @@ finish:
 
 /************************************************************************
  *
- * P K 1 1 T o k e n . l o g o u t
+ * P K 1 1 T o k e n . n a t i v e L o g o u t
  */
-JNIEXPORT void JNICALL Java_org_mozilla_jss_pkcs11_PK11Token_logout
+JNIEXPORT void JNICALL Java_org_mozilla_jss_pkcs11_PK11Token_nativeLogout
   (JNIEnv *env, jobject this)
 {
     PK11SlotInfo *slot;
@@ -826,6 +826,31 @@ finish:
     return;
 }
 
+/************************************************************************
+ *
+ * T o k e n P r o x y . r e l e a s e P o i n t e r
+ *
+ * Free the PK11SlotInfo structure of a TokenProxy that has been garbage
+ * collected.
+ */
+JNIEXPORT void JNICALL
+Java_org_mozilla_jss_pkcs11_TokenProxy_releasePointer
+  (JNIEnv *env, jclass clazz, jbyteArray pointer)
+{
+    PK11SlotInfo *slot = NULL;
+
+    PR_ASSERT(env!=NULL);
+
+    if(JSS_getPtrFromByteArray(env, pointer, (void**)&slot) != PR_SUCCESS) {
+        PR_ASSERT( PR_FALSE );
+        return;
+    }
+
+    if(slot != NULL) {
+        PK11_FreeSlot(slot);
+    }
+}
+
 /************************************************************************
  *
  * J S S _ g e t T o k e n S l o t P t r
@@ -228,7 +228,16 @@ public final class PK11Token implements CryptoToken {
      *  unspecified error occurs.
      */
     @Override
-    public native void logout() throws TokenException;
+    public void logout() throws TokenException {
+        try {
+            nativeLogout();
+        } finally {
+            // session keys may be gone, and with them the pooled contexts
+            ContextPool.invalidate();
+        }
+    }
+
+    protected native void nativeLogout() throws TokenException;
 
     @Override
     public native int getLoginMode() throws TokenException;
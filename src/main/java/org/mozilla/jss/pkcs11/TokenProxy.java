@@ -13,9 +13,11 @@ public final class TokenProxy extends NativeProxy {
     public static Logger logger = LoggerFactory.getLogger(TokenProxy.class);
 
     public TokenProxy(byte[] pointer) {
-        super(pointer);
+        super(pointer, TokenProxy::releasePointer);
     }
 
     @Override
     protected native void releaseNativeResources();
+
+    private static native void releasePointer(byte[] pointer);
 }
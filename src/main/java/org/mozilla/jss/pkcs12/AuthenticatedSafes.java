@@ -148,9 +148,29 @@ public class AuthenticatedSafes implements ASN1Value {
         InvalidKeyException, InvalidAlgorithmParameterException, TokenException,
         IllegalBlockSizeException, BadPaddingException
     {
+        return getSafeContents((ContentInfo) sequence.elementAt(index),
+                password);
+    }
 
-        ContentInfo ci = (ContentInfo) sequence.elementAt(index);
-
+    /**
+     * Returns the SafeContents held by one element of an AuthenticatedSafes,
+     * decrypting it if necessary. This allows the elements to be processed
+     * one at a time as they are read, see <code>getSafeContentsAt</code>.
+     *
+     * @param ci An element of an AuthenticatedSafes.
+     * @param password The password to use to decrypt the SafeContents if
+     *  it is encrypted, may be null if it is not.
+     * @return A SafeContents object, which is merely a
+     *      SEQUENCE of SafeBags.
+     * @exception IllegalStateException If no password was provided,
+     *      but the SafeContents is encrypted.
+     */
+    public static SEQUENCE getSafeContents(ContentInfo ci, Password password)
+        throws IllegalStateException, NotInitializedException,
+        NoSuchAlgorithmException, InvalidBERException, IOException,
+        InvalidKeyException, InvalidAlgorithmParameterException, TokenException,
+        IllegalBlockSizeException, BadPaddingException
+    {
         if( ci.getContentType().equals(ContentInfo.ENCRYPTED_DATA) ) {
             // SafeContents is encrypted
 
@@ -273,11 +293,18 @@ public class AuthenticatedSafes implements ASN1Value {
      * Appends an unencrypted SafeContents to the end of the AuthenticatedSafes.
      */
     public void addSafeContents(SEQUENCE safeContents) {
-        checkSafeContents(safeContents);
+        sequence.addElement( createSafeContents(safeContents) );
+    }
 
-        ContentInfo ci = new ContentInfo( ASN1Util.encode(safeContents) );
+    /**
+     * Creates an element of an AuthenticatedSafes holding an unencrypted
+     * SafeContents, so that an AuthenticatedSafes can be written one
+     * element at a time.
+     */
+    public static ContentInfo createSafeContents(SEQUENCE safeContents) {
+        checkSafeContents(safeContents);
 
-        sequence.addElement(ci);
+        return new ContentInfo( ASN1Util.encode(safeContents) );
     }
 
     /**
@@ -322,6 +349,24 @@ public class AuthenticatedSafes implements ASN1Value {
             InvalidAlgorithmParameterException, TokenException,
             NoSuchAlgorithmException, BadPaddingException,
             IllegalBlockSizeException
+    {
+        sequence.addElement( createEncryptedSafeContents(keyGenAlg,
+                password, salt, iterationCount, safeContents) );
+    }
+
+    /**
+     * Creates an element of an AuthenticatedSafes holding an encrypted
+     * SafeContents, so that an AuthenticatedSafes can be written one
+     * element at a time. The parameters are those of
+     * <code>addEncryptedSafeContents</code>.
+     */
+    public static ContentInfo createEncryptedSafeContents(PBEAlgorithm keyGenAlg,
+                Password password, byte[] salt, int iterationCount,
+                SEQUENCE safeContents)
+        throws NotInitializedException, InvalidKeyException,
+            InvalidAlgorithmParameterException, TokenException,
+            NoSuchAlgorithmException, BadPaddingException,
+            IllegalBlockSizeException
     {
       try {
 
@@ -341,9 +386,7 @@ public class AuthenticatedSafes implements ASN1Value {
 
         EncryptedData encData = new EncryptedData(encCI);
 
-        ContentInfo ci = new ContentInfo(encData);
-
-        sequence.addElement( ci );
+        return new ContentInfo(encData);
       } catch( CharConversionException e ) {
           throw new RuntimeException("Unable to convert password: " + e.getMessage(), e);
       }
@@ -465,6 +508,13 @@ public class AuthenticatedSafes implements ASN1Value {
         sequence.encode(implicitTag, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return sequence.encodedLength(implicitTag);
+    }
+
     private static final Template templateInstance = new Template();
 
     public static Template getTemplate() {
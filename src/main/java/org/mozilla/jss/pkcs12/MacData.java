@@ -16,6 +16,7 @@ import java.security.NoSuchAlgorithmException;
 import org.mozilla.jss.CryptoManager;
 import org.mozilla.jss.NotInitializedException;
 import org.mozilla.jss.asn1.ASN1Template;
+import org.mozilla.jss.asn1.ASN1Util;
 import org.mozilla.jss.asn1.ASN1Value;
 import org.mozilla.jss.asn1.INTEGER;
 import org.mozilla.jss.asn1.InvalidBERException;
@@ -103,7 +104,6 @@ public class MacData implements ASN1Value {
             DigestException, TokenException, CharConversionException
     {
         CryptoManager cm = CryptoManager.getInstance();
-        CryptoToken token = cm.getInternalCryptoToken();
 
         if (macSalt == null) {
             JSSSecureRandom rand = cm.createPseudoRandomNumberGenerator();
@@ -111,6 +111,52 @@ public class MacData implements ASN1Value {
             rand.nextBytes(macSalt);
         }
 
+        JSSMessageDigest digest = createHMAC(password, macSalt, iterations);
+        byte[] digestBytes = digest.digest(toBeMACed);
+
+        this.mac = createMac(digestBytes);
+        this.macSalt = new OCTET_STRING(macSalt);
+        this.macIterationCount = new INTEGER(iterations);
+    }
+
+    /**
+     * Puts the digest of an HMAC context from <code>createHMAC</code>
+     * into the DigestInfo held in the <i>mac</i> field.
+     */
+    public static DigestInfo createMac(byte[] digestBytes) {
+        try {
+            AlgorithmIdentifier algID = new AlgorithmIdentifier(DigestAlgorithm.SHA1.toOID());
+            return new DigestInfo(algID, new OCTET_STRING(digestBytes));
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-1 algorithm has no OID: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates the HMAC context that a MacData with the given parameters
+     * is computed with. Data too large to hold in memory can be passed
+     * to it piece by piece, and its digest compared with, or put into,
+     * the <i>mac</i> field of a MacData.
+     *
+     * @param password The password used to generate a key using a
+     *      PBE mechanism.
+     * @param macSalt The salt used as input to the PBE key generation
+     *      mechanism.
+     * @param iterations The iteration count for creating the PBE key.
+     * @return An SHA-1 HMAC context, initialized with the key.
+     * @exception NotInitializedException If the crypto subsystem
+     *      has not been initialized yet.
+     * @exception TokenException If an error occurs on a crypto token.
+     */
+    public static JSSMessageDigest createHMAC(Password password,
+                    byte[] macSalt, int iterations)
+        throws NotInitializedException,
+            DigestException, TokenException, CharConversionException
+    {
+        CryptoManager cm = CryptoManager.getInstance();
+        CryptoToken token = cm.getInternalCryptoToken();
+
         PBEKeyGenParams params = new PBEKeyGenParams(password, macSalt, iterations);
 
         try {
@@ -120,16 +166,9 @@ public class MacData implements ASN1Value {
             kg.initialize(params);
             SymmetricKey key = kg.generate();
 
-            // perform the digesting
             JSSMessageDigest digest = token.getDigestContext(HMACAlgorithm.SHA1);
             digest.initHMAC(key);
-            byte[] digestBytes = digest.digest(toBeMACed);
-
-            // put everything into a DigestInfo
-            AlgorithmIdentifier algID = new AlgorithmIdentifier(DigestAlgorithm.SHA1.toOID());
-            this.mac = new DigestInfo(algID, new OCTET_STRING(digestBytes));
-            this.macSalt = new OCTET_STRING(macSalt);
-            this.macIterationCount = new INTEGER(iterations);
+            return digest;
 
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException("SHA-1 HMAC algorithm not found on internal " +
@@ -170,6 +209,17 @@ public class MacData implements ASN1Value {
     public void encode(Tag implicitTag, OutputStream ostream)
         throws IOException
     {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(implicitTag, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(implicitTag);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         SEQUENCE seq = new SEQUENCE();
 
         seq.addElement(mac);
@@ -180,7 +230,7 @@ public class MacData implements ASN1Value {
             seq.addElement(macIterationCount);
         }
 
-        seq.encode(implicitTag, ostream);
+        return seq;
     }
 
     private static final Template templateInstance = new Template();
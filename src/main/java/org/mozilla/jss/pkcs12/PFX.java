@@ -254,6 +254,17 @@ public class PFX implements ASN1Value {
     public void encode(Tag implicitTag, OutputStream ostream)
         throws IOException
     {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(implicitTag, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(implicitTag);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         SEQUENCE seq = new SEQUENCE();
 
         seq.addElement(version);
@@ -261,7 +272,13 @@ public class PFX implements ASN1Value {
         if(macData != null) {
             seq.addElement(macData);
         }
-        seq.encode(implicitTag, ostream);
+
+        return seq;
+    }
+
+    private static final Template templateInstance = new Template();
+    public static Template getTemplate() {
+        return templateInstance;
     }
 
     /**
@@ -338,7 +355,7 @@ public class PFX implements ASN1Value {
             CryptoManager.initialize( args[0] );
 
             // Decode the P12 file
-            PFX.Template pfxt = new PFX.Template();
+            PFX.Template pfxt = PFX.getTemplate();
             PFX pfx;
 
             FileInputStream fis = new FileInputStream(args[1]);
@@ -340,6 +340,17 @@ public final class SafeBag implements ASN1Value {
     public void encode(Tag implicitTag, OutputStream ostream)
         throws IOException
     {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(implicitTag, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(implicitTag);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         SEQUENCE seq = new SEQUENCE();
 
         seq.addElement( bagType );
@@ -348,7 +359,7 @@ public final class SafeBag implements ASN1Value {
             seq.addElement( bagAttributes );
         }
 
-        seq.encode(implicitTag, ostream);
+        return seq;
     }
 
     private static final Template templateInstance = new Template();
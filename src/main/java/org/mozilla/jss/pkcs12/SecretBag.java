@@ -93,6 +93,13 @@ public class SecretBag implements ASN1Value {
         sequence.encode(implicitTag, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return sequence.encodedLength(implicitTag);
+    }
+
     private static final Template templateInstance = new Template();
     public static Template getTemplate() {
         return templateInstance;
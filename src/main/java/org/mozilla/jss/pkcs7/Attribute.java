@@ -9,6 +9,7 @@ import java.io.OutputStream;
 
 import org.mozilla.jss.asn1.ANY;
 import org.mozilla.jss.asn1.ASN1Template;
+import org.mozilla.jss.asn1.ASN1Util;
 import org.mozilla.jss.asn1.ASN1Value;
 import org.mozilla.jss.asn1.InvalidBERException;
 import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
@@ -69,11 +70,22 @@ public class Attribute implements ASN1Value {
     public void encode(Tag implicit, OutputStream ostream)
         throws IOException
     {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(implicit, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag implicit)
+        throws IOException
+    {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(implicit);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         SEQUENCE seq = new SEQUENCE();
         seq.addElement(type);
         seq.addElement(values);
 
-        seq.encode(implicit, ostream);
+        return seq;
     }
 
     public static Template getTemplate() {
@@ -86,6 +98,15 @@ public class Attribute implements ASN1Value {
  */
 public static class Template implements ASN1Template {
 
+    private SEQUENCE.Template seqt;
+
+    public Template() {
+        seqt = new SEQUENCE.Template();
+
+        seqt.addElement( OBJECT_IDENTIFIER.getTemplate()   );
+        seqt.addElement( new SET.OF_Template(ANY.getTemplate()));
+    }
+
     @Override
     public boolean tagMatch(Tag tag) {
         return TAG.equals(tag);
@@ -102,11 +123,6 @@ public static class Template implements ASN1Template {
     public ASN1Value decode(Tag implicit, InputStream istream)
         throws IOException, InvalidBERException
     {
-        SEQUENCE.Template seqt = new SEQUENCE.Template();
-
-        seqt.addElement( new OBJECT_IDENTIFIER.Template()   );
-        seqt.addElement( new SET.OF_Template(new ANY.Template()));
-
         SEQUENCE seq = (SEQUENCE) seqt.decode(implicit, istream);
 
         // The template should have enforced this
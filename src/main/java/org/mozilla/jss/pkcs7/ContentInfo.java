@@ -146,18 +146,18 @@ public class ContentInfo implements ASN1Value {
      */
     public ASN1Value getInterpretedContent() throws InvalidBERException {
         if(contentType.equals(DATA)) {
-            return content.decodeWith( new OCTET_STRING.Template() );
+            return content.decodeWith( OCTET_STRING.getTemplate() );
         } else if( contentType.equals(SIGNED_DATA) ) {
-            return content.decodeWith( new SignedData.Template() );
+            return content.decodeWith( SignedData.getTemplate() );
         } else if( contentType.equals(ENVELOPED_DATA) ) {
-            return content.decodeWith( new EnvelopedData.Template());
+            return content.decodeWith( EnvelopedData.getTemplate());
         } else if( contentType.equals(SIGNED_AND_ENVELOPED_DATA) ) {
             return content.decodeWith(
-                        new SignedAndEnvelopedData.Template() );
+                        SignedAndEnvelopedData.getTemplate() );
         } else if( contentType.equals(DIGESTED_DATA) ) {
-            return content.decodeWith( new DigestedData.Template() );
+            return content.decodeWith( DigestedData.getTemplate() );
         } else if( contentType.equals(ENCRYPTED_DATA) ) {
-            return content.decodeWith( new EncryptedData.Template());
+            return content.decodeWith( EncryptedData.getTemplate());
         } else {
             // unknown type
             return content;
@@ -184,6 +184,13 @@ public class ContentInfo implements ASN1Value {
         sequence.encode(implicitTag,ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return sequence.encodedLength(implicitTag);
+    }
+
     @Override
     public Tag getTag() {
         return ContentInfo.TAG;
@@ -211,10 +218,10 @@ public class ContentInfo implements ASN1Value {
 
         public Template() {
             seqt = new SEQUENCE.Template();
-            seqt.addElement(new OBJECT_IDENTIFIER.Template());
+            seqt.addElement(OBJECT_IDENTIFIER.getTemplate());
             seqt.addOptionalElement(
                new EXPLICIT.Template(
-                         new Tag(0), new ANY.Template()
+                         new Tag(0), ANY.getTemplate()
                         ));
         }
 
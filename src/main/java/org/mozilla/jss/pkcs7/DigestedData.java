@@ -91,6 +91,16 @@ public class DigestedData implements ASN1Value {
         sequence.encode(implicitTag, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) throws IOException {
+        return sequence.encodedLength(implicitTag);
+    }
+
+    private static final Template templateInstance = new Template();
+    public static Template getTemplate() {
+        return templateInstance;
+    }
+
     /**
      * A Template for decoding BER-encoded DigestData items.
      */
@@ -324,6 +324,11 @@ public class EncryptedContentInfo implements ASN1Value {
         sequence.encode(tag,ostream);
     }
 
+    @Override
+    public long encodedLength(Tag tag) throws IOException {
+        return sequence.encodedLength(tag);
+    }
+
     public static Template getTemplate() {
         return templateInstance;
     }
@@ -335,6 +340,14 @@ public class EncryptedContentInfo implements ASN1Value {
      */
 
     public static class Template implements ASN1Template {
+        private SEQUENCE.Template seqt;
+
+        public Template() {
+            seqt = new SEQUENCE.Template();
+            seqt.addElement(OBJECT_IDENTIFIER.getTemplate());
+            seqt.addElement(AlgorithmIdentifier.getTemplate());
+            seqt.addOptionalElement(new Tag(0), OCTET_STRING.getTemplate());
+        }
 
         @Override
         public boolean tagMatch(Tag tag) {
@@ -352,11 +365,6 @@ public class EncryptedContentInfo implements ASN1Value {
         public ASN1Value decode(Tag implicitTag, InputStream istream)
             throws IOException, InvalidBERException
             {
-                SEQUENCE.Template seqt = new SEQUENCE.Template();
-                seqt.addElement(new OBJECT_IDENTIFIER.Template());
-                seqt.addElement(new AlgorithmIdentifier.Template());
-                seqt.addOptionalElement(new Tag(0), new OCTET_STRING.Template());
-
                 SEQUENCE seq = (SEQUENCE) seqt.decode(implicitTag,istream);
                 assert(seq.size() ==3);
 
@@ -99,6 +99,13 @@ public class EncryptedData implements ASN1Value {
         sequence.encode(implicitTag, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return sequence.encodedLength(implicitTag);
+    }
+
     public static Template getTemplate() {
         return templateInstance;
     }
@@ -147,6 +147,18 @@ public class SignedAndEnvelopedData implements ASN1Value {
         sequence.encode(implicitTag, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return sequence.encodedLength(implicitTag);
+    }
+
+
+    private static final Template templateInstance = new Template();
+    public static Template getTemplate() {
+        return templateInstance;
+    }
 
     /**
      * A Template class for decoding BER-encoded SignedAndEnvelopedData items.
@@ -315,6 +315,15 @@ public class SignedData implements ASN1Value {
 
     @Override
     public void encode(Tag tag, OutputStream ostream) throws IOException {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(tag, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag tag) throws IOException {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(tag);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         SEQUENCE sequence = new SEQUENCE();
 
         sequence.addElement(version);
@@ -328,10 +337,15 @@ public class SignedData implements ASN1Value {
         }
         sequence.addElement(signerInfos);
 
-        sequence.encode(tag,ostream);
+        return sequence;
     }
 
 
+    private static final Template templateInstance = new Template();
+    public static Template getTemplate() {
+        return templateInstance;
+    }
+
     /**
      * A template file for decoding a SignedData blob
      *
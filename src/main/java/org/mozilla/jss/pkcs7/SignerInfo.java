@@ -753,6 +753,15 @@ public class SignerInfo implements ASN1Value {
 
     @Override
     public void encode(Tag tag, OutputStream ostream) throws IOException {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(tag, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag tag) throws IOException {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(tag);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         SEQUENCE sequence = new SEQUENCE();
 
         sequence.addElement( version );
@@ -767,7 +776,7 @@ public class SignerInfo implements ASN1Value {
             sequence.addElement( new Tag(1), unauthenticatedAttributes );
         }
 
-        sequence.encode(tag,ostream);
+        return sequence;
     }
 
     public static Template getTemplate() {
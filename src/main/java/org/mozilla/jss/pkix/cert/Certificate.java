@@ -210,6 +210,13 @@ public class Certificate implements ASN1Value
         sequence.encode(implicitTag, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return sequence.encodedLength(implicitTag);
+    }
+
     private static final Template templateInstance = new Template();
     public static Template getTemplate() {
         return templateInstance;
@@ -222,7 +229,7 @@ public class Certificate implements ASN1Value
         public Template() {
             seqt = new SEQUENCE.Template();
             //seqt.addElement( CertificateInfo.getTemplate() );
-            seqt.addElement( new ANY.Template() );
+            seqt.addElement( ANY.getTemplate() );
             seqt.addElement( AlgorithmIdentifier.getTemplate() );
             seqt.addElement( BIT_STRING.getTemplate() );
         }
@@ -15,6 +15,7 @@ import java.util.Date;
 import java.util.TimeZone;
 
 import org.mozilla.jss.asn1.ASN1Template;
+import org.mozilla.jss.asn1.ASN1Util;
 import org.mozilla.jss.asn1.ASN1Value;
 import org.mozilla.jss.asn1.BIT_STRING;
 import org.mozilla.jss.asn1.CHOICE;
@@ -338,6 +339,17 @@ public class CertificateInfo implements ASN1Value {
     public void encode(Tag implicitTag, OutputStream ostream)
         throws IOException
     {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(implicitTag, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(implicitTag);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         SEQUENCE seq = new SEQUENCE();
 
         if( version != v1 ) {
@@ -369,7 +381,7 @@ public class CertificateInfo implements ASN1Value {
             seq.addElement(new EXPLICIT(new Tag(3), extensions) );
         }
 
-        seq.encode(implicitTag, ostream);
+        return seq;
     }
 
     /**
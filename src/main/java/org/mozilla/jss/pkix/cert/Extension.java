@@ -9,6 +9,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 import org.mozilla.jss.asn1.ASN1Template;
+import org.mozilla.jss.asn1.ASN1Util;
 import org.mozilla.jss.asn1.ASN1Value;
 import org.mozilla.jss.asn1.BOOLEAN;
 import org.mozilla.jss.asn1.InvalidBERException;
@@ -57,6 +58,15 @@ public class Extension implements ASN1Value {
 
     @Override
     public void encode(Tag implicit, OutputStream ostream) throws IOException {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(implicit, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag implicit) throws IOException {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(implicit);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         SEQUENCE seq = new SEQUENCE();
 
         seq.addElement( extnId );
@@ -66,7 +76,7 @@ public class Extension implements ASN1Value {
         }
         seq.addElement( extnValue );
 
-        seq.encode(implicit, ostream);
+        return seq;
     }
 
     private static final Template templateInstance = new Template();
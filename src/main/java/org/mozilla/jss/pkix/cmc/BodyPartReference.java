@@ -95,6 +95,7 @@ public class BodyPartReference implements ASN1Value {
     public BodyPartReference(Type type,
             INTEGER bodyPartID,
             SEQUENCE bodyPartPath) {
+        this.type = type;
         this.bodyPartID = bodyPartID;
         this.bodyPartPath = bodyPartPath;
     }
@@ -161,6 +162,16 @@ public class BodyPartReference implements ASN1Value {
         encode(ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) throws IOException {
+        if (type == BodyPartID ) {
+            return bodyPartID.encodedLength();
+        } else {
+            assert( type == BodyPartPath);
+            return bodyPartPath.encodedLength();
+        }
+    }
+
     private static final Template templateInstance = new Template();
     public static Template getTemplate() {
         return templateInstance;
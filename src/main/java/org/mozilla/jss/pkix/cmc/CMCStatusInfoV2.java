@@ -42,6 +42,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 import org.mozilla.jss.asn1.ASN1Template;
+import org.mozilla.jss.asn1.ASN1Util;
 import org.mozilla.jss.asn1.ASN1Value;
 import org.mozilla.jss.asn1.INTEGER;
 import org.mozilla.jss.asn1.InvalidBERException;
@@ -218,6 +219,17 @@ public class CMCStatusInfoV2 implements ASN1Value {
     public void encode(Tag implicitTag, OutputStream ostream)
         throws IOException
     {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(implicitTag, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(implicitTag);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         SEQUENCE seq = new SEQUENCE();
 
         seq.addElement(status);
@@ -230,7 +242,7 @@ public class CMCStatusInfoV2 implements ASN1Value {
             seq.addElement( otherInfo );
         }
 
-        seq.encode(implicitTag, ostream);
+        return seq;
     }
 
     private static final Template templateInstance = new Template();
@@ -233,6 +233,18 @@ public class OtherInfo implements ASN1Value {
             encode(ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) throws IOException {
+        if( type == FAIL ) {
+            return failInfo.encodedLength();
+        } else if( type == PEND ){
+            return pendInfo.encodedLength();
+        } else {
+            assert( type == EXTENDED );
+            return extendedFailInfo.encodedLength();
+        }
+    }
+
     private static final Template templateInstance = new Template();
     public static Template getTemplate() {
         return templateInstance;
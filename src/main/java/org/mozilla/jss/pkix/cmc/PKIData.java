@@ -103,6 +103,13 @@ public class PKIData implements ASN1Value {
         sequence.encode(implicitTag, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return sequence.encodedLength(implicitTag);
+    }
+
     private static final Template templateInstance = new Template();
     public static Template getTemplate() {
         return templateInstance;
@@ -118,8 +125,8 @@ public class PKIData implements ASN1Value {
             seqt = new SEQUENCE.Template();
             seqt.addElement(new SEQUENCE.OF_Template(TaggedAttribute.getTemplate()) );
             seqt.addElement( new SEQUENCE.OF_Template(TaggedRequest.getTemplate()) );
-            seqt.addElement( new SEQUENCE.OF_Template(new ANY.Template()) );
-            seqt.addElement( new SEQUENCE.OF_Template(new ANY.Template()) );
+            seqt.addElement( new SEQUENCE.OF_Template(ANY.getTemplate()) );
+            seqt.addElement( new SEQUENCE.OF_Template(ANY.getTemplate()) );
         }
 
         @Override
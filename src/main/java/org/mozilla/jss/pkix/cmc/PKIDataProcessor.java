@@ -0,0 +1,353 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.pkix.cmc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.NoSuchAlgorithmException;
+import java.security.SignatureException;
+import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.asn1.ANY;
+import org.mozilla.jss.asn1.ASN1Template;
+import org.mozilla.jss.asn1.ASN1Value;
+import org.mozilla.jss.asn1.BERInputStream;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.InvalidBERException;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.pkcs10.CertificationRequest;
+import org.mozilla.jss.pkix.crmf.CertReqMsg;
+import org.mozilla.jss.pkix.crmf.ProofOfPossession;
+
+/**
+ * Decodes a PKIData and verifies the proof of possession of the
+ * requests it contains.
+ * <p>
+ * The verification of each request is started as soon as the request
+ * has been decoded, on the given executor, so that it overlaps with the
+ * decoding of the rest of the PKIData. Without an executor the requests
+ * are verified on the calling thread while decoding.
+ * <p>
+ * A PKCS #10 request is verified with its own signature, and a CRMF
+ * request with its POP signature. A CRMF request whose POP is raVerified
+ * is reported as PENDING with {@link Result#isRaVerified()} set, so that
+ * the caller can decide whether it trusts the RA. A CRMF request without
+ * a POP signature and an OtherReqMsg cannot be verified here and are
+ * reported as such. The outcome of one request does not affect the others.
+ */
+public class PKIDataProcessor {
+
+    private CryptoToken token;
+    private Executor executor;
+
+    private PKIData pkiData;
+
+    /**
+     * @param token The token to verify the signatures on, or null for
+     *      the internal token.
+     * @param executor The executor to verify the signatures on, or null
+     *      to verify them on the calling thread.
+     */
+    public PKIDataProcessor(CryptoToken token, Executor executor) {
+        this.token = token;
+        this.executor = executor;
+    }
+
+    /**
+     * Decodes a PKIData held in memory and verifies its requests.
+     *
+     * @param encoded The BER encoding of the PKIData.
+     * @return The results in the order of the requests.
+     * @throws InvalidBERException If the PKIData is not a valid BER encoding.
+     * @throws IOException If an I/O error occurs.
+     */
+    public List<Result> process(byte[] encoded)
+            throws InvalidBERException, IOException {
+        return process(new BERInputStream(encoded));
+    }
+
+    /**
+     * Decodes a PKIData from a stream and verifies its requests.
+     *
+     * @param istream The stream holding the BER encoding of the PKIData.
+     * @return The results in the order of the requests.
+     * @throws InvalidBERException If the PKIData is not a valid BER encoding.
+     * @throws IOException If an I/O error occurs.
+     */
+    public List<Result> process(InputStream istream)
+            throws InvalidBERException, IOException {
+
+        List<CompletableFuture<Result>> futures = new ArrayList<>();
+
+        SEQUENCE.Template seqt = new SEQUENCE.Template();
+        seqt.addElement(new SEQUENCE.OF_Template(TaggedAttribute.getTemplate()));
+        seqt.addElement(new SEQUENCE.OF_Template(new RequestTemplate(futures)));
+        seqt.addElement(new SEQUENCE.OF_Template(ANY.getTemplate()));
+        seqt.addElement(new SEQUENCE.OF_Template(ANY.getTemplate()));
+
+        SEQUENCE seq;
+        try {
+            seq = (SEQUENCE) seqt.decode(istream);
+        } finally {
+            // let the requests decoded so far finish before returning
+            for (CompletableFuture<Result> future : futures) {
+                future.join();
+            }
+        }
+
+        pkiData = new PKIData(
+                (SEQUENCE) seq.elementAt(0),
+                (SEQUENCE) seq.elementAt(1),
+                (SEQUENCE) seq.elementAt(2),
+                (SEQUENCE) seq.elementAt(3));
+
+        List<Result> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<Result> future : futures) {
+            results.add(future.join());
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Returns the PKIData decoded by the last call to process(), or null.
+     */
+    public PKIData getPKIData() {
+        return pkiData;
+    }
+
+    /**
+     * Creates a ResponseBody with a statusInfoV2 control holding the
+     * status of each request.
+     *
+     * @param bodyPartID The BodyPartID of the control.
+     * @param results The results returned by process().
+     * @return The ResponseBody.
+     */
+    public static ResponseBody createResponseBody(INTEGER bodyPartID,
+            List<Result> results) {
+
+        SET values = new SET();
+        for (Result result : results) {
+            values.addElement(result.getStatusInfo());
+        }
+
+        SEQUENCE controlSequence = new SEQUENCE();
+        controlSequence.addElement(new TaggedAttribute(bodyPartID,
+                OBJECT_IDENTIFIER.id_cmc_statusInfoV2, values));
+
+        return new ResponseBody(controlSequence, new SEQUENCE(), new SEQUENCE());
+    }
+
+    private Result verify(TaggedRequest request) {
+
+        BodyPartReference ref;
+        if (request.getType() == TaggedRequest.PKCS10) {
+            ref = reference(request.getTcr().getBodyPartID());
+        } else if (request.getType() == TaggedRequest.CRMF) {
+            ref = reference(request.getCrm().getCertReq().getCertReqId());
+        } else {
+            ref = reference(request.getOrm().getBodyPartID());
+            return new Result(request, ref, CMCStatusInfoV2.NOSUPPORT, null);
+        }
+
+        if (request.getType() == TaggedRequest.CRMF) {
+            CertReqMsg crm = request.getCrm();
+            ProofOfPossession.Type popType = crm.hasPop() ? crm.getPop().getType() : null;
+            if (popType == ProofOfPossession.RA_VERIFIED) {
+                return new Result(request, ref, CMCStatusInfoV2.PENDING, null);
+            }
+            if (popType != ProofOfPossession.SIGNATURE) {
+                return new Result(request, ref, CMCStatusInfoV2.POP_REQUIRED, null);
+            }
+        }
+
+        try {
+            CryptoToken token = this.token;
+            if (token == null) {
+                token = CryptoManager.getInstance().getInternalCryptoToken();
+            }
+
+            if (request.getType() == TaggedRequest.PKCS10) {
+                CertificationRequest cr = request.getTcr().getCertificationRequest();
+                cr.verify(cr.getInfo().getSubjectPublicKeyInfo().toPublicKey(), token);
+            } else {
+                request.getCrm().verify(token);
+            }
+            return new Result(request, ref, CMCStatusInfoV2.SUCCESS, null);
+
+        } catch (Exception e) {
+            return new Result(request, ref, CMCStatusInfoV2.FAILED, e);
+        }
+    }
+
+    private static BodyPartReference reference(INTEGER bodyPartID) {
+        return new BodyPartReference(BodyPartReference.BodyPartID, bodyPartID, null);
+    }
+
+    /**
+     * Decodes a TaggedRequest and starts its verification.
+     */
+    private class RequestTemplate implements ASN1Template {
+
+        private List<CompletableFuture<Result>> futures;
+
+        RequestTemplate(List<CompletableFuture<Result>> futures) {
+            this.futures = futures;
+        }
+
+        @Override
+        public boolean tagMatch(Tag tag) {
+            return TaggedRequest.getTemplate().tagMatch(tag);
+        }
+
+        @Override
+        public ASN1Value decode(InputStream istream)
+                throws InvalidBERException, IOException {
+
+            TaggedRequest request =
+                    (TaggedRequest) TaggedRequest.getTemplate().decode(istream);
+
+            Supplier<Result> task = () -> verify(request);
+            futures.add(executor == null ?
+                    CompletableFuture.completedFuture(task.get()) :
+                    CompletableFuture.supplyAsync(task, executor));
+
+            return request;
+        }
+
+        @Override
+        public ASN1Value decode(Tag implicitTag, InputStream istream)
+                throws InvalidBERException, IOException {
+            return decode(istream);
+        }
+    }
+
+    /**
+     * The outcome of verifying one request.
+     */
+    public static class Result {
+
+        private final TaggedRequest request;
+        private final BodyPartReference reference;
+        private final int status;
+        private final Exception error;
+
+        Result(TaggedRequest request, BodyPartReference reference,
+                int status, Exception error) {
+            this.request = request;
+            this.reference = reference;
+            this.status = status;
+            this.error = error;
+        }
+
+        /**
+         * Returns the request this result is for.
+         */
+        public TaggedRequest getRequest() {
+            return request;
+        }
+
+        /**
+         * Returns the reference to the request: its bodyPartID, or the
+         * certReqId of a CRMF request.
+         */
+        public BodyPartReference getBodyPartReference() {
+            return reference;
+        }
+
+        /**
+         * Returns true if the proof of possession verified.
+         */
+        public boolean isVerified() {
+            return status == CMCStatusInfoV2.SUCCESS;
+        }
+
+        /**
+         * Returns true if this is a CRMF request whose POP was verified
+         * by an RA. Such a request has the status PENDING, since only
+         * the caller knows whether the RA is trusted.
+         */
+        public boolean isRaVerified() {
+            return status == CMCStatusInfoV2.PENDING;
+        }
+
+        /**
+         * Returns the CMCStatus of the request: SUCCESS, FAILED,
+         * PENDING if the POP was verified by an RA, POP_REQUIRED if
+         * the request has no POP signature, or NOSUPPORT for an
+         * OtherReqMsg.
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns the exception that failed the verification, or null.
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        /**
+         * Returns the CMCFailInfo code of a failed request, or -1.
+         */
+        public int getFailInfo() {
+            if (status != CMCStatusInfoV2.FAILED) {
+                return -1;
+            }
+            if (error instanceof NoSuchAlgorithmException) {
+                return OtherInfo.BAD_ALG;
+            }
+            if (error instanceof SignatureException
+                    || error instanceof CertificateException) {
+                return OtherInfo.POP_FAILED;
+            }
+            return OtherInfo.BAD_REQUEST;
+        }
+
+        /**
+         * Returns a CMCStatusInfoV2 reporting this result.
+         */
+        public CMCStatusInfoV2 getStatusInfo() {
+
+            SEQUENCE bodyList = new SEQUENCE();
+            bodyList.addElement(reference);
+
+            if (status != CMCStatusInfoV2.FAILED) {
+                return new CMCStatusInfoV2(status, bodyList);
+            }
+
+            // the exception message may reveal internal details, so
+            // only a fixed description of the failure is sent
+            int failInfo = getFailInfo();
+            OtherInfo otherInfo = new OtherInfo(OtherInfo.FAIL,
+                    new INTEGER(failInfo), null, null);
+            return new CMCStatusInfoV2(status, bodyList,
+                    statusString(failInfo), otherInfo);
+        }
+
+        private static String statusString(int failInfo) {
+            switch (failInfo) {
+            case OtherInfo.BAD_ALG:
+                return "Unsupported algorithm";
+            case OtherInfo.POP_FAILED:
+                return "Proof of possession failed";
+            default:
+                return "Bad request";
+            }
+        }
+    }
+}
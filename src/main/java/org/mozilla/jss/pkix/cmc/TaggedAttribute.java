@@ -112,6 +112,13 @@ public class TaggedAttribute implements ASN1Value {
         sequence.encode(implicit, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicit)
+        throws IOException
+    {
+        return sequence.encodedLength(implicit);
+    }
+
     public static Template getTemplate() {
         return templateInstance;
     }
@@ -126,8 +133,8 @@ public class TaggedAttribute implements ASN1Value {
         public Template() {
             seqt = new SEQUENCE.Template();
             seqt.addElement( INTEGER.getTemplate() );
-			seqt.addElement( new OBJECT_IDENTIFIER.Template()   );
-			seqt.addElement( new SET.OF_Template(new ANY.Template()));
+			seqt.addElement( OBJECT_IDENTIFIER.getTemplate()   );
+			seqt.addElement( new SET.OF_Template(ANY.getTemplate()));
         }
 
 
@@ -169,6 +169,18 @@ public class TaggedRequest implements ASN1Value {
 			encode(ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) throws IOException {
+        if( type == PKCS10 ) {
+            return tcr.encodedLength(Tag.get(0));
+        } else if( type == CRMF ) {
+            return crm.encodedLength(Tag.get(1));
+        } else {
+            assert( type == OTHER );
+            return orm.encodedLength(Tag.get(2));
+        }
+    }
+
     private static final Template templateInstance = new Template();
     public static Template getTemplate() {
         return templateInstance;
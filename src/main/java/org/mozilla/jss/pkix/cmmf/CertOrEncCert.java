@@ -49,4 +49,9 @@ public class CertOrEncCert implements ASN1Value {
         assert( implicitTag.equals(TAG) );
         ostream.write(encoding);
     }
+
+    @Override
+    public long encodedLength(Tag implicitTag) {
+        return encoding.length;
+    }
 }
@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import org.mozilla.jss.asn1.ANY;
+import org.mozilla.jss.asn1.ASN1Util;
 import org.mozilla.jss.asn1.ASN1Value;
 import org.mozilla.jss.asn1.INTEGER;
 import org.mozilla.jss.asn1.SEQUENCE;
@@ -104,6 +105,17 @@ public class CertRepContent implements ASN1Value {
     public void encode(Tag implicitTag, OutputStream ostream)
         throws IOException
     {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(implicitTag, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(implicitTag);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         SEQUENCE encoding = new SEQUENCE();
 
         // create sequence of certificates
@@ -117,7 +129,7 @@ public class CertRepContent implements ASN1Value {
 
         encoding.addElement( response );
 
-        encoding.encode(implicitTag, ostream);
+        return encoding;
     }
 
     public static void main(String argv[]) {
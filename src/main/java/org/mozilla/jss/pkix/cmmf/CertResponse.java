@@ -7,6 +7,7 @@ package org.mozilla.jss.pkix.cmmf;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import org.mozilla.jss.asn1.ASN1Util;
 import org.mozilla.jss.asn1.ASN1Value;
 import org.mozilla.jss.asn1.INTEGER;
 import org.mozilla.jss.asn1.SEQUENCE;
@@ -69,6 +70,17 @@ public class CertResponse implements ASN1Value {
     public void encode(Tag implicitTag, OutputStream ostream)
         throws IOException
     {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(implicitTag, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(implicitTag);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         SEQUENCE seq = new SEQUENCE();
         seq.addElement( certReqId );
         seq.addElement( status );
@@ -76,6 +88,6 @@ public class CertResponse implements ASN1Value {
             seq.addElement( certifiedKeyPair );
         }
 
-        seq.encode(implicitTag, ostream);
+        return seq;
     }
 }
@@ -117,6 +117,11 @@ public class RevRepContent implements ASN1Value {
         sequence.encode(implicitTag, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) throws IOException {
+        return sequence.encodedLength(implicitTag);
+    }
+
 
     /**
      * A Template for decoding a <code>RevRepContent</code>.
@@ -86,6 +86,13 @@ public class EncapsulatedContentInfo implements ASN1Value {
         sequence.encode(implicitTag,ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return sequence.encodedLength(implicitTag);
+    }
+
     @Override
     public Tag getTag() {
         return EncapsulatedContentInfo.TAG;
@@ -113,10 +120,10 @@ public class EncapsulatedContentInfo implements ASN1Value {
 
         public Template() {
             seqt = new SEQUENCE.Template();
-            seqt.addElement(new OBJECT_IDENTIFIER.Template());
+            seqt.addElement(OBJECT_IDENTIFIER.getTemplate());
             seqt.addOptionalElement(
                new EXPLICIT.Template(
-                         new Tag(0), new OCTET_STRING.Template()
+                         new Tag(0), OCTET_STRING.getTemplate()
                         ));
         }
 
@@ -64,6 +64,16 @@ public class EnvelopedData implements ASN1Value {
         sequence.encode(tag,ostream);
     }
 
+    @Override
+    public long encodedLength(Tag tag) throws IOException {
+        return sequence.encodedLength(tag);
+    }
+
+
+    private static final Template templateInstance = new Template();
+    public static Template getTemplate() {
+        return templateInstance;
+    }
 
     /**
      * A template file for decoding a EnvelopedData blob
@@ -71,6 +81,15 @@ public class EnvelopedData implements ASN1Value {
      */
 
     public static class Template implements ASN1Template {
+        private SEQUENCE.Template seqt;
+
+        public Template() {
+            seqt = new SEQUENCE.Template();
+            seqt.addElement(INTEGER.getTemplate());
+            seqt.addElement(new SET.OF_Template(RecipientInfo.getTemplate()));
+            seqt.addElement(EncryptedContentInfo.getTemplate());
+        }
+
         public Tag getTag() {
             return EnvelopedData.TAG;
         }
@@ -91,11 +110,6 @@ public class EnvelopedData implements ASN1Value {
         public ASN1Value decode(Tag implicitTag, InputStream istream)
             throws IOException, InvalidBERException
             {
-                SEQUENCE.Template seqt = new SEQUENCE.Template();
-                seqt.addElement(new INTEGER.Template());
-                seqt.addElement(new SET.OF_Template(new RecipientInfo.Template()));
-                seqt.addElement(new EncryptedContentInfo.Template());
-
                 SEQUENCE seq = (SEQUENCE) seqt.decode(implicitTag,istream);
                 assert(seq.size() ==3);
 
@@ -81,6 +81,13 @@ public class IssuerAndSerialNumber implements ASN1Value {
         sequence.encode(implicitTag, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return sequence.encodedLength(implicitTag);
+    }
+
     /**
      * Returns a singleton template instance.
      */
@@ -88,6 +88,11 @@ public class RecipientInfo implements ASN1Value {
         sequence.encode(tag,ostream);
     }
 
+    @Override
+    public long encodedLength(Tag tag) throws IOException {
+        return sequence.encodedLength(tag);
+    }
+
 
     /**
      * A template file for decoding a RecipientInfo blob
@@ -95,6 +100,16 @@ public class RecipientInfo implements ASN1Value {
      */
 
     public static class Template implements ASN1Template {
+        private SEQUENCE.Template seqt;
+
+        public Template() {
+            seqt = new SEQUENCE.Template();
+            seqt.addElement(INTEGER.getTemplate());
+            seqt.addElement(IssuerAndSerialNumber.getTemplate());
+            seqt.addElement(AlgorithmIdentifier.getTemplate());
+            seqt.addElement(OCTET_STRING.getTemplate());
+        }
+
         public Tag getTag() {
             return RecipientInfo.TAG;
         }
@@ -115,12 +130,6 @@ public class RecipientInfo implements ASN1Value {
         public ASN1Value decode(Tag implicitTag, InputStream istream)
             throws IOException, InvalidBERException
             {
-                SEQUENCE.Template seqt = new SEQUENCE.Template();
-                seqt.addElement(new INTEGER.Template());
-                seqt.addElement(new IssuerAndSerialNumber.Template());
-                seqt.addElement(new AlgorithmIdentifier.Template());
-                seqt.addElement(new OCTET_STRING.Template());
-
                 SEQUENCE seq = (SEQUENCE) seqt.decode(implicitTag,istream);
                 assert(seq.size() ==4);
 
@@ -42,7 +42,7 @@ public class SignedData implements ASN1Value {
     private SET         signerInfos;
 
     // This class implements version 3 of the spec.
-    private static final INTEGER VERSION = new INTEGER(3);
+    static final INTEGER VERSION = new INTEGER(3);
 
     ///////////////////////////////////////////////////////////////////////
     ///////////////////////////////////////////////////////////////////////
@@ -314,6 +314,15 @@ public class SignedData implements ASN1Value {
 
     @Override
     public void encode(Tag tag, OutputStream ostream) throws IOException {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(tag, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag tag) throws IOException {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(tag);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         SEQUENCE sequence = new SEQUENCE();
 
         sequence.addElement(version);
@@ -327,7 +336,7 @@ public class SignedData implements ASN1Value {
         }
         sequence.addElement(signerInfos);
 
-        sequence.encode(tag,ostream);
+        return sequence;
     }
 
 
@@ -0,0 +1,341 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.pkix.cms;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mozilla.jss.asn1.ASN1Header;
+import org.mozilla.jss.asn1.Form;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.crypto.DigestAlgorithm;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.crypto.SignatureAlgorithm;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+/**
+ * Creates a CMS <i>SignedData</i>, wrapped in a <i>ContentInfo</i>, while
+ * the content is being written. The content is digested as it passes
+ * through and is never held in memory, so it can be of any size.
+ * <p>
+ * The output uses BER indefinite length encoding for the structures
+ * enclosing the content, and the content itself is written as a
+ * constructed OCTET STRING of fixed size segments. The certificates, CRLs
+ * and SignerInfos are DER encoded. A detached SignedData omits the content
+ * and only carries its digests.
+ *
+ * <pre>
+ * SignedDataGenerator gen = new SignedDataGenerator();
+ * gen.addSigner(signerId, SignatureAlgorithm.RSASignatureWithSHA256Digest,
+ *         privateKey, null, null);
+ * try (OutputStream content = gen.open(out, ContentInfo.DATA, false)) {
+ *     ... write the content ...
+ * }
+ * </pre>
+ *
+ * @see SignedDataParser
+ */
+public class SignedDataGenerator {
+
+    private static final Tag EXPLICIT_0 = new Tag(0);
+    private static final byte[] EOC = { 0, 0 };
+
+    private static class Signer {
+        SignerIdentifier signerIdentifier;
+        SignatureAlgorithm signingAlg;
+        PrivateKey signingKey;
+        SET signedAttributes;
+        SET unsignedAttributes;
+    }
+
+    private List<AlgorithmIdentifier> digestAlgorithms = new ArrayList<>();
+    private List<Signer> signers = new ArrayList<>();
+    private SET certificates;
+    private SET crls;
+    private int segmentSize = 64 * 1024;
+
+    /**
+     * Adds a signer. The content will be digested with the digest
+     * algorithm of <code>signingAlg</code> and signed when the content
+     * stream is closed.
+     *
+     * @param signerIdentifier Identifies the certificate of the signer.
+     * @param signingAlg A composite signature algorithm, such as
+     *      RSASignatureWithSHA256Digest.
+     * @param signingKey The private key of the signer.
+     * @param signedAttributes Optional attributes to sign with the
+     *      content, may be null. See {@link SignerInfo}.
+     * @param unsignedAttributes Optional attributes to include without
+     *      signing them, may be null.
+     * @throws NoSuchAlgorithmException If the signature algorithm has no
+     *      digest algorithm.
+     */
+    public void addSigner(SignerIdentifier signerIdentifier,
+            SignatureAlgorithm signingAlg, PrivateKey signingKey,
+            SET signedAttributes, SET unsignedAttributes)
+            throws NoSuchAlgorithmException {
+        addDigestAlgorithm(signingAlg.getDigestAlg());
+
+        Signer signer = new Signer();
+        signer.signerIdentifier = signerIdentifier;
+        signer.signingAlg = signingAlg;
+        signer.signingKey = signingKey;
+        signer.signedAttributes = signedAttributes;
+        signer.unsignedAttributes = unsignedAttributes;
+        signers.add(signer);
+    }
+
+    /**
+     * Adds a digest algorithm to the <i>digestAlgorithms</i> field, even
+     * if no signer uses it. Algorithms of the signers are added
+     * automatically.
+     *
+     * @param alg Digest algorithm.
+     * @throws NoSuchAlgorithmException If the algorithm has no OID.
+     */
+    public void addDigestAlgorithm(DigestAlgorithm alg)
+            throws NoSuchAlgorithmException {
+        OBJECT_IDENTIFIER oid = alg.toOID();
+        for (AlgorithmIdentifier id : digestAlgorithms) {
+            if (id.getOID().equals(oid)) {
+                return;
+            }
+        }
+        digestAlgorithms.add(new AlgorithmIdentifier(oid, null));
+    }
+
+    /**
+     * Sets the certificates to include, a SET of
+     * org.mozilla.jss.pkix.cert.Certificate, or null to omit them.
+     *
+     * @param certificates Certificates.
+     */
+    public void setCertificates(SET certificates) {
+        this.certificates = certificates;
+    }
+
+    /**
+     * Sets the CRLs to include, or null to omit them.
+     *
+     * @param crls CRLs.
+     */
+    public void setCrls(SET crls) {
+        this.crls = crls;
+    }
+
+    /**
+     * Sets the size of the OCTET STRING segments the content is written
+     * in. The default is 64 KiB.
+     *
+     * @param segmentSize Segment size in bytes.
+     */
+    public void setSegmentSize(int segmentSize) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Writes the beginning of the SignedData and returns the stream to
+     * write the content to. Closing that stream signs the content and
+     * writes the rest of the SignedData, but does not close
+     * <code>out</code>.
+     *
+     * @param out Where the ContentInfo is written.
+     * @param contentType The type of the content, usually
+     *      {@link ContentInfo#DATA}.
+     * @param detached Whether to leave the content out of the SignedData.
+     * @return The stream receiving the content.
+     * @throws IOException If an error occurred.
+     * @throws NoSuchAlgorithmException If a digest algorithm is not
+     *      available.
+     */
+    public OutputStream open(OutputStream out, OBJECT_IDENTIFIER contentType,
+            boolean detached) throws IOException, NoSuchAlgorithmException {
+
+        List<MessageDigest> digests = new ArrayList<>();
+        SET digestAlgorithmSet = new SET();
+        for (AlgorithmIdentifier id : digestAlgorithms) {
+            digests.add(MessageDigest.getInstance(
+                    DigestAlgorithm.fromOID(id.getOID()).toString()));
+            digestAlgorithmSet.addElement(id);
+        }
+
+        // ContentInfo
+        writeIndefiniteHeader(out, ContentInfo.TAG);
+        ContentInfo.SIGNED_DATA.encode(out);
+        writeIndefiniteHeader(out, EXPLICIT_0);
+
+        // SignedData
+        writeIndefiniteHeader(out, SignedData.TAG);
+        SignedData.VERSION.encode(out);
+        digestAlgorithmSet.encode(out);
+
+        // EncapsulatedContentInfo
+        if (detached) {
+            new EncapsulatedContentInfo(contentType, null).encode(out);
+        } else {
+            writeIndefiniteHeader(out, EncapsulatedContentInfo.TAG);
+            contentType.encode(out);
+            writeIndefiniteHeader(out, EXPLICIT_0);
+            writeIndefiniteHeader(out, OCTET_STRING.TAG);
+        }
+
+        return new ContentStream(out, contentType, detached,
+                new ArrayList<>(digestAlgorithms), digests, new ArrayList<>(signers));
+    }
+
+    private static void writeIndefiniteHeader(OutputStream out, Tag tag)
+            throws IOException {
+        // the header of an empty value, with the length octet replaced
+        byte[] header = new ASN1Header(tag, Form.CONSTRUCTED, 0).encode().clone();
+        header[header.length - 1] = (byte) 0x80;
+        out.write(header);
+    }
+
+    private class ContentStream extends OutputStream {
+
+        private final OutputStream out;
+        private final OBJECT_IDENTIFIER contentType;
+        private final boolean detached;
+        private final List<AlgorithmIdentifier> algorithms;
+        private final List<MessageDigest> digests;
+        private final List<Signer> signers;
+        private final byte[] segment;
+        private int count;
+        private boolean closed;
+
+        ContentStream(OutputStream out, OBJECT_IDENTIFIER contentType,
+                boolean detached, List<AlgorithmIdentifier> algorithms,
+                List<MessageDigest> digests, List<Signer> signers) {
+            this.out = out;
+            this.contentType = contentType;
+            this.detached = detached;
+            this.algorithms = algorithms;
+            this.digests = digests;
+            this.signers = signers;
+            this.segment = detached ? null : new byte[segmentSize];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            for (MessageDigest md : digests) {
+                md.update(b, off, len);
+            }
+            if (detached) {
+                return;
+            }
+
+            while (len > 0) {
+                int n = Math.min(len, segment.length - count);
+                System.arraycopy(b, off, segment, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == segment.length) {
+                    writeSegment();
+                }
+            }
+        }
+
+        private void writeSegment() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            new ASN1Header(OCTET_STRING.TAG, Form.PRIMITIVE, count).encode(out);
+            out.write(segment, 0, count);
+            count = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            if (!detached) {
+                writeSegment();
+                out.write(EOC); // OCTET STRING
+                out.write(EOC); // [0] EXPLICIT
+                out.write(EOC); // EncapsulatedContentInfo
+            }
+
+            if (certificates != null) {
+                certificates.encode(new Tag(0), out);
+            }
+            if (crls != null) {
+                crls.encode(new Tag(1), out);
+            }
+
+            byte[][] messageDigests = new byte[digests.size()][];
+            for (int i = 0; i < messageDigests.length; i++) {
+                messageDigests[i] = digests.get(i).digest();
+            }
+
+            SET signerInfos = new SET();
+            for (Signer signer : signers) {
+                signerInfos.addElement(sign(signer, messageDigests));
+            }
+            signerInfos.encode(out);
+
+            out.write(EOC); // SignedData
+            out.write(EOC); // [0] EXPLICIT
+            out.write(EOC); // ContentInfo
+            out.flush();
+        }
+
+        private SignerInfo sign(Signer signer, byte[][] messageDigests)
+                throws IOException {
+            try {
+                OBJECT_IDENTIFIER oid = signer.signingAlg.getDigestAlg().toOID();
+                byte[] messageDigest = null;
+                for (int i = 0; i < messageDigests.length; i++) {
+                    if (algorithms.get(i).getOID().equals(oid)) {
+                        messageDigest = messageDigests[i];
+                        break;
+                    }
+                }
+
+                // SignerInfo adds the content-type and message-digest
+                // attributes to the SET it is given, so give it a copy
+                SET signedAttributes = null;
+                if (signer.signedAttributes != null) {
+                    signedAttributes = new SET();
+                    for (int i = 0; i < signer.signedAttributes.size(); i++) {
+                        signedAttributes.addElement(signer.signedAttributes.elementAt(i));
+                    }
+                }
+
+                return new SignerInfo(signer.signerIdentifier, signedAttributes,
+                        signer.unsignedAttributes, contentType, messageDigest,
+                        signer.signingAlg, signer.signingKey);
+
+            } catch (Exception e) {
+                throw new IOException("Unable to sign content: " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.mozilla.jss.pkix.cms;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.mozilla.jss.NotInitializedException;
+import org.mozilla.jss.asn1.ANY;
+import org.mozilla.jss.asn1.ASN1Template;
+import org.mozilla.jss.asn1.ASN1Value;
+import org.mozilla.jss.asn1.EXPLICIT;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.InvalidBERException;
+import org.mozilla.jss.asn1.NULL;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.crypto.DigestAlgorithm;
+import org.mozilla.jss.crypto.ObjectNotFoundException;
+import org.mozilla.jss.crypto.TokenException;
+import org.mozilla.jss.pkix.cert.Certificate;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+/**
+ * Reads a CMS <i>SignedData</i>, wrapped in a <i>ContentInfo</i>, from a
+ * stream and digests its content as it is read, so that content of any
+ * size can be verified in constant memory. The content can be copied to
+ * another stream on the way. Detached content is read from a separate
+ * stream after the SignedData.
+ * <p>
+ * The content is digested with every algorithm listed in the
+ * <i>digestAlgorithms</i> field which is available; the signatures are
+ * then checked against those digests.
+ *
+ * <pre>
+ * SignedDataParser parser = new SignedDataParser(in);
+ * parser.parse(contentOut);
+ * parser.verify();
+ * </pre>
+ *
+ * @see SignedDataGenerator
+ */
+public class SignedDataParser {
+
+    private InputStream in;
+    private SignedData signedData;
+    private boolean attached;
+    private Map<OBJECT_IDENTIFIER, MessageDigest> digests = new LinkedHashMap<>();
+    private Map<OBJECT_IDENTIFIER, byte[]> results = new HashMap<>();
+
+    /**
+     * @param in The stream holding the BER encoding of the ContentInfo.
+     */
+    public SignedDataParser(InputStream in) {
+        // the templates need to look ahead
+        this.in = in.markSupported() ? in : new BufferedInputStream(in);
+    }
+
+    /**
+     * Reads the SignedData, digesting the encapsulated content and
+     * copying it to <code>content</code>. The returned SignedData does
+     * not hold the content.
+     *
+     * @param content Where to copy the content, may be null.
+     * @return The SignedData, without its content.
+     * @throws IOException If an error occurred.
+     * @throws InvalidBERException If there is an invalid BER encoding.
+     */
+    public SignedData parse(OutputStream content)
+            throws IOException, InvalidBERException {
+
+        SEQUENCE.Template encapt = new SEQUENCE.Template();
+        encapt.addElement(OBJECT_IDENTIFIER.getTemplate());
+        encapt.addOptionalElement(new EXPLICIT.Template(new Tag(0),
+                new OCTET_STRING.StreamingTemplate((tag, stream) -> {
+                    attached = true;
+                    digest(stream, content);
+                    // the content is not kept, but EXPLICIT needs a value
+                    return NULL.getInstance();
+                })));
+
+        SEQUENCE.Template seqt = new SEQUENCE.Template();
+        seqt.addElement(INTEGER.getTemplate());
+        seqt.addElement(new DigestAlgorithmsTemplate());
+        seqt.addElement(encapt);
+        seqt.addOptionalElement(new Tag(0), new SET.OF_Template(Certificate.getTemplate()));
+        seqt.addOptionalElement(new Tag(1), new SET.OF_Template(ANY.getTemplate()));
+        seqt.addElement(new SET.OF_Template(SignerInfo.getTemplate()));
+
+        SEQUENCE.Template contentInfot = new SEQUENCE.Template();
+        contentInfot.addElement(OBJECT_IDENTIFIER.getTemplate());
+        contentInfot.addElement(new EXPLICIT.Template(new Tag(0), seqt));
+
+        SEQUENCE contentInfo = (SEQUENCE) contentInfot.decode(in);
+        if (!ContentInfo.SIGNED_DATA.equals(contentInfo.elementAt(0))) {
+            throw new InvalidBERException("ContentInfo does not hold a SignedData");
+        }
+
+        SEQUENCE seq = (SEQUENCE) ((EXPLICIT) contentInfo.elementAt(1)).getContent();
+        SEQUENCE encap = (SEQUENCE) seq.elementAt(2);
+
+        signedData = new SignedData(
+                (INTEGER) seq.elementAt(0),
+                (SET) seq.elementAt(1),
+                new EncapsulatedContentInfo((OBJECT_IDENTIFIER) encap.elementAt(0), null),
+                (SET) seq.elementAt(3),
+                (SET) seq.elementAt(4),
+                (SET) seq.elementAt(5));
+        return signedData;
+    }
+
+    /**
+     * Reads a detached SignedData, then digests the content it signs.
+     *
+     * @param content The detached content.
+     * @return The SignedData.
+     * @throws IOException If an error occurred, or if the SignedData is
+     *      not detached.
+     * @throws InvalidBERException If there is an invalid BER encoding.
+     */
+    public SignedData parseDetached(InputStream content)
+            throws IOException, InvalidBERException {
+        parse(null);
+        if (attached) {
+            throw new IOException("SignedData already holds its content");
+        }
+        digest(content, null);
+        return signedData;
+    }
+
+    /**
+     * Returns the SignedData read by <code>parse</code>.
+     */
+    public SignedData getSignedData() {
+        return signedData;
+    }
+
+    /**
+     * Returns the digest of the content, or null if it was not digested
+     * with the given algorithm.
+     *
+     * @param digestAlgorithm The OID of the digest algorithm.
+     * @return The digest.
+     */
+    public byte[] getDigest(OBJECT_IDENTIFIER digestAlgorithm) {
+        byte[] digest = results.get(digestAlgorithm);
+        if (digest == null) {
+            MessageDigest md = digests.get(digestAlgorithm);
+            if (md == null) {
+                return null;
+            }
+            digest = md.digest();
+            results.put(digestAlgorithm, digest);
+        }
+        return digest.clone();
+    }
+
+    /**
+     * Verifies one signature of the content with the given key.
+     *
+     * @param signer A SignerInfo of the SignedData.
+     * @param pubkey The public key of the signer.
+     * @see SignerInfo#verify(byte[], OBJECT_IDENTIFIER, PublicKey)
+     */
+    public void verify(SignerInfo signer, PublicKey pubkey)
+            throws NotInitializedException, NoSuchAlgorithmException,
+            InvalidKeyException, TokenException, SignatureException {
+        signer.verify(getMessageDigest(signer), getContentType(), pubkey);
+    }
+
+    /**
+     * Verifies every signature of the content, looking up the signers'
+     * certificates in the NSS database.
+     *
+     * @see SignerInfo#verify(byte[], OBJECT_IDENTIFIER)
+     */
+    public void verify()
+            throws NotInitializedException, NoSuchAlgorithmException,
+            InvalidKeyException, TokenException, SignatureException,
+            ObjectNotFoundException {
+        SET signerInfos = signedData.getSignerInfos();
+        if (signerInfos.size() == 0) {
+            throw new SignatureException("SignedData has no signers");
+        }
+        for (int i = 0; i < signerInfos.size(); i++) {
+            SignerInfo signer = (SignerInfo) signerInfos.elementAt(i);
+            signer.verify(getMessageDigest(signer), getContentType());
+        }
+    }
+
+    private OBJECT_IDENTIFIER getContentType() {
+        return signedData.getContentInfo().getContentType();
+    }
+
+    private byte[] getMessageDigest(SignerInfo signer) throws SignatureException {
+        OBJECT_IDENTIFIER oid = signer.getDigestAlgorithmIdentifer().getOID();
+        byte[] digest = getDigest(oid);
+        if (digest == null) {
+            throw new SignatureException("Content was not digested with " + oid);
+        }
+        return digest;
+    }
+
+    private void digest(InputStream content, OutputStream copy) throws IOException {
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = content.read(buf)) != -1) {
+            for (MessageDigest md : digests.values()) {
+                md.update(buf, 0, n);
+            }
+            if (copy != null) {
+                copy.write(buf, 0, n);
+            }
+        }
+    }
+
+    /**
+     * Decodes the digestAlgorithms field, and prepares a digest for each
+     * algorithm before the content that follows it is read.
+     */
+    private class DigestAlgorithmsTemplate implements ASN1Template {
+
+        private SET.OF_Template template = new SET.OF_Template(AlgorithmIdentifier.getTemplate());
+
+        @Override
+        public boolean tagMatch(Tag tag) {
+            return template.tagMatch(tag);
+        }
+
+        @Override
+        public ASN1Value decode(InputStream istream)
+                throws IOException, InvalidBERException {
+            return prepare((SET) template.decode(istream));
+        }
+
+        @Override
+        public ASN1Value decode(Tag implicitTag, InputStream istream)
+                throws IOException, InvalidBERException {
+            return prepare((SET) template.decode(implicitTag, istream));
+        }
+
+        private SET prepare(SET algorithms) {
+            for (int i = 0; i < algorithms.size(); i++) {
+                OBJECT_IDENTIFIER oid = ((AlgorithmIdentifier) algorithms.elementAt(i)).getOID();
+                try {
+                    digests.put(oid, MessageDigest.getInstance(
+                            DigestAlgorithm.fromOID(oid).toString()));
+                } catch (NoSuchAlgorithmException e) {
+                    // signers using it will fail to verify
+                }
+            }
+            return algorithms;
+        }
+    }
+}
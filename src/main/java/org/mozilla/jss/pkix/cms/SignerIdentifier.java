@@ -135,6 +135,16 @@ public class SignerIdentifier implements ASN1Value {
         encode(ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) throws IOException {
+        if( type == SUBJECT_KEY_IDENTIFIER ) {
+            return subjectKeyIdentifier.encodedLength(Tag.get(0));
+        } else {
+            assert( type == ISSUER_AND_SERIALNUMBER );
+            return issuerAndSerialNumber.encodedLength();
+        }
+    }
+
     public static Template getTemplate() {
         return templateInstance;
     }
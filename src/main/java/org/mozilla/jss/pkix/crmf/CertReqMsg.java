@@ -17,6 +17,7 @@ import java.text.DateFormat;
 
 import org.mozilla.jss.CryptoManager;
 import org.mozilla.jss.asn1.ASN1Template;
+import org.mozilla.jss.asn1.ASN1Util;
 import org.mozilla.jss.asn1.ASN1Value;
 import org.mozilla.jss.asn1.BIT_STRING;
 import org.mozilla.jss.asn1.InvalidBERException;
@@ -177,6 +178,15 @@ public class CertReqMsg implements ASN1Value {
      */
     @Override
     public void encode(Tag implicit, OutputStream ostream) throws IOException {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(implicit, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag implicit) throws IOException {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(implicit);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         //Assert.notYetImplemented("CertReqMsg encoding");
         SEQUENCE sequence = new SEQUENCE();
 
@@ -186,7 +196,7 @@ public class CertReqMsg implements ASN1Value {
 		if (regInfo != null)
 			sequence.addElement( regInfo );
 
-        sequence.encode(implicit,ostream);
+        return sequence;
     }
 
     private static final Template templateInstance = new Template();
@@ -199,6 +209,17 @@ public class CertReqMsg implements ASN1Value {
      */
     public static class Template implements ASN1Template {
 
+        private SEQUENCE.Template seqt;
+
+        public Template() {
+            seqt = new SEQUENCE.Template();
+
+            seqt.addElement( CertRequest.getTemplate() );
+            seqt.addOptionalElement( ProofOfPossession.getTemplate() );
+            seqt.addOptionalElement(
+                    new SEQUENCE.OF_Template( AVA.getTemplate() ) );
+        }
+
         @Override
         public boolean tagMatch(Tag t) {
             return TAG.equals(t);
@@ -235,13 +256,6 @@ public class CertReqMsg implements ASN1Value {
         public ASN1Value decode(Tag implicit, InputStream istream)
             throws IOException, InvalidBERException
         {
-            SEQUENCE.Template seqt = new SEQUENCE.Template();
-
-            seqt.addElement( new CertRequest.Template() );
-			seqt.addOptionalElement( new ProofOfPossession.Template());
-            seqt.addOptionalElement(
-                    new SEQUENCE.OF_Template( new AVA.Template() ) );
-
             SEQUENCE seq = (SEQUENCE) seqt.decode(implicit, istream);
 
             return new CertReqMsg(
@@ -8,6 +8,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 import org.mozilla.jss.asn1.ASN1Template;
+import org.mozilla.jss.asn1.ASN1Util;
 import org.mozilla.jss.asn1.ASN1Value;
 import org.mozilla.jss.asn1.INTEGER;
 import org.mozilla.jss.asn1.InvalidBERException;
@@ -115,6 +116,15 @@ public class CertRequest implements ASN1Value {
      */
     @Override
     public void encode(Tag implicit, OutputStream ostream) throws IOException {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(implicit, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag implicit) throws IOException {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(implicit);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         //Assert.notYetImplemented("CertRequest encoding");
         SEQUENCE sequence = new SEQUENCE();
 
@@ -123,7 +133,12 @@ public class CertRequest implements ASN1Value {
 		if (controls != null)
 			sequence.addElement( controls );
 
-        sequence.encode(implicit,ostream);
+        return sequence;
+    }
+
+    private static final Template templateInstance = new Template();
+    public static Template getTemplate() {
+        return templateInstance;
     }
 
     /**
@@ -135,10 +150,10 @@ public class CertRequest implements ASN1Value {
 
         public Template() {
             seqTemplate = new SEQUENCE.Template();
-            seqTemplate.addElement( new INTEGER.Template() );
-            seqTemplate.addElement( new CertTemplate.Template() );
+            seqTemplate.addElement( INTEGER.getTemplate() );
+            seqTemplate.addElement( CertTemplate.getTemplate() );
             seqTemplate.addOptionalElement( new
-                SEQUENCE.OF_Template( new AVA.Template() ));
+                SEQUENCE.OF_Template( AVA.getTemplate() ));
         }
 
         @Override
@@ -362,6 +362,15 @@ public class CertTemplate implements ASN1Value {
 
     @Override
     public void encode(Tag t, OutputStream ostream) throws IOException {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(t, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag t) throws IOException {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(t);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         SEQUENCE seq = new SEQUENCE();
 
         seq.addElement(Tag.get(0), version);
@@ -393,7 +402,7 @@ public class CertTemplate implements ASN1Value {
         seq.addElement(Tag.get(8), subjectUID);
         seq.addElement(Tag.get(9), extensions);
 
-        seq.encode(t, ostream);
+        return seq;
     }
 
     private static Template templateInstance = new Template();
@@ -406,6 +415,40 @@ public class CertTemplate implements ASN1Value {
      */
     public static class Template implements ASN1Template {
 
+        private SEQUENCE.Template seqt;
+
+        public Template() {
+            CHOICE.Template timeChoice = new CHOICE.Template();
+            timeChoice.addElement( GeneralizedTime.getTemplate() );
+            timeChoice.addElement( UTCTime.getTemplate() );
+
+            // optional validity. The times are CHOICEs, so they are
+            // EXPLICITly tagged
+            SEQUENCE.Template validity = new SEQUENCE.Template();
+            validity.addOptionalElement( new EXPLICIT.Template(
+                            Tag.get(0), timeChoice));
+            validity.addOptionalElement( new EXPLICIT.Template(
+                            Tag.get(1), timeChoice));
+
+            seqt = new SEQUENCE.Template();
+
+            seqt.addOptionalElement( Tag.get(0), INTEGER.getTemplate() );
+            seqt.addOptionalElement( Tag.get(1), INTEGER.getTemplate() );
+            seqt.addOptionalElement( Tag.get(2),
+                                     AlgorithmIdentifier.getTemplate() );
+            seqt.addOptionalElement( new EXPLICIT.Template(Tag.get(3),
+                                            Name.getTemplate() ));
+            seqt.addOptionalElement( Tag.get(4), validity );
+            seqt.addOptionalElement( new EXPLICIT.Template(Tag.get(5),
+                                            Name.getTemplate() ));
+            seqt.addOptionalElement( Tag.get(6),
+                                SubjectPublicKeyInfo.getTemplate() );
+            seqt.addOptionalElement( Tag.get(7), BIT_STRING.getTemplate() );
+            seqt.addOptionalElement( Tag.get(8), BIT_STRING.getTemplate() );
+            seqt.addOptionalElement( Tag.get(9),
+                    new SEQUENCE.OF_Template( Extension.getTemplate() ) );
+        }
+
         @Override
         public boolean tagMatch(Tag tag) {
             return TAG.equals(tag);
@@ -426,36 +469,6 @@ public class CertTemplate implements ASN1Value {
         public ASN1Value decode(Tag implicit, InputStream istream)
             throws IOException, InvalidBERException
         {
-            CHOICE.Template timeChoice = new CHOICE.Template();
-            timeChoice.addElement( new GeneralizedTime.Template() );
-            timeChoice.addElement( new UTCTime.Template() );
-
-            // optional validity. The times are CHOICEs, so they are
-            // EXPLICITly tagged
-            SEQUENCE.Template validity = new SEQUENCE.Template();
-            validity.addOptionalElement( new EXPLICIT.Template(
-                            Tag.get(0), timeChoice));
-            validity.addOptionalElement( new EXPLICIT.Template(
-                            Tag.get(1), timeChoice));
-
-            SEQUENCE.Template seqt = new SEQUENCE.Template();
-
-            seqt.addOptionalElement( Tag.get(0), new INTEGER.Template() );
-            seqt.addOptionalElement( Tag.get(1), new INTEGER.Template() );
-            seqt.addOptionalElement( Tag.get(2),
-                                     new AlgorithmIdentifier.Template() );
-            seqt.addOptionalElement( new EXPLICIT.Template(Tag.get(3),
-                                            new Name.Template() ));
-            seqt.addOptionalElement( Tag.get(4), validity );
-            seqt.addOptionalElement( new EXPLICIT.Template(Tag.get(5),
-                                            new Name.Template() ));
-            seqt.addOptionalElement( Tag.get(6),
-                                new SubjectPublicKeyInfo.Template() );
-            seqt.addOptionalElement( Tag.get(7), new BIT_STRING.Template() );
-            seqt.addOptionalElement( Tag.get(8), new BIT_STRING.Template() );
-            seqt.addOptionalElement( Tag.get(9),
-                    new SEQUENCE.OF_Template( new Extension.Template() ) );
-
             SEQUENCE seq = (SEQUENCE) seqt.decode(implicit, istream);
 
             CertTemplate ct = new CertTemplate();
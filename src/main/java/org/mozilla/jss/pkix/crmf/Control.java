@@ -83,8 +83,8 @@ public class Control extends AVA {
 
         public Template() {
             seqTemplate = new SEQUENCE.Template();
-            seqTemplate.addElement( new OBJECT_IDENTIFIER.Template() );
-            seqTemplate.addElement( new ANY.Template()               );
+            seqTemplate.addElement( OBJECT_IDENTIFIER.getTemplate() );
+            seqTemplate.addElement( ANY.getTemplate()               );
         }
 
         @Override
@@ -108,6 +108,16 @@ public class EncryptedKey implements ASN1Value {
         }
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) throws IOException {
+        if( type == ENCRYPTED_VALUE ) {
+            return encryptedValue.encodedLength(implicitTag);
+        } else {
+            assert(type == ENVELOPED_DATA);
+            return envelopedData.encodedLength(implicitTag);
+        }
+    }
+
     private static final Template templateInstance = new Template();
     public static Template getTemplate() {
         return templateInstance;
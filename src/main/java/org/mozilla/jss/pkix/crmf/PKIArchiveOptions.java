@@ -142,6 +142,18 @@ public class PKIArchiveOptions implements ASN1Value {
         }
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) throws IOException {
+        if( type == ENCRYPTED_PRIV_KEY ) {
+            return (new EXPLICIT( new Tag(0), encryptedPrivKey )).encodedLength(tag);
+        } else if( type == KEY_GEN_PARAMETERS ) {
+            return keyGenParameters.encodedLength(tag);
+        } else {
+            assert( type == ARCHIVE_REM_GEN_PRIV_KEY );
+            return (new BOOLEAN(archiveRemGenPrivKey)).encodedLength(tag);
+        }
+    }
+
     private static final Template templateInstance = new Template();
 
     public static Template getTemplate() {
@@ -161,10 +173,10 @@ public class PKIArchiveOptions implements ASN1Value {
             // CHOICEs are always EXPLICIT
             template.addElement( new EXPLICIT.Template(
                                         new Tag(0),
-                                        new EncryptedKey.Template() ));
+                                        EncryptedKey.getTemplate() ));
 
-            template.addElement( new Tag(1), new OCTET_STRING.Template() );
-            template.addElement( new Tag(2), new BOOLEAN.Template()      );
+            template.addElement( new Tag(1), OCTET_STRING.getTemplate() );
+            template.addElement( new Tag(2), BOOLEAN.getTemplate()      );
         }
 
         /**
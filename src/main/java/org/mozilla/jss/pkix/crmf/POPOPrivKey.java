@@ -175,6 +175,22 @@ public class POPOPrivKey implements ASN1Value {
         // encode(ostream);
     }
 
+    /**
+     * Returns the length of the encoding written by encode(OutputStream),
+     * since POPOPrivKey is a CHOICE and cannot have an implicit tag.
+     */
+    @Override
+    public long encodedLength(Tag implicitTag) throws IOException {
+        if(type == THIS_MESSAGE) {
+            return thisMessage.encodedLength(Tag.get(0));
+        } else if(type == SUBSEQUENT_MESSAGE) {
+            return subsequentMessage.encodedLength(Tag.get(1));
+        } else {
+            assert(type == DHMAC);
+            return dhMAC.encodedLength(Tag.get(2));
+        }
+    }
+
     private static final Template templateInstance = new Template();
     public static Template getTemplate() {
         return templateInstance;
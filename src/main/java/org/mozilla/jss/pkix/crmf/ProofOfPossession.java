@@ -182,6 +182,25 @@ public class ProofOfPossession implements ASN1Value {
         encode(ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag) throws IOException {
+        if( type == RA_VERIFIED ) {
+            return (new NULL()).encodedLength(Tag.get(0));
+        } else if( type == SIGNATURE ) {
+            return signature.encodedLength(Tag.get(1));
+        } else if( type == KEY_ENCIPHERMENT ) {
+            return (new EXPLICIT( Tag.get(2), keyEncipherment )).encodedLength();
+        } else {
+            assert( type == KEY_AGREEMENT );
+            return (new EXPLICIT( Tag.get(3), keyAgreement )).encodedLength();
+        }
+    }
+
+    private static final Template templateInstance = new Template();
+    public static Template getTemplate() {
+        return templateInstance;
+    }
+
     /**
      * A Template for decoding a ProofOfPossession.
      */
@@ -70,11 +70,27 @@ public class AVA implements ASN1Value {
     public void encode(Tag implicit, OutputStream ostream)
         throws IOException
     {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(implicit, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag implicit)
+        throws IOException
+    {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(implicit);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         SEQUENCE seq = new SEQUENCE();
         seq.addElement(oid);
         seq.addElement(value);
 
-        seq.encode(implicit, ostream);
+        return seq;
+    }
+
+    private static final Template templateInstance = new Template();
+    public static Template getTemplate() {
+        return templateInstance;
     }
 
 /**
@@ -82,6 +98,15 @@ public class AVA implements ASN1Value {
  */
 public static class Template implements ASN1Template {
 
+    private SEQUENCE.Template seqt;
+
+    public Template() {
+        seqt = new SEQUENCE.Template();
+
+        seqt.addElement( OBJECT_IDENTIFIER.getTemplate()   );
+        seqt.addElement( ANY.getTemplate()                 );
+    }
+
     @Override
     public boolean tagMatch(Tag tag) {
         return TAG.equals(tag);
@@ -98,11 +123,6 @@ public static class Template implements ASN1Template {
     public ASN1Value decode(Tag implicit, InputStream istream)
         throws IOException, InvalidBERException
     {
-        SEQUENCE.Template seqt = new SEQUENCE.Template();
-
-        seqt.addElement( new OBJECT_IDENTIFIER.Template()   );
-        seqt.addElement( new ANY.Template()                 );
-
         SEQUENCE seq = (SEQUENCE) seqt.decode(implicit, istream);
 
         // The template should have enforced this
@@ -78,8 +78,23 @@ public class AlgorithmIdentifier implements ASN1Value {
         sequence.encode(implicit, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicit)
+        throws IOException
+    {
+        return sequence.encodedLength(implicit);
+    }
+
 public static class Template implements ASN1Template {
 
+    private SEQUENCE.Template seqt;
+
+    public Template() {
+        seqt = new SEQUENCE.Template();
+        seqt.addElement( OBJECT_IDENTIFIER.getTemplate() );
+        seqt.addOptionalElement( ANY.getTemplate() );
+    }
+
     @Override
     public boolean tagMatch(Tag tag) {
         return TAG.equals(tag);
@@ -96,10 +111,6 @@ public static class Template implements ASN1Template {
     public ASN1Value decode(Tag implicit, InputStream istream)
         throws IOException, InvalidBERException
     {
-        SEQUENCE.Template seqt = new SEQUENCE.Template();
-        seqt.addElement( new OBJECT_IDENTIFIER.Template() );
-        seqt.addOptionalElement( new ANY.Template() );
-
         SEQUENCE seq = (SEQUENCE) seqt.decode(implicit, istream);
 
         // the template should have enforced this
@@ -114,6 +114,13 @@ public class DirectoryString implements ASN1Value {
         asn1String.encode(implicitTag, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return asn1String.encodedLength(implicitTag);
+    }
+
     /**
      * Returns a singleton instance of the decoding template for this class.
      */
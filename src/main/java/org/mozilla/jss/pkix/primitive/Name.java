@@ -105,6 +105,13 @@ public class Name implements ASN1Value {
         rdns.encode(implicit, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicit)
+        throws IOException
+    {
+        return rdns.encodedLength(implicit);
+    }
+
     /**
      * The OID for the common name (CN) attribute.
      */
@@ -298,6 +305,10 @@ public class Name implements ASN1Value {
 
 
 public static class Template implements ASN1Template {
+
+    private SEQUENCE.OF_Template seqt =
+        new SEQUENCE.OF_Template( RDN.getTemplate() );
+
     @Override
     public boolean tagMatch(Tag tag) {
         return TAG.equals(tag);
@@ -314,8 +325,6 @@ public static class Template implements ASN1Template {
     public ASN1Value decode(Tag implicit, InputStream istream)
         throws IOException, InvalidBERException
     {
-        SEQUENCE.OF_Template seqt = new SEQUENCE.OF_Template(
-            new RDN.Template() );
         SEQUENCE seq = (SEQUENCE) seqt.decode(implicit, istream);
         return new Name( seq );
     }
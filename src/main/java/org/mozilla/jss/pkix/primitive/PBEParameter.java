@@ -86,6 +86,13 @@ public class PBEParameter implements ASN1Value {
         sequence.encode(implicitTag, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicitTag)
+        throws IOException
+    {
+        return sequence.encodedLength(implicitTag);
+    }
+
 
     private static final Template templateInstance = new Template();
     public static Template getTemplate() {
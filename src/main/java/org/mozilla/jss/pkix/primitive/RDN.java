@@ -79,8 +79,22 @@ public class RDN implements ASN1Value {
         avas.encode(implicit, ostream);
     }
 
+    @Override
+    public long encodedLength(Tag implicit)
+        throws IOException
+    {
+        return avas.encodedLength(implicit);
+    }
+
+    private static final Template templateInstance = new Template();
+    public static Template getTemplate() {
+        return templateInstance;
+    }
+
 public static class Template implements ASN1Template {
 
+    private SET.OF_Template sett = new SET.OF_Template( AVA.getTemplate() );
+
     @Override
     public boolean tagMatch(Tag tag) {
         return TAG.equals(tag);
@@ -97,9 +111,6 @@ public static class Template implements ASN1Template {
     public ASN1Value decode(Tag implicit, InputStream istream)
         throws IOException, InvalidBERException
     {
-        AVA.Template avatemp = new AVA.Template();
-        SET.OF_Template sett = new SET.OF_Template( avatemp );
-
         SET set =  (SET) sett.decode(implicit, istream);
 
         if(set.size() < 1) {
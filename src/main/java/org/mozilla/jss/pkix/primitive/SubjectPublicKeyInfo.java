@@ -84,10 +84,22 @@ public class SubjectPublicKeyInfo extends java.security.spec.X509EncodedKeySpec
     public void encode(Tag implicit, OutputStream ostream)
         throws IOException
     {
+        ASN1Util.getEncodingValue(this, this::toSEQUENCE).encode(implicit, ostream);
+    }
+
+    @Override
+    public long encodedLength(Tag implicit)
+        throws IOException
+    {
+        return ASN1Util.getEncodingValue(this, this::toSEQUENCE).encodedLength(implicit);
+    }
+
+    private SEQUENCE toSEQUENCE() {
         SEQUENCE seq = new SEQUENCE();
         seq.addElement( algorithm );
         seq.addElement( subjectPublicKey );
-        seq.encode( implicit, ostream );
+
+        return seq;
     }
 
     private static final Template templateInstance = new Template();
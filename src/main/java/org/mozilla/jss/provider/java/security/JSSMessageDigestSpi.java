@@ -4,6 +4,7 @@
 
 package org.mozilla.jss.provider.java.security;
 
+import java.nio.ByteBuffer;
 import java.security.DigestException;
 import java.security.MessageDigestSpi;
 
@@ -100,6 +101,15 @@ public abstract class JSSMessageDigestSpi extends MessageDigestSpi {
       }
     }
 
+    @Override
+    protected void engineUpdate(ByteBuffer input) {
+      try {
+        digest.update(input);
+      } catch(java.security.DigestException de) {
+        throw new TokenRuntimeException(de.getMessage());
+      }
+    }
+
     @Deprecated(since="5.0.1", forRemoval=true)
     public static class SHA1 extends JSSMessageDigestSpi {
         public SHA1() {
@@ -3,12 +3,14 @@
  * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
 package org.mozilla.jss.provider.java.security;
 
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.InvalidParameterException;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
+import java.security.ProviderException;
 import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.SignatureException;
@@ -139,6 +141,17 @@ public class JSSSignatureSpi extends java.security.SignatureSpi {
         }
     }
 
+    @Override
+    protected void engineUpdate(ByteBuffer input) {
+        try {
+            sig.update(input);
+        } catch( SignatureException e) {
+            throw new ProviderException("update() failed", e);
+        } catch( TokenException e) {
+            throw new ProviderException("TokenException: "+e.toString(), e);
+        }
+    }
+
     @Override
     public byte[] engineSign() throws SignatureException {
         try {
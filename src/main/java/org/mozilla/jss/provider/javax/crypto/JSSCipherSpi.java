@@ -4,6 +4,7 @@
 
 package org.mozilla.jss.provider.javax.crypto;
 
+import java.nio.ByteBuffer;
 import java.security.AlgorithmParameters;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -14,6 +15,7 @@ import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.InvalidParameterSpecException;
+import java.util.Arrays;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -21,6 +23,7 @@ import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.RC2ParameterSpec;
 
@@ -54,6 +57,17 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
     private int blockSize;
     //keyStrength  is used for RC2ParameterSpec and EncryptionAlgorithm.lookup
     private int keyStrength;
+    // AEAD only: whether we are encrypting, and how much input the
+    // cipher is holding until doFinal, for engineGetOutputSize
+    private boolean encrypting;
+    private int aeadPending;
+    // AEAD only: the key and IV of the last encryption, which must not
+    // be used together again
+    private Key lastAEADKey;
+    private byte[] lastAEADIV;
+
+    // Recommended nonce length for both AES-GCM and ChaCha20-Poly1305.
+    private static final int AEAD_IV_LENGTH = 12;
 
     protected JSSCipherSpi(String algFamily) {
         this.algFamily = algFamily;
@@ -100,10 +114,22 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
         AlgorithmParameterSpec givenParams, SecureRandom random)
         throws InvalidKeyException, InvalidAlgorithmParameterException
     {
+      Key givenKey = key;
       try {
-        // throw away any previous state
+        // throw away any previous state, freeing its native context now
+        // instead of leaving it for the garbage collector
+        if( cipher instanceof AutoCloseable ) {
+            try {
+                ((AutoCloseable) cipher).close();
+            } catch(Exception e) {
+                throw new TokenRuntimeException(e.getMessage());
+            }
+        }
         cipher = null;
         wrapper = null;
+        encAlg = null;
+        aeadPending = 0;
+        encrypting = (opmode == Cipher.ENCRYPT_MODE);
 
         params = givenParams;
         if( algFamily==null ) {
@@ -152,6 +178,9 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
                     // we're supposed to generate some params
                     params = generateAlgParams(encAlg, blockSize);
                 }
+                if( encAlg.isAEAD() ) {
+                    checkAEADReuse(givenKey, engineGetIV());
+                }
                 cipher.initEncrypt(symkey, params);
             } else if( opmode == Cipher.DECRYPT_MODE ) {
                 if( params == noAlgParams) {
@@ -220,7 +249,9 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
             if (algFamily.compareToIgnoreCase("RC2") == 0) {
                 gp = givenParams.getParameterSpec(
                     javax.crypto.spec.RC2ParameterSpec.class );
-            } else if (algMode.compareToIgnoreCase("CBC") == 0) {
+            } else if (algMode != null && algMode.compareToIgnoreCase("GCM") == 0) {
+                gp = givenParams.getParameterSpec(GCMParameterSpec.class);
+            } else if (algMode == null || algMode.compareToIgnoreCase("CBC") == 0) {
                  gp = givenParams.getParameterSpec(
                              javax.crypto.spec.IvParameterSpec.class );
             }
@@ -254,8 +285,11 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
             // no parameters are needed
             return null;
         }
+        boolean aead = (alg instanceof EncryptionAlgorithm) &&
+            ((EncryptionAlgorithm) alg).isAEAD();
+
         // generate an IV
-        byte[] iv = new byte[blockSize];
+        byte[] iv = new byte[aead ? AEAD_IV_LENGTH : blockSize];
         try {
             SecureRandom random = SecureRandom.getInstance("pkcs11prng",
                                                        "Mozilla-JSS");
@@ -271,6 +305,10 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
             } else if ( paramClasses[i].equals( RC2ParameterSpec.class ) ) {
                 algParSpec = new RC2ParameterSpec(keyStrength, iv);
                 break;
+            } else if ( paramClasses[i].equals( GCMParameterSpec.class ) ) {
+                algParSpec = new GCMParameterSpec(
+                    ((EncryptionAlgorithm) alg).getTagLength() * 8, iv);
+                break;
             }
         }
 
@@ -285,6 +323,24 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
         return blockSize;
     }
 
+    /**
+     * Reusing a nonce with the same key breaks both GCM and
+     * ChaCha20-Poly1305, so refuses to encrypt with the key and IV of
+     * the previous encryption.
+     */
+    private void checkAEADReuse(Key key, byte[] iv)
+        throws InvalidAlgorithmParameterException
+    {
+        if( iv != null && Arrays.equals(iv, lastAEADIV) &&
+            (key == lastAEADKey || key.equals(lastAEADKey)) )
+        {
+            throw new InvalidAlgorithmParameterException(
+                "Cannot reuse IV for " + encAlg + " encryption");
+        }
+        lastAEADKey = key;
+        lastAEADIV = iv == null ? null : iv.clone();
+    }
+
     @Override
     public byte[] engineGetIV() {
         if( params == null ) {
@@ -294,6 +350,8 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
             return ((IvParameterSpec)params).getIV();
         } else if( params instanceof RC2ParameterSpec ) {
             return ((RC2ParameterSpec)params).getIV();
+        } else if( params instanceof GCMParameterSpec ) {
+            return ((GCMParameterSpec)params).getIV();
         } else {
             return null;
         }
@@ -307,6 +365,9 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
                || ( params instanceof RC2ParameterSpec )) {
                 algParams = AlgorithmParameters.getInstance(algFamily);
                 algParams.init(params);
+            } else if( params instanceof GCMParameterSpec ) {
+                algParams = AlgorithmParameters.getInstance("GCM");
+                algParams.init(params);
             }
           } catch(NoSuchAlgorithmException e) {
               throw new RuntimeException("Unable to get parameters: " + e.getMessage(), e);
@@ -318,10 +379,49 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
 
     @Override
     public int engineGetOutputSize(int inputLen) {
+        if( isAEAD() ) {
+            // The tag is appended when encrypting and stripped when
+            // decrypting; all output is produced by doFinal.
+            int total = aeadPending + inputLen;
+            if( encrypting ) {
+                return total + getTagLength();
+            }
+            return Math.max(total - getTagLength(), 0);
+        }
         int total = (blockSize-1) + inputLen;
         return ((total / blockSize) + 1) * blockSize;
     }
 
+    private boolean isAEAD() {
+        return encAlg != null && encAlg.isAEAD();
+    }
+
+    private int getTagLength() {
+        if( params instanceof GCMParameterSpec ) {
+            return ((GCMParameterSpec)params).getTLen() / 8;
+        }
+        return encAlg.getTagLength();
+    }
+
+    @Override
+    public void engineUpdateAAD(byte[] src, int offset, int len) {
+        if(cipher == null) {
+            throw new IllegalStateException();
+        }
+        try {
+            cipher.updateAAD(src, offset, len);
+        } catch(TokenException te) {
+            throw new TokenRuntimeException(te.getMessage());
+        }
+    }
+
+    @Override
+    public void engineUpdateAAD(ByteBuffer src) {
+        byte[] aad = new byte[src.remaining()];
+        src.get(aad);
+        engineUpdateAAD(aad, 0, aad.length);
+    }
+
     @Override
     public byte[] engineUpdate(byte[] input, int inputOffset, int inputLen) {
         if(cipher == null) {
@@ -330,6 +430,9 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
             throw new IllegalStateException();
         }
         try {
+            if( isAEAD() ) {
+                aeadPending += inputLen;
+            }
             return cipher.update(input, inputOffset, inputLen);
         } catch(TokenException te) {
             throw new TokenRuntimeException(te.getMessage());
@@ -340,6 +443,22 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
     public int engineUpdate(byte[] input, int inputOffset, int inputLen,
         byte[] output, int outputOffset) throws ShortBufferException
     {
+        if( cipher != null &&
+            output.length - outputOffset >= inputLen + blockSize )
+        {
+            // There is room for the worst case, so let the token write
+            // straight into the caller's buffer.
+            try {
+                if( isAEAD() ) {
+                    aeadPending += inputLen;
+                }
+                return cipher.update(input, inputOffset, inputLen,
+                                output, outputOffset);
+            } catch(TokenException te) {
+                throw new TokenRuntimeException(te.getMessage());
+            }
+        }
+
         byte[] bytes = engineUpdate(input, inputOffset, inputLen);
         if( bytes.length > output.length-outputOffset ) {
             throw new ShortBufferException(bytes.length +  " needed, " +
@@ -358,6 +477,7 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
             // get here
             throw new IllegalStateException();
         }
+        aeadPending = 0;
         try {
             if( input == null || inputLen == 0) {
                 return cipher.doFinal();
@@ -379,6 +499,26 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
             throws ShortBufferException, IllegalBlockSizeException,
             BadPaddingException
     {
+        int worstCase = isAEAD() ? engineGetOutputSize(inputLen) :
+            inputLen + 2 * blockSize;
+        if( cipher != null && input != null && inputLen > 0 &&
+            output.length - outputOffset >= worstCase )
+        {
+            // There is room for the worst case, so let the token write
+            // straight into the caller's buffer.
+            aeadPending = 0;
+            try {
+                return cipher.doFinal(input, inputOffset, inputLen,
+                                output, outputOffset);
+            } catch(IllegalStateException ise) {
+                throw ise;
+            } catch(org.mozilla.jss.crypto.IllegalBlockSizeException ibse) {
+                throw new IllegalBlockSizeException(ibse.getMessage());
+            } catch(TokenException te) {
+                throw new TokenRuntimeException(te.getMessage());
+            }
+        }
+
         byte[] bytes = engineDoFinal(input, inputOffset, inputLen);
         if( bytes.length > output.length-outputOffset ) {
             throw new ShortBufferException(bytes.length +  " needed, " +
@@ -388,6 +528,57 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
         return bytes.length;
     }
 
+    @Override
+    protected int engineUpdate(ByteBuffer input, ByteBuffer output)
+        throws ShortBufferException
+    {
+        if( !input.isDirect() || !output.isDirect() || isAEAD() ) {
+            return super.engineUpdate(input, output);
+        }
+        if(cipher == null) {
+            throw new IllegalStateException();
+        }
+
+        int needed = engineGetOutputSize(input.remaining());
+        if( needed > output.remaining() ) {
+            throw new ShortBufferException(needed + " needed, " +
+                output.remaining() + " supplied");
+        }
+        try {
+            return cipher.update(input, output);
+        } catch(TokenException te) {
+            throw new TokenRuntimeException(te.getMessage());
+        }
+    }
+
+    @Override
+    protected int engineDoFinal(ByteBuffer input, ByteBuffer output)
+        throws ShortBufferException, IllegalBlockSizeException,
+        BadPaddingException
+    {
+        if( !input.isDirect() || !output.isDirect() || isAEAD() ) {
+            return super.engineDoFinal(input, output);
+        }
+        if(cipher == null) {
+            throw new IllegalStateException();
+        }
+
+        int needed = engineGetOutputSize(input.remaining());
+        if( needed > output.remaining() ) {
+            throw new ShortBufferException(needed + " needed, " +
+                output.remaining() + " supplied");
+        }
+        try {
+            return cipher.doFinal(input, output);
+        } catch(IllegalStateException ise) {
+            throw ise;
+        } catch(org.mozilla.jss.crypto.IllegalBlockSizeException ibse) {
+            throw new IllegalBlockSizeException(ibse.getMessage());
+        } catch(TokenException te) {
+            throw new TokenRuntimeException(te.getMessage());
+        }
+    }
+
     @Override
     public byte[] engineWrap(Key key)
         throws IllegalBlockSizeException, InvalidKeyException
@@ -484,7 +675,7 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
             try {
                 byte[] encoded = ((PK11PubKey)key).getEncoded();
                 SubjectPublicKeyInfo.Template spkiTemp =
-                    new SubjectPublicKeyInfo.Template();
+                    SubjectPublicKeyInfo.getTemplate();
                 SubjectPublicKeyInfo spki = (SubjectPublicKeyInfo)
                     ASN1Util.decode(spkiTemp, encoded);
                 BIT_STRING pk = spki.getSubjectPublicKey();
@@ -518,6 +709,11 @@ public class JSSCipherSpi extends javax.crypto.CipherSpi {
             super("AES");
         }
     }
+    static public class ChaCha20Poly1305 extends JSSCipherSpi {
+        public ChaCha20Poly1305() {
+            super("ChaCha20-Poly1305");
+        }
+    }
     static public class RC4 extends JSSCipherSpi {
         public RC4() {
             super("RC4");
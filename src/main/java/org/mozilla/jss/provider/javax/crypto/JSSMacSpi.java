@@ -4,6 +4,7 @@
 
 package org.mozilla.jss.provider.javax.crypto;
 
+import java.nio.ByteBuffer;
 import java.security.DigestException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -116,6 +117,15 @@ public class JSSMacSpi extends javax.crypto.MacSpi {
       }
     }
 
+    @Override
+    protected void engineUpdate(ByteBuffer input) {
+      try {
+        digest.update(input);
+      } catch(DigestException de) {
+        throw new TokenRuntimeException("DigestException: " + de.getMessage());
+      }
+    }
+
     @Override
     public byte[] engineDoFinal() {
       try {
@@ -370,6 +370,11 @@ public class JSSSecretKeyFactorySpi extends SecretKeyFactorySpi {
             super(KeyGenAlgorithm.AES);
         }
     }
+    public static class ChaCha20 extends JSSSecretKeyFactorySpi {
+        public ChaCha20() {
+            super(KeyGenAlgorithm.CHACHA20);
+        }
+    }
     public static class RC4 extends JSSSecretKeyFactorySpi {
         public RC4() {
             super(KeyGenAlgorithm.RC4);
@@ -344,6 +344,21 @@ Java_org_mozilla_jss_ssl_SocketProxy_releaseNativeResources
     JSSL_DestroySocketData(env, sockdata);
 }
 
+JNIEXPORT void JNICALL
+Java_org_mozilla_jss_ssl_SocketProxy_releasePointer
+    (JNIEnv *env, jclass clazz, jbyteArray pointer)
+{
+    JSSL_SocketData *sockdata = NULL;
+
+    PR_ASSERT(env != NULL);
+
+    if (JSS_getPtrFromByteArray(env, pointer, (void**)&sockdata) != PR_SUCCESS) {
+        return;
+    }
+
+    JSSL_DestroySocketData(env, sockdata);
+}
+
 void
 JSSL_DestroySocketData(JNIEnv *env, JSSL_SocketData *sd)
 {
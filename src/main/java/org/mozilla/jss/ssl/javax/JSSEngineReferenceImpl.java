@@ -1,6 +1,7 @@
 package org.mozilla.jss.ssl.javax;
 
 import java.io.InputStream;
+import java.lang.ref.Cleaner;
 import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -37,6 +38,7 @@ import org.mozilla.jss.ssl.SSLCipher;
 import org.mozilla.jss.ssl.SSLHandshakeCompletedEvent;
 import org.mozilla.jss.ssl.SSLVersion;
 import org.mozilla.jss.ssl.SSLVersionRange;
+import org.mozilla.jss.util.NativeProxy;
 
 /**
  * The reference JSSEngine implementation.
@@ -154,6 +156,17 @@ public class JSSEngineReferenceImpl extends JSSEngine {
      */
     private CertValidationTask task;
 
+    /**
+     * Native resources which must be released if this engine is dropped
+     * without calling cleanup(). They are mirrored here, outside of the
+     * engine, so that they can be freed once the engine is unreachable.
+     */
+    private final NativeState native_state = new NativeState();
+
+    @SuppressWarnings("unused")
+    private final Cleaner.Cleanable cleanable =
+        NativeProxy.registerCleanup(this, native_state);
+
     public JSSEngineReferenceImpl() {
         super();
 
@@ -296,11 +309,13 @@ public class JSSEngineReferenceImpl extends JSSEngine {
             Buffer.Free(read_buf);
         }
         read_buf = Buffer.Create(BUFFER_SIZE);
+        native_state.read_buf = read_buf;
 
         if (write_buf != null) {
             Buffer.Free(write_buf);
         }
         write_buf = Buffer.Create(BUFFER_SIZE);
+        native_state.write_buf = write_buf;
     }
 
     private void createBufferFD() throws SSLException {
@@ -341,6 +356,7 @@ public class JSSEngineReferenceImpl extends JSSEngine {
 
         fd = null;
         closed_fd = false;
+        native_state.ssl_fd = ssl_fd;
 
         // Turn on SSL Alert Logging for the ssl_fd object.
         int ret = SSL.EnableAlertLogging(ssl_fd);
@@ -1677,26 +1693,56 @@ public class JSSEngineReferenceImpl extends JSSEngine {
                 logger.error("Got exception trying to cleanup SSLFD", e);
             } finally {
                 closed_fd = true;
+                native_state.ssl_fd = null;
             }
         }
 
         if (read_buf != null) {
             Buffer.Free(read_buf);
             read_buf = null;
+            native_state.read_buf = null;
         }
 
         if (write_buf != null) {
             Buffer.Free(write_buf);
             write_buf = null;
+            native_state.write_buf = null;
         }
     }
 
-    // During testing with Tomcat 8.5, most instances did not call
-    // cleanup, so all the JNI resources end up getting leaked: ssl_fd
-    // (and its global ref), read_buf, and write_buf.
-    @Override
-    protected void finalize() {
-        cleanup();
+    /**
+     * During testing with Tomcat 8.5, most instances did not call
+     * cleanup, so all the JNI resources end up getting leaked: ssl_fd
+     * (and its global ref), read_buf, and write_buf. This releases them
+     * from the Cleaner thread once the engine is unreachable.
+     */
+    private static class NativeState implements Runnable {
+        volatile SSLFDProxy ssl_fd;
+        volatile BufferProxy read_buf;
+        volatile BufferProxy write_buf;
+
+        @Override
+        public void run() {
+            if (ssl_fd != null) {
+                try {
+                    SSL.RemoveCallbacks(ssl_fd);
+                    ssl_fd.close();
+                } catch (Exception e) {
+                    logger.error("Got exception trying to cleanup SSLFD", e);
+                }
+                ssl_fd = null;
+            }
+
+            if (read_buf != null) {
+                Buffer.Free(read_buf);
+                read_buf = null;
+            }
+
+            if (write_buf != null) {
+                Buffer.Free(write_buf);
+                write_buf = null;
+            }
+        }
     }
 
 
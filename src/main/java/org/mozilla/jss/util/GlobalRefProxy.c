@@ -70,6 +70,23 @@ Java_org_mozilla_jss_util_GlobalRefProxy_releaseNativeResources
     }
 }
 
+JNIEXPORT void JNICALL
+Java_org_mozilla_jss_util_GlobalRefProxy_releasePointer
+    (JNIEnv *env, jclass clazz, jbyteArray pointer)
+{
+    jobject ref = NULL;
+
+    PR_ASSERT(env != NULL);
+
+    if (JSS_getPtrFromByteArray(env, pointer, (void**)&ref) != PR_SUCCESS) {
+        return;
+    }
+
+    if (ref != NULL) {
+        (*env)->DeleteGlobalRef(env, ref);
+    }
+}
+
 JNIEXPORT jbyteArray JNICALL
 Java_org_mozilla_jss_util_GlobalRefProxy_refOf
     (JNIEnv *env, jobject clazz, jobject obj)
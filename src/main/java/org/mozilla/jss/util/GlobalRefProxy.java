@@ -2,15 +2,17 @@ package org.mozilla.jss.util;
 
 public class GlobalRefProxy extends NativeProxy {
     public GlobalRefProxy(byte[] pointer) {
-        super(pointer);
+        super(pointer, GlobalRefProxy::releasePointer);
     }
 
     public GlobalRefProxy(Object target) {
-        super(GlobalRefProxy.refOf(target));
+        super(GlobalRefProxy.refOf(target), GlobalRefProxy::releasePointer);
     }
 
     private static native byte[] refOf(Object target);
 
     @Override
     protected native void releaseNativeResources();
+
+    private static native void releasePointer(byte[] pointer);
 }
@@ -4,12 +4,17 @@
 
 package org.mozilla.jss.util;
 
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.mozilla.jss.CryptoManager;
 import org.mozilla.jss.netscape.security.util.Utils;
@@ -22,6 +27,14 @@ import org.slf4j.LoggerFactory;
  * It contains some code to help make sure that native memory is getting
  * freed properly.
  *
+ * Native resources should be released with close(). A proxy constructed
+ * with a {@link Releaser} is additionally registered with a
+ * java.lang.ref.Cleaner, so that if it becomes unreachable without being
+ * closed, the Releaser frees the native structure. The Cleaner keeps only
+ * the pointer, never the proxy, so NativeProxy needs no finalizer.
+ * Subclasses without a Releaser must release their resources themselves
+ * if they may be dropped without being closed.
+ *
  * @author nicolson
  * @version $Revision$ $Date$
  */
@@ -29,6 +42,30 @@ public abstract class NativeProxy implements AutoCloseable {
     public static Logger logger = LoggerFactory.getLogger(NativeProxy.class);
     private static final boolean saveStacktraces = assertsEnabled() && CryptoManager.JSS_DEBUG;
 
+    private static final Cleaner cleaner = Cleaner.create();
+
+    /**
+     * Frees the native structure behind a pointer.
+     *
+     * A Releaser runs after its proxy has become unreachable, so it must
+     * not refer to the proxy; use a static method such as
+     * <code>MyProxy::releasePointer</code>.
+     */
+    @FunctionalInterface
+    public interface Releaser {
+        void release(byte[] pointer) throws Exception;
+    }
+
+    /**
+     * Registers an action to run once <code>owner</code> has become
+     * unreachable, using the same Cleaner as NativeProxy. This is meant
+     * for objects which own native proxies that cannot be released by a
+     * Releaser; <code>action</code> must not refer to <code>owner</code>.
+     */
+    public static Cleaner.Cleanable registerCleanup(Object owner, Runnable action) {
+        return cleaner.register(owner, action);
+    }
+
     /**
      * Create a NativeProxy from a byte array representing a C pointer.
      * This is the primary way of creating a NativeProxy; it should be called
@@ -50,12 +87,35 @@ public abstract class NativeProxy implements AutoCloseable {
      * aren't freed.
      */
     protected NativeProxy(byte[] pointer, boolean track) {
+        this(pointer, track, null);
+    }
+
+    /**
+     * Create a tracked NativeProxy whose native resources are freed by
+     * <code>releaser</code> if the proxy is garbage collected without
+     * having been closed.
+     */
+    protected NativeProxy(byte[] pointer, Releaser releaser) {
+        this(pointer, true, releaser);
+    }
+
+    private NativeProxy(byte[] pointer, boolean track, Releaser releaser) {
         mPointer = pointer;
         mHashCode = registryIndex.getAndIncrement();
         if (mPointer != null) {
             mHashCode += Arrays.hashCode(mPointer);
         }
 
+        if (track && mPointer != null) {
+            mCounters = countersFor(getClass());
+            mCounters.created.increment();
+
+            if (releaser != null) {
+                mCleanup = new Cleanup(mPointer, releaser, mCounters);
+                mCleanable = cleaner.register(this, mCleanup);
+            }
+        }
+
         if (track && saveStacktraces) {
             assert (pointer != null);
             registry.add(this);
@@ -107,43 +167,16 @@ public abstract class NativeProxy implements AutoCloseable {
      * data structures in C code that are referenced by this proxy.
      * releaseNativeResources() will usually be implemented as a native method.
      * <p>
-     * You don't call this method; NativeProxy.finalize() or close() calls
-     * it for you.
+     * You don't call this method; close() calls it for you.
      * </p>
      *
      * If you free these resources explicitly, call clear(); instead.
      */
     protected abstract void releaseNativeResources() throws Exception;
 
-    /**
-     * Finalize this NativeProxy by releasing its native resources.
-     * The finalizer calls releaseNativeResources() so you don't have to.
-     * This finalizer should be called from the finalize() method of all
-     * subclasses:
-     * class MyProxy extends NativeProxy {
-     * [...]
-     * protected void finalize() throws Throwable {
-     * // do any object-specific finalization other than
-     * // releasing native resources
-     * [...]
-     * super.finalize();
-     * }
-     * }
-     *
-     * @deprecated finalize() in Object has been deprecated. Use close(...)
-     *             from the AutoCloseable interface instead.
-     */
-    @Override
-    @Deprecated
-    protected void finalize() throws Throwable {
-        close();
-    }
-
     /**
      * Close this NativeProxy by releasing its native resources if they
      * haven't otherwise been freed.
-     *
-     * See comment in finalize.
      */
     @Override
     public final void close() throws Exception {
@@ -153,6 +186,9 @@ public abstract class NativeProxy implements AutoCloseable {
             }
         } finally {
             clear();
+            // The Cleaner must not run while releaseNativeResources()
+            // is still using the pointer.
+            Reference.reachabilityFence(this);
         }
     }
 
@@ -160,14 +196,24 @@ public abstract class NativeProxy implements AutoCloseable {
      * Call clear(...) to clear the value of the pointer, setting it to null.
      *
      * This should be used when the pointer has been freed by another means.
-     * Similar to finalize(...) or close(...), except that it doesn't call
+     * Similar to close(...), except that it doesn't call
      * releaseNativeResources(...).
      *
      * See also: JSS_clearPtrFromProxy(...) in jssutil.h
      */
     public final void clear() {
+        boolean wasSet = this.mPointer != null;
         this.mPointer = null;
         // registry.remove(this);
+
+        if (mCleanable != null) {
+            // Deregister from the Cleaner; the action sees that the pointer
+            // is gone and only updates the counters. This happens once.
+            mCleanup.pointer = null;
+            mCleanable.clean();
+        } else if (wasSet && mCounters != null) {
+            mCounters.closed.increment();
+        }
     }
 
     /**
@@ -183,6 +229,10 @@ public abstract class NativeProxy implements AutoCloseable {
     private byte mPointer[];
     private int mHashCode;
 
+    private Counters mCounters;
+    private Cleanup mCleanup;
+    private Cleaner.Cleanable mCleanable;
+
     /**
      * String containing backtrace of pointer generation.
      */
@@ -194,18 +244,124 @@ public abstract class NativeProxy implements AutoCloseable {
      * <p>
      * In debug mode, we keep track of all NativeProxy objects in a
      * static registry. Whenever a NativeProxy is constructed, it
-     * registers. Whenever it finalizes, it unregisters. At the end of
+     * registers. Whenever it is collected, it unregisters. At the end of
      * the game, we should be able to garbage collect and then assert that
      * the registry is empty. This could be done, for example, in the
      * jssjava JVM after main() completes.
      *
-     * This registration process verifies that people are calling
-     * NativeProxy.finalize() from their subclasses of NativeProxy, so that
-     * releaseNativeResources() gets called.
+     * This registration process verifies that native resources are
+     * getting released, either by close() or by the Cleaner.
      */
     static Set<NativeProxy> registry = Collections.newSetFromMap(new WeakHashMap<NativeProxy, Boolean>());
     static AtomicInteger registryIndex = new AtomicInteger();
 
+    /**
+     * Cleaner action. It shares the pointer array with the proxy but holds
+     * no reference to the proxy itself.
+     */
+    private static final class Cleanup implements Runnable {
+        private final Releaser releaser;
+        private final Counters counters;
+        volatile byte[] pointer;
+
+        Cleanup(byte[] pointer, Releaser releaser, Counters counters) {
+            this.pointer = pointer;
+            this.releaser = releaser;
+            this.counters = counters;
+        }
+
+        @Override
+        public void run() {
+            byte[] p = pointer;
+            pointer = null;
+
+            if (p == null) {
+                // released by close() or clear()
+                counters.closed.increment();
+                return;
+            }
+
+            try {
+                releaser.release(p);
+            } catch (Throwable t) {
+                logger.warn("Unable to release " + counters.getType() + ": " + t.getMessage(), t);
+            } finally {
+                counters.collected.increment();
+            }
+        }
+    }
+
+    private static final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    private static Counters countersFor(Class<?> type) {
+        return counters.computeIfAbsent(type.getName(), Counters::new);
+    }
+
+    /**
+     * Counts of native proxies of one type.
+     */
+    public static final class Counters {
+        private final String type;
+        final LongAdder created = new LongAdder();
+        final LongAdder closed = new LongAdder();
+        final LongAdder collected = new LongAdder();
+
+        Counters(String type) {
+            this.type = type;
+        }
+
+        /**
+         * Name of the NativeProxy subclass.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Number of proxies created with a non-null pointer.
+         */
+        public long getCreated() {
+            return created.sum();
+        }
+
+        /**
+         * Number of proxies released explicitly through close() or clear().
+         */
+        public long getClosed() {
+            return closed.sum();
+        }
+
+        /**
+         * Number of proxies freed by the Cleaner after becoming unreachable
+         * without having been closed.
+         */
+        public long getCollected() {
+            return collected.sum();
+        }
+
+        /**
+         * Number of proxies whose native resources have not been freed yet.
+         */
+        public long getLive() {
+            return getCreated() - getClosed() - getCollected();
+        }
+
+        @Override
+        public String toString() {
+            return type + "[live=" + getLive() + ", closed=" + getClosed() +
+                ", collected=" + getCollected() + "]";
+        }
+    }
+
+    /**
+     * Returns the native proxy counters, keyed by NativeProxy subclass
+     * name. The returned Counters are live views; untracked proxies are
+     * not counted.
+     */
+    public static Map<String, Counters> getCounters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
     @Override
     public String toString() {
         if (mPointer == null) {
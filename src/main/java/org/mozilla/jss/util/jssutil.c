@@ -203,7 +203,6 @@ JSS_getPtrFromProxy(JNIEnv *env, jobject nativeProxy, void **ptr)
 	jclass proxyClass;
     jfieldID byteArrayField;
     jbyteArray byteArray;
-    int size;
 
     PR_ASSERT(env!=NULL && nativeProxy != NULL && ptr != NULL);
     if( nativeProxy == NULL ) {
@@ -239,6 +238,30 @@ JSS_getPtrFromProxy(JNIEnv *env, jobject nativeProxy, void **ptr)
 
     byteArray = (jbyteArray) (*env)->GetObjectField(env, nativeProxy,
                         byteArrayField);
+    return JSS_getPtrFromByteArray(env, byteArray, ptr);
+}
+
+/***********************************************************************
+**
+** J S S _ g e t P t r F r o m B y t e A r r a y
+**
+** Extracts a pointer from the byte array form produced by
+** JSS_ptrToByteArray. This is used by the static releasePointer natives,
+** which are handed the pointer after the owning NativeProxy has become
+** unreachable.
+**
+** byteArray: a byte array holding a pointer, or NULL.
+** ptr: address of a void* that will receive the pointer. It is set to
+**      NULL if byteArray is NULL.
+** Returns: PR_SUCCESS on success, PR_FAILURE if an exception was thrown.
+*/
+PRStatus
+JSS_getPtrFromByteArray(JNIEnv *env, jbyteArray byteArray, void **ptr)
+{
+    int size;
+
+    PR_ASSERT(env != NULL && ptr != NULL);
+
     if (byteArray == NULL) {
         *ptr = NULL;
     } else {
@@ -676,6 +699,52 @@ void JSS_DerefByteArray(JNIEnv *env, jbyteArray array, void *data, jint mode) {
     (*env)->ReleaseByteArrayElements(env, array, (jbyte *) data, mode);
 }
 
+/************************************************************************
+** JSS_RefDirectBuffer.
+**
+** References the native memory backing a direct java.nio.ByteBuffer into
+** *data, pointing at the given offset. The range [offset, offset+length)
+** must lie within the buffer's capacity. Direct buffers are never moved by
+** the garbage collector, so there is no matching dereference call; the
+** caller must keep the ByteBuffer reachable while *data is in use.
+**
+** Returns
+**  bool - whether or not the operation succeeded. On failure, an exception
+**  has been thrown.
+*/
+bool JSS_RefDirectBuffer(JNIEnv *env, jobject buffer, jint offset,
+    jint length, jbyte **data)
+{
+    jbyte *address = NULL;
+    jlong capacity = 0;
+
+    if (env == NULL || data == NULL) {
+        return false;
+    }
+    *data = NULL;
+
+    if (buffer == NULL) {
+        JSS_throw(env, NULL_POINTER_EXCEPTION);
+        return false;
+    }
+
+    address = (*env)->GetDirectBufferAddress(env, buffer);
+    capacity = (*env)->GetDirectBufferCapacity(env, buffer);
+    if (address == NULL || capacity < 0) {
+        JSS_throwMsg(env, ILLEGAL_ARGUMENT_EXCEPTION,
+            "ByteBuffer is not a direct buffer");
+        return false;
+    }
+
+    if (offset < 0 || length < 0 || (jlong) offset + length > capacity) {
+        JSS_throw(env, INDEX_OUT_OF_BOUNDS_EXCEPTION);
+        return false;
+    }
+
+    *data = address + offset;
+    return true;
+}
+
 /************************************************************************
 ** JSS_FromByteArray.
 **
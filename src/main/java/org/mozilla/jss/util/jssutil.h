@@ -124,6 +124,19 @@ JSS_assertOutOfMem(JNIEnv *env);
 PRStatus
 JSS_getPtrFromProxy(JNIEnv *env, jobject nativeProxy, void **ptr);
 
+/***********************************************************************
+**
+** J S S _ g e t P t r F r o m B y t e A r r a y
+**
+** Extracts a pointer from a byte array created by JSS_ptrToByteArray, such
+** as the one handed to a static NativeProxy releasePointer method.
+** A NULL byteArray yields a NULL pointer.
+**
+** Returns: PR_SUCCESS on success, PR_FAILURE if an exception was thrown.
+*/
+PRStatus
+JSS_getPtrFromByteArray(JNIEnv *env, jbyteArray byteArray, void **ptr);
+
 /***********************************************************************
 **
 ** J S S _ c l e a r P t r F r o m P r o x y
@@ -336,6 +349,20 @@ bool JSS_RefByteArray(JNIEnv *env, jbyteArray array, jbyte **data,
 */
 void JSS_DerefByteArray(JNIEnv *env, jbyteArray array, void *data, jint mode);
 
+/************************************************************************
+** JSS_RefDirectBuffer.
+**
+** References the native memory backing a direct java.nio.ByteBuffer,
+** starting at offset, into *data. The range [offset, offset+length) is
+** checked against the buffer's capacity. No dereference is necessary.
+**
+** Returns
+**  bool - whether or not the operation succeeded. On failure, an exception
+**  has been thrown.
+*/
+bool JSS_RefDirectBuffer(JNIEnv *env, jobject buffer, jint offset,
+    jint length, jbyte **data);
+
 /************************************************************************
 ** JSS_FromByteArray.
 **
@@ -0,0 +1,168 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.tests;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.crypto.CryptoToken;
+
+/**
+ * Checks the AES-GCM and ChaCha20-Poly1305 ciphers: round trips, tag and
+ * AAD verification, and refusal to reuse a nonce.
+ */
+public class AEADCipherTest {
+
+    private static final String PROVIDER = "Mozilla-JSS";
+
+    private static final byte[] AAD = "header".getBytes();
+    private static final byte[] PLAINTEXT = "attack at dawn, or maybe a bit later".getBytes();
+
+    interface Params {
+        AlgorithmParameterSpec create(byte[] nonce);
+    }
+
+    private static byte[] nonce(int seed) {
+        byte[] nonce = new byte[12];
+        Arrays.fill(nonce, (byte) seed);
+        return nonce;
+    }
+
+    private static byte[] encrypt(String transformation, SecretKey key,
+            AlgorithmParameterSpec spec, byte[] aad) throws Exception {
+        Cipher cipher = Cipher.getInstance(transformation, PROVIDER);
+        cipher.init(Cipher.ENCRYPT_MODE, key, spec);
+        cipher.updateAAD(aad);
+        return cipher.doFinal(PLAINTEXT);
+    }
+
+    private static byte[] decrypt(String transformation, SecretKey key,
+            AlgorithmParameterSpec spec, byte[] aad, byte[] ciphertext)
+            throws Exception {
+        Cipher cipher = Cipher.getInstance(transformation, PROVIDER);
+        cipher.init(Cipher.DECRYPT_MODE, key, spec);
+        cipher.updateAAD(aad);
+        // split the input to exercise buffering until doFinal()
+        byte[] first = cipher.update(ciphertext, 0, 5);
+        byte[] rest = cipher.doFinal(ciphertext, 5, ciphertext.length - 5);
+        if (first != null && first.length > 0) {
+            throw new Exception("ERROR: AEAD decryption released output before the tag was checked");
+        }
+        return rest;
+    }
+
+    private static void expectBadTag(String what, String transformation,
+            SecretKey key, AlgorithmParameterSpec spec, byte[] aad,
+            byte[] ciphertext) throws Exception {
+        try {
+            decrypt(transformation, key, spec, aad, ciphertext);
+            throw new Exception("ERROR: " + what + " was not detected");
+        } catch (AEADBadTagException e) {
+            System.out.println(what + ": " + e.getMessage());
+        }
+    }
+
+    public static void testCipher(String transformation, String keyAlg,
+            int keySize, Params params) throws Exception {
+
+        System.out.println("Testing " + transformation);
+
+        KeyGenerator kg = KeyGenerator.getInstance(keyAlg, PROVIDER);
+        kg.init(keySize);
+        SecretKey key = kg.generateKey();
+
+        AlgorithmParameterSpec spec = params.create(nonce(1));
+        byte[] ciphertext = encrypt(transformation, key, spec, AAD);
+        if (ciphertext.length != PLAINTEXT.length + 16) {
+            throw new Exception("ERROR: unexpected ciphertext length " + ciphertext.length);
+        }
+
+        // round trip
+        byte[] decrypted = decrypt(transformation, key, spec, AAD, ciphertext);
+        if (!Arrays.equals(PLAINTEXT, decrypted)) {
+            throw new Exception("ERROR: decryption did not give back the plaintext");
+        }
+        System.out.println("round trip: OK");
+
+        // tampered tag and tampered ciphertext
+        byte[] tampered = ciphertext.clone();
+        tampered[tampered.length - 1] ^= 1;
+        expectBadTag("tampered tag", transformation, key, spec, AAD, tampered);
+
+        tampered = ciphertext.clone();
+        tampered[0] ^= 1;
+        expectBadTag("tampered ciphertext", transformation, key, spec, AAD, tampered);
+
+        // AAD mismatch
+        expectBadTag("AAD mismatch", transformation, key, spec,
+                "other header".getBytes(), ciphertext);
+
+        // input shorter than the tag
+        expectBadTag("truncated input", transformation, key, spec, AAD,
+                Arrays.copyOf(ciphertext, 10));
+
+        // an encryption cipher cannot be used again without a new nonce
+        Cipher cipher = Cipher.getInstance(transformation, PROVIDER);
+        cipher.init(Cipher.ENCRYPT_MODE, key, params.create(nonce(2)));
+        cipher.doFinal(PLAINTEXT);
+        try {
+            cipher.doFinal(PLAINTEXT);
+            throw new Exception("ERROR: encryption was repeated with the same nonce");
+        } catch (IllegalStateException e) {
+            System.out.println("repeated doFinal: rejected");
+        }
+
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, key, params.create(nonce(2)));
+            throw new Exception("ERROR: cipher was re-initialized with the same nonce");
+        } catch (InvalidAlgorithmParameterException e) {
+            System.out.println("nonce reuse: " + e.getMessage());
+        }
+
+        // a fresh nonce is accepted, and decryption may reuse one
+        cipher.init(Cipher.ENCRYPT_MODE, key, params.create(nonce(3)));
+        cipher.doFinal(PLAINTEXT);
+        decrypt(transformation, key, spec, AAD, ciphertext);
+        decrypt(transformation, key, spec, AAD, ciphertext);
+        System.out.println("fresh nonce: OK");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.out.println(
+                "Usage: java org.mozilla.jss.tests.AEADCipherTest <dbdir> <passwordFile>");
+            System.exit(1);
+        }
+
+        CryptoManager manager = CryptoManager.getInstance();
+        manager.setPasswordCallback(new FilePasswordCallback(args[1]));
+        CryptoToken token = manager.getInternalKeyStorageToken();
+        manager.setThreadToken(token);
+
+        testCipher("AES/GCM/NoPadding", "AES", 128,
+                nonce -> new GCMParameterSpec(128, nonce));
+        testCipher("AES/GCM/NoPadding", "AES", 256,
+                nonce -> new GCMParameterSpec(128, nonce));
+
+        try {
+            Cipher.getInstance("ChaCha20-Poly1305", PROVIDER);
+        } catch (NoSuchAlgorithmException e) {
+            System.out.println("ChaCha20-Poly1305 is not available, skipping");
+            return;
+        }
+        testCipher("ChaCha20-Poly1305", "ChaCha20", 256,
+                nonce -> new IvParameterSpec(nonce));
+    }
+}
@@ -0,0 +1,224 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.ASN1Value;
+import org.mozilla.jss.asn1.BIT_STRING;
+import org.mozilla.jss.asn1.BOOLEAN;
+import org.mozilla.jss.asn1.EXPLICIT;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.NULL;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.pkcs7.ContentInfo;
+import org.mozilla.jss.pkcs7.SignedData;
+import org.mozilla.jss.pkix.cmc.CMCStatusInfoV2;
+import org.mozilla.jss.pkix.cmc.ResponseBody;
+import org.mozilla.jss.pkix.cmc.TaggedAttribute;
+import org.mozilla.jss.pkix.crmf.POPOPrivKey;
+import org.mozilla.jss.pkix.crmf.ProofOfPossession;
+
+public class ASN1EncodingTest {
+
+    // encodes its contents as a SEQUENCE, without overriding encodedLength()
+    private static class Wrapper implements ASN1Value {
+
+        private final ASN1Value content;
+        int encodings;
+
+        Wrapper(ASN1Value content) {
+            this.content = content;
+        }
+
+        @Override
+        public Tag getTag() {
+            return SEQUENCE.TAG;
+        }
+
+        @Override
+        public void encode(OutputStream ostream) throws IOException {
+            encode(getTag(), ostream);
+        }
+
+        @Override
+        public void encode(Tag implicitTag, OutputStream ostream) throws IOException {
+            encodings++;
+            SEQUENCE seq = new SEQUENCE();
+            seq.addElement(content);
+            seq.encode(implicitTag, ostream);
+        }
+    }
+
+    // an OCTET STRING which counts how often it is encoded
+    private static class Counted extends OCTET_STRING {
+
+        int encodings;
+
+        Counted(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public void encode(Tag implicitTag, OutputStream ostream) throws IOException {
+            encodings++;
+            super.encode(implicitTag, ostream);
+        }
+    }
+
+    private static byte[] streamed(ASN1Value value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        value.encode(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testNestedEncoding() throws Exception {
+        byte[] big = new byte[70000];
+        Arrays.fill(big, (byte) 0x5a);
+
+        SEQUENCE inner = new SEQUENCE();
+        inner.addElement(new OCTET_STRING(big));
+        inner.addElement(new Tag(5), new INTEGER(300));
+        inner.addElement(null);
+        inner.addElement(NULL.getInstance());
+
+        SEQUENCE outer = new SEQUENCE();
+        outer.addElement(new OBJECT_IDENTIFIER("1.2.840.113549.1.7.2"));
+        outer.addElement(new EXPLICIT(new Tag(0), inner));
+        outer.addElement(new EXPLICIT(new Tag(40), new BOOLEAN(true)));
+
+        byte[] expected = new byte[70000 + 43];
+        int i = 0;
+        for (int b : new int[] { 0x30, 0x83, 0x01, 0x11, 0x96,
+                0x06, 0x09, 0x2a, 0x86, 0x48, 0x86, 0xf7, 0x0d, 0x01, 0x07, 0x02,
+                0xa0, 0x83, 0x01, 0x11, 0x80,
+                0x30, 0x83, 0x01, 0x11, 0x7b,
+                0x04, 0x83, 0x01, 0x11, 0x70 }) {
+            expected[i++] = (byte) b;
+        }
+        System.arraycopy(big, 0, expected, i, big.length);
+        i += big.length;
+        for (int b : new int[] { 0x85, 0x02, 0x01, 0x2c, 0x05, 0x00,
+                0xbf, 0x28, 0x03, 0x01, 0x01, 0xff }) {
+            expected[i++] = (byte) b;
+        }
+        Assert.assertEquals(expected.length, i);
+
+        Assert.assertEquals(expected.length, outer.encodedLength());
+        Assert.assertArrayEquals(expected, ASN1Util.encode(outer));
+        Assert.assertArrayEquals(expected, streamed(outer));
+
+        ByteBuffer buffer = ByteBuffer.allocate(expected.length + 10);
+        buffer.position(10);
+        Assert.assertEquals(expected.length, ASN1Util.encode(outer.getTag(), outer, buffer));
+        Assert.assertArrayEquals(expected, Arrays.copyOfRange(buffer.array(), 10, buffer.limit()));
+
+        try {
+            ASN1Util.encode(outer.getTag(), outer, ByteBuffer.allocate(100));
+            Assert.fail();
+        } catch (BufferOverflowException e) {
+            // expected
+        }
+
+        // a modified value is not encoded with the old length
+        inner.removeElementAt(0);
+        Assert.assertEquals(29, ASN1Util.encode(outer).length);
+    }
+
+    @Test
+    public void testSetOrdering() throws Exception {
+        SET byTag = new SET();
+        byTag.addElement(new OCTET_STRING(new byte[] { 1 }));
+        byTag.addElement(new BOOLEAN(false));
+        byTag.addElement(new INTEGER(7));
+        Assert.assertArrayEquals(new byte[] { 0x31, 0x09,
+                0x01, 0x01, 0x00, 0x02, 0x01, 0x07, 0x04, 0x01, 0x01 },
+                ASN1Util.encode(byTag));
+
+        SET lex = new SET();
+        lex.addElement(new INTEGER(258));
+        lex.addElement(new INTEGER(3));
+        lex.addElement(new INTEGER(2));
+        Assert.assertArrayEquals(new byte[] { 0x31, 0x0a,
+                0x02, 0x01, 0x02, 0x02, 0x01, 0x03, 0x02, 0x02, 0x01, 0x02 },
+                ASN1Util.encode(lex));
+    }
+
+    @Test
+    public void testDefaultEncodedLength() throws Exception {
+        Wrapper leaf = new Wrapper(new INTEGER(1));
+        Wrapper middle = new Wrapper(leaf);
+        Wrapper top = new Wrapper(middle);
+
+        byte[] expected = { 0x30, 0x07, 0x30, 0x05, 0x30, 0x03, 0x02, 0x01, 0x01 };
+        Assert.assertEquals(expected.length, top.encodedLength());
+        Assert.assertArrayEquals(expected, streamed(top));
+
+        // measured lengths are remembered, so the cost of measuring
+        // does not double with every level of nesting
+        leaf.encodings = 0;
+        Assert.assertArrayEquals(expected, ASN1Util.encode(top));
+        Assert.assertTrue(leaf.encodings <= 4);
+    }
+
+    @Test
+    public void testCompositeEncodedLength() throws Exception {
+        Counted content = new Counted(new byte[300]);
+        Counted cert = new Counted(new byte[200]);
+
+        // SignedData builds its SEQUENCE from its fields on each encoding
+        SET certs = new SET();
+        certs.addElement(cert);
+        SignedData sd = new SignedData(null,
+                new ContentInfo(ContentInfo.DATA, content), certs, null, null);
+        ContentInfo ci = new ContentInfo(sd);
+
+        byte[] expected = streamed(ci);
+        content.encodings = 0;
+        cert.encodings = 0;
+        Assert.assertEquals(expected.length, ci.encodedLength());
+        Assert.assertEquals(0, content.encodings);
+
+        Assert.assertArrayEquals(expected, ASN1Util.encode(ci));
+        Assert.assertEquals(1, content.encodings);
+        Assert.assertEquals(1, cert.encodings);
+
+        // and so does CMCStatusInfoV2, nested in a ResponseBody
+        SEQUENCE bodyList = new SEQUENCE();
+        bodyList.addElement(content);
+        SET values = new SET();
+        values.addElement(new CMCStatusInfoV2(CMCStatusInfoV2.SUCCESS, bodyList));
+        SEQUENCE controls = new SEQUENCE();
+        controls.addElement(new TaggedAttribute(new INTEGER(1),
+                OBJECT_IDENTIFIER.id_cmc_statusInfoV2, values));
+        ResponseBody body = new ResponseBody(controls, new SEQUENCE(), new SEQUENCE());
+
+        expected = streamed(body);
+        content.encodings = 0;
+        Assert.assertArrayEquals(expected, ASN1Util.encode(body));
+        Assert.assertEquals(1, content.encodings);
+    }
+
+    @Test
+    public void testChoiceEncodedLength() throws Exception {
+        // POPOPrivKey cannot be encoded with an implicit tag, so its
+        // length must not be measured that way
+        ProofOfPossession pop = ProofOfPossession.createKeyEncipherment(
+                POPOPrivKey.createThisMessage(new BIT_STRING(new byte[20], 0)));
+
+        byte[] expected = streamed(pop);
+        Assert.assertEquals(expected.length, pop.encodedLength());
+        Assert.assertArrayEquals(expected, ASN1Util.encode(pop));
+    }
+}
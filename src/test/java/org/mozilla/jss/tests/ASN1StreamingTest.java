@@ -0,0 +1,152 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mozilla.jss.asn1.ANY;
+import org.mozilla.jss.asn1.BOOLEAN;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.InvalidBERException;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.Tag;
+
+public class ASN1StreamingTest {
+
+    private static byte[] bytes(int... values) {
+        byte[] b = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            b[i] = (byte) values[i];
+        }
+        return b;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[3];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    // SEQUENCE { INTEGER 5, [0] IMPLICIT OCTET STRING, BOOLEAN TRUE }
+    // where the OCTET STRING is constructed with indefinite length and
+    // holds "abc", a constructed definite segment with "de" and "f",
+    // and "gh"
+    private static final byte[] SEQ = bytes(
+            0x30, 0x80,
+            0x02, 0x01, 0x05,
+            0xa0, 0x80,
+            0x04, 0x03, 'a', 'b', 'c',
+            0x24, 0x07, 0x04, 0x02, 'd', 'e', 0x04, 0x01, 'f',
+            0x04, 0x02, 'g', 'h',
+            0x00, 0x00,
+            0x01, 0x01, 0xff,
+            0x00, 0x00);
+
+    @Test
+    public void testStreamingOctetString() throws Exception {
+        SEQUENCE.Template template = new SEQUENCE.Template();
+        template.addElement(INTEGER.getTemplate());
+        template.addElement(new Tag(0), new OCTET_STRING.StreamingTemplate(
+                (tag, content) -> new OCTET_STRING(readAll(content))));
+        template.addElement(BOOLEAN.getTemplate());
+
+        SEQUENCE seq = (SEQUENCE) template.decode(new ByteArrayInputStream(SEQ));
+        Assert.assertEquals(new INTEGER(5), seq.elementAt(0));
+        Assert.assertArrayEquals("abcdefgh".getBytes(), ((OCTET_STRING) seq.elementAt(1)).toByteArray());
+        Assert.assertTrue(((BOOLEAN) seq.elementAt(2)).toBoolean());
+
+        // contents the handler does not read are skipped
+        template = new SEQUENCE.Template();
+        template.addElement(INTEGER.getTemplate());
+        template.addElement(new Tag(0), new OCTET_STRING.StreamingTemplate((tag, content) -> {
+            Assert.assertEquals(new Tag(0), tag);
+            Assert.assertEquals('a', content.read());
+            return null;
+        }));
+        template.addElement(BOOLEAN.getTemplate());
+
+        seq = (SEQUENCE) template.decode(new ByteArrayInputStream(SEQ));
+        Assert.assertNull(seq.elementAt(1));
+        Assert.assertTrue(((BOOLEAN) seq.elementAt(2)).toBoolean());
+    }
+
+    @Test
+    public void testInvalidSegment() throws Exception {
+        byte[] der = bytes(0x24, 0x80, 0x04, 0x01, 'a', 0x02, 0x01, 0x05, 0x00, 0x00);
+        try {
+            new OCTET_STRING.StreamingTemplate((tag, content) -> new OCTET_STRING(readAll(content)))
+                    .decode(new ByteArrayInputStream(der));
+            Assert.fail();
+        } catch (InvalidBERException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testStreamingAny() throws Exception {
+        SEQUENCE.Template template = new SEQUENCE.Template();
+        template.addElement(new ANY.StreamingTemplate(
+                (tag, content) -> new ANY(tag, readAll(content))));
+        template.addElement(INTEGER.getTemplate());
+
+        byte[] input = new byte[SEQ.length + 7];
+        input[0] = 0x30;
+        input[1] = (byte) 0x80;
+        System.arraycopy(SEQ, 0, input, 2, SEQ.length);
+        System.arraycopy(bytes(0x02, 0x01, 0x07, 0x00, 0x00), 0, input, SEQ.length + 2, 5);
+
+        SEQUENCE seq = (SEQUENCE) template.decode(new ByteArrayInputStream(input));
+        ANY any = (ANY) seq.elementAt(0);
+        Assert.assertEquals(SEQUENCE.TAG, any.getTag());
+        Assert.assertArrayEquals(SEQ, any.getEncoded());
+        Assert.assertEquals(new INTEGER(7), seq.elementAt(1));
+
+        // definite length
+        byte[] der = bytes(0x04, 0x02, 'x', 'y', 0x02, 0x01, 0x01);
+        ANY.StreamingTemplate t = new ANY.StreamingTemplate(
+                (tag, content) -> new ANY(tag, readAll(content)));
+        ByteArrayInputStream in = new ByteArrayInputStream(der);
+        Assert.assertArrayEquals(Arrays.copyOf(der, 4), ((ANY) t.decode(in)).getEncoded());
+        Assert.assertEquals(3, in.available());
+    }
+
+    @Test
+    public void testNonMinimalHeaders() throws Exception {
+        // SEQUENCE { [0] IMPLICIT OCTET STRING { "ab", "c" }, NULL } with
+        // long form lengths where short ones would do
+        byte[] ber = bytes(0x30, 0x82, 0x00, 0x0f,
+                0xa0, 0x81, 0x0a,
+                0x04, 0x81, 0x02, 'a', 'b',
+                0x04, 0x82, 0x00, 0x01, 'c',
+                0x05, 0x00,
+                0x02, 0x01, 0x03);
+
+        // the encoding is passed on octet for octet
+        ANY.StreamingTemplate any = new ANY.StreamingTemplate(
+                (tag, content) -> new ANY(tag, readAll(content)));
+        ByteArrayInputStream in = new ByteArrayInputStream(ber);
+        Assert.assertArrayEquals(Arrays.copyOf(ber, 19), ((ANY) any.decode(in)).getEncoded());
+        Assert.assertEquals(3, in.available());
+
+        // the segments end where their lengths say, not where a minimal
+        // encoding of their headers would
+        SEQUENCE.Template template = new SEQUENCE.Template();
+        template.addElement(new Tag(0), new OCTET_STRING.StreamingTemplate(
+                (tag, content) -> new OCTET_STRING(readAll(content))));
+        template.addElement(new ANY.Template());
+
+        SEQUENCE seq = (SEQUENCE) template.decode(new ByteArrayInputStream(ber));
+        Assert.assertArrayEquals(bytes('a', 'b', 'c'),
+                ((OCTET_STRING) seq.elementAt(0)).toByteArray());
+        Assert.assertArrayEquals(bytes(0x05, 0x00), ((ANY) seq.elementAt(1)).getEncoded());
+    }
+}
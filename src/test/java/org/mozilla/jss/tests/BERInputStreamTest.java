@@ -0,0 +1,129 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mozilla.jss.asn1.ASN1Header;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.BERInputStream;
+import org.mozilla.jss.asn1.BOOLEAN;
+import org.mozilla.jss.asn1.Form;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.InvalidBERException;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+
+public class BERInputStreamTest {
+
+    private static byte[] bytes(int... values) {
+        byte[] b = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            b[i] = (byte) values[i];
+        }
+        return b;
+    }
+
+    private static SEQUENCE.Template template() {
+        SEQUENCE.Template seqt = new SEQUENCE.Template();
+        seqt.addElement(INTEGER.getTemplate());
+        seqt.addOptionalElement(new Tag(0), BOOLEAN.getTemplate());
+        seqt.addElement(new SEQUENCE.OF_Template(INTEGER.getTemplate()));
+        seqt.addElement(new SET.OF_Template(INTEGER.getTemplate()));
+        seqt.addElement(OCTET_STRING.getTemplate());
+        return seqt;
+    }
+
+    private static SEQUENCE value() {
+        SEQUENCE ints = new SEQUENCE();
+        for (int i = 0; i < 200; i++) {
+            ints.addElement(new INTEGER(i * 1000));
+        }
+
+        SET set = new SET();
+        set.addElement(new INTEGER(7));
+        set.addElement(new INTEGER(8));
+
+        SEQUENCE seq = new SEQUENCE();
+        seq.addElement(new INTEGER(1));
+        seq.addElement(ints);
+        seq.addElement(set);
+        seq.addElement(new OCTET_STRING(new byte[300]));
+        return seq;
+    }
+
+    @Test
+    public void testSameAsStream() throws Exception {
+        byte[] encoded = ASN1Util.encode(value());
+
+        SEQUENCE fromStream = (SEQUENCE) template().decode(new ByteArrayInputStream(encoded));
+        SEQUENCE fromMemory = (SEQUENCE) template().decode(new BERInputStream(encoded));
+
+        Assert.assertArrayEquals(encoded, ASN1Util.encode(fromStream));
+        Assert.assertArrayEquals(encoded, ASN1Util.encode(fromMemory));
+        Assert.assertEquals(5, fromMemory.size());
+        Assert.assertNull(fromMemory.elementAt(1));
+        Assert.assertEquals(200, ((SEQUENCE) fromMemory.elementAt(2)).size());
+    }
+
+    @Test
+    public void testByteBuffer() throws Exception {
+        byte[] encoded = ASN1Util.encode(value());
+        byte[] padded = new byte[encoded.length + 10];
+        System.arraycopy(encoded, 0, padded, 5, encoded.length);
+
+        ByteBuffer buf = ByteBuffer.wrap(padded, 5, encoded.length);
+        SEQUENCE seq = (SEQUENCE) ASN1Util.decode(template(), buf);
+        Assert.assertArrayEquals(encoded, ASN1Util.encode(seq));
+
+        // the buffer is left alone
+        Assert.assertEquals(5, buf.position());
+    }
+
+    @Test
+    public void testHeaders() throws Exception {
+        // [APPLICATION 200] constructed, 300 bytes long
+        byte[] encoded = new byte[6 + 300];
+        System.arraycopy(bytes(0x7f, 0x81, 0x48, 0x82, 0x01, 0x2c), 0, encoded, 0, 6);
+
+        BERInputStream in = new BERInputStream(encoded);
+        ASN1Header peeked = in.peekHeader();
+        Assert.assertEquals(0, in.position());
+        Assert.assertSame(peeked, ASN1Header.lookAhead(in));
+
+        ASN1Header header = new ASN1Header(in);
+        Assert.assertEquals(6, in.position());
+        Assert.assertEquals(new Tag(Tag.Class.APPLICATION, 200), header.getTag());
+        Assert.assertEquals(Form.CONSTRUCTED, header.getForm());
+        Assert.assertEquals(300, header.getContentLength());
+        Assert.assertArrayEquals(bytes(0x7f, 0x81, 0x48, 0x82, 0x01, 0x2c), header.encode());
+
+        // indefinite length
+        header = new ASN1Header(new BERInputStream(bytes(0x30, 0x80, 0x00, 0x00)));
+        Assert.assertEquals(-1, header.getContentLength());
+    }
+
+    @Test
+    public void testInvalid() throws Exception {
+        try {
+            new BERInputStream(bytes(0x30, 0x82, 0x01)).peekHeader();
+            Assert.fail();
+        } catch (InvalidBERException e) {
+            // truncated length
+        }
+
+        // an INTEGER that runs past the end of its SEQUENCE
+        byte[] encoded = bytes(0x30, 0x02, 0x02, 0x02, 0x01, 0x01);
+        SEQUENCE.Template template = new SEQUENCE.Template();
+        template.addElement(INTEGER.getTemplate());
+        try {
+            template.decode(new BERInputStream(encoded));
+            Assert.fail();
+        } catch (InvalidBERException e) {
+            Assert.assertTrue(e.getMessage().contains("past the end"));
+        }
+    }
+}
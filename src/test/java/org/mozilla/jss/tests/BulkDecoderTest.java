@@ -0,0 +1,147 @@
+package org.mozilla.jss.tests;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.util.BigInt;
+import org.mozilla.jss.netscape.security.x509.AlgorithmId;
+import org.mozilla.jss.netscape.security.x509.BulkDecoder;
+import org.mozilla.jss.netscape.security.x509.BulkDecoder.Result;
+import org.mozilla.jss.netscape.security.x509.CertificateAlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CertificateIssuerName;
+import org.mozilla.jss.netscape.security.x509.CertificateSerialNumber;
+import org.mozilla.jss.netscape.security.x509.CertificateSubjectName;
+import org.mozilla.jss.netscape.security.x509.CertificateValidity;
+import org.mozilla.jss.netscape.security.x509.CertificateVersion;
+import org.mozilla.jss.netscape.security.x509.CertificateX509Key;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+import org.mozilla.jss.netscape.security.x509.X509CertInfo;
+
+public class BulkDecoderTest {
+
+    private static final int COUNT = 200;
+
+    private static List<byte[]> certs = new ArrayList<>();
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(2048);
+        KeyPair keyPair = kpg.generateKeyPair();
+        RSAPublicKey pub = (RSAPublicKey) keyPair.getPublic();
+
+        for (int i = 0; i < COUNT; i++) {
+            X509CertInfo info = new X509CertInfo();
+            info.set(X509CertInfo.VERSION, new CertificateVersion(CertificateVersion.V3));
+            info.set(X509CertInfo.SERIAL_NUMBER,
+                    new CertificateSerialNumber(BigInteger.valueOf(i + 1)));
+            info.set(X509CertInfo.ISSUER,
+                    new CertificateIssuerName(new X500Name("CN=Test CA")));
+            info.set(X509CertInfo.SUBJECT,
+                    new CertificateSubjectName(new X500Name("CN=Subject " + i)));
+            info.set(X509CertInfo.VALIDITY, new CertificateValidity(
+                    new Date(1600000000000L), new Date(1700000000000L)));
+            info.set(X509CertInfo.ALGORITHM_ID,
+                    new CertificateAlgorithmId(AlgorithmId.get("SHA256withRSA")));
+            info.set(X509CertInfo.KEY, new CertificateX509Key(
+                    new org.mozilla.jss.netscape.security.provider.RSAPublicKey(
+                            new BigInt(pub.getModulus()), new BigInt(pub.getPublicExponent()))));
+
+            X509CertImpl cert = new X509CertImpl(info);
+            cert.sign(keyPair.getPrivate(), "SHA256withRSA");
+            certs.add(cert.getEncoded());
+        }
+    }
+
+    private static String pem(byte[] der) {
+        return "-----BEGIN CERTIFICATE-----\n"
+                + Base64.getMimeEncoder(64, new byte[] { '\n' }).encodeToString(der)
+                + "\n-----END CERTIFICATE-----\n";
+    }
+
+    @Test
+    public void testResultsInOrderWithErrors() throws Exception {
+        List<byte[]> blobs = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            byte[] der = certs.get(i);
+            if (i == 17)
+                blobs.add(new byte[] { 0x30, 0x03, 0x02, 0x01, 0x00 });
+            else if (i % 2 == 0)
+                blobs.add(der);
+            else
+                blobs.add(pem(der).getBytes());
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            AtomicInteger read = new AtomicInteger();
+            Iterator<byte[]> input = blobs.iterator();
+            Iterator<byte[]> counting = new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return input.hasNext();
+                }
+
+                @Override
+                public byte[] next() {
+                    read.incrementAndGet();
+                    return input.next();
+                }
+            };
+
+            Iterator<Result<X509CertImpl>> results =
+                    new BulkDecoder(pool, 8).decodeCertificates(counting);
+
+            int i = 0;
+            while (results.hasNext()) {
+                Result<X509CertImpl> result = results.next();
+                Assert.assertEquals(i, result.getIndex());
+                Assert.assertTrue(read.get() <= i + 8);
+
+                if (i == 17) {
+                    Assert.assertFalse(result.isSuccess());
+                    Assert.assertNull(result.getValue());
+                    Assert.assertNotNull(result.getError());
+                } else {
+                    Assert.assertTrue(result.isSuccess());
+                    Assert.assertEquals(BigInteger.valueOf(i + 1),
+                            result.getValue().getSerialNumber());
+                    Assert.assertArrayEquals(certs.get(i), result.getValue().getEncoded());
+                }
+                i++;
+            }
+            Assert.assertEquals(COUNT, i);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testReadPEM() throws Exception {
+        StringBuilder text = new StringBuilder("Bag Attributes\n");
+        for (int i = 0; i < 3; i++)
+            text.append("subject=CN=Subject ").append(i).append('\n').append(pem(certs.get(i)));
+
+        Iterator<Result<X509CertImpl>> results = new BulkDecoder().decodeCertificates(
+                BulkDecoder.readPEM(new BufferedReader(new StringReader(text.toString()))));
+
+        for (int i = 0; i < 3; i++)
+            Assert.assertArrayEquals(certs.get(i), results.next().getValue().getEncoded());
+        Assert.assertFalse(results.hasNext());
+    }
+}
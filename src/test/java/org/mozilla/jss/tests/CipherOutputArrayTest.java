@@ -0,0 +1,147 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.tests;
+
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.crypto.CryptoToken;
+
+/**
+ * Checks Cipher.update() and Cipher.doFinal() writing into caller-provided
+ * arrays, including short and overlapping output.
+ */
+public class CipherOutputArrayTest {
+
+    private static final String PROVIDER = "Mozilla-JSS";
+    private static final String TRANSFORMATION = "AES/CBC/PKCS5Padding";
+
+    private static SecretKey key;
+    private static IvParameterSpec iv = new IvParameterSpec(new byte[16]);
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 13 + 1);
+        }
+        return data;
+    }
+
+    private static void check(String what, byte[] expected, byte[] actual,
+            int offset, int length) throws Exception {
+        if (length != expected.length ||
+                !Arrays.equals(expected, Arrays.copyOfRange(actual, offset, offset + length))) {
+            throw new Exception("ERROR: " + what + " gave the wrong output");
+        }
+        System.out.println(what + ": OK");
+    }
+
+    private static Cipher cipher(int mode) throws Exception {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION, PROVIDER);
+        cipher.init(mode, key, iv);
+        return cipher;
+    }
+
+    public static void testIntoArray() throws Exception {
+        byte[] plaintext = data(1000);
+        byte[] expected = cipher(Cipher.ENCRYPT_MODE).doFinal(plaintext);
+
+        // updates of sizes that leave partial blocks behind
+        Cipher cipher = cipher(Cipher.ENCRYPT_MODE);
+        byte[] output = new byte[expected.length + 10];
+        int written = cipher.update(plaintext, 0, 300, output, 5);
+        written += cipher.update(plaintext, 300, 699, output, 5 + written);
+        written += cipher.doFinal(plaintext, 999, 1, output, 5 + written);
+        check("update/doFinal into array", expected, output, 5, written);
+
+        cipher = cipher(Cipher.ENCRYPT_MODE);
+        written = cipher.update(plaintext, 0, plaintext.length, output, 0);
+        written += cipher.doFinal(output, written);
+        check("doFinal without input into array", expected, output, 0, written);
+
+        cipher = cipher(Cipher.DECRYPT_MODE);
+        output = new byte[expected.length];
+        written = cipher.update(expected, 0, 500, output, 0);
+        written += cipher.doFinal(expected, 500, expected.length - 500,
+                output, written);
+        check("decryption into array", plaintext, output, 0, written);
+    }
+
+    public static void testShortBuffer() throws Exception {
+        byte[] plaintext = data(64);
+
+        Cipher cipher = cipher(Cipher.ENCRYPT_MODE);
+        try {
+            cipher.update(plaintext, 0, plaintext.length, new byte[10], 0);
+            throw new Exception("ERROR: update into a short array succeeded");
+        } catch (ShortBufferException e) {
+            System.out.println("update into short array: " + e.getMessage());
+        }
+
+        cipher = cipher(Cipher.ENCRYPT_MODE);
+        try {
+            cipher.doFinal(plaintext, 0, plaintext.length, new byte[80], 20);
+            throw new Exception("ERROR: doFinal into a short array succeeded");
+        } catch (ShortBufferException e) {
+            System.out.println("doFinal into short array: " + e.getMessage());
+        }
+    }
+
+    public static void testOverlapping() throws Exception {
+        byte[] plaintext = data(1000);
+        byte[] expected = cipher(Cipher.ENCRYPT_MODE).doFinal(plaintext);
+
+        // output before, on top of, and after the input in the same array
+        for (int outputOffset : new int[] { 0, 16, 24, 32 }) {
+            byte[] buf = new byte[expected.length + 64];
+            System.arraycopy(plaintext, 0, buf, 16, plaintext.length);
+
+            Cipher cipher = cipher(Cipher.ENCRYPT_MODE);
+            int written = cipher.doFinal(buf, 16, plaintext.length, buf, outputOffset);
+            check("encryption with output at " + outputOffset,
+                    expected, buf, outputOffset, written);
+
+            // and back again
+            cipher = cipher(Cipher.DECRYPT_MODE);
+            written = cipher.doFinal(buf, outputOffset, expected.length, buf, 8);
+            check("decryption with output at 8", plaintext, buf, 8, written);
+        }
+
+        // in place over several updates, the output trailing the input
+        byte[] buf = Arrays.copyOf(plaintext, expected.length);
+        Cipher cipher = cipher(Cipher.ENCRYPT_MODE);
+        int written = cipher.update(buf, 0, 500, buf, 0);
+        written += cipher.update(buf, 500, 500, buf, written);
+        written += cipher.doFinal(buf, written);
+        check("in place encryption", expected, buf, 0, written);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.out.println(
+                "Usage: java org.mozilla.jss.tests.CipherOutputArrayTest <dbdir> <passwordFile>");
+            System.exit(1);
+        }
+
+        CryptoManager manager = CryptoManager.getInstance();
+        manager.setPasswordCallback(new FilePasswordCallback(args[1]));
+        CryptoToken token = manager.getInternalKeyStorageToken();
+        manager.setThreadToken(token);
+
+        KeyGenerator kg = KeyGenerator.getInstance("AES", PROVIDER);
+        kg.init(128);
+        key = kg.generateKey();
+
+        testIntoArray();
+        testShortBuffer();
+        testOverlapping();
+    }
+}
@@ -0,0 +1,159 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.tests;
+
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.crypto.CryptoToken;
+
+/**
+ * Checks that pooled digest and HMAC contexts are reused, give the same
+ * results as fresh ones, and are dropped when the token is logged out.
+ */
+public class ContextPoolTest {
+
+    private static final String PROVIDER = "Mozilla-JSS";
+
+    private static Method size;
+
+    private static int poolSize() throws Exception {
+        return (Integer) size.invoke(null);
+    }
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 11 + 5);
+        }
+        return data;
+    }
+
+    private static void check(String what, byte[] expected, byte[] actual)
+            throws Exception {
+        if (!Arrays.equals(expected, actual)) {
+            throw new Exception("ERROR: " + what + " gave the wrong result");
+        }
+        System.out.println(what + ": OK");
+    }
+
+    private static void checkSize(String what, int expected) throws Exception {
+        int actual = poolSize();
+        if (actual != expected) {
+            throw new Exception("ERROR: " + what + ": " + actual
+                    + " pooled contexts, expected " + expected);
+        }
+    }
+
+    public static void testDigest() throws Exception {
+        byte[] data = data(3000);
+        byte[] expected = MessageDigest.getInstance("SHA-256", "SUN").digest(data);
+
+        MessageDigest md = MessageDigest.getInstance("SHA-256", PROVIDER);
+        check("fresh digest", expected, md.digest(data));
+        checkSize("after the first digest", 1);
+
+        // the second digest borrows the pooled context and returns it
+        MessageDigest other = MessageDigest.getInstance("SHA-256", PROVIDER);
+        check("pooled digest", expected, other.digest(data));
+        checkSize("after the second digest", 1);
+
+        // interleaved digests need two contexts
+        md.update(data, 0, 1000);
+        other.update(data, 0, 2000);
+        md.update(data, 1000, 2000);
+        other.update(data, 2000, 1000);
+        check("interleaved digest", expected, md.digest());
+        check("interleaved digest", expected, other.digest());
+        checkSize("after interleaved digests", 2);
+    }
+
+    public static void testMac() throws Exception {
+        KeyGenerator kg = KeyGenerator.getInstance("HmacSHA256", PROVIDER);
+        SecretKey key = kg.generateKey();
+        byte[] data = data(3000);
+
+        Mac mac = Mac.getInstance("HmacSHA256", PROVIDER);
+        mac.init(key);
+        byte[] expected = mac.doFinal(data);
+        int pooled = poolSize();
+
+        Mac other = Mac.getInstance("HmacSHA256", PROVIDER);
+        other.init(key);
+        check("pooled HMAC", expected, other.doFinal(data));
+        checkSize("after the second HMAC", pooled);
+
+        // a different key must not pick up the pooled context
+        Mac third = Mac.getInstance("HmacSHA256", PROVIDER);
+        third.init(kg.generateKey());
+        if (Arrays.equals(expected, third.doFinal(data))) {
+            throw new Exception("ERROR: HMAC with another key gave the same result");
+        }
+        System.out.println("HMAC with another key: OK");
+    }
+
+    public static void testLogout(CryptoToken token, String passwordFile)
+            throws Exception {
+
+        // a context pooled by another thread
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Callable<Integer> digest = () -> {
+                MessageDigest.getInstance("SHA-256", PROVIDER).digest(data(10));
+                return poolSize();
+            };
+            if (executor.submit(digest).get() == 0) {
+                throw new Exception("ERROR: the digest context was not pooled");
+            }
+
+            if (!token.isLoggedIn()) {
+                token.login(new FilePasswordCallback(passwordFile));
+            }
+            token.logout();
+            checkSize("after logout", 0);
+
+            // the other thread drops its pool the next time it uses it
+            int other = executor.submit(() -> poolSize()).get();
+            if (other != 0) {
+                throw new Exception("ERROR: " + other
+                        + " contexts still pooled by another thread after logout");
+            }
+            System.out.println("logout: OK");
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.out.println(
+                "Usage: java org.mozilla.jss.tests.ContextPoolTest <dbdir> <passwordFile>");
+            System.exit(1);
+        }
+
+        CryptoManager manager = CryptoManager.getInstance();
+        manager.setPasswordCallback(new FilePasswordCallback(args[1]));
+        CryptoToken token = manager.getInternalKeyStorageToken();
+        manager.setThreadToken(token);
+
+        size = Class.forName("org.mozilla.jss.pkcs11.ContextPool")
+                .getDeclaredMethod("size");
+        size.setAccessible(true);
+
+        testDigest();
+        testMac();
+        testLogout(token, args[1]);
+    }
+}
@@ -0,0 +1,149 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mozilla.jss.asn1.GeneralizedTime;
+import org.mozilla.jss.asn1.UTCTime;
+import org.mozilla.jss.netscape.security.util.DerInputStream;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.DerTime;
+
+public class DerTimeTest {
+
+    private static final DateTimeFormatter UTC_FORMAT =
+            DateTimeFormatter.ofPattern("yyMMddHHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private static final DateTimeFormatter GENERALIZED_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private static long parse(String s, boolean utc) throws Exception {
+        byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+        return DerTime.parse(b, 0, b.length, utc, 50, null);
+    }
+
+    @Test
+    public void testEncodeMatchesJavaTime() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            // 1950 to 2049, the range of UTCTime
+            long millis = -631152000000L + (long) (random.nextDouble() * 3155760000000L);
+            Instant instant = Instant.ofEpochMilli(millis);
+
+            Assert.assertEquals(UTC_FORMAT.format(instant),
+                    new String(DerTime.encode(millis, true), StandardCharsets.US_ASCII));
+            Assert.assertEquals(GENERALIZED_FORMAT.format(instant),
+                    new String(DerTime.encode(millis, false), StandardCharsets.US_ASCII));
+
+            long seconds = Math.floorDiv(millis, 1000L) * 1000;
+            Assert.assertEquals(seconds, parse(UTC_FORMAT.format(instant), true));
+            Assert.assertEquals(seconds, parse(GENERALIZED_FORMAT.format(instant), false));
+        }
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        long expected = Instant.parse("2020-02-29T12:34:56Z").toEpochMilli();
+
+        Assert.assertEquals(expected, parse("200229123456Z", true));
+        Assert.assertEquals(expected, parse("200229143456+0200", true));
+        Assert.assertEquals(expected, parse("200229103456-0200", true));
+        Assert.assertEquals(expected - 56000, parse("2002291234Z", true));
+        Assert.assertEquals(expected, parse("20200229123456.789Z", false));
+        Assert.assertEquals(Instant.parse("1950-01-01T00:00:00Z").toEpochMilli(),
+                parse("500101000000Z", true));
+
+        // days past the end of the month roll over, as with a lenient Calendar
+        Assert.assertEquals(Instant.parse("2021-03-02T00:00:00Z").toEpochMilli(),
+                parse("210230000000Z", true));
+
+        for (String bad : new String[] { "2002291234", "201329123456Z", "2002291234x6Z",
+                "200229123456Z0", "200229123456+02", "20200229123456.Z" }) {
+            try {
+                parse(bad, bad.length() != 16);
+                Assert.fail(bad);
+            } catch (java.io.IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testStacksAgree() throws Exception {
+        Date date = new Date(1600000000000L);
+
+        DerOutputStream out = new DerOutputStream();
+        out.putUTCTime(date);
+        out.putGeneralizedTime(date);
+        byte[] netscape = out.toByteArray();
+
+        ByteArrayOutputStream asn1 = new ByteArrayOutputStream();
+        new UTCTime(date).encode(asn1);
+        new GeneralizedTime(date).encode(asn1);
+        Assert.assertArrayEquals(netscape, asn1.toByteArray());
+
+        DerInputStream in = new DerInputStream(netscape);
+        Assert.assertEquals(date, in.getUTCTime());
+        Assert.assertEquals(date, in.getGeneralizedTime());
+
+        ByteArrayInputStream is = new ByteArrayInputStream(netscape);
+        Assert.assertEquals(date, ((UTCTime) UTCTime.getTemplate().decode(is)).toDate());
+        Assert.assertEquals(date,
+                ((GeneralizedTime) GeneralizedTime.getTemplate().decode(is)).toDate());
+    }
+
+    @Test
+    public void testEncodeOutOfRange() throws Exception {
+        // the first and last instants of each range encode
+        long utcFirst = Instant.parse("1950-01-01T00:00:00Z").toEpochMilli();
+        long utcLast = Instant.parse("2050-01-01T00:00:00Z").toEpochMilli() - 1;
+        long generalizedFirst = Instant.parse("0000-01-01T00:00:00Z").toEpochMilli();
+        long generalizedLast = Instant.parse("+10000-01-01T00:00:00Z").toEpochMilli() - 1;
+
+        Assert.assertEquals("500101000000Z",
+                new String(DerTime.encode(utcFirst, true), StandardCharsets.US_ASCII));
+        Assert.assertEquals("491231235959Z",
+                new String(DerTime.encode(utcLast, true), StandardCharsets.US_ASCII));
+        Assert.assertEquals("00000101000000Z",
+                new String(DerTime.encode(generalizedFirst, false), StandardCharsets.US_ASCII));
+        Assert.assertEquals("99991231235959Z",
+                new String(DerTime.encode(generalizedLast, false), StandardCharsets.US_ASCII));
+
+        // the instants next to them would wrap around
+        long[][] bad = {
+                { utcFirst - 1, 1 }, { utcLast + 1, 1 },
+                { generalizedFirst - 1, 0 }, { generalizedLast + 1, 0 } };
+        for (long[] time : bad) {
+            try {
+                DerTime.encode(time[0], time[1] == 1);
+                Assert.fail(Instant.ofEpochMilli(time[0]).toString());
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        // both encoders report the error as an IOException
+        Date date = new Date(utcLast + 1);
+        try {
+            new DerOutputStream().putUTCTime(date);
+            Assert.fail();
+        } catch (java.io.IOException e) {
+            // expected
+        }
+        try {
+            new UTCTime(date).encode(new ByteArrayOutputStream());
+            Assert.fail();
+        } catch (java.io.IOException e) {
+            // expected
+        }
+        new DerOutputStream().putGeneralizedTime(date);
+    }
+}
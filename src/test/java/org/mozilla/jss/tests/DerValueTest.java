@@ -0,0 +1,56 @@
+package org.mozilla.jss.tests;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.util.DerValue;
+
+public class DerValueTest {
+
+    // SEQUENCE { INTEGER 5, OCTET STRING 01 02 }
+    private static final byte[] SEQUENCE = {
+        0x30, 0x07, 0x02, 0x01, 0x05, 0x04, 0x02, 0x01, 0x02
+    };
+
+    @Test
+    public void testWrapReadsInPlace() throws Exception {
+        byte[] buf = new byte[SEQUENCE.length + 4];
+        System.arraycopy(SEQUENCE, 0, buf, 2, SEQUENCE.length);
+
+        DerValue val = DerValue.wrap(buf, 2, SEQUENCE.length);
+        Assert.assertEquals(DerValue.tag_Sequence, val.tag);
+        Assert.assertArrayEquals(SEQUENCE, val.toByteArray());
+
+        // the value is a view: changes to the buffer show through
+        buf[2 + 8] = 0x09;
+        DerValue integer = val.data.getDerValue();
+        DerValue octets = val.data.getDerValue();
+        Assert.assertEquals(5, integer.getInteger().toInt());
+        Assert.assertArrayEquals(new byte[] { 0x01, 0x09 }, octets.getOctetString());
+        Assert.assertEquals(0, val.data.available());
+    }
+
+    @Test
+    public void testToByteArrayOfNestedValue() throws Exception {
+        DerValue val = DerValue.wrap(SEQUENCE);
+        DerValue integer = val.data.getDerValue();
+
+        Assert.assertArrayEquals(new byte[] { 0x02, 0x01, 0x05 }, integer.toByteArray());
+        Assert.assertArrayEquals(new byte[] { 0x02, 0x01, 0x05 }, integer.toByteArray());
+    }
+
+    @Test
+    public void testToByteArrayReencodesLongFormLength() throws Exception {
+        // OCTET STRING 01 with a redundant long form length
+        byte[] ber = { 0x04, (byte) 0x81, 0x01, 0x01 };
+
+        DerValue val = DerValue.wrap(ber);
+        Assert.assertArrayEquals(new byte[] { 0x04, 0x01, 0x01 }, val.toByteArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrapRejectsTrailingData() throws Exception {
+        DerValue.wrap(new byte[] { 0x05, 0x00, 0x00 });
+    }
+}
@@ -0,0 +1,180 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.tests;
+
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.crypto.CryptoToken;
+
+/**
+ * Checks that direct ByteBuffers given to the JSS Cipher, MessageDigest,
+ * Mac and Signature implementations give the same results as byte arrays.
+ */
+public class DirectBufferTest {
+
+    private static final String PROVIDER = "Mozilla-JSS";
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 7 + 3);
+        }
+        return data;
+    }
+
+    private static ByteBuffer direct(byte[] bytes) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length);
+        buf.put(bytes);
+        buf.flip();
+        return buf;
+    }
+
+    private static byte[] remaining(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.remaining()];
+        buf.get(bytes);
+        return bytes;
+    }
+
+    private static void check(String what, byte[] expected, byte[] actual)
+            throws Exception {
+        if (!Arrays.equals(expected, actual)) {
+            throw new Exception("ERROR: " + what
+                    + " differs between byte[] and direct ByteBuffer");
+        }
+        System.out.println(what + ": OK");
+    }
+
+    public static void testCipher() throws Exception {
+        KeyGenerator kg = KeyGenerator.getInstance("AES", PROVIDER);
+        kg.init(128);
+        SecretKey key = kg.generateKey();
+        IvParameterSpec iv = new IvParameterSpec(new byte[16]);
+        byte[] plaintext = data(1000);
+
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding", PROVIDER);
+        cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+        byte[] expected = cipher.doFinal(plaintext);
+
+        // several updates, so that partial blocks are carried over
+        cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+        ByteBuffer input = direct(plaintext);
+        ByteBuffer output = ByteBuffer.allocateDirect(expected.length);
+        for (int pos = 0; pos < plaintext.length; pos += 300) {
+            input.limit(Math.min(pos + 300, plaintext.length));
+            cipher.update(input, output);
+        }
+        cipher.doFinal(input, output);
+        output.flip();
+        check("Cipher update/doFinal", expected, remaining(output));
+
+        // input and output are partially overlapping slices of one buffer
+        for (int shift : new int[] { -8, 8, 16 }) {
+            int inPos = Math.max(0, shift) + 32;
+            int outPos = inPos - shift;
+            ByteBuffer shared = ByteBuffer.allocateDirect(expected.length + 64);
+            shared.position(inPos);
+            shared.put(plaintext);
+
+            shared.limit(inPos + plaintext.length).position(inPos);
+            ByteBuffer in = shared.slice();
+            shared.clear().position(outPos);
+            ByteBuffer out = shared.slice();
+
+            cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+            cipher.doFinal(in, out);
+            out.flip();
+            check("Cipher with overlapping buffers (" + shift + ")",
+                    expected, remaining(out));
+        }
+
+        // decryption
+        cipher.init(Cipher.DECRYPT_MODE, key, iv);
+        output = ByteBuffer.allocateDirect(expected.length);
+        cipher.doFinal(direct(expected), output);
+        output.flip();
+        check("Cipher decryption", plaintext, remaining(output));
+    }
+
+    public static void testMessageDigest() throws Exception {
+        byte[] data = data(5000);
+        MessageDigest md = MessageDigest.getInstance("SHA-256", PROVIDER);
+        byte[] expected = md.digest(data);
+
+        ByteBuffer buf = direct(data);
+        buf.limit(1234);
+        md.update(buf);
+        buf.limit(data.length);
+        md.update(buf);
+        check("MessageDigest", expected, md.digest());
+    }
+
+    public static void testMac() throws Exception {
+        KeyGenerator kg = KeyGenerator.getInstance("HmacSHA256", PROVIDER);
+        SecretKey key = kg.generateKey();
+        byte[] data = data(5000);
+
+        Mac mac = Mac.getInstance("HmacSHA256", PROVIDER);
+        mac.init(key);
+        byte[] expected = mac.doFinal(data);
+
+        mac.init(key);
+        mac.update(direct(data));
+        check("Mac", expected, mac.doFinal());
+    }
+
+    public static void testSignature() throws Exception {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA", PROVIDER);
+        kpg.initialize(2048);
+        KeyPair pair = kpg.generateKeyPair();
+        byte[] data = data(5000);
+
+        // PKCS #1 v1.5 signatures are deterministic
+        Signature sig = Signature.getInstance("SHA256withRSA", PROVIDER);
+        sig.initSign(pair.getPrivate());
+        sig.update(data);
+        byte[] expected = sig.sign();
+
+        sig.initSign(pair.getPrivate());
+        sig.update(direct(data));
+        check("Signature", expected, sig.sign());
+
+        sig.initVerify(pair.getPublic());
+        sig.update(direct(data));
+        if (!sig.verify(expected)) {
+            throw new Exception("ERROR: signature did not verify from a direct ByteBuffer");
+        }
+        System.out.println("Signature verification: OK");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.out.println(
+                "Usage: java org.mozilla.jss.tests.DirectBufferTest <dbdir> <passwordFile>");
+            System.exit(1);
+        }
+
+        CryptoManager manager = CryptoManager.getInstance();
+        manager.setPasswordCallback(new FilePasswordCallback(args[1]));
+        CryptoToken token = manager.getInternalKeyStorageToken();
+        manager.setThreadToken(token);
+
+        testCipher();
+        testMessageDigest();
+        testMac();
+        testSignature();
+    }
+}
@@ -0,0 +1,166 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.tests;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mozilla.jss.util.GlobalRefProxy;
+import org.mozilla.jss.util.NativeProxy;
+
+/**
+ * Checks that a NativeProxy is released exactly once: by close() if it is
+ * closed, and by the Cleaner if it becomes unreachable without being
+ * closed.
+ */
+public class NativeProxyCleanerTest {
+
+    /**
+     * A proxy whose "native" structure is only a number, so that every
+     * release can be counted.
+     */
+    static class CountedProxy extends NativeProxy {
+
+        // number of releases of each pointer, by close() or by the Cleaner
+        static final ConcurrentHashMap<Integer, AtomicInteger> releases = new ConcurrentHashMap<>();
+        static final AtomicInteger collected = new AtomicInteger();
+        static final AtomicInteger next = new AtomicInteger();
+
+        final int id;
+
+        CountedProxy(int id) {
+            super(new byte[] { (byte) (id >> 24), (byte) (id >> 16), (byte) (id >> 8), (byte) id },
+                    CountedProxy::releasePointer);
+            this.id = id;
+        }
+
+        static CountedProxy create() {
+            return new CountedProxy(next.incrementAndGet());
+        }
+
+        static int idOf(byte[] pointer) {
+            return (pointer[0] & 0xff) << 24 | (pointer[1] & 0xff) << 16
+                    | (pointer[2] & 0xff) << 8 | (pointer[3] & 0xff);
+        }
+
+        static void release(int id) {
+            releases.computeIfAbsent(id, k -> new AtomicInteger()).incrementAndGet();
+        }
+
+        static int releasesOf(int id) {
+            AtomicInteger count = releases.get(id);
+            return count == null ? 0 : count.get();
+        }
+
+        static void releasePointer(byte[] pointer) {
+            release(idOf(pointer));
+            collected.incrementAndGet();
+        }
+
+        @Override
+        protected void releaseNativeResources() {
+            release(id);
+        }
+    }
+
+    private static NativeProxy.Counters counters(Class<?> type) {
+        return NativeProxy.getCounters().get(type.getName());
+    }
+
+    private static void check(boolean condition, String message) throws Exception {
+        if (!condition) {
+            throw new Exception("ERROR: " + message);
+        }
+    }
+
+    private static void collect(NativeProxy.Counters counters, long collected)
+            throws Exception {
+        for (int i = 1; i <= 20 && counters.getCollected() < collected; i++) {
+            System.gc();
+            Thread.sleep(i * 50);
+        }
+        check(counters.getCollected() >= collected,
+                "only " + counters.getCollected() + " of " + collected
+                + " unreachable proxies were released: " + counters);
+    }
+
+    private static void dropProxies(int count) {
+        for (int i = 0; i < count; i++) {
+            CountedProxy.create();
+        }
+    }
+
+    private static void dropGlobalRefs(int count) {
+        for (int i = 0; i < count; i++) {
+            new GlobalRefProxy("Something");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        // explicit close, then close again
+        CountedProxy closed = CountedProxy.create();
+        NativeProxy.Counters counters = counters(CountedProxy.class);
+        check(counters.getCreated() == 1 && counters.getLive() == 1,
+                "unexpected counters after create: " + counters);
+
+        closed.close();
+        check(closed.isNull(), "proxy still has a pointer after close()");
+        check(CountedProxy.releasesOf(closed.id) == 1,
+                "close() released the proxy " + CountedProxy.releasesOf(closed.id) + " times");
+        check(counters.getClosed() == 1 && counters.getLive() == 0,
+                "unexpected counters after close(): " + counters);
+
+        closed.close();
+        closed.clear();
+        check(CountedProxy.releasesOf(closed.id) == 1,
+                "a second close() released the proxy again");
+        check(counters.getClosed() == 1, "a second close() was counted: " + counters);
+
+        // clear() without close() is counted, but releases nothing
+        CountedProxy cleared = CountedProxy.create();
+        cleared.clear();
+        check(CountedProxy.releasesOf(cleared.id) == 0, "clear() released the proxy");
+        check(counters.getClosed() == 2, "clear() was not counted: " + counters);
+
+        // unreachable proxies are released by the Cleaner
+        dropProxies(10);
+        collect(counters, 10);
+        check(CountedProxy.collected.get() == 10,
+                CountedProxy.collected.get() + " proxies were released by the Cleaner");
+        check(counters.getLive() == 0, "unexpected counters after GC: " + counters);
+
+        // the Cleaner does not release closed proxies a second time
+        int closedId = closed.id;
+        int clearedId = cleared.id;
+        closed = null;
+        cleared = null;
+        dropProxies(1);
+        collect(counters, 11);
+        check(CountedProxy.releasesOf(closedId) == 1,
+                "the Cleaner released a closed proxy");
+        check(CountedProxy.releasesOf(clearedId) == 0,
+                "the Cleaner released a cleared proxy");
+        check(counters.getClosed() == 2 && counters.getCollected() == 11,
+                "unexpected counters after GC: " + counters);
+        System.out.println(counters + ": OK");
+
+        // the same for a proxy with a real native structure
+        GlobalRefProxy proxy = new GlobalRefProxy("Something");
+        NativeProxy.Counters globalRefs = counters(GlobalRefProxy.class);
+        long created = globalRefs.getCreated();
+        long collected = globalRefs.getCollected();
+        proxy.close();
+        proxy.close();
+        dropGlobalRefs(10);
+        check(globalRefs.getCreated() == created + 10,
+                "unexpected counters after create: " + globalRefs);
+        collect(globalRefs, collected + 10);
+        check(globalRefs.getLive() == 0, "unexpected counters after GC: " + globalRefs);
+        System.out.println(globalRefs + ": OK");
+
+        NativeProxy.assertRegistryEmpty();
+    }
+}
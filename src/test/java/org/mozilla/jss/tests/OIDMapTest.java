@@ -0,0 +1,106 @@
+package org.mozilla.jss.tests;
+
+import java.security.cert.CertificateException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.util.ObjectIdentifier;
+import org.mozilla.jss.netscape.security.x509.BasicConstraintsExtension;
+import org.mozilla.jss.netscape.security.x509.CertificateExtensions;
+import org.mozilla.jss.netscape.security.x509.Extension;
+import org.mozilla.jss.netscape.security.x509.OIDMap;
+import org.mozilla.jss.netscape.security.x509.PKIXExtensions;
+
+public class OIDMapTest {
+
+    public static class TestExtension extends Extension {
+
+        private static final long serialVersionUID = 1L;
+
+        public static final String OID = "1.3.6.1.4.1.99999.33.1";
+        public static final String NAME = "OIDMapTestExtension";
+
+        public TestExtension(Boolean critical, Object value) {
+            this.extensionId = new ObjectIdentifier(OID);
+            this.critical = critical.booleanValue();
+            this.extensionValue = (byte[]) value;
+        }
+    }
+
+    public static class NoConstructorExtension extends Extension {
+
+        private static final long serialVersionUID = 1L;
+
+        public NoConstructorExtension() {
+        }
+    }
+
+    @Test
+    public void testConstructorFactory() throws Exception {
+        OIDMap.addClass(TestExtension.class);
+
+        ObjectIdentifier oid = new ObjectIdentifier(TestExtension.OID);
+        OIDMap.ExtensionFactory factory = OIDMap.getFactory(oid);
+        Assert.assertNotNull(factory);
+
+        // the factory is resolved once per OID
+        Assert.assertSame(factory, OIDMap.getFactory(oid));
+
+        byte[] value = { 0x05, 0x00 };
+        Extension ext = factory.create(Boolean.TRUE, value);
+        Assert.assertTrue(ext instanceof TestExtension);
+        Assert.assertTrue(ext.isCritical());
+        Assert.assertArrayEquals(value, ext.getExtensionValue());
+    }
+
+    @Test
+    public void testMissingConstructor() throws Exception {
+        String oid = "1.3.6.1.4.1.99999.33.2";
+        OIDMap.addAttribute(NoConstructorExtension.class.getName(), oid,
+                "OIDMapTestNoConstructorExtension");
+
+        try {
+            OIDMap.getFactory(new ObjectIdentifier(oid));
+            Assert.fail();
+        } catch (CertificateException e) {
+            Assert.assertTrue(e.getCause() instanceof NoSuchMethodException);
+        }
+
+        // OIDs without a class have no factory
+        Assert.assertNull(OIDMap.getFactory(new ObjectIdentifier("1.3.6.1.4.1.99999.33.3")));
+    }
+
+    @Test
+    public void testAddFactory() throws Exception {
+        ObjectIdentifier oid = PKIXExtensions.BasicConstraints_Id;
+        OIDMap.ExtensionFactory builtin = OIDMap.getFactory(oid);
+        Assert.assertNotNull(builtin);
+
+        AtomicInteger calls = new AtomicInteger();
+        OIDMap.ExtensionFactory override = (critical, value) -> {
+            calls.incrementAndGet();
+            return builtin.create(critical, value);
+        };
+
+        OIDMap.addFactory(oid, override);
+        try {
+            Assert.assertSame(override, OIDMap.getFactory(oid));
+
+            // decoding goes through the new factory
+            CertificateExtensions exts = new CertificateExtensions();
+            exts.parseExtension(new BasicConstraintsExtension(true, 5));
+            Assert.assertEquals(1, calls.get());
+
+            BasicConstraintsExtension ext = (BasicConstraintsExtension)
+                    exts.get(BasicConstraintsExtension.NAME);
+            Assert.assertNotNull(ext);
+            Assert.assertEquals(5, ((Integer) ext.get(BasicConstraintsExtension.PATH_LEN)).intValue());
+
+        } finally {
+            OIDMap.addFactory(oid, builtin);
+        }
+
+        Assert.assertSame(builtin, OIDMap.getFactory(oid));
+    }
+}
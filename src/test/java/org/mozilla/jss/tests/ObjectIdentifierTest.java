@@ -0,0 +1,87 @@
+package org.mozilla.jss.tests;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.util.DerInputStream;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.util.ObjectIdentifier;
+import org.mozilla.jss.netscape.security.x509.AlgorithmId;
+import org.mozilla.jss.netscape.security.x509.KeyUsageExtension;
+import org.mozilla.jss.netscape.security.x509.OIDMap;
+
+public class ObjectIdentifierTest {
+
+    private static byte[] encode(ObjectIdentifier oid) throws Exception {
+        DerOutputStream out = new DerOutputStream();
+        out.putOID(oid);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testDecodedOIDsAreShared() throws Exception {
+        ObjectIdentifier sha256WithRSA = AlgorithmId.get("SHA256withRSA").getOID();
+        byte[] der = encode(new ObjectIdentifier("1.2.840.113549.1.1.11"));
+
+        ObjectIdentifier fromStream = new DerInputStream(der).getOID();
+        ObjectIdentifier fromValue = new DerValue(der).getOID();
+        Assert.assertSame(ObjectIdentifier.intern(sha256WithRSA), fromStream);
+        Assert.assertSame(fromStream, fromValue);
+
+        // unknown OIDs are shared once decoded
+        byte[] unknown = encode(new ObjectIdentifier("1.3.6.1.4.1.99999.42"));
+        Assert.assertSame(new DerInputStream(unknown).getOID(),
+                new DerInputStream(unknown).getOID());
+
+        ObjectIdentifier keyUsage = OIDMap.getOID(KeyUsageExtension.IDENT);
+        Assert.assertSame(keyUsage, new DerInputStream(encode(keyUsage)).getOID());
+        Assert.assertEquals(KeyUsageExtension.IDENT, OIDMap.getName(keyUsage));
+    }
+
+    @Test
+    public void testNonMinimalEncodingIsDecoded() throws Exception {
+        // 1.2.840.113549 with a redundant leading 0x80 in 840
+        byte[] der = { 0x06, 0x07, 0x2a, (byte) 0x80, (byte) 0x86, 0x48,
+                (byte) 0x86, (byte) 0xf7, 0x0d };
+
+        ObjectIdentifier oid = new DerInputStream(der).getOID();
+        Assert.assertEquals(new ObjectIdentifier("1.2.840.113549"), oid);
+    }
+
+    @Test
+    public void testEncodingAndString() throws Exception {
+        String[] oids = { "1.2.840.113549.1.1.11", "2.999.3", "0.39",
+                "1.3.6.1.4.1.2312.9.1.152691330062899999999999997777788888888888888889999999999999999.1" };
+
+        for (String s : oids) {
+            ObjectIdentifier oid = new ObjectIdentifier(s);
+            Assert.assertEquals(s, oid.toString());
+
+            ObjectIdentifier decoded = new DerInputStream(encode(oid)).getOID();
+            Assert.assertEquals(oid, decoded);
+            Assert.assertEquals(s, decoded.toString());
+            Assert.assertEquals(oid.hashCode(), decoded.hashCode());
+        }
+
+        Assert.assertSame(ObjectIdentifier.getObjectIdentifier("1.2.3.4.5"),
+                ObjectIdentifier.getObjectIdentifier("1.2.3.4.5"));
+    }
+
+    @Test
+    public void testAlgorithmNames() throws Exception {
+        Assert.assertEquals(AlgorithmId.sha256WithEC_oid, AlgorithmId.get("SHA256/EC").getOID());
+        Assert.assertEquals(AlgorithmId.DH_oid, AlgorithmId.get("DH").getOID());
+        Assert.assertEquals("SHA384withRSA",
+                new AlgorithmId(AlgorithmId.sha384WithRSAEncryption_oid).getName());
+        Assert.assertEquals("Diffie-Hellman", new AlgorithmId(AlgorithmId.DH_PKIX_oid).getName());
+        Assert.assertEquals("OID.1.2.3.4",
+                new AlgorithmId(new ObjectIdentifier("1.2.3.4")).getName());
+
+        try {
+            AlgorithmId.get("SHA256withFOO");
+            Assert.fail();
+        } catch (java.security.NoSuchAlgorithmException e) {
+            // expected
+        }
+    }
+}
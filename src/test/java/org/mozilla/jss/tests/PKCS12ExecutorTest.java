@@ -0,0 +1,142 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.tests;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.PBEAlgorithm;
+import org.mozilla.jss.netscape.security.pkcs.PKCS12;
+import org.mozilla.jss.netscape.security.pkcs.PKCS12CertInfo;
+import org.mozilla.jss.netscape.security.pkcs.PKCS12KeyInfo;
+import org.mozilla.jss.netscape.security.pkcs.PKCS12Util;
+import org.mozilla.jss.pkcs12.PFX;
+import org.mozilla.jss.util.Password;
+
+/**
+ * Checks that PKCS12Util generates and loads the same PKCS #12 data with
+ * and without an executor, and that a failed task surfaces its own
+ * exception rather than a wrapper.
+ */
+public class PKCS12ExecutorTest {
+
+    private static PKCS12Util createUtil(ExecutorService executor) throws Exception {
+        PKCS12Util util = new PKCS12Util();
+        util.setCertEncryption(PBEAlgorithm.PBE_SHA1_RC2_40_CBC);
+
+        // a seeded SHA1PRNG returns the same bytes every time
+        SecureRandom random = SecureRandom.getInstance("SHA1PRNG", "SUN");
+        random.setSeed(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        util.setRandom(random);
+
+        util.setExecutor(executor);
+        return util;
+    }
+
+    private static void compare(PKCS12 serial, PKCS12 parallel) throws Exception {
+        if (serial.getKeyInfos().size() != parallel.getKeyInfos().size()) {
+            throw new Exception("ERROR: loaded " + parallel.getKeyInfos().size()
+                    + " keys with an executor, " + serial.getKeyInfos().size() + " without");
+        }
+        for (PKCS12KeyInfo keyInfo : serial.getKeyInfos()) {
+            PKCS12KeyInfo other = parallel.getKeyInfoByID(keyInfo.getID());
+            if (other == null || !Arrays.equals(keyInfo.getEncryptedPrivateKeyInfoBytes(),
+                    other.getEncryptedPrivateKeyInfoBytes())) {
+                throw new Exception("ERROR: key " + keyInfo.getFriendlyName()
+                        + " differs with an executor");
+            }
+        }
+
+        if (serial.getCertInfos().size() != parallel.getCertInfos().size()) {
+            throw new Exception("ERROR: loaded " + parallel.getCertInfos().size()
+                    + " certificates with an executor, " + serial.getCertInfos().size() + " without");
+        }
+        for (PKCS12CertInfo certInfo : serial.getCertInfos()) {
+            PKCS12CertInfo other = parallel.getCertInfoByID(certInfo.getID());
+            if (other == null || !Arrays.equals(certInfo.getCert().getEncoded(),
+                    other.getCert().getEncoded())) {
+                throw new Exception("ERROR: certificate " + certInfo.getFriendlyName()
+                        + " differs with an executor");
+            }
+        }
+    }
+
+    private static String generateFailure(PKCS12Util util, Password password) {
+        PKCS12 pkcs12 = new PKCS12();
+        PKCS12KeyInfo keyInfo = new PKCS12KeyInfo();
+        keyInfo.setID(new byte[] { 1 });
+        keyInfo.setFriendlyName("missing");
+        pkcs12.addKeyInfo(keyInfo);
+
+        try {
+            util.generatePFX(pkcs12, password);
+        } catch (Exception e) {
+            if (e.getClass() != Exception.class) {
+                return "ERROR: key without private key failed with " + e;
+            }
+            return e.getMessage();
+        }
+        return "ERROR: key without private key was accepted";
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.out.println(
+                "Usage: java org.mozilla.jss.tests.PKCS12ExecutorTest <dbdir> <passwordFile>");
+            System.exit(1);
+        }
+
+        CryptoManager manager = CryptoManager.getInstance();
+        manager.setPasswordCallback(new FilePasswordCallback(args[1]));
+        CryptoToken token = manager.getInternalKeyStorageToken();
+        manager.setThreadToken(token);
+
+        Password password = new Password("Secret.123".toCharArray());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            PKCS12Util serialUtil = createUtil(null);
+            PKCS12Util parallelUtil = createUtil(executor);
+
+            PKCS12 pkcs12 = new PKCS12();
+            serialUtil.loadCertFromNSS(pkcs12, "Server_RSA", true, true);
+            if (pkcs12.getKeyInfos().isEmpty()) {
+                throw new Exception("ERROR: no keys were loaded from " + args[0]);
+            }
+
+            // salts are drawn in the same order, so the data is identical
+            byte[] serial = ASN1Util.encode(serialUtil.generatePFX(pkcs12, password));
+            byte[] parallel = ASN1Util.encode(parallelUtil.generatePFX(pkcs12, password));
+            if (!Arrays.equals(serial, parallel)) {
+                throw new Exception("ERROR: PKCS #12 data differs with an executor");
+            }
+            System.out.println("generated " + serial.length + " identical bytes: OK");
+
+            compare(serialUtil.loadFromByteArray(serial, password),
+                    parallelUtil.loadFromByteArray(serial, password));
+            System.out.println("loaded identical keys and certificates: OK");
+
+            // join() rethrows the exception of the failed task itself
+            String expected = generateFailure(serialUtil, password);
+            String actual = generateFailure(parallelUtil, password);
+            if (expected.startsWith("ERROR:")) {
+                throw new Exception(expected);
+            }
+            if (!expected.equals(actual)) {
+                throw new Exception("ERROR: failed task with an executor: " + actual
+                        + ", without: " + expected);
+            }
+            System.out.println("failed task: " + actual + ": OK");
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
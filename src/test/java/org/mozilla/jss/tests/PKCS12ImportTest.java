@@ -0,0 +1,143 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.InitializationValues;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.X509Certificate;
+import org.mozilla.jss.netscape.security.pkcs.PKCS12;
+import org.mozilla.jss.netscape.security.pkcs.PKCS12CertInfo;
+import org.mozilla.jss.netscape.security.pkcs.PKCS12Util;
+import org.mozilla.jss.util.Password;
+
+/**
+ * Imports a PKCS #12 file into an empty NSS database with
+ * PKCS12Util.importIntoNSS(), then imports it again, once skipping and
+ * once overwriting the certificates already there, and checks the
+ * progress reported to the ImportListener each time.
+ */
+public class PKCS12ImportTest {
+
+    private static class Progress {
+        PKCS12CertInfo certInfo;
+        boolean imported;
+        int count;
+        int total;
+    }
+
+    private static List<Progress> importIntoNSS(PKCS12Util util, PKCS12 pkcs12,
+            Password password, boolean overwrite) throws Exception {
+
+        List<Progress> events = new ArrayList<>();
+
+        util.importIntoNSS(pkcs12, password, overwrite, (certInfo, imported, count, total) -> {
+            Progress progress = new Progress();
+            progress.certInfo = certInfo;
+            progress.imported = imported;
+            progress.count = count;
+            progress.total = total;
+            events.add(progress);
+        });
+
+        return events;
+    }
+
+    private static void checkProgress(String what, List<Progress> events,
+            PKCS12 pkcs12, boolean imported) throws Exception {
+
+        int total = pkcs12.getCertInfos().size();
+        if (events.size() != total) {
+            throw new Exception("ERROR: " + what + ": " + events.size()
+                    + " progress events for " + total + " certificates");
+        }
+
+        for (int i = 0; i < events.size(); i++) {
+            Progress progress = events.get(i);
+            if (progress.count != i + 1 || progress.total != total) {
+                throw new Exception("ERROR: " + what + ": progress " + progress.count
+                        + " of " + progress.total + " for event " + (i + 1) + " of " + total);
+            }
+            if (progress.imported != imported) {
+                throw new Exception("ERROR: " + what + ": certificate "
+                        + progress.certInfo.getFriendlyName()
+                        + (imported ? " was skipped" : " was imported"));
+            }
+        }
+
+        System.out.println(what + ": " + total + " certificates: OK");
+    }
+
+    private static void checkDatabase(String what, CryptoManager cm,
+            CryptoToken token, String nickname, int certs) throws Exception {
+
+        int count = token.getCryptoStore().getCertificates().length;
+        if (count != certs) {
+            throw new Exception("ERROR: " + what + ": " + count
+                    + " certificates in the database, expected " + certs);
+        }
+
+        X509Certificate[] found = cm.findCertsByNickname(nickname);
+        if (found.length != 1) {
+            throw new Exception("ERROR: " + what + ": " + found.length
+                    + " certificates named " + nickname);
+        }
+
+        // throws ObjectNotFoundException if the key is missing
+        cm.findPrivKeyByCert(found[0]);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 4) {
+            System.out.println(
+                "Usage: java org.mozilla.jss.tests.PKCS12ImportTest <dbdir> <passwordFile> <pfxFile> <pfxPassword>");
+            System.exit(1);
+        }
+
+        // an empty database of its own, since overwriting changes it
+        CryptoManager.initialize(new InitializationValues(args[0]));
+        CryptoManager cm = CryptoManager.getInstance();
+        cm.setPasswordCallback(new FilePasswordCallback(args[1]));
+        CryptoToken token = cm.getInternalKeyStorageToken();
+        cm.setThreadToken(token);
+
+        if (token.getCryptoStore().getCertificates().length != 0) {
+            throw new Exception("ERROR: database " + args[0] + " is not empty");
+        }
+
+        Password password = new Password(args[3].toCharArray());
+        PKCS12Util util = new PKCS12Util();
+        PKCS12 pkcs12 = util.loadFromFile(args[2], password);
+
+        String nickname = null;
+        for (PKCS12CertInfo certInfo : pkcs12.getCertInfos()) {
+            if (certInfo.getKeyID() != null) {
+                nickname = certInfo.getFriendlyName();
+            }
+        }
+        if (nickname == null) {
+            throw new Exception("ERROR: " + args[2] + " has no certificate with a key");
+        }
+
+        List<Progress> events = importIntoNSS(util, pkcs12, password, false);
+        checkProgress("import", events, pkcs12, true);
+        int certs = token.getCryptoStore().getCertificates().length;
+        checkDatabase("import", cm, token, nickname, certs);
+
+        events = importIntoNSS(util, pkcs12, password, false);
+        checkProgress("import again", events, pkcs12, false);
+        checkDatabase("import again", cm, token, nickname, certs);
+
+        // the certificate and its key are deleted and imported again
+        events = importIntoNSS(util, pkcs12, password, true);
+        checkProgress("overwrite", events, pkcs12, true);
+        checkDatabase("overwrite", cm, token, nickname, certs);
+
+        cm.shutdown();
+    }
+}
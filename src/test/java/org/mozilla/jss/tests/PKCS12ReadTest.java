@@ -0,0 +1,96 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.jss.tests;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.netscape.security.pkcs.PKCS12Util;
+import org.mozilla.jss.pkcs12.PFX;
+import org.mozilla.jss.util.Password;
+
+/**
+ * Checks that PKCS12Util.readFromByteArray() passes the bags of a PKCS #12
+ * file to the handler, and passes none of them if the MAC does not match.
+ */
+public class PKCS12ReadTest {
+
+    private static int read(PKCS12Util util, byte[] pfx, Password password)
+            throws Exception {
+        int[] bags = new int[1];
+        util.readFromByteArray(pfx, password, bag -> bags[0]++);
+        return bags[0];
+    }
+
+    private static void expectRejected(String what, PKCS12Util util,
+            byte[] pfx, Password password) throws Exception {
+        int[] bags = new int[1];
+        try {
+            util.readFromByteArray(pfx, password, bag -> bags[0]++);
+            throw new Exception("ERROR: PKCS #12 file with " + what + " was accepted");
+        } catch (Exception e) {
+            if (e.getMessage() != null && e.getMessage().startsWith("ERROR:")) {
+                throw e;
+            }
+            System.out.println(what + ": " + e.getMessage());
+        }
+        if (bags[0] != 0) {
+            throw new Exception("ERROR: " + bags[0] + " bags of a PKCS #12 file with "
+                    + what + " were passed to the handler");
+        }
+    }
+
+    private static int indexOf(byte[] array, byte[] target) {
+        for (int i = array.length - target.length; i >= 0; i--) {
+            if (Arrays.equals(target, Arrays.copyOfRange(array, i, i + target.length))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.out.println(
+                "Usage: java org.mozilla.jss.tests.PKCS12ReadTest <dbdir> <pfxFile> <pfxPassword>");
+            System.exit(1);
+        }
+
+        CryptoManager.getInstance();
+
+        byte[] pfx = Files.readAllBytes(Paths.get(args[1]));
+        Password password = new Password(args[2].toCharArray());
+        PKCS12Util util = new PKCS12Util();
+
+        int bags = read(util, pfx, password);
+        if (bags == 0) {
+            throw new Exception("ERROR: no bags were read from " + args[1]);
+        }
+        System.out.println("read " + bags + " bags: OK");
+
+        // a wrong MAC value
+        PFX decoded = (PFX) ASN1Util.decode(PFX.getTemplate(), pfx);
+        byte[] digest = decoded.getMacData().getMac().getDigest().toByteArray();
+        int index = indexOf(pfx, digest);
+        if (index < 0) {
+            throw new Exception("ERROR: MAC not found in " + args[1]);
+        }
+        byte[] tampered = pfx.clone();
+        tampered[index] ^= 1;
+        expectRejected("tampered MAC", util, tampered, password);
+
+        // a modified AuthenticatedSafes
+        tampered = pfx.clone();
+        tampered[index / 2] ^= 1;
+        expectRejected("tampered contents", util, tampered, password);
+
+        // the wrong password
+        expectRejected("wrong password", util, pfx,
+                new Password("wrong".toCharArray()));
+    }
+}
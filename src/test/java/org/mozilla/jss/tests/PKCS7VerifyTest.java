@@ -0,0 +1,145 @@
+package org.mozilla.jss.tests;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.pkcs.ContentInfo;
+import org.mozilla.jss.netscape.security.pkcs.PKCS7;
+import org.mozilla.jss.netscape.security.pkcs.PKCS9Attribute;
+import org.mozilla.jss.netscape.security.pkcs.PKCS9Attributes;
+import org.mozilla.jss.netscape.security.pkcs.SignerInfo;
+import org.mozilla.jss.netscape.security.provider.DSAPublicKey;
+import org.mozilla.jss.netscape.security.util.BigInt;
+import org.mozilla.jss.netscape.security.util.ObjectIdentifier;
+import org.mozilla.jss.netscape.security.x509.AlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CertificateAlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CertificateIssuerName;
+import org.mozilla.jss.netscape.security.x509.CertificateSerialNumber;
+import org.mozilla.jss.netscape.security.x509.CertificateSubjectName;
+import org.mozilla.jss.netscape.security.x509.CertificateValidity;
+import org.mozilla.jss.netscape.security.x509.CertificateVersion;
+import org.mozilla.jss.netscape.security.x509.CertificateX509Key;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+import org.mozilla.jss.netscape.security.x509.X509CertInfo;
+
+public class PKCS7VerifyTest {
+
+    private static final byte[] CONTENT = "multi-signer content".getBytes();
+    private static final BigInteger SERIAL = BigInteger.valueOf(42);
+
+    private static KeyPair keyPair;
+    private static X500Name issuer;
+    private static X509Certificate cert;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("DSA");
+        kpg.initialize(1024);
+        keyPair = kpg.generateKeyPair();
+        issuer = new X500Name("CN=Signer,O=Example");
+
+        X509CertInfo info = new X509CertInfo();
+        info.set(X509CertInfo.VERSION, new CertificateVersion(CertificateVersion.V3));
+        info.set(X509CertInfo.SERIAL_NUMBER, new CertificateSerialNumber(SERIAL));
+        info.set(X509CertInfo.ISSUER, new CertificateIssuerName(issuer));
+        info.set(X509CertInfo.SUBJECT, new CertificateSubjectName(issuer));
+        info.set(X509CertInfo.VALIDITY, new CertificateValidity(
+                new Date(1600000000000L), new Date(1700000000000L)));
+        info.set(X509CertInfo.ALGORITHM_ID,
+                new CertificateAlgorithmId(AlgorithmId.get("SHA1withDSA")));
+        info.set(X509CertInfo.KEY, new CertificateX509Key(
+                new DSAPublicKey(keyPair.getPublic().getEncoded())));
+
+        X509CertImpl impl = new X509CertImpl(info);
+        impl.sign(keyPair.getPrivate(), "SHA1withDSA");
+        cert = impl;
+    }
+
+    private static SignerInfo signer(AlgorithmId digestAlg, byte[] messageDigest)
+            throws Exception {
+        PKCS9Attributes attrs = new PKCS9Attributes(new PKCS9Attribute[] {
+                new PKCS9Attribute(PKCS9Attribute.CONTENT_TYPE_OID, ContentInfo.DATA_OID),
+                new PKCS9Attribute(PKCS9Attribute.MESSAGE_DIGEST_OID, messageDigest)
+        });
+
+        Signature sig = Signature.getInstance("SHA1withDSA");
+        sig.initSign(keyPair.getPrivate());
+        sig.update(attrs.getDerEncoding());
+
+        return new SignerInfo(issuer, new BigInt(SERIAL), digestAlg, attrs,
+                AlgorithmId.get("DSA"), sig.sign(), null);
+    }
+
+    private static PKCS7 block(SignerInfo... signers) {
+        return new PKCS7(new AlgorithmId[0], new ContentInfo(CONTENT),
+                new X509Certificate[] { cert }, signers);
+    }
+
+    @Test
+    public void testParallelVerify() throws Exception {
+        AlgorithmId sha256 = new AlgorithmId(AlgorithmId.SHA256_oid);
+        AlgorithmId sha384 = new AlgorithmId(AlgorithmId.SHA384_oid);
+        byte[] digest256 = MessageDigest.getInstance("SHA-256").digest(CONTENT);
+        byte[] digest384 = MessageDigest.getInstance("SHA-384").digest(CONTENT);
+
+        SignerInfo good256 = signer(sha256, digest256);
+        SignerInfo good384 = signer(sha384, digest384);
+        SignerInfo wrongDigest = signer(sha256, digest384);
+        SignerInfo unknownAlg = signer(
+                new AlgorithmId(new ObjectIdentifier("1.2.3.4.5")), digest256);
+
+        PKCS7 block = block(good256, wrongDigest, unknownAlg, good384, good256);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            PKCS7.VerificationResult[] results = block.verify(null, executor);
+            Assert.assertEquals(5, results.length);
+
+            Assert.assertSame(good256, results[0].getSignerInfo());
+            Assert.assertTrue(results[0].isVerified());
+            Assert.assertNull(results[0].getError());
+
+            Assert.assertFalse(results[1].isVerified());
+            Assert.assertNull(results[1].getError());
+
+            Assert.assertFalse(results[2].isVerified());
+            Assert.assertTrue(results[2].getError() instanceof NoSuchAlgorithmException);
+
+            Assert.assertTrue(results[3].isVerified());
+            Assert.assertTrue(results[4].isVerified());
+
+        } finally {
+            executor.shutdown();
+        }
+
+        // the same results on the calling thread
+        PKCS7.VerificationResult[] results = block.verify(CONTENT, null);
+        Assert.assertTrue(results[0].isVerified());
+        Assert.assertFalse(results[1].isVerified());
+        Assert.assertNotNull(results[2].getError());
+        Assert.assertTrue(results[3].isVerified());
+
+        // the original method still fails on the unknown algorithm
+        try {
+            block.verify();
+            Assert.fail();
+        } catch (NoSuchAlgorithmException e) {
+            // expected
+        }
+
+        SignerInfo[] verified = block(good256, wrongDigest, good384).verify();
+        Assert.assertArrayEquals(new SignerInfo[] { good256, good384 }, verified);
+    }
+}
@@ -0,0 +1,153 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mozilla.jss.asn1.ANY;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.BIT_STRING;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.TokenException;
+import org.mozilla.jss.pkix.cmc.BodyPartReference;
+import org.mozilla.jss.pkix.cmc.CMCStatusInfoV2;
+import org.mozilla.jss.pkix.cmc.OtherInfo;
+import org.mozilla.jss.pkix.cmc.OtherReqMsg;
+import org.mozilla.jss.pkix.cmc.PKIData;
+import org.mozilla.jss.pkix.cmc.PKIDataProcessor;
+import org.mozilla.jss.pkix.cmc.ResponseBody;
+import org.mozilla.jss.pkix.cmc.TaggedAttribute;
+import org.mozilla.jss.pkix.cmc.TaggedRequest;
+import org.mozilla.jss.pkix.crmf.CertReqMsg;
+import org.mozilla.jss.pkix.crmf.CertRequest;
+import org.mozilla.jss.pkix.crmf.CertTemplate;
+import org.mozilla.jss.pkix.crmf.POPOSigningKey;
+import org.mozilla.jss.pkix.crmf.ProofOfPossession;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+public class PKIDataProcessorTest {
+
+    private static TaggedRequest crmf(int id, ProofOfPossession pop) {
+        CertRequest certReq = new CertRequest(new INTEGER(id), new CertTemplate(), null);
+        return new TaggedRequest(TaggedRequest.CRMF, null, new CertReqMsg(certReq, pop, null));
+    }
+
+    private static TaggedRequest other(int id) throws Exception {
+        OtherReqMsg orm = new OtherReqMsg(new INTEGER(id),
+                new OBJECT_IDENTIFIER("1.2.3.4"),
+                new ANY(ASN1Util.encode(new OCTET_STRING(new byte[10]))));
+        return new TaggedRequest(TaggedRequest.OTHER, null, null, orm);
+    }
+
+    private static byte[] pkiData() throws Exception {
+        SEQUENCE controls = new SEQUENCE();
+        controls.addElement(new TaggedAttribute(new INTEGER(100),
+                OBJECT_IDENTIFIER.id_cmc_senderNonce, new OCTET_STRING(new byte[16])));
+
+        SEQUENCE requests = new SEQUENCE();
+        for (int i = 0; i < 50; i++) {
+            requests.addElement(crmf(3 * i + 1, null));
+            requests.addElement(crmf(3 * i + 2, ProofOfPossession.createRaVerified()));
+            requests.addElement(other(3 * i + 3));
+        }
+
+        return ASN1Util.encode(new PKIData(controls, requests, new SEQUENCE(), new SEQUENCE()));
+    }
+
+    private static void check(List<PKIDataProcessor.Result> results) {
+        Assert.assertEquals(150, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            PKIDataProcessor.Result result = results.get(i);
+            BodyPartReference ref = result.getBodyPartReference();
+            Assert.assertSame(BodyPartReference.BodyPartID, ref.getType());
+            Assert.assertEquals(i + 1, ref.getBodyPartID().intValue());
+            Assert.assertFalse(result.isVerified());
+            Assert.assertNull(result.getError());
+            Assert.assertEquals(-1, result.getFailInfo());
+        }
+
+        Assert.assertEquals(CMCStatusInfoV2.POP_REQUIRED, results.get(0).getStatus());
+        Assert.assertFalse(results.get(0).isRaVerified());
+        Assert.assertEquals(CMCStatusInfoV2.PENDING, results.get(1).getStatus());
+        Assert.assertTrue(results.get(1).isRaVerified());
+        Assert.assertEquals(CMCStatusInfoV2.NOSUPPORT, results.get(2).getStatus());
+        Assert.assertFalse(results.get(2).isRaVerified());
+        Assert.assertSame(TaggedRequest.OTHER, results.get(2).getRequest().getType());
+    }
+
+    @Test
+    public void testProcess() throws Exception {
+        byte[] encoded = pkiData();
+
+        PKIDataProcessor processor = new PKIDataProcessor(null, null);
+        check(processor.process(encoded));
+        Assert.assertEquals(1, processor.getPKIData().getControlSequence().size());
+        Assert.assertEquals(150, processor.getPKIData().getReqSequence().size());
+        Assert.assertArrayEquals(encoded, ASN1Util.encode(processor.getPKIData()));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            processor = new PKIDataProcessor(null, executor);
+            check(processor.process(new ByteArrayInputStream(encoded)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailedRequest() throws Exception {
+        POPOSigningKey signature = new POPOSigningKey(null,
+                new AlgorithmIdentifier(new OBJECT_IDENTIFIER("1.2.840.113549.1.1.11")),
+                new BIT_STRING(new byte[16], 0));
+
+        SEQUENCE requests = new SEQUENCE();
+        requests.addElement(crmf(1, ProofOfPossession.createSignature(signature)));
+        byte[] encoded = ASN1Util.encode(
+                new PKIData(new SEQUENCE(), requests, new SEQUENCE(), new SEQUENCE()));
+
+        // a token that fails with an internal message
+        CryptoToken token = (CryptoToken) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] { CryptoToken.class },
+                (proxy, method, args) -> {
+                    throw new TokenException("slot 3 handle 0x7f12 failed");
+                });
+
+        PKIDataProcessor.Result result =
+                new PKIDataProcessor(token, null).process(encoded).get(0);
+        Assert.assertEquals(CMCStatusInfoV2.FAILED, result.getStatus());
+        Assert.assertTrue(result.getError() instanceof TokenException);
+        Assert.assertEquals(OtherInfo.BAD_REQUEST, result.getFailInfo());
+
+        CMCStatusInfoV2 statusInfo = result.getStatusInfo();
+        Assert.assertEquals("Bad request", statusInfo.getStatusString());
+        Assert.assertEquals(OtherInfo.BAD_REQUEST,
+                statusInfo.getOtherInfo().getFailInfo().intValue());
+    }
+
+    @Test
+    public void testResponseBody() throws Exception {
+        List<PKIDataProcessor.Result> results =
+                new PKIDataProcessor(null, null).process(pkiData());
+
+        CMCStatusInfoV2 statusInfo = results.get(2).getStatusInfo();
+        Assert.assertEquals(CMCStatusInfoV2.NOSUPPORT, statusInfo.getStatus());
+        Assert.assertEquals(1, statusInfo.getBodyList().size());
+
+        ResponseBody body = PKIDataProcessor.createResponseBody(new INTEGER(1), results);
+        ResponseBody decoded = (ResponseBody) ASN1Util.decode(
+                ResponseBody.getTemplate(), ASN1Util.encode(body));
+
+        Assert.assertEquals(1, decoded.getControlSequence().size());
+        TaggedAttribute control = (TaggedAttribute) decoded.getControlSequence().elementAt(0);
+        Assert.assertEquals(OBJECT_IDENTIFIER.id_cmc_statusInfoV2, control.getType());
+        Assert.assertEquals(150, control.getValues().size());
+    }
+}
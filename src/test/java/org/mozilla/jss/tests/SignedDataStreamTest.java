@@ -0,0 +1,215 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.SignatureException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.DigestAlgorithm;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.crypto.SignatureAlgorithm;
+import org.mozilla.jss.crypto.X509Certificate;
+import org.mozilla.jss.pkix.cert.Certificate;
+import org.mozilla.jss.pkix.cert.CertificateInfo;
+import org.mozilla.jss.pkix.cms.ContentInfo;
+import org.mozilla.jss.pkix.cms.IssuerAndSerialNumber;
+import org.mozilla.jss.pkix.cms.SignedData;
+import org.mozilla.jss.pkix.cms.SignedDataGenerator;
+import org.mozilla.jss.pkix.cms.SignedDataParser;
+import org.mozilla.jss.pkix.cms.SignerIdentifier;
+import org.mozilla.jss.pkix.cms.SignerInfo;
+
+public class SignedDataStreamTest {
+
+    private static byte[] content() {
+        byte[] content = new byte[10000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        return content;
+    }
+
+    private static byte[] generate(byte[] content, boolean detached) throws Exception {
+        return generate(content, detached, new SignedDataGenerator());
+    }
+
+    private static byte[] generate(byte[] content, boolean detached,
+            SignedDataGenerator gen) throws Exception {
+        gen.addDigestAlgorithm(DigestAlgorithm.SHA256);
+        gen.addDigestAlgorithm(DigestAlgorithm.SHA384);
+        gen.setSegmentSize(1000);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream os = gen.open(out, ContentInfo.DATA, detached)) {
+            os.write(content, 0, 1);
+            os.write(content, 1, 2500);
+            os.write(content, 2501, content.length - 2501);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testAttached() throws Exception {
+        byte[] content = content();
+        byte[] encoded = generate(content, false);
+
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        SignedDataParser parser = new SignedDataParser(new ByteArrayInputStream(encoded));
+        SignedData sd = parser.parse(copy);
+
+        Assert.assertArrayEquals(content, copy.toByteArray());
+        Assert.assertEquals(ContentInfo.DATA, sd.getContentInfo().getContentType());
+        Assert.assertFalse(sd.getContentInfo().hasContent());
+        Assert.assertEquals(2, sd.getDigestAlgorithmIdentifiers().size());
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(content),
+                parser.getDigest(DigestAlgorithm.SHA256.toOID()));
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA-384").digest(content),
+                parser.getDigest(DigestAlgorithm.SHA384.toOID()));
+        Assert.assertNull(parser.getDigest(DigestAlgorithm.SHA512.toOID()));
+
+        try {
+            parser.verify();
+            Assert.fail();
+        } catch (SignatureException e) {
+            // no signers
+        }
+
+        // the output is readable by the in-memory templates
+        ContentInfo ci = (ContentInfo) ASN1Util.decode(ContentInfo.getTemplate(), encoded);
+        SignedData decoded = (SignedData) ci.getInterpretedContent();
+        Assert.assertArrayEquals(content, decoded.getContentInfo().getContent().toByteArray());
+    }
+
+    @Test
+    public void testDetached() throws Exception {
+        byte[] content = content();
+        byte[] encoded = generate(content, true);
+        Assert.assertTrue(encoded.length < 200);
+
+        SignedDataParser parser = new SignedDataParser(new ByteArrayInputStream(encoded));
+        SignedData sd = parser.parseDetached(new ByteArrayInputStream(content));
+        Assert.assertFalse(sd.getContentInfo().hasContent());
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(content),
+                parser.getDigest(DigestAlgorithm.SHA256.toOID()));
+
+        // attached content is not mistaken for detached content
+        parser = new SignedDataParser(new ByteArrayInputStream(generate(content, false)));
+        try {
+            parser.parseDetached(new ByteArrayInputStream(content));
+            Assert.fail();
+        } catch (java.io.IOException e) {
+            // expected
+        }
+    }
+
+    private static SignedDataGenerator signer(X509Certificate cert, SET signedAttributes)
+            throws Exception {
+        Certificate decoded = (Certificate) ASN1Util.decode(
+                Certificate.getTemplate(), cert.getEncoded());
+        CertificateInfo info = decoded.getInfo();
+        SignerIdentifier signerId = SignerIdentifier.createIssuerAndSerialNumber(
+                new IssuerAndSerialNumber(info.getIssuer(), info.getSerialNumber()));
+        PrivateKey key = CryptoManager.getInstance().findPrivKeyByCert(cert);
+
+        SignedDataGenerator gen = new SignedDataGenerator();
+        gen.addSigner(signerId, SignatureAlgorithm.RSASignatureWithSHA256Digest,
+                key, signedAttributes, null);
+        return gen;
+    }
+
+    private static void verifySigned(X509Certificate cert, byte[] content,
+            byte[] encoded, SignedDataParser parser, boolean signedAttributes)
+            throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+        Assert.assertArrayEquals(digest, parser.getDigest(DigestAlgorithm.SHA256.toOID()));
+
+        // the streamed digest verifies, both from the NSS database and
+        // with the given key
+        parser.verify();
+        SignerInfo parsed = (SignerInfo) parser.getSignedData().getSignerInfos().elementAt(0);
+        parser.verify(parsed, cert.getPublicKey());
+        Assert.assertEquals(signedAttributes, parsed.hasSignedAttributes());
+
+        // so does the same SignerInfo decoded by the in-memory templates,
+        // which only find it if the trailing EOCs are in place
+        ContentInfo ci = (ContentInfo) ASN1Util.decode(ContentInfo.getTemplate(), encoded);
+        SignedData sd = (SignedData) ci.getInterpretedContent();
+        Assert.assertEquals(1, sd.getSignerInfos().size());
+        SignerInfo signer = (SignerInfo) sd.getSignerInfos().elementAt(0);
+        Assert.assertArrayEquals(parsed.getEncryptedDigest(), signer.getEncryptedDigest());
+        signer.verify(digest, ContentInfo.DATA);
+        signer.verify(digest, ContentInfo.DATA, cert.getPublicKey());
+
+        byte[] wrong = MessageDigest.getInstance("SHA-256").digest(encoded);
+        try {
+            signer.verify(wrong, ContentInfo.DATA, cert.getPublicKey());
+            Assert.fail();
+        } catch (SignatureException e) {
+            // expected
+        }
+    }
+
+    private static void testSignedAttached(X509Certificate cert) throws Exception {
+        byte[] content = content();
+        byte[] encoded = generate(content, false, signer(cert, new SET()));
+
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        SignedDataParser parser = new SignedDataParser(new ByteArrayInputStream(encoded));
+        parser.parse(copy);
+        Assert.assertArrayEquals(content, copy.toByteArray());
+
+        verifySigned(cert, content, encoded, parser, true);
+    }
+
+    private static void testSignedDetached(X509Certificate cert) throws Exception {
+        byte[] content = content();
+        byte[] encoded = generate(content, true, signer(cert, null));
+
+        SignedDataParser parser = new SignedDataParser(new ByteArrayInputStream(encoded));
+        parser.parseDetached(new ByteArrayInputStream(content));
+
+        verifySigned(cert, content, encoded, parser, false);
+
+        // other content does not verify
+        content[0]++;
+        parser = new SignedDataParser(new ByteArrayInputStream(encoded));
+        parser.parseDetached(new ByteArrayInputStream(content));
+        try {
+            parser.verify();
+            Assert.fail();
+        } catch (SignatureException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Runs the signed cases, which need a key in an NSS database.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.out.println(
+                "Usage: java org.mozilla.jss.tests.SignedDataStreamTest <dbdir> <passwordFile> <nickname>");
+            System.exit(1);
+        }
+
+        CryptoManager manager = CryptoManager.getInstance();
+        manager.setPasswordCallback(new FilePasswordCallback(args[1]));
+        CryptoToken token = manager.getInternalKeyStorageToken();
+        manager.setThreadToken(token);
+
+        X509Certificate cert = manager.findCertByNickname(args[2]);
+
+        testSignedAttached(cert);
+        System.out.println("signed attached: OK");
+
+        testSignedDetached(cert);
+        System.out.println("signed detached: OK");
+    }
+}
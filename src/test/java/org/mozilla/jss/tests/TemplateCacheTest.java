@@ -0,0 +1,111 @@
+package org.mozilla.jss.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.BOOLEAN;
+import org.mozilla.jss.asn1.CHOICE;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.InvalidBERException;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.PrintableString;
+import org.mozilla.jss.asn1.SET;
+import org.mozilla.jss.asn1.Tag;
+import org.mozilla.jss.pkix.cmc.PKIData;
+import org.mozilla.jss.pkix.crmf.CertReqMsg;
+import org.mozilla.jss.pkix.crmf.CertRequest;
+import org.mozilla.jss.pkix.crmf.ProofOfPossession;
+import org.mozilla.jss.pkix.primitive.AVA;
+import org.mozilla.jss.pkix.primitive.Name;
+import org.mozilla.jss.pkix.primitive.RDN;
+
+public class TemplateCacheTest {
+
+    @Test
+    public void testSingletons() throws Exception {
+        Assert.assertNotNull(AVA.getTemplate());
+        Assert.assertNotNull(RDN.getTemplate());
+        Assert.assertNotNull(CertRequest.getTemplate());
+        Assert.assertNotNull(ProofOfPossession.getTemplate());
+        Assert.assertNotNull(CertReqMsg.getTemplate());
+        Assert.assertNotNull(PKIData.getTemplate());
+        Assert.assertNotNull(org.mozilla.jss.pkix.cms.EnvelopedData.getTemplate());
+        Assert.assertNotNull(org.mozilla.jss.pkcs7.SignedData.getTemplate());
+        Assert.assertNotNull(org.mozilla.jss.pkcs12.PFX.getTemplate());
+        Assert.assertSame(AVA.getTemplate(), AVA.getTemplate());
+    }
+
+    @Test
+    public void testChoiceTagTable() throws Exception {
+        CHOICE.Template template = new CHOICE.Template();
+        template.addElement(INTEGER.getTemplate());
+
+        byte[] bool = ASN1Util.encode(new BOOLEAN(true));
+        Assert.assertFalse(template.tagMatch(BOOLEAN.TAG));
+        try {
+            ASN1Util.decode(template, bool);
+            Assert.fail();
+        } catch (InvalidBERException e) {
+            // no match
+        }
+
+        // adding an element invalidates what was learned about the tag
+        template.addElement(BOOLEAN.getTemplate());
+        Assert.assertTrue(template.tagMatch(BOOLEAN.TAG));
+        CHOICE choice = (CHOICE) ASN1Util.decode(template, bool);
+        Assert.assertTrue(((BOOLEAN) choice.getValue()).toBoolean());
+
+        template.removeElementAt(1);
+        Assert.assertFalse(template.tagMatch(BOOLEAN.TAG));
+    }
+
+    @Test
+    public void testSetTagTable() throws Exception {
+        SET set = new SET();
+        set.addElement(new INTEGER(1));
+        set.addElement(new Tag(0), new BOOLEAN(false));
+        byte[] encoded = ASN1Util.encode(set);
+
+        SET.Template template = new SET.Template();
+        template.addElement(INTEGER.TAG, INTEGER.getTemplate());
+        template.addOptionalElement(new Tag(1), BOOLEAN.getTemplate());
+        try {
+            ASN1Util.decode(template, encoded);
+            Assert.fail();
+        } catch (InvalidBERException e) {
+            // [0] is not expected yet
+        }
+
+        template.addElement(new Tag(0), BOOLEAN.getTemplate());
+        SET decoded = (SET) ASN1Util.decode(template, encoded);
+        Assert.assertEquals(2, decoded.size());
+    }
+
+    @Test
+    public void testConcurrentDecode() throws Exception {
+        Name name = new Name();
+        name.addElement(new AVA(new OBJECT_IDENTIFIER("2.5.4.10"), new PrintableString("Example")));
+        name.addElement(new AVA(new OBJECT_IDENTIFIER("2.5.4.3"), new PrintableString("Test")));
+        byte[] encoded = ASN1Util.encode(name);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(
+                        () -> ASN1Util.encode(ASN1Util.decode(Name.getTemplate(), encoded))));
+            }
+            for (Future<byte[]> result : results) {
+                Assert.assertArrayEquals(encoded, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
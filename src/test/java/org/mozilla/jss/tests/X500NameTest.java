@@ -0,0 +1,64 @@
+package org.mozilla.jss.tests;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.x509.LdapDNStrConverter;
+import org.mozilla.jss.netscape.security.x509.RFC1779StrConverter;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+
+public class X500NameTest {
+
+    @Test
+    public void testEqualsAndHashCode() throws Exception {
+        X500Name name = new X500Name("CN=Test CA,OU=PKI,O=Example,C=US");
+        X500Name decoded = new X500Name(name.getEncoded());
+
+        Assert.assertNotSame(name, decoded);
+        Assert.assertEquals(name, decoded);
+        Assert.assertEquals(name.hashCode(), decoded.hashCode());
+        Assert.assertNotEquals(name, new X500Name("CN=test ca,OU=PKI,O=Example,C=US"));
+
+        Set<X500Name> names = new HashSet<>();
+        names.add(name);
+        Assert.assertTrue(names.contains(decoded));
+
+        // getEncoded() returns a copy
+        decoded.getEncoded()[0] = 0;
+        Assert.assertEquals(name, decoded);
+    }
+
+    @Test
+    public void testDNStringsPerConverter() throws Exception {
+        X500Name name = new X500Name("CN=Test CA,O=Example");
+        LdapDNStrConverter rfc1779 = new RFC1779StrConverter();
+
+        String ldap = name.toString();
+        String other = name.toLdapDNString(rfc1779);
+        Assert.assertSame(ldap, name.toString());
+        Assert.assertSame(ldap, name.toLdapDNString());
+        Assert.assertSame(other, name.toLdapDNString(rfc1779));
+        Assert.assertEquals(rfc1779.encodeDN(name), other);
+
+        // the first form rendered is not returned for another converter
+        X500Name fresh = new X500Name(name.getEncoded());
+        Assert.assertEquals(other, fresh.toLdapDNString(rfc1779));
+        Assert.assertEquals(ldap, fresh.toString());
+    }
+
+    @Test
+    public void testComparisonKey() throws Exception {
+        X500Name name = new X500Name("CN=Test  CA,OU=A+UID=b,O=Example");
+
+        Assert.assertTrue(name.matches(new X500Name("cn=test ca,ou=a+uid=B,o=EXAMPLE")));
+        Assert.assertTrue(name.matches(new X500Name("CN= Test CA ,UID=b+OU=A,O=Example")));
+        Assert.assertFalse(name.matches(new X500Name("CN=Test CA,OU=A+UID=b,O=Other")));
+        Assert.assertFalse(name.matches(new X500Name("OU=A+UID=b,O=Example")));
+        Assert.assertSame(name.getComparisonKey(), name.getComparisonKey());
+
+        // separators in values do not run into the next attribute
+        Assert.assertFalse(new X500Name("CN=a\\,2.5.4.3=b").matches(new X500Name("CN=a,CN=b")));
+    }
+}
@@ -0,0 +1,187 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.cert.X509CRLEntry;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLNumberExtension;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.DeltaCRLGenerator;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CRLBuilder;
+import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
+
+public class X509CRLBuilderTest {
+
+    private static final Date NOW = new Date(1600000000000L);
+
+    private static KeyPair keyPair;
+    private static X500Name issuer;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(2048);
+        keyPair = kpg.generateKeyPair();
+        issuer = new X500Name("CN=Test CA");
+    }
+
+    private static RevokedCertImpl entry(long serial, RevocationReason reason)
+            throws Exception {
+        CRLExtensions exts = new CRLExtensions();
+        exts.set(CRLReasonExtension.NAME, new CRLReasonExtension(reason));
+        return new RevokedCertImpl(BigInteger.valueOf(serial), NOW, exts);
+    }
+
+    private static byte[] build(Iterable<RevokedCertificate> entries, long crlNumber)
+            throws Exception {
+        X509CRLBuilder builder = new X509CRLBuilder(issuer, NOW, NOW);
+        builder.setRevokedCertificates(entries);
+
+        CRLExtensions exts = new CRLExtensions();
+        exts.set(CRLNumberExtension.NAME,
+                new CRLNumberExtension(BigInteger.valueOf(crlNumber)));
+        builder.setExtensions(exts);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        builder.sign(keyPair.getPrivate(), "SHA256withRSA", out);
+        return out.toByteArray();
+    }
+
+    private static Set<BigInteger> serials(X509CRLImpl crl) {
+        Set<BigInteger> serials = new HashSet<>();
+        for (RevokedCertificate entry : crl.getRevokedCertificates()) {
+            serials.add(entry.getSerialNumber());
+        }
+        return serials;
+    }
+
+    @Test
+    public void testStreamedCRL() throws Exception {
+        List<RevokedCertificate> entries = new ArrayList<>();
+        for (int i = 1; i <= 2000; i++) {
+            entries.add(entry(i * 13L, RevocationReason.KEY_COMPROMISE));
+        }
+
+        byte[] der = build(entries, 5);
+        X509CRLImpl crl = new X509CRLImpl(der);
+
+        Signature verifier = Signature.getInstance("SHA256withRSA");
+        verifier.initVerify(keyPair.getPublic());
+        verifier.update(crl.getTBSCertList());
+        Assert.assertTrue(verifier.verify(crl.getSignature()));
+
+        Assert.assertEquals(1, crl.getVersion());
+        Assert.assertEquals(BigInteger.valueOf(5), crl.getCRLNumber());
+        Assert.assertEquals(2000, crl.getNumberOfRevokedCertificates());
+        for (RevokedCertificate entry : entries) {
+            Assert.assertEquals(entry, crl.getRevokedCertificate(entry.getSerialNumber()));
+        }
+    }
+
+    @Test
+    public void testSpilledCRL() throws Exception {
+        // enough entries to move the spill buffer to a temporary file
+        List<RevokedCertificate> entries = new ArrayList<>();
+        for (int i = 1; i <= 40000; i++) {
+            entries.add(entry(i, RevocationReason.SUPERSEDED));
+        }
+
+        X509CRLImpl crl = new X509CRLImpl(build(entries, 6));
+
+        Signature verifier = Signature.getInstance("SHA256withRSA");
+        verifier.initVerify(keyPair.getPublic());
+        verifier.update(crl.getTBSCertList());
+        Assert.assertTrue(verifier.verify(crl.getSignature()));
+        Assert.assertEquals(40000, crl.getNumberOfRevokedCertificates());
+    }
+
+    @Test
+    public void testChangingEntries() throws Exception {
+        // every traversal swaps the reason of one entry for another one
+        // with an encoding of the same length
+        int[] traversals = new int[1];
+        Iterable<RevokedCertificate> entries = () -> {
+            List<RevokedCertificate> list = new ArrayList<>();
+            try {
+                list.add(entry(1, RevocationReason.KEY_COMPROMISE));
+                list.add(entry(2, traversals[0] == 0 ?
+                        RevocationReason.CERTIFICATE_HOLD :
+                        RevocationReason.SUPERSEDED));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            traversals[0]++;
+            return list.iterator();
+        };
+
+        X509CRLImpl crl = new X509CRLImpl(build(entries, 9));
+        Assert.assertEquals(1, traversals[0]);
+
+        Signature verifier = Signature.getInstance("SHA256withRSA");
+        verifier.initVerify(keyPair.getPublic());
+        verifier.update(crl.getTBSCertList());
+        Assert.assertTrue(verifier.verify(crl.getSignature()));
+
+        Assert.assertEquals(entry(2, RevocationReason.CERTIFICATE_HOLD),
+                crl.getRevokedCertificate(BigInteger.valueOf(2)));
+    }
+
+    @Test
+    public void testEmptyCRL() throws Exception {
+        X509CRLImpl crl = new X509CRLImpl(build(new ArrayList<>(), 1));
+
+        Assert.assertEquals(0, crl.getNumberOfRevokedCertificates());
+        Assert.assertEquals(BigInteger.ONE, crl.getCRLNumber());
+    }
+
+    @Test
+    public void testDeltaCRL() throws Exception {
+        List<RevokedCertificate> base = new ArrayList<>();
+        base.add(entry(1, RevocationReason.KEY_COMPROMISE));
+        base.add(entry(2, RevocationReason.CERTIFICATE_HOLD));
+        base.add(entry(3, RevocationReason.CERTIFICATE_HOLD));
+
+        List<RevokedCertificate> current = new ArrayList<>();
+        current.add(entry(1, RevocationReason.KEY_COMPROMISE));
+        current.add(entry(2, RevocationReason.KEY_COMPROMISE));
+        current.add(entry(4, RevocationReason.SUPERSEDED));
+
+        DeltaCRLGenerator generator = new DeltaCRLGenerator(build(base, 7));
+        Assert.assertEquals(BigInteger.valueOf(7), generator.getBaseCRLNumber());
+
+        X509CRLBuilder builder = generator.createBuilder(
+                issuer, NOW, NOW, BigInteger.valueOf(8), current);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        builder.sign(keyPair.getPrivate(), "SHA256withRSA", out);
+
+        X509CRLImpl delta = new X509CRLImpl(out.toByteArray());
+        Assert.assertTrue(delta.isDeltaCRL());
+        Assert.assertEquals(BigInteger.valueOf(7), delta.getDeltaBaseCRLNumber());
+        Assert.assertEquals(BigInteger.valueOf(8), delta.getCRLNumber());
+
+        Set<BigInteger> expected = new HashSet<>();
+        expected.add(BigInteger.valueOf(2));
+        expected.add(BigInteger.valueOf(3));
+        expected.add(BigInteger.valueOf(4));
+        Assert.assertEquals(expected, serials(delta));
+
+        X509CRLEntry removed = delta.getRevokedCertificate(BigInteger.valueOf(3));
+        Assert.assertEquals(entry(3, RevocationReason.REMOVE_FROM_CRL), removed);
+    }
+}
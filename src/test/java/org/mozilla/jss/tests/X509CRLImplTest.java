@@ -0,0 +1,98 @@
+package org.mozilla.jss.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.x509.AlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
+
+public class X509CRLImplTest {
+
+    private static final Date NOW = new Date(1600000000000L);
+
+    /**
+     * Builds an encoded CRL with a dummy signature; parsing does not
+     * check it.
+     */
+    private static byte[] createCRL(RevokedCertificate[] entries) throws Exception {
+        AlgorithmId algId = AlgorithmId.get("SHA256withRSA");
+        X509CRLImpl crl = new X509CRLImpl(
+                new X500Name("CN=Test CA"), algId, NOW, NOW, entries, null);
+
+        ByteArrayOutputStream info = new ByteArrayOutputStream();
+        crl.encodeInfo(info);
+
+        DerOutputStream tmp = new DerOutputStream();
+        tmp.write(info.toByteArray());
+        algId.encode(tmp);
+        tmp.putBitString(new byte[] { 1, 2, 3, 4 });
+
+        DerOutputStream out = new DerOutputStream();
+        out.write(DerValue.tag_Sequence, tmp);
+        return out.toByteArray();
+    }
+
+    private static RevokedCertificate[] createEntries(int count) throws Exception {
+        RevokedCertificate[] entries = new RevokedCertificate[count];
+        for (int i = 0; i < count; i++) {
+            BigInteger serial = BigInteger.valueOf(i * 7L + 1).shiftLeft(i % 70);
+            if (i % 3 == 0) {
+                CRLExtensions exts = new CRLExtensions();
+                exts.set(CRLReasonExtension.NAME,
+                        new CRLReasonExtension(RevocationReason.KEY_COMPROMISE));
+                entries[i] = new RevokedCertImpl(serial, NOW, exts);
+            } else {
+                entries[i] = new RevokedCertImpl(serial, NOW);
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    public void testIndexedEntriesMatchDecodedEntries() throws Exception {
+        RevokedCertificate[] entries = createEntries(1000);
+        byte[] der = createCRL(entries);
+
+        X509CRLImpl decoded = new X509CRLImpl(der);
+        X509CRLImpl indexed = new X509CRLImpl(der, true, true);
+
+        Assert.assertEquals(decoded.getNumberOfRevokedCertificates(),
+                indexed.getNumberOfRevokedCertificates());
+        Assert.assertEquals(decoded.getRevokedCertificates(),
+                indexed.getRevokedCertificates());
+
+        for (RevokedCertificate entry : entries) {
+            BigInteger serial = entry.getSerialNumber();
+            Assert.assertTrue(indexed.isRevoked(serial));
+            Assert.assertEquals(decoded.getRevokedCertificate(serial),
+                    indexed.getRevokedCertificate(serial));
+        }
+
+        BigInteger missing = BigInteger.valueOf(2);
+        Assert.assertFalse(indexed.isRevoked(missing));
+        Assert.assertNull(indexed.getRevokedCertificate(missing));
+        Assert.assertFalse(indexed.isRevoked(BigInteger.ZERO));
+    }
+
+    @Test
+    public void testIndexedEmptyCRL() throws Exception {
+        byte[] der = createCRL(null);
+
+        X509CRLImpl indexed = new X509CRLImpl(der, true, true);
+
+        Assert.assertEquals(0, indexed.getNumberOfRevokedCertificates());
+        Assert.assertNull(indexed.getRevokedCertificates());
+        Assert.assertFalse(indexed.isRevoked(BigInteger.ONE));
+    }
+}
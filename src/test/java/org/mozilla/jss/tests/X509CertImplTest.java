@@ -0,0 +1,238 @@
+package org.mozilla.jss.tests;
+
+import java.math.BigInteger;
+import java.security.InvalidKeyException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.SignatureSpi;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.util.BigInt;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.ObjectIdentifier;
+import org.mozilla.jss.netscape.security.x509.AlgorithmId;
+import org.mozilla.jss.netscape.security.x509.BasicConstraintsExtension;
+import org.mozilla.jss.netscape.security.x509.CertificateAlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CertificateExtensions;
+import org.mozilla.jss.netscape.security.x509.CertificateIssuerName;
+import org.mozilla.jss.netscape.security.x509.CertificateSerialNumber;
+import org.mozilla.jss.netscape.security.x509.CertificateSubjectName;
+import org.mozilla.jss.netscape.security.x509.CertificateValidity;
+import org.mozilla.jss.netscape.security.x509.CertificateVersion;
+import org.mozilla.jss.netscape.security.x509.CertificateX509Key;
+import org.mozilla.jss.netscape.security.x509.Extension;
+import org.mozilla.jss.netscape.security.x509.KeyUsageExtension;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+import org.mozilla.jss.netscape.security.x509.X509CertInfo;
+
+public class X509CertImplTest {
+
+    private static final Date NOT_BEFORE = new Date(1600000000000L);
+    private static final Date NOT_AFTER = new Date(1700000000000L);
+
+    private static KeyPair keyPair;
+    private static byte[] der;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(2048);
+        keyPair = kpg.generateKeyPair();
+        RSAPublicKey pub = (RSAPublicKey) keyPair.getPublic();
+
+        CertificateExtensions exts = new CertificateExtensions();
+        exts.set(KeyUsageExtension.NAME, new KeyUsageExtension(
+                true, new boolean[] { true, false, false, false, false, true, true }));
+        exts.set(BasicConstraintsExtension.NAME,
+                new BasicConstraintsExtension(true, true, 2));
+
+        DerOutputStream value = new DerOutputStream();
+        value.putOctetString(new byte[] { 1, 2, 3 });
+        exts.set("1.2.3.4", new Extension(
+                new ObjectIdentifier("1.2.3.4"), false, value.toByteArray()));
+
+        X509CertInfo info = new X509CertInfo();
+        info.set(X509CertInfo.VERSION, new CertificateVersion(CertificateVersion.V3));
+        info.set(X509CertInfo.SERIAL_NUMBER,
+                new CertificateSerialNumber(new BigInteger("123456789012345678901234567890")));
+        info.set(X509CertInfo.ISSUER,
+                new CertificateIssuerName(new X500Name("CN=Test CA,O=Example")));
+        info.set(X509CertInfo.SUBJECT,
+                new CertificateSubjectName(new X500Name("CN=Test CA,O=Example")));
+        info.set(X509CertInfo.VALIDITY, new CertificateValidity(NOT_BEFORE, NOT_AFTER));
+        info.set(X509CertInfo.ALGORITHM_ID,
+                new CertificateAlgorithmId(AlgorithmId.get("SHA256withRSA")));
+        info.set(X509CertInfo.KEY, new CertificateX509Key(
+                new org.mozilla.jss.netscape.security.provider.RSAPublicKey(
+                        new BigInt(pub.getModulus()), new BigInt(pub.getPublicExponent()))));
+        info.set(X509CertInfo.EXTENSIONS, exts);
+
+        X509CertImpl cert = new X509CertImpl(info);
+        cert.sign(keyPair.getPrivate(), "SHA256withRSA");
+        der = cert.getEncoded();
+    }
+
+    @Test
+    public void testLazyFieldsMatchEagerFields() throws Exception {
+        X509CertImpl eager = new X509CertImpl(der);
+        X509CertImpl lazy = new X509CertImpl(der, true);
+
+        Assert.assertEquals(eager.getVersion(), lazy.getVersion());
+        Assert.assertEquals(eager.getSerialNumber(), lazy.getSerialNumber());
+        Assert.assertEquals(eager.getNotBefore(), lazy.getNotBefore());
+        Assert.assertEquals(eager.getNotAfter(), lazy.getNotAfter());
+        Assert.assertEquals(eager.getIssuerName(), lazy.getIssuerName());
+        Assert.assertEquals(eager.getSubjectName(), lazy.getSubjectName());
+        Assert.assertEquals(eager.getPublicKey(), lazy.getPublicKey());
+        Assert.assertEquals(eager.getSigAlgName(), lazy.getSigAlgName());
+        Assert.assertArrayEquals(eager.getSignature(), lazy.getSignature());
+        Assert.assertArrayEquals(eager.getTBSCertificate(), lazy.getTBSCertificate());
+        Assert.assertArrayEquals(der, lazy.getEncoded());
+
+        Assert.assertArrayEquals(eager.getKeyUsage(), lazy.getKeyUsage());
+        Assert.assertEquals(2, lazy.getBasicConstraints());
+        Assert.assertTrue(lazy.getBasicConstraintsIsCA());
+        Assert.assertEquals(eager.getCriticalExtensionOIDs(), lazy.getCriticalExtensionOIDs());
+        Assert.assertEquals(eager.getNonCriticalExtensionOIDs(),
+                lazy.getNonCriticalExtensionOIDs());
+
+        for (String oid : new String[] { "2.5.29.15", "2.5.29.19", "1.2.3.4" }) {
+            Assert.assertArrayEquals(eager.getExtensionValue(oid), lazy.getExtensionValue(oid));
+            Assert.assertEquals(eager.getExtension(oid).getClass(),
+                    lazy.getExtension(oid).getClass());
+        }
+        Assert.assertNull(lazy.getExtensionValue("2.5.29.17"));
+        Assert.assertNull(lazy.getExtension("2.5.29.17"));
+
+        Assert.assertSame(lazy.getIssuerName(), lazy.getIssuerName());
+        Assert.assertSame(lazy.getExtension("2.5.29.15"), lazy.getExtension("2.5.29.15"));
+
+        lazy.verify(keyPair.getPublic(), "SunRsaSign");
+        lazy.checkValidity(new Date(1650000000000L));
+    }
+
+    @Test
+    public void testLazyInfo() throws Exception {
+        X509CertImpl lazy = new X509CertImpl(der, true);
+
+        X509CertInfo info = lazy.getInfo();
+        Assert.assertNotNull(info);
+        Assert.assertSame(info, lazy.getInfo());
+        Assert.assertArrayEquals(new X509CertImpl(der).getInfo().getEncodedInfo(),
+                info.getEncodedInfo());
+        Assert.assertEquals(new X509CertImpl(der).toString(), lazy.toString());
+    }
+
+    @Test(expected = java.security.cert.CertificateException.class)
+    public void testLazyRejectsTrailingData() throws Exception {
+        byte[] padded = java.util.Arrays.copyOf(der, der.length + 1);
+        new X509CertImpl(padded, true);
+    }
+
+    private static final AtomicInteger verifications = new AtomicInteger();
+
+    public static class CountingSignature extends SignatureSpi {
+
+        private final Signature delegate;
+
+        public CountingSignature() throws Exception {
+            delegate = Signature.getInstance("SHA256withRSA", "SunRsaSign");
+        }
+
+        @Override
+        protected void engineInitVerify(PublicKey key) throws InvalidKeyException {
+            delegate.initVerify(key);
+        }
+
+        @Override
+        protected void engineInitSign(PrivateKey key) throws InvalidKeyException {
+            delegate.initSign(key);
+        }
+
+        @Override
+        protected void engineUpdate(byte b) throws SignatureException {
+            delegate.update(b);
+        }
+
+        @Override
+        protected void engineUpdate(byte[] b, int off, int len) throws SignatureException {
+            delegate.update(b, off, len);
+        }
+
+        @Override
+        protected byte[] engineSign() throws SignatureException {
+            return delegate.sign();
+        }
+
+        @Override
+        protected boolean engineVerify(byte[] sig) throws SignatureException {
+            verifications.incrementAndGet();
+            return delegate.verify(sig);
+        }
+
+        @Override
+        @Deprecated
+        protected void engineSetParameter(String param, Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @Deprecated
+        protected Object engineGetParameter(String param) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Test
+    public void testVerifyCache() throws Exception {
+        Provider provider = new Provider("CountingTest", "1.0", "counting") {
+            private static final long serialVersionUID = 1L;
+            {
+                put("Signature.SHA256withRSA", CountingSignature.class.getName());
+            }
+        };
+        Security.addProvider(provider);
+        try {
+            // verifies the original tbsCertificate, with the default provider too
+            new X509CertImpl(der).verify(keyPair.getPublic());
+
+            X509CertImpl cert = new X509CertImpl(der);
+            verifications.set(0);
+            cert.verify(keyPair.getPublic(), "CountingTest");
+            cert.verify(keyPair.getPublic(), "CountingTest");
+            Assert.assertEquals(1, verifications.get());
+
+            X509CertImpl.setVerificationCacheSize(10);
+            new X509CertImpl(der).verify(keyPair.getPublic(), "CountingTest");
+            new X509CertImpl(der, true).verify(keyPair.getPublic(), "CountingTest");
+            Assert.assertEquals(2, verifications.get());
+
+            // failures are not cached
+            PublicKey other = KeyPairGenerator.getInstance("RSA").generateKeyPair().getPublic();
+            for (int i = 0; i < 2; i++) {
+                try {
+                    new X509CertImpl(der).verify(other, "CountingTest");
+                    Assert.fail();
+                } catch (SignatureException e) {
+                    // expected
+                }
+            }
+            Assert.assertEquals(4, verifications.get());
+        } finally {
+            X509CertImpl.setVerificationCacheSize(0);
+            Security.removeProvider(provider.getName());
+        }
+    }
+}